@@ -17,6 +17,8 @@ dependencies {
     implementation("javazoom:jlayer:1.0.1")
     implementation("com.googlecode.soundlibs:mp3spi:1.9.5.4")
     implementation("com.googlecode.soundlibs:tritonus-share:0.3.7-2")
+
+    testImplementation("junit:junit:4.13.2")
 }
 
 intellij {
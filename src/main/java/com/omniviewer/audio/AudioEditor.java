@@ -21,7 +21,7 @@ public class AudioEditor extends UserDataHolderBase implements FileEditor {
     public AudioEditor(@NotNull Project project, @NotNull VirtualFile file) {
         this.project = project;
         this.file = file;
-        this.component = new AudioEditorComponent(file);
+        this.component = new AudioEditorComponent(project, file);
     }
     
     @Override
@@ -1,8 +1,16 @@
 package com.omniviewer.audio;
 
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.sound.sampled.*;
 import javax.swing.*;
@@ -11,28 +19,23 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.concurrent.atomic.AtomicBoolean;
-import javazoom.jl.player.Player;
-import javazoom.jl.decoder.JavaLayerException;
 import org.tritonus.share.sampled.TAudioFormat;
 import org.tritonus.share.sampled.file.TAudioFileFormat;
 
 public class AudioEditorComponent extends JPanel {
     
+    private static final Logger LOG = Logger.getInstance(AudioEditorComponent.class);
+    
+    private static final long WAVEFORM_PUBLISH_INTERVAL_NANOS = 100_000_000L;
+    
+    private final Project project;
     private final VirtualFile file;
-    private Clip audioClip;
-    private AudioInputStream audioStream;
-    private Player mp3Player;
+    private StreamingAudioPlayer audioPlayer;
+    private volatile boolean disposed = false;
+    private volatile ProgressIndicator loadingIndicator;
     private final AtomicBoolean isPlaying = new AtomicBoolean(false);
     private final AtomicBoolean isPaused = new AtomicBoolean(false);
-    private boolean isMP3File = false;
-    
-    // MP3 progress tracking
-    private long mp3StartTime = 0;
-    private long mp3Duration = 0;
-    private long mp3PausedPosition = 0; // Position when paused
-    private Thread mp3PlaybackThread = null;
     
     // UI Components
     private JButton playPauseButton;
@@ -50,7 +53,8 @@ public class AudioEditorComponent extends JPanel {
     private JBLabel fileSizeLabel;
     private JBLabel formatLabel;
     
-    public AudioEditorComponent(VirtualFile file) {
+    public AudioEditorComponent(@Nullable Project project, VirtualFile file) {
+        this.project = project;
         this.file = file;
         initializeUI();
         loadAudioFile();
@@ -191,178 +195,281 @@ public class AudioEditorComponent extends JPanel {
     }
     
     private void loadAudioFile() {
-        try {
-            // Check file extension and provide helpful error message
-            String fileName = file.getName().toLowerCase();
-            String supportedFormats = "WAV, AU, AIFF, MP3";
-            
-            System.out.println("=== AudioEditorComponent.loadAudioFile() ===");
-            System.out.println("File name: " + file.getName());
-            System.out.println("File name (lowercase): " + fileName);
-            System.out.println("File size: " + file.getLength() + " bytes");
-            
-            if (!fileName.endsWith(".wav") && !fileName.endsWith(".au") && 
-                !fileName.endsWith(".aiff") && !fileName.endsWith(".mp3")) {
-                System.out.println("Unsupported file format: " + fileName);
-                statusLabel.setText("Unsupported format. Supported formats: " + supportedFormats);
-                playPauseButton.setEnabled(false);
-                updateMetadataWithError("Unsupported format");
-                return;
+        // Check file extension and provide helpful error message
+        String fileName = file.getName().toLowerCase();
+        String supportedFormats = "WAV, AU, AIFF, MP3";
+        
+        System.out.println("=== AudioEditorComponent.loadAudioFile() ===");
+        System.out.println("File name: " + file.getName());
+        System.out.println("File size: " + file.getLength() + " bytes");
+        
+        if (!fileName.endsWith(".wav") && !fileName.endsWith(".au") && 
+            !fileName.endsWith(".aiff") && !fileName.endsWith(".mp3")) {
+            System.out.println("Unsupported file format: " + fileName);
+            statusLabel.setText("Unsupported format. Supported formats: " + supportedFormats);
+            playPauseButton.setEnabled(false);
+            updateMetadataWithError("Unsupported format");
+            return;
+        }
+        
+        boolean mp3 = fileName.endsWith(".mp3");
+        statusLabel.setText("Loading...");
+        playPauseButton.setEnabled(false);
+        
+        // Probing, indexing and waveform decoding run off the EDT and stop as soon as the editor is disposed
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Loading " + file.getName(), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                loadingIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.checkCanceled();
+                
+                if (mp3) {
+                    System.out.println("MP3 file detected, calling handleMP3File()");
+                    handleMP3File(indicator);
+                } else {
+                    System.out.println("Standard audio file detected, processing with AudioSystem");
+                    handleSampledAudioFile(indicator);
+                }
             }
             
-            // Special handling for MP3 files
-            if (fileName.endsWith(".mp3")) {
-                System.out.println("MP3 file detected, calling handleMP3File()");
-                handleMP3File();
-                return;
+            @Override
+            public void onFinished() {
+                loadingIndicator = null;
             }
+        });
+    }
+    
+    private void handleSampledAudioFile(ProgressIndicator indicator) {
+        try {
+            // Playback streams from the file instead of loading everything into a Clip
+            indicator.setText("Opening audio stream...");
+            PcmSource.Factory sourceFactory = SampledPcmSource.factory(file);
+            StreamingAudioPlayer player = createStreamingPlayer(sourceFactory);
+            
+            // Metadata and playback are available before the waveform is ready
+            publishPlayer(player, () -> {
+                statusLabel.setText("Audio loaded successfully");
+                updateMetadata();
+            });
             
-            System.out.println("Standard audio file detected, processing with AudioSystem");
-            
-            InputStream inputStream = file.getInputStream();
-            audioStream = AudioSystem.getAudioInputStream(inputStream);
-            
-            // Create a copy of the stream for waveform data extraction
-            InputStream waveformInputStream = file.getInputStream();
-            AudioInputStream waveformStream = AudioSystem.getAudioInputStream(waveformInputStream);
-            
-            // Set waveform data first (before opening the clip)
-            waveformComponent.setWaveformData(waveformStream);
-            
-            // Now open the clip with the original stream
-            audioClip = AudioSystem.getClip();
-            audioClip.open(audioStream);
-            
-            // Set audio duration for timeline
-            if (audioClip.isOpen()) {
-                long duration = audioClip.getMicrosecondLength();
-                waveformComponent.setAudioDuration(duration);
+            // Playback already works, a waveform that cannot be decoded must not take it away
+            try {
+                loadWaveform(sourceFactory, player.getFrameLength(), indicator);
+            } catch (IOException e) {
+                LOG.warn("Could not decode the waveform of " + file.getName(), e);
+                publish(this::generateFallbackWaveform);
             }
             
-            statusLabel.setText("Audio loaded successfully");
-            playPauseButton.setEnabled(true);
-            
-            // Update metadata
-            updateMetadata();
-            
-        } catch (UnsupportedAudioFileException e) {
-            String errorMsg = "Unsupported audio format. Please use WAV, AU, AIFF, or MP3 files.";
-            statusLabel.setText(errorMsg);
-            playPauseButton.setEnabled(false);
-            updateMetadataWithError("Unsupported format");
-            System.err.println("Audio format error for file: " + file.getName());
-            System.err.println("Error details: " + e.getMessage());
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (IOException e) {
-            String errorMsg = "Error reading file: " + e.getMessage();
-            statusLabel.setText(errorMsg);
-            playPauseButton.setEnabled(false);
-            updateMetadataWithError("File read error");
             System.err.println("IO error for file: " + file.getName());
             e.printStackTrace();
+            publishLoadError("Error reading file: " + e.getMessage(), "File read error");
         } catch (LineUnavailableException e) {
-            String errorMsg = "Audio line unavailable: " + e.getMessage();
-            statusLabel.setText(errorMsg);
-            playPauseButton.setEnabled(false);
-            updateMetadataWithError("Audio line error");
             System.err.println("Line unavailable error for file: " + file.getName());
             e.printStackTrace();
+            publishLoadError("Audio line unavailable: " + e.getMessage(), "Audio line error");
         }
     }
     
-    private void handleMP3File() {
-        try {
-            System.out.println("=== handleMP3File() called ===");
-            isMP3File = true;
+    private StreamingAudioPlayer createStreamingPlayer(PcmSource.Factory sourceFactory) throws IOException, LineUnavailableException {
+        StreamingAudioPlayer player = new StreamingAudioPlayer(sourceFactory);
+        player.setFinishListener(() -> SwingUtilities.invokeLater(this::onPlaybackFinished));
+        player.setErrorListener(e -> SwingUtilities.invokeLater(() -> {
+            statusLabel.setText("Playback error: " + e.getMessage());
+            onPlaybackFinished();
+        }));
+        return player;
+    }
+    
+    /**
+     * Hands a player opened in the background over to the EDT, closing it instead if the editor is gone.
+     */
+    private void publishPlayer(StreamingAudioPlayer player, Runnable onAttached) {
+        SwingUtilities.invokeLater(() -> {
+            if (disposed) {
+                player.close();
+                return;
+            }
+            audioPlayer = player;
             
-            // Try to use Java Sound API with MP3SPI first
-            System.out.println("Attempting to load MP3 with Java Sound API...");
-            try {
-                InputStream inputStream = file.getInputStream();
-                audioStream = AudioSystem.getAudioInputStream(inputStream);
-                
-                // Create a copy of the stream for waveform data extraction
-                InputStream waveformInputStream = file.getInputStream();
-                AudioInputStream waveformStream = AudioSystem.getAudioInputStream(waveformInputStream);
-                
-                // Set waveform data first (before opening the clip)
-                waveformComponent.setWaveformData(waveformStream);
-                
-                // Now open the clip with the original stream
-                audioClip = AudioSystem.getClip();
-                audioClip.open(audioStream);
+            // Set audio duration for timeline
+            long duration = player.getMicrosecondLength();
+            if (duration > 0) {
+                waveformComponent.setAudioDuration(duration);
+            }
+            playPauseButton.setEnabled(true);
+            onAttached.run();
+        });
+    }
+    
+    private void publish(Runnable update) {
+        SwingUtilities.invokeLater(() -> {
+            if (!disposed) {
+                update.run();
+            }
+        });
+    }
+    
+    private void publishLoadError(String message, String errorType) {
+        publish(() -> {
+            statusLabel.setText(message);
+            playPauseButton.setEnabled(false);
+            updateMetadataWithError(errorType);
+        });
+    }
+    
+    /**
+     * Shows the waveform from the peak cache, or decodes it from the start of the stream,
+     * streaming peaks into the component while decoding, and stores the result in the cache.
+     */
+    private void loadWaveform(PcmSource.Factory sourceFactory, long expectedFrames, ProgressIndicator indicator) throws IOException {
+        if (publishCachedWaveform(indicator)) {
+            return;
+        }
+        
+        WaveformPyramid peaks;
+        try (PcmSource source = sourceFactory.open(0)) {
+            AudioFormat format = source.getFormat();
+            WaveformPyramid.Builder builder = new WaveformPyramid.Builder(format.getFrameRate());
+            byte[] buffer = new byte[format.getFrameSize() * 4096];
+            long lastPublished = System.nanoTime();
+            
+            publish(() -> waveformComponent.startProgressiveWaveform(format.getFrameRate(), expectedFrames));
+            indicator.setIndeterminate(expectedFrames <= 0);
+            int bytesRead;
+            while ((bytesRead = source.read(buffer, 0, buffer.length)) > 0) {
+                indicator.checkCanceled();
+                builder.addPcm(buffer, bytesRead, format);
                 
-                // Set audio duration for timeline
-                if (audioClip.isOpen()) {
-                    long duration = audioClip.getMicrosecondLength();
-                    waveformComponent.setAudioDuration(duration);
+                if (expectedFrames > 0) {
+                    indicator.setFraction(Math.min(1.0, (double) builder.getTotalFrames() / expectedFrames));
+                }
+                long now = System.nanoTime();
+                if (now - lastPublished >= WAVEFORM_PUBLISH_INTERVAL_NANOS) {
+                    lastPublished = now;
+                    WaveformPyramid.Chunk chunk = builder.takeChunk();
+                    publish(() -> waveformComponent.appendPeaks(chunk));
                 }
-                
-                System.out.println("MP3 loaded successfully with Java Sound API");
-                statusLabel.setText("MP3 file loaded successfully");
-                playPauseButton.setEnabled(true);
-                
-                // Update metadata
-                updateMetadata();
-                System.out.println("MP3 metadata updated successfully");
-                
-                // If Java Sound API works, we don't need JLayer
-                isMP3File = false; // Treat as standard audio file for seek functionality
-                return;
-                
-            } catch (UnsupportedAudioFileException e) {
-                System.out.println("Java Sound API failed for MP3, falling back to JLayer: " + e.getMessage());
             }
+            peaks = builder.build();
+        }
+        
+        publishDecodedWaveform(peaks);
+    }
+    
+    /**
+     * MP3 peaks come straight from JLayer's sample buffers, decoded in parallel segments through the frame index.
+     */
+    private void loadMP3Waveform(Mp3FrameIndex frameIndex, ProgressIndicator indicator) throws IOException {
+        if (publishCachedWaveform(indicator)) {
+            return;
+        }
+        
+        publish(() -> waveformComponent.startProgressiveWaveform(frameIndex.getSampleRate(), frameIndex.getTotalSamples()));
+        indicator.setIndeterminate(false);
+        MP3WaveformExtractor extractor = new MP3WaveformExtractor(file, frameIndex);
+        WaveformPyramid peaks = extractor.extractWaveform(indicator,
+            chunk -> publish(() -> waveformComponent.appendPeaks(chunk)));
+        
+        publishDecodedWaveform(peaks);
+    }
+    
+    private boolean publishCachedWaveform(ProgressIndicator indicator) {
+        indicator.setText("Loading waveform...");
+        WaveformPyramid cachedPeaks = WaveformPeakCache.getInstance().load(file);
+        if (cachedPeaks == null) {
+            return false;
+        }
+        publish(() -> waveformComponent.setWaveformData(cachedPeaks));
+        return true;
+    }
+    
+    private void publishDecodedWaveform(WaveformPyramid peaks) {
+        publish(() -> waveformComponent.setWaveformData(peaks));
+        WaveformPeakCache.getInstance().store(file, peaks);
+    }
+    
+    private void onPlaybackFinished() {
+        if (audioPlayer == null || !audioPlayer.isFinished()) {
+            return;
+        }
+        
+        // Audio finished, reset to beginning and stop
+        audioPlayer.stop();
+        isPlaying.set(false);
+        isPaused.set(false);
+        
+        playPauseButton.setText("▶ Play");
+        playPauseButton.setEnabled(true);
+        stopButton.setEnabled(false);
+        statusLabel.setText("Finished");
+        waveformComponent.setProgress(0.0f);
+        timeLabel.setText("00:00 / " + formatTime(audioPlayer.getMicrosecondLength()));
+        progressTimer.stop();
+    }
+    
+    private void handleMP3File(ProgressIndicator indicator) {
+        try {
+            System.out.println("=== handleMP3File() called ===");
             
-            // Fallback to JLayer if Java Sound API fails
-            System.out.println("Creating InputStream for MP3 file...");
-            InputStream mp3InputStream = file.getInputStream();
-            System.out.println("InputStream created successfully");
-            
-            System.out.println("Creating JLayer Player...");
-            mp3Player = new Player(mp3InputStream);
-            System.out.println("JLayer Player created successfully");
-            
-            // Generate real waveform data for MP3 (using separate stream)
-            System.out.println("Generating real waveform data for MP3...");
-            generateMP3WaveformData();
-            System.out.println("Real waveform data generated");
+            // Header-only probe first, so the metadata shows up before any decoding
+            indicator.setText("Reading MP3 headers...");
+            Mp3Probe probe = null;
+            try {
+                probe = Mp3Probe.probe(file);
+            } catch (IOException e) {
+                System.err.println("Error getting MP3 metadata: " + e.getMessage());
+            }
+            Mp3Probe metadata = probe;
+            publish(() -> updateMP3Metadata(metadata));
+            
+            // Index frame offsets once so that seeking jumps straight to the right frame
+            indicator.checkCanceled();
+            indicator.setText("Indexing MP3 frames...");
+            Mp3FrameIndex frameIndex = Mp3FrameIndex.build(file);
+            if (frameIndex.getFrameCount() == 0) {
+                throw new IOException("No MPEG audio frames found");
+            }
             
-            statusLabel.setText("MP3 file loaded successfully (JLayer)");
-            playPauseButton.setEnabled(true);
+            // Playback decodes with JLayer, starting from the indexed frame
+            indicator.checkCanceled();
+            PcmSource.Factory sourceFactory = Mp3PcmSource.factory(file, frameIndex);
+            StreamingAudioPlayer player = createStreamingPlayer(sourceFactory);
+            publishPlayer(player, () -> statusLabel.setText("MP3 file loaded successfully"));
             
-            System.out.println("MP3 file loaded successfully, updating metadata...");
-            // Update metadata with basic file information
-            updateMP3Metadata();
-            System.out.println("MP3 metadata updated successfully");
+            try {
+                loadMP3Waveform(frameIndex, indicator);
+            } catch (IOException e) {
+                LOG.warn("Could not decode the waveform of " + file.getName(), e);
+                publish(this::generateFallbackWaveform);
+            }
             
-        } catch (JavaLayerException e) {
-            System.err.println("=== JavaLayerException in handleMP3File() ===");
-            System.err.println("Error loading MP3 file: " + file.getName());
-            System.err.println("Error details: " + e.getMessage());
-            e.printStackTrace();
-            statusLabel.setText("Error loading MP3 file: " + e.getMessage());
-            playPauseButton.setEnabled(false);
-            updateMetadataWithError("MP3 loading error");
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (IOException e) {
             System.err.println("=== IOException in handleMP3File() ===");
             System.err.println("Error reading MP3 file: " + file.getName());
             System.err.println("Error details: " + e.getMessage());
             e.printStackTrace();
-            statusLabel.setText("Error reading MP3 file: " + e.getMessage());
-            playPauseButton.setEnabled(false);
-            updateMetadataWithError("MP3 file read error");
+            publishLoadError("Error reading MP3 file: " + e.getMessage(), "MP3 file read error");
+        } catch (LineUnavailableException e) {
+            System.err.println("=== LineUnavailableException in handleMP3File() ===");
+            System.err.println("Error details: " + e.getMessage());
+            publishLoadError("Audio line unavailable: " + e.getMessage(), "Audio line error");
         } catch (Exception e) {
             System.err.println("=== Unexpected Exception in handleMP3File() ===");
             System.err.println("Error processing MP3 file: " + file.getName());
-            System.err.println("Error details: " + e.getMessage());
             e.printStackTrace();
-            statusLabel.setText("Unexpected error processing MP3 file: " + e.getMessage());
-            playPauseButton.setEnabled(false);
-            updateMetadataWithError("MP3 processing error");
+            publishLoadError("Unexpected error processing MP3 file: " + e.getMessage(), "MP3 processing error");
         }
     }
     
-    private void updateMP3Metadata() {
+    private void updateMP3Metadata(Mp3Probe probe) {
         // File Size
         long fileSize = file.getLength();
         fileSizeLabel.setText(formatFileSize(fileSize));
@@ -370,132 +477,21 @@ public class AudioEditorComponent extends JPanel {
         // Format
         formatLabel.setText("MP3");
         
-        // Try to get MP3 metadata using improved estimation
-        try {
-            System.out.println("Attempting to get MP3 metadata...");
-            
-            // Get more accurate duration estimation
-            long estimatedDuration = getMP3DurationWithJLayer();
-            durationLabel.setText(formatTime(estimatedDuration * 1000000)); // Convert to microseconds
-            
-            // Estimate bitrate based on file size and duration
-            long estimatedBitrate = (fileSize * 8) / estimatedDuration; // bits per second
-            
-            // Set more accurate metadata based on file characteristics
-            if (estimatedBitrate < 64000) {
-                sampleRateLabel.setText("22.05 kHz (est.)");
-                channelsLabel.setText("1 (Mono, est.)");
-                bitDepthLabel.setText("16 bit (est.)");
-            } else if (estimatedBitrate < 128000) {
-                sampleRateLabel.setText("44.1 kHz (est.)");
-                channelsLabel.setText("1 (Mono, est.)");
-                bitDepthLabel.setText("16 bit (est.)");
-            } else if (estimatedBitrate < 192000) {
-                sampleRateLabel.setText("44.1 kHz (est.)");
-                channelsLabel.setText("2 (Stereo, est.)");
-                bitDepthLabel.setText("16 bit (est.)");
-            } else if (estimatedBitrate < 320000) {
-                sampleRateLabel.setText("44.1 kHz (est.)");
-                channelsLabel.setText("2 (Stereo, est.)");
-                bitDepthLabel.setText("16 bit (est.)");
-            } else {
-                sampleRateLabel.setText("48 kHz (est.)");
-                channelsLabel.setText("2 (Stereo, est.)");
-                bitDepthLabel.setText("16 bit (est.)");
-            }
-            
-            System.out.println("MP3 metadata estimated successfully - Duration: " + estimatedDuration + "s, Bitrate: " + estimatedBitrate + " bps");
-            
-        } catch (Exception e) {
-            System.err.println("Error getting MP3 metadata: " + e.getMessage());
+        if (probe == null) {
             // Fallback to N/A values
             durationLabel.setText("N/A (MP3)");
             sampleRateLabel.setText("N/A (MP3)");
             channelsLabel.setText("N/A (MP3)");
             bitDepthLabel.setText("N/A (MP3)");
+            return;
         }
-    }
-    
-    private long estimateMP3Duration(long fileSizeBytes) {
-        // Rough estimation: MP3 files are typically compressed at ~128kbps
-        // 128 kbps = 16 KB/s = 16,000 bytes/s
-        // Duration = file size / bitrate
-        long estimatedSeconds = fileSizeBytes / 16000;
-        return Math.max(estimatedSeconds, 1); // At least 1 second
-    }
-    
-    private void generateMP3WaveformData() {
-        try {
-            System.out.println("=== generateMP3WaveformData() called ===");
-            
-            // Try to get more accurate duration using JLayer
-            long estimatedDuration = getMP3DurationWithJLayer();
-            long durationMicroseconds = estimatedDuration * 1000000;
-            
-            System.out.println("Estimated MP3 duration: " + estimatedDuration + " seconds");
-            
-            // Set audio duration for timeline
-            waveformComponent.setAudioDuration(durationMicroseconds);
-            
-            // Store duration for progress tracking
-            mp3Duration = durationMicroseconds;
-            
-            // Extract real waveform data from MP3 using JLayer
-            System.out.println("Extracting real waveform data from MP3...");
-            extractRealMP3WaveformData();
-            
-        } catch (Exception e) {
-            System.err.println("Error generating MP3 waveform data: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-    
-    private void extractRealMP3WaveformData() {
-        try {
-            // Create a new input stream for waveform extraction
-            InputStream waveformStream = file.getInputStream();
-            Player waveformPlayer = new Player(waveformStream);
-            
-            // We need to decode the MP3 to get PCM data for waveform
-            // Since JLayer doesn't provide direct access to decoded samples,
-            // we'll use a different approach - decode the MP3 and capture the audio data
-            
-            System.out.println("Decoding MP3 for waveform extraction...");
-            
-            // Create a custom player that captures audio data
-            MP3WaveformExtractor extractor = new MP3WaveformExtractor();
-            extractor.extractWaveform(file);
-            
-            // Set the extracted waveform data
-            if (extractor.getWaveformData() != null && !extractor.getWaveformData().isEmpty()) {
-                // Create AudioInputStream from extracted data
-                AudioFormat format = new AudioFormat(
-                    AudioFormat.Encoding.PCM_SIGNED,
-                    44100.0f,  // sample rate
-                    16,        // sample size in bits
-                    2,         // channels
-                    4,         // frame size
-                    44100.0f,  // frame rate
-                    false      // little endian
-                );
-                
-                // Convert extracted samples to byte array
-                byte[] audioData = extractor.getAudioData();
-                ByteArrayInputStream bais = new ByteArrayInputStream(audioData);
-                AudioInputStream audioStream = new AudioInputStream(bais, format, audioData.length / format.getFrameSize());
-                
-                waveformComponent.setWaveformData(audioStream);
-                System.out.println("Real MP3 waveform data extracted and set successfully");
-            } else {
-                System.out.println("Failed to extract waveform data, using fallback");
-                generateFallbackWaveform();
-            }
-            
-        } catch (Exception e) {
-            System.err.println("Error extracting real MP3 waveform: " + e.getMessage());
-            e.printStackTrace();
-            generateFallbackWaveform();
-        }
+        
+        // Exact metadata from the Xing/Info/VBRI tag or a header-only frame walk
+        durationLabel.setText(formatTime(probe.getDurationMillis() * 1000)); // Convert to microseconds
+        sampleRateLabel.setText(String.format("%.1f kHz", probe.getSampleRate() / 1000.0));
+        channelsLabel.setText(probe.getChannels() + " (" + probe.getChannelMode() + ")");
+        bitDepthLabel.setText("16 bit (decoded)");
+        formatLabel.setText("MP3 " + (probe.isVariableBitrate() ? "VBR " : "") + (probe.getAverageBitrate() / 1000) + " kbps");
     }
     
     private void generateFallbackWaveform() {
@@ -545,51 +541,14 @@ public class AudioEditorComponent extends JPanel {
         }
     }
     
-    private long getMP3DurationWithJLayer() {
-        try {
-            // Try to get more accurate duration using JLayer
-            InputStream durationStream = file.getInputStream();
-            Player durationPlayer = new Player(durationStream);
-            
-            // JLayer doesn't provide direct duration access, so we'll use a more sophisticated estimation
-            long fileSize = file.getLength();
-            
-            // More accurate estimation based on common MP3 bitrates
-            // Try to estimate based on file size and common bitrates
-            long estimatedSeconds;
-            
-            if (fileSize < 1024 * 1024) { // Less than 1MB
-                // Likely low bitrate or short file
-                estimatedSeconds = fileSize / 8000; // ~64kbps
-            } else if (fileSize < 5 * 1024 * 1024) { // Less than 5MB
-                // Medium bitrate
-                estimatedSeconds = fileSize / 16000; // ~128kbps
-            } else if (fileSize < 10 * 1024 * 1024) { // Less than 10MB
-                // Higher bitrate
-                estimatedSeconds = fileSize / 20000; // ~160kbps
-            } else {
-                // Very high bitrate or long file
-                estimatedSeconds = fileSize / 24000; // ~192kbps
-            }
-            
-            // Ensure minimum duration
-            return Math.max(estimatedSeconds, 1);
-            
-        } catch (Exception e) {
-            System.err.println("Error getting MP3 duration: " + e.getMessage());
-            // Fallback to simple estimation
-            return estimateMP3Duration(file.getLength());
-        }
-    }
-    
     private void updateMetadata() {
-        if (audioClip != null && audioClip.isOpen()) {
+        if (audioPlayer != null) {
             // Duration
-            long duration = audioClip.getMicrosecondLength();
-            durationLabel.setText(formatTime(duration));
+            long duration = audioPlayer.getMicrosecondLength();
+            durationLabel.setText(duration > 0 ? formatTime(duration) : "N/A");
             
-            // Audio format information
-            AudioFormat format = audioStream.getFormat();
+            // Audio format information (of the file, not the decoded PCM)
+            AudioFormat format = audioPlayer.getSourceFormat();
             
             // Sample Rate
             sampleRateLabel.setText(String.format("%.0f Hz", format.getSampleRate()));
@@ -599,7 +558,8 @@ public class AudioEditorComponent extends JPanel {
             channelsLabel.setText(channels == 1 ? "1 (Mono)" : channels == 2 ? "2 (Stereo)" : String.valueOf(channels));
             
             // Bit Depth
-            bitDepthLabel.setText(format.getSampleSizeInBits() + " bit");
+            int bitDepth = format.getSampleSizeInBits() > 0 ? format.getSampleSizeInBits() : audioPlayer.getFormat().getSampleSizeInBits();
+            bitDepthLabel.setText(bitDepth + " bit");
             
             // File Size
             long fileSize = file.getLength();
@@ -642,11 +602,9 @@ public class AudioEditorComponent extends JPanel {
     }
     
     private void updateProgress() {
-        if (isMP3File) {
-            updateMP3Progress();
-        } else if (audioClip != null && audioClip.isOpen()) {
-            long position = audioClip.getMicrosecondPosition();
-            long length = audioClip.getMicrosecondLength();
+        if (audioPlayer != null) {
+            long position = audioPlayer.getMicrosecondPosition();
+            long length = audioPlayer.getMicrosecondLength();
             
             if (length > 0) {
                 float progress = (float) position / length;
@@ -656,59 +614,11 @@ public class AudioEditorComponent extends JPanel {
                 String currentTime = formatTime(position);
                 String totalTime = formatTime(length);
                 timeLabel.setText(currentTime + " / " + totalTime);
-                
-                // Check if audio has finished playing
-                if (isPlaying.get() && !audioClip.isRunning() && position >= length - 1000000) { // 1 second tolerance
-                    // Audio finished, reset to beginning and stop
-                    audioClip.stop();
-                    audioClip.setFramePosition(0);
-                    isPlaying.set(false);
-                    isPaused.set(false);
-                    
-                    playPauseButton.setText("▶ Play");
-                    playPauseButton.setEnabled(true);
-                    stopButton.setEnabled(false);
-                    statusLabel.setText("Finished");
-                    waveformComponent.setProgress(0.0f);
-                    timeLabel.setText("00:00 / " + totalTime);
-                    progressTimer.stop();
-                }
             }
-        }
-    }
-    
-    private void updateMP3Progress() {
-        if (isPlaying.get() && !isPaused.get() && mp3Duration > 0) {
-            long currentTime = System.currentTimeMillis();
-            long elapsedTime = currentTime - mp3StartTime;
-            long elapsedMicroseconds = elapsedTime * 1000; // Convert to microseconds
             
-            if (elapsedMicroseconds >= mp3Duration) {
-                // MP3 finished playing
-                isPlaying.set(false);
-                isPaused.set(false);
-                
-                playPauseButton.setText("▶ Play");
-                playPauseButton.setEnabled(true);
-                stopButton.setEnabled(false);
-                statusLabel.setText("Finished");
-                waveformComponent.setProgress(1.0f);
-                timeLabel.setText(formatTime(mp3Duration) + " / " + formatTime(mp3Duration));
-                progressTimer.stop();
-                
-                // Close the player
-                if (mp3Player != null) {
-                    mp3Player.close();
-                }
-            } else {
-                // Update progress
-                float progress = (float) elapsedMicroseconds / mp3Duration;
-                waveformComponent.setProgress(progress);
-                
-                // Update time labels
-                String currentTimeStr = formatTime(elapsedMicroseconds);
-                String totalTimeStr = formatTime(mp3Duration);
-                timeLabel.setText(currentTimeStr + " / " + totalTimeStr);
+            // Completion is normally reported by the finish listener, this covers a missed callback
+            if (isPlaying.get() && audioPlayer.isFinished()) {
+                onPlaybackFinished();
             }
         }
     }
@@ -723,149 +633,15 @@ public class AudioEditorComponent extends JPanel {
     private class PlayPauseActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (isMP3File) {
-                handleMP3PlayPause();
-            } else {
-                handleStandardAudioPlayPause();
-            }
-        }
-        
-        private void handleMP3PlayPause() {
-            System.out.println("=== handleMP3PlayPause() called ===");
-            System.out.println("mp3Player is null: " + (mp3Player == null));
-            System.out.println("isPlaying: " + isPlaying.get());
-            System.out.println("isPaused: " + isPaused.get());
-            
-            if (mp3Player == null) {
-                System.out.println("MP3 player is null, returning");
-                return;
-            }
-            
-            if (isPlaying.get()) {
-                // Currently playing, so pause
-                System.out.println("Pausing MP3 playback...");
-                
-                // Calculate current position before pausing
-                long currentTime = System.currentTimeMillis();
-                long elapsedTime = currentTime - mp3StartTime;
-                mp3PausedPosition = elapsedTime * 1000; // Convert to microseconds
-                
-                // Close the player and stop the thread
-                if (mp3Player != null) {
-                    mp3Player.close();
-                }
-                if (mp3PlaybackThread != null) {
-                    mp3PlaybackThread.interrupt();
-                }
-                
-                isPlaying.set(false);
-                isPaused.set(true);
-                
-                playPauseButton.setText("▶ Play");
-                stopButton.setEnabled(true);
-                statusLabel.setText("Paused");
-                progressTimer.stop();
-                System.out.println("MP3 playback paused at position: " + mp3PausedPosition);
-                
-                // Note: We don't reset the progress here, so it stays at current position
-            } else {
-                // Not playing, so play
-                System.out.println("Starting MP3 playback...");
-                try {
-                    // Always create a fresh player for each playback to avoid stream issues
-                    System.out.println("Creating fresh MP3 player for playback...");
-                    InputStream mp3InputStream = file.getInputStream();
-                    mp3Player = new Player(mp3InputStream);
-                    isPaused.set(false);
-                    System.out.println("Fresh MP3 player created for playback");
-                    
-                    // Set up progress tracking
-                    if (mp3Duration == 0) {
-                        // First time playing, get duration
-                        mp3Duration = getMP3DurationWithJLayer() * 1000000; // Convert to microseconds
-                        System.out.println("MP3 duration set to: " + mp3Duration + " microseconds");
-                    }
-                    
-                    // Calculate start time based on current progress or paused position
-                    long elapsedMicroseconds;
-                    if (isPaused.get() && mp3PausedPosition > 0) {
-                        // Resume from paused position
-                        elapsedMicroseconds = mp3PausedPosition;
-                        System.out.println("Resuming MP3 from paused position: " + mp3PausedPosition);
-                    } else {
-                        // Start from current progress
-                        float currentProgress = waveformComponent.getProgress();
-                        elapsedMicroseconds = (long) (currentProgress * mp3Duration);
-                        System.out.println("MP3 start time adjusted for progress: " + currentProgress);
-                    }
-                    
-                    mp3StartTime = System.currentTimeMillis() - (elapsedMicroseconds / 1000);
-                    
-                    // Start playing in a separate thread
-                    System.out.println("Starting MP3 playback thread...");
-                    mp3PlaybackThread = new Thread(() -> {
-                        try {
-                            System.out.println("MP3 playback thread started, calling mp3Player.play()...");
-                            mp3Player.play();
-                            System.out.println("MP3 playback completed");
-                            
-                            // Only update UI if we're still playing (not paused)
-                            if (isPlaying.get()) {
-                                SwingUtilities.invokeLater(() -> {
-                                    isPlaying.set(false);
-                                    isPaused.set(false);
-                                    playPauseButton.setText("▶ Play");
-                                    stopButton.setEnabled(false);
-                                    statusLabel.setText("Finished");
-                                    progressTimer.stop();
-                                    waveformComponent.setProgress(1.0f);
-                                    System.out.println("MP3 playback finished, UI updated");
-                                });
-                            } else {
-                                System.out.println("MP3 playback completed but was paused, not updating UI");
-                            }
-                        } catch (JavaLayerException ex) {
-                            System.err.println("=== JavaLayerException in MP3 playback thread ===");
-                            System.err.println("MP3 playback error: " + ex.getMessage());
-                            ex.printStackTrace();
-                            SwingUtilities.invokeLater(() -> {
-                                statusLabel.setText("MP3 playback error: " + ex.getMessage());
-                                isPlaying.set(false);
-                                isPaused.set(false);
-                                playPauseButton.setText("▶ Play");
-                                stopButton.setEnabled(false);
-                                progressTimer.stop();
-                            });
-                        }
-                    });
-                    mp3PlaybackThread.start();
-                    
-                    isPlaying.set(true);
-                    playPauseButton.setText("⏸ Pause");
-                    stopButton.setEnabled(true);
-                    statusLabel.setText("Playing MP3...");
-                    progressTimer.start();
-                    System.out.println("MP3 playback started successfully");
-                    
-                } catch (Exception ex) {
-                    System.err.println("=== Exception in handleMP3PlayPause() ===");
-                    System.err.println("Error starting MP3 playback: " + ex.getMessage());
-                    ex.printStackTrace();
-                    statusLabel.setText("Error starting MP3 playback: " + ex.getMessage());
-                    isPlaying.set(false);
-                    isPaused.set(false);
-                    playPauseButton.setText("▶ Play");
-                    stopButton.setEnabled(false);
-                }
-            }
+            handleStandardAudioPlayPause();
         }
         
         private void handleStandardAudioPlayPause() {
-            if (audioClip == null) return;
+            if (audioPlayer == null) return;
             
             if (isPlaying.get()) {
                 // Currently playing, so pause
-                audioClip.stop();
+                audioPlayer.pause();
                 isPlaying.set(false);
                 isPaused.set(true);
                 
@@ -877,12 +653,12 @@ public class AudioEditorComponent extends JPanel {
                 // Not playing, so play
                 if (isPaused.get()) {
                     // Resume from pause
-                    audioClip.start();
+                    audioPlayer.play();
                     isPaused.set(false);
                 } else {
                     // Start from current position (don't reset to beginning)
                     // The position is already set by the seek functionality
-                    audioClip.start();
+                    audioPlayer.play();
                 }
                 
                 isPlaying.set(true);
@@ -897,43 +673,13 @@ public class AudioEditorComponent extends JPanel {
     private class StopActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (isMP3File) {
-                handleMP3Stop();
-            } else {
-                handleStandardAudioStop();
-            }
-        }
-        
-        private void handleMP3Stop() {
-            if (mp3Player != null) {
-                mp3Player.close();
-            }
-            if (mp3PlaybackThread != null) {
-                mp3PlaybackThread.interrupt();
-            }
-            
-            isPlaying.set(false);
-            isPaused.set(false);
-            mp3PausedPosition = 0; // Reset paused position
-            
-            playPauseButton.setText("▶ Play");
-            playPauseButton.setEnabled(true);
-            stopButton.setEnabled(false);
-            statusLabel.setText("Stopped");
-            progressTimer.stop();
-            
-            // Reset progress
-            waveformComponent.setProgress(0.0f);
-            if (mp3Duration > 0) {
-                timeLabel.setText("00:00 / " + formatTime(mp3Duration));
-            }
+            handleStandardAudioStop();
         }
         
         private void handleStandardAudioStop() {
-            if (audioClip == null) return;
+            if (audioPlayer == null) return;
             
-            audioClip.stop();
-            audioClip.setFramePosition(0);
+            audioPlayer.stop();
             isPlaying.set(false);
             isPaused.set(false);
             
@@ -942,29 +688,31 @@ public class AudioEditorComponent extends JPanel {
             stopButton.setEnabled(false);
             statusLabel.setText("Stopped");
             waveformComponent.setProgress(0.0f);
-            timeLabel.setText("00:00 / " + formatTime(audioClip.getMicrosecondLength()));
+            timeLabel.setText("00:00 / " + formatTime(audioPlayer.getMicrosecondLength()));
             progressTimer.stop();
         }
     }
     
     public void stop() {
-        if (audioClip != null && audioClip.isRunning()) {
-            audioClip.stop();
+        if (audioPlayer != null && audioPlayer.isPlaying()) {
+            audioPlayer.pause();
+            isPlaying.set(false);
+            isPaused.set(true);
+            playPauseButton.setText("▶ Play");
+            statusLabel.setText("Paused");
         }
         progressTimer.stop();
     }
     
     private void onSeek(float progress) {
-        if (isMP3File) {
-            handleMP3Seek(progress);
-        } else if (audioClip != null && audioClip.isOpen()) {
-            long totalFrames = audioClip.getFrameLength();
+        if (audioPlayer != null) {
+            long totalFrames = audioPlayer.getFrameLength();
             long targetFrame = (long) (totalFrames * progress);
-            audioClip.setFramePosition((int) targetFrame);
+            audioPlayer.seekToFrame(targetFrame);
             
             // Update the progress display immediately
-            long position = audioClip.getMicrosecondPosition();
-            long length = audioClip.getMicrosecondLength();
+            long position = audioPlayer.getMicrosecondPosition();
+            long length = audioPlayer.getMicrosecondLength();
             if (length > 0) {
                 String currentTime = formatTime(position);
                 String totalTime = formatTime(length);
@@ -973,151 +721,19 @@ public class AudioEditorComponent extends JPanel {
         }
     }
     
-    private void handleMP3Seek(float progress) {
-        System.out.println("=== handleMP3Seek() called with progress: " + progress + " ===");
-        
-        if (mp3Duration <= 0) {
-            System.out.println("MP3 duration not set, cannot seek");
-            return;
-        }
-        
-        // Calculate target position in microseconds
-        long targetPosition = (long) (progress * mp3Duration);
-        System.out.println("Target position: " + targetPosition + " microseconds");
-        
-        boolean wasPlaying = isPlaying.get();
-        
-        if (isPlaying.get()) {
-            // If currently playing, stop current playback
-            System.out.println("Currently playing, stopping current playback for seek...");
-            
-            // Stop current playback
-            if (mp3Player != null) {
-                mp3Player.close();
-            }
-            if (mp3PlaybackThread != null) {
-                mp3PlaybackThread.interrupt();
-            }
-            
-            // Set the paused position to the target position
-            mp3PausedPosition = targetPosition;
-            
-            // Update UI temporarily
-            isPlaying.set(false);
-            isPaused.set(true);
-            playPauseButton.setText("▶ Play");
-            stopButton.setEnabled(true);
-            statusLabel.setText("Seeking...");
-            progressTimer.stop();
-            
-            System.out.println("MP3 playback stopped for seek at position: " + targetPosition);
-        } else {
-            // If not playing, just update the position for when playback starts
-            System.out.println("Not currently playing, updating position for future playback");
-            mp3PausedPosition = targetPosition;
-        }
-        
-        // Update the progress display immediately
-        String currentTime = formatTime(targetPosition);
-        String totalTime = formatTime(mp3Duration);
-        timeLabel.setText(currentTime + " / " + totalTime);
-        
-        // If was playing before seek, automatically resume playback from new position
-        if (wasPlaying) {
-            System.out.println("Was playing before seek, automatically resuming playback...");
-            // Use a slight delay to ensure the previous player is fully closed
-            SwingUtilities.invokeLater(() -> {
-                try {
-                    // Create a fresh player for the new position
-                    System.out.println("Creating fresh MP3 player for seek resume...");
-                    InputStream mp3InputStream = file.getInputStream();
-                    mp3Player = new Player(mp3InputStream);
-                    isPaused.set(false);
-                    System.out.println("Fresh MP3 player created for seek resume");
-                    
-                    // Calculate start time based on seek position
-                    mp3StartTime = System.currentTimeMillis() - (targetPosition / 1000);
-                    
-                    // Start playing in a separate thread
-                    System.out.println("Starting MP3 playback thread after seek...");
-                    mp3PlaybackThread = new Thread(() -> {
-                        try {
-                            System.out.println("MP3 playback thread started after seek, calling mp3Player.play()...");
-                            mp3Player.play();
-                            System.out.println("MP3 playback completed after seek");
-                            
-                            // Only update UI if we're still playing (not paused)
-                            if (isPlaying.get()) {
-                                SwingUtilities.invokeLater(() -> {
-                                    isPlaying.set(false);
-                                    isPaused.set(false);
-                                    playPauseButton.setText("▶ Play");
-                                    stopButton.setEnabled(false);
-                                    statusLabel.setText("Finished");
-                                    progressTimer.stop();
-                                    waveformComponent.setProgress(1.0f);
-                                    System.out.println("MP3 playback finished after seek, UI updated");
-                                });
-                            } else {
-                                System.out.println("MP3 playback completed after seek but was paused, not updating UI");
-                            }
-                        } catch (JavaLayerException ex) {
-                            System.err.println("=== JavaLayerException in MP3 playback thread after seek ===");
-                            System.err.println("MP3 playback error after seek: " + ex.getMessage());
-                            ex.printStackTrace();
-                            SwingUtilities.invokeLater(() -> {
-                                statusLabel.setText("MP3 playback error: " + ex.getMessage());
-                                isPlaying.set(false);
-                                isPaused.set(false);
-                                playPauseButton.setText("▶ Play");
-                                stopButton.setEnabled(false);
-                                progressTimer.stop();
-                            });
-                        }
-                    });
-                    mp3PlaybackThread.start();
-                    
-                    isPlaying.set(true);
-                    playPauseButton.setText("⏸ Pause");
-                    stopButton.setEnabled(true);
-                    statusLabel.setText("Playing MP3...");
-                    progressTimer.start();
-                    System.out.println("MP3 playback resumed after seek successfully");
-                    
-                } catch (Exception ex) {
-                    System.err.println("=== Exception in MP3 seek resume ===");
-                    System.err.println("Error resuming MP3 playback after seek: " + ex.getMessage());
-                    ex.printStackTrace();
-                    statusLabel.setText("Error resuming MP3 playback: " + ex.getMessage());
-                    isPlaying.set(false);
-                    isPaused.set(false);
-                    playPauseButton.setText("▶ Play");
-                    stopButton.setEnabled(false);
-                }
-            });
+    public void dispose() {
+        disposed = true;
+        ProgressIndicator indicator = loadingIndicator;
+        if (indicator != null) {
+            indicator.cancel();
         }
         
-        System.out.println("MP3 seek completed - Position: " + currentTime + " / " + totalTime);
-    }
-    
-    public void dispose() {
         stop();
         progressTimer.stop();
         
-        if (audioClip != null) {
-            audioClip.close();
-        }
-        
-        if (mp3Player != null) {
-            mp3Player.close();
+        if (audioPlayer != null) {
+            audioPlayer.close();
         }
         
-        try {
-            if (audioStream != null) {
-                audioStream.close();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
     }
 }
@@ -1,122 +1,245 @@
 package com.omniviewer.audio;
 
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.vfs.VirtualFile;
 import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
 import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
 import javazoom.jl.decoder.Header;
-import javazoom.jl.decoder.Obuffer;
 import javazoom.jl.decoder.SampleBuffer;
-import javazoom.jl.player.Player;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Decodes a whole MP3 file with JLayer and reduces it to min/max/RMS peaks.
+ * Samples go straight from the decoder's output buffer into the peak buckets: no PCM is kept
+ * and nothing is allocated per frame besides JLayer's own work.
+ * <p>
+ * Long files are split through the {@link Mp3FrameIndex} into segments that start on a bucket boundary
+ * and are decoded concurrently, each with its own decoder primed by {@link Mp3FrameIndex#WARMUP_FRAMES}
+ * discarded frames. The per-segment buckets are then concatenated.
+ */
 public class MP3WaveformExtractor {
-    
-    private List<Float> waveformData;
-    private byte[] audioData;
-    
-    public void extractWaveform(VirtualFile file) {
+
+    private static final Logger LOG = Logger.getInstance(MP3WaveformExtractor.class);
+    private static final long CHUNK_INTERVAL_NANOS = 100_000_000L;
+    // ~50 s at 44.1 kHz: shorter segments are not worth a decoder of their own
+    private static final int MIN_FRAMES_PER_SEGMENT = 2000;
+    // How far past an even split point to look for a frame starting on a bucket boundary
+    private static final int MAX_ALIGNMENT_FRAMES = 256;
+
+    private static final ForkJoinPool DECODER_POOL = new ForkJoinPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("OmniViewer MP3 waveform decoder " + thread.getPoolIndex());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        },
+        null, false);
+
+    /**
+     * Receives buckets as soon as they are decoded. Called from several decoder threads at once
+     * and out of order, see {@link WaveformPyramid.Chunk#getStart()}.
+     */
+    public interface ChunkListener {
+        void onChunk(WaveformPyramid.Chunk chunk);
+    }
+
+    private final VirtualFile file;
+    private final Mp3FrameIndex index;
+    private final int bucketSize = WaveformPyramid.DEFAULT_BUCKET_SIZE;
+
+    public MP3WaveformExtractor(VirtualFile file, Mp3FrameIndex index) {
+        this.file = file;
+        this.index = index;
+    }
+
+    public WaveformPyramid extractWaveform(@Nullable ProgressIndicator indicator, @Nullable ChunkListener listener) throws IOException {
+        long started = System.nanoTime();
+
+        int[] boundaries = splitFrames(DECODER_POOL.getParallelism());
+        int segmentCount = boundaries.length - 1;
+        AtomicLong decodedSamples = new AtomicLong();
+
+        List<ForkJoinTask<WaveformPyramid.Builder>> tasks = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int firstFrame = boundaries[i];
+            int endFrame = boundaries[i + 1];
+            boolean lastSegment = i == segmentCount - 1;
+            tasks.add(DECODER_POOL.submit(() -> {
+                try {
+                    return decodeSegment(firstFrame, endFrame, lastSegment, indicator, listener, decodedSamples);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        List<WaveformPyramid.Builder> segments = new ArrayList<>(segmentCount);
         try {
-            System.out.println("=== MP3WaveformExtractor.extractWaveform() called ===");
-            
-            waveformData = new ArrayList<>();
-            ByteArrayOutputStream audioBuffer = new ByteArrayOutputStream();
-            
-            // Create a fresh input stream for waveform extraction
-            InputStream inputStream = file.getInputStream();
+            for (ForkJoinTask<WaveformPyramid.Builder> task : tasks) {
+                segments.add(task.join());
+            }
+        } catch (UncheckedIOException e) {
+            cancelAll(tasks);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            cancelAll(tasks);
+            throw e;
+        }
+        // Segments stop early when cancelled, report it from the calling thread
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+
+        WaveformPyramid peaks;
+        try {
+            peaks = WaveformPyramid.Builder.concat(segments);
+        } catch (IllegalArgumentException e) {
+            // Segments that do not line up are reported like a decoding failure, callers fall back on it
+            throw new IOException("MP3 waveform segments do not line up: " + e.getMessage(), e);
+        }
+        LOG.debug("MP3 waveform extraction completed: " + index.getFrameCount() + " frames in "
+            + segmentCount + " segment(s), " + peaks.getLength(0) + " buckets, "
+            + (System.nanoTime() - started) / 1_000_000 + " ms");
+        return peaks;
+    }
+
+    /**
+     * Frame numbers at which segments start, plus the frame count as the final end.
+     * Every boundary but the first starts on a bucket boundary.
+     */
+    private int[] splitFrames(int parallelism) {
+        int frameCount = index.getFrameCount();
+        int segments = Math.max(1, Math.min(parallelism, frameCount / MIN_FRAMES_PER_SEGMENT));
+
+        int[] boundaries = new int[segments + 1];
+        int count = 1;
+        for (int i = 1; i < segments; i++) {
+            int frame = (int) ((long) frameCount * i / segments);
+            int limit = Math.min(frameCount, frame + MAX_ALIGNMENT_FRAMES);
+            while (frame < limit && index.getFrameSampleStart(frame) % bucketSize != 0) {
+                frame++;
+            }
+            if (frame < limit && frame > boundaries[count - 1]) {
+                boundaries[count++] = frame;
+            }
+        }
+        boundaries[count++] = frameCount;
+        return count == boundaries.length ? boundaries : Arrays.copyOf(boundaries, count);
+    }
+
+    private WaveformPyramid.Builder decodeSegment(int firstFrame, int endFrame, boolean lastSegment,
+                                                  @Nullable ProgressIndicator indicator, @Nullable ChunkListener listener,
+                                                  AtomicLong decodedSamples) throws IOException {
+        int samplesPerFrame = index.getSamplesPerFrame();
+        long totalSamples = Math.max(1, index.getTotalSamples());
+        int firstBucket = (int) (index.getFrameSampleStart(firstFrame) / bucketSize);
+        WaveformPyramid.Builder builder = new WaveformPyramid.Builder(bucketSize, index.getSampleRate(), firstBucket);
+        if (firstFrame >= endFrame) {
+            return builder;
+        }
+
+        // Every segment but the last is cut at the length the index expects, even if JLayer decodes more,
+        // e.g. after resyncing past a bad header, so that the next segment starts on its bucket
+        long expectedSamples = lastSegment ? Long.MAX_VALUE
+            : index.getFrameSampleStart(endFrame) - index.getFrameSampleStart(firstFrame);
+        int decodeFrom = Math.max(0, firstFrame - Mp3FrameIndex.WARMUP_FRAMES);
+        long lastChunk = System.nanoTime();
+
+        try (InputStream inputStream = file.getInputStream()) {
+            Mp3PcmSource.skipFully(inputStream, index.getFrameOffset(decodeFrom));
             Bitstream bitstream = new Bitstream(inputStream);
             Decoder decoder = new Decoder();
-            
-            int sampleCount = 0;
-            int maxSamples = 2000; // Limit samples for performance
-            
-            System.out.println("Starting MP3 decoding for waveform extraction...");
-            
-            while (true) {
-                try {
-                    Header header = bitstream.readFrame();
-                    if (header == null) {
-                        System.out.println("End of MP3 stream reached");
-                        break;
-                    }
-                    
-                    Obuffer obuffer = decoder.decodeFrame(header, bitstream);
-                    if (obuffer == null) {
-                        System.out.println("Failed to decode frame");
-                        break;
-                    }
-                    
-                    // Check if it's a SampleBuffer
-                    if (!(obuffer instanceof SampleBuffer)) {
-                        System.out.println("Unexpected buffer type: " + obuffer.getClass().getName());
-                        continue;
-                    }
-                    
-                    SampleBuffer sampleBuffer = (SampleBuffer) obuffer;
-                    
-                    // Extract samples for waveform
-                    short[] samples = sampleBuffer.getBuffer();
-                    int channels = sampleBuffer.getChannelCount();
-                    
-                    // Process samples for waveform data
-                    for (int i = 0; i < samples.length && sampleCount < maxSamples; i += channels) {
-                        float amplitude = 0.0f;
-                        
-                        // Average across channels
-                        for (int ch = 0; ch < channels && (i + ch) < samples.length; ch++) {
-                            amplitude += Math.abs(samples[i + ch]);
+            try {
+                Header header;
+                // The last segment runs to the end of the stream in case JLayer finds more frames than the index
+                for (int frame = decodeFrom; (lastSegment || frame < endFrame) && (header = readFrame(bitstream)) != null; frame++) {
+                    boolean warmup = frame < firstFrame;
+                    long room = expectedSamples - builder.getTotalFrames();
+                    try {
+                        SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                        if (!warmup) {
+                            int channels = output.getChannelCount();
+                            int length = output.getBufferLength();
+                            if (room < length / channels) {
+                                length = (int) room * channels;
+                            }
+                            builder.addSamples(output.getBuffer(), length, channels);
+                        }
+                    } catch (DecoderException | ClassCastException e) {
+                        // Keep the timeline intact: a broken frame becomes silence of the same length
+                        if (!warmup) {
+                            builder.addSilence(Math.min(samplesPerFrame, room));
                         }
-                        amplitude /= channels;
-                        
-                        // Normalize to 0-1 range
-                        amplitude = amplitude / Short.MAX_VALUE;
-                        waveformData.add(amplitude);
-                        
-                        sampleCount++;
+                    } finally {
+                        bitstream.closeFrame();
                     }
-                    
-                    // Also collect raw audio data for AudioInputStream
-                    byte[] frameData = new byte[samples.length * 2]; // 16-bit samples
-                    for (int i = 0; i < samples.length; i++) {
-                        frameData[i * 2] = (byte) (samples[i] & 0xFF);
-                        frameData[i * 2 + 1] = (byte) ((samples[i] >> 8) & 0xFF);
+
+                    if ((frame & 0x3F) == 0) {
+                        if (indicator != null && indicator.isCanceled()) {
+                            return builder;
+                        }
+                        long now = System.nanoTime();
+                        if (now - lastChunk >= CHUNK_INTERVAL_NANOS) {
+                            lastChunk = now;
+                            reportProgress(builder, indicator, listener, decodedSamples, totalSamples);
+                        }
                     }
-                    audioBuffer.write(frameData);
-                    
-                    bitstream.closeFrame();
-                    
-                } catch (Exception e) {
-                    System.err.println("Error processing MP3 frame: " + e.getMessage());
-                    break;
+                }
+            } finally {
+                try {
+                    bitstream.close();
+                } catch (BitstreamException e) {
+                    // Ignore, the underlying stream is closed by try-with-resources
                 }
             }
-            
-            bitstream.close();
-            inputStream.close();
-            
-            audioData = audioBuffer.toByteArray();
-            
-            System.out.println("MP3 waveform extraction completed:");
-            System.out.println("- Waveform samples: " + waveformData.size());
-            System.out.println("- Audio data size: " + audioData.length + " bytes");
-            
-        } catch (Exception e) {
-            System.err.println("Error extracting MP3 waveform: " + e.getMessage());
-            e.printStackTrace();
-            waveformData = new ArrayList<>();
-            audioData = new byte[0];
         }
+
+        // A segment cut short by an unreadable stretch still has to end where the next one starts
+        if (!lastSegment) {
+            builder.addSilence(expectedSamples - builder.getTotalFrames());
+        }
+        reportProgress(builder, indicator, listener, decodedSamples, totalSamples);
+        return builder;
     }
-    
-    public List<Float> getWaveformData() {
-        return waveformData;
+
+    private void reportProgress(WaveformPyramid.Builder builder, @Nullable ProgressIndicator indicator,
+                                @Nullable ChunkListener listener, AtomicLong decodedSamples, long totalSamples) {
+        WaveformPyramid.Chunk chunk = builder.takeChunk();
+        long decoded = decodedSamples.addAndGet((long) chunk.getLength() * bucketSize);
+        if (indicator != null) {
+            indicator.setFraction(Math.min(1.0, (double) decoded / totalSamples));
+        }
+        if (listener != null && chunk.getLength() > 0) {
+            listener.onChunk(chunk);
+        }
     }
-    
-    public byte[] getAudioData() {
-        return audioData;
+
+    private static void cancelAll(List<ForkJoinTask<WaveformPyramid.Builder>> tasks) {
+        for (ForkJoinTask<WaveformPyramid.Builder> task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    private static Header readFrame(Bitstream bitstream) {
+        try {
+            return bitstream.readFrame();
+        } catch (BitstreamException e) {
+            return null;
+        }
     }
 }
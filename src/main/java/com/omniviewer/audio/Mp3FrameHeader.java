@@ -0,0 +1,171 @@
+package com.omniviewer.audio;
+
+/**
+ * Parser for the 4-byte MPEG audio frame header. Only the header is inspected,
+ * nothing is decoded, which keeps frame walks over large files cheap.
+ */
+public final class Mp3FrameHeader {
+
+    public static final int VERSION_MPEG1 = 3;
+    public static final int VERSION_MPEG2 = 2;
+    public static final int VERSION_MPEG25 = 0;
+
+    public static final int MODE_STEREO = 0;
+    public static final int MODE_JOINT_STEREO = 1;
+    public static final int MODE_DUAL_CHANNEL = 2;
+    public static final int MODE_MONO = 3;
+
+    private static final int[][] BITRATES_MPEG1 = {
+        {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448, -1}, // Layer I
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384, -1},    // Layer II
+        {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, -1}      // Layer III
+    };
+    private static final int[][] BITRATES_MPEG2 = {
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256, -1},    // Layer I
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, -1},         // Layer II
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, -1}          // Layer III
+    };
+    private static final int[] SAMPLE_RATES_MPEG1 = {44100, 48000, 32000};
+
+    private final int version;
+    private final int layer;
+    private final int bitrateKbps;
+    private final int sampleRate;
+    private final int mode;
+    private final int frameLength;
+    private final int samplesPerFrame;
+    private final boolean crcProtected;
+
+    private Mp3FrameHeader(int version, int layer, int bitrateKbps, int sampleRate, int mode,
+                           int frameLength, int samplesPerFrame, boolean crcProtected) {
+        this.version = version;
+        this.layer = layer;
+        this.bitrateKbps = bitrateKbps;
+        this.sampleRate = sampleRate;
+        this.mode = mode;
+        this.frameLength = frameLength;
+        this.samplesPerFrame = samplesPerFrame;
+        this.crcProtected = crcProtected;
+    }
+
+    /**
+     * Parses a header from its big-endian 32-bit representation.
+     * Returns null if the bits do not describe a valid, fixed-bitrate-index frame.
+     */
+    public static Mp3FrameHeader parse(int header) {
+        if ((header & 0xFFE00000) != 0xFFE00000) {
+            return null;
+        }
+
+        int version = (header >>> 19) & 0x3;
+        int layerBits = (header >>> 17) & 0x3;
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int sampleRateIndex = (header >>> 10) & 0x3;
+        int padding = (header >>> 9) & 0x1;
+        int mode = (header >>> 6) & 0x3;
+        boolean crcProtected = ((header >>> 16) & 0x1) == 0;
+
+        // Reserved values and the "free format" bitrate are not supported
+        if (version == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return null;
+        }
+
+        int layer = 4 - layerBits;
+        int[][] table = version == VERSION_MPEG1 ? BITRATES_MPEG1 : BITRATES_MPEG2;
+        int bitrateKbps = table[layer - 1][bitrateIndex];
+
+        int sampleRate = SAMPLE_RATES_MPEG1[sampleRateIndex];
+        if (version == VERSION_MPEG2) {
+            sampleRate /= 2;
+        } else if (version == VERSION_MPEG25) {
+            sampleRate /= 4;
+        }
+
+        int samplesPerFrame;
+        int frameLength;
+        if (layer == 1) {
+            samplesPerFrame = 384;
+            frameLength = (12 * bitrateKbps * 1000 / sampleRate + padding) * 4;
+        } else if (layer == 2 || version == VERSION_MPEG1) {
+            samplesPerFrame = 1152;
+            frameLength = 144 * bitrateKbps * 1000 / sampleRate + padding;
+        } else {
+            samplesPerFrame = 576;
+            frameLength = 72 * bitrateKbps * 1000 / sampleRate + padding;
+        }
+
+        return new Mp3FrameHeader(version, layer, bitrateKbps, sampleRate, mode, frameLength, samplesPerFrame, crcProtected);
+    }
+
+    /**
+     * Reads a big-endian int from the buffer, for use with {@link #parse(int)}.
+     */
+    public static int readInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24)
+            | ((buffer[offset + 1] & 0xFF) << 16)
+            | ((buffer[offset + 2] & 0xFF) << 8)
+            | (buffer[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Whether two headers plausibly belong to the same stream (used to reject false syncs).
+     */
+    public boolean isCompatibleWith(Mp3FrameHeader other) {
+        return other != null && version == other.version && layer == other.layer && sampleRate == other.sampleRate;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    public int getBitrateKbps() {
+        return bitrateKbps;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public int getChannels() {
+        return mode == MODE_MONO ? 1 : 2;
+    }
+
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    public int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    public boolean isCrcProtected() {
+        return crcProtected;
+    }
+
+    /**
+     * Offset from the frame start where a Xing/Info tag would begin (header plus side information).
+     */
+    public int getXingTagOffset() {
+        if (version == VERSION_MPEG1) {
+            return 4 + (mode == MODE_MONO ? 17 : 32);
+        }
+        return 4 + (mode == MODE_MONO ? 9 : 17);
+    }
+
+    public String getModeName() {
+        switch (mode) {
+            case MODE_STEREO: return "Stereo";
+            case MODE_JOINT_STEREO: return "Joint Stereo";
+            case MODE_DUAL_CHANNEL: return "Dual Channel";
+            default: return "Mono";
+        }
+    }
+}
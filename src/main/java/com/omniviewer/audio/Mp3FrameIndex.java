@@ -0,0 +1,128 @@
+package com.omniviewer.audio;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * One-pass index of the frames of an MP3 file: byte offset and cumulative sample count per frame.
+ * Built from frame headers only (no decoding), it lets playback jump straight to the frame
+ * containing a given sample instead of re-decoding from the start of the file.
+ */
+public final class Mp3FrameIndex {
+
+    /**
+     * Frames to decode and discard before the first wanted frame when starting mid-stream:
+     * layer III main data may start up to 511 bytes before its frame (bit reservoir).
+     */
+    public static final int WARMUP_FRAMES = 2;
+
+    private final long[] offsets;
+    private final long[] sampleStarts;
+    private final int frameCount;
+    private final long totalSamples;
+    private final int sampleRate;
+    private final int channels;
+
+    private Mp3FrameIndex(long[] offsets, long[] sampleStarts, int frameCount, long totalSamples, int sampleRate, int channels) {
+        this.offsets = offsets;
+        this.sampleStarts = sampleStarts;
+        this.frameCount = frameCount;
+        this.totalSamples = totalSamples;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    public static Mp3FrameIndex build(VirtualFile file) throws IOException {
+        // Rough initial capacity: ~417 bytes per frame at 128 kbps
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, file.getLength() / 400));
+        long[] offsets = new long[capacity];
+        long[] sampleStarts = new long[capacity];
+        int count = 0;
+        long samples = 0;
+        int sampleRate = 0;
+        int channels = 0;
+
+        try (Mp3FrameScanner scanner = new Mp3FrameScanner(file.getInputStream())) {
+            while (scanner.next()) {
+                // No-op outside of a progress task, lets a background load stop mid-index
+                if ((count & 0x3FF) == 0) {
+                    ProgressManager.checkCanceled();
+                }
+                Mp3FrameHeader header = scanner.getHeader();
+                if (count == offsets.length) {
+                    int newCapacity = offsets.length + (offsets.length >> 1);
+                    offsets = Arrays.copyOf(offsets, newCapacity);
+                    sampleStarts = Arrays.copyOf(sampleStarts, newCapacity);
+                }
+                if (count == 0) {
+                    sampleRate = header.getSampleRate();
+                    channels = header.getChannels();
+                }
+                offsets[count] = scanner.getOffset();
+                sampleStarts[count] = samples;
+                samples += header.getSamplesPerFrame();
+                count++;
+            }
+        }
+
+        return new Mp3FrameIndex(offsets, sampleStarts, count, samples, sampleRate, channels);
+    }
+
+    /**
+     * Index of the frame containing the given sample (binary search, O(log n)).
+     */
+    public int findFrame(long sample) {
+        if (frameCount == 0) {
+            return -1;
+        }
+        int position = Arrays.binarySearch(sampleStarts, 0, frameCount, sample);
+        if (position >= 0) {
+            return position;
+        }
+        return Math.max(0, -position - 2);
+    }
+
+    public long getFrameOffset(int frame) {
+        return offsets[frame];
+    }
+
+    public long getFrameSampleStart(int frame) {
+        return sampleStarts[frame];
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Samples per channel in one frame (constant within a stream).
+     */
+    public int getSamplesPerFrame() {
+        if (frameCount > 1) {
+            return (int) sampleStarts[1];
+        }
+        return (int) totalSamples;
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public long getDurationMicroseconds() {
+        if (sampleRate == 0) {
+            return 0;
+        }
+        return totalSamples * 1_000_000L / sampleRate;
+    }
+}
@@ -0,0 +1,167 @@
+package com.omniviewer.audio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Walks the MPEG audio frames of a stream by their headers only.
+ * Skips a leading ID3v2 tag and resynchronises byte by byte over junk (e.g. trailing ID3v1/APE tags).
+ */
+public class Mp3FrameScanner implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPos = 0;
+    private int bufferLength = 0;
+    private long bufferFileOffset = 0;
+    private boolean endOfInput = false;
+
+    private boolean started = false;
+    private Mp3FrameHeader reference;
+    private Mp3FrameHeader currentHeader;
+    private long currentOffset = -1;
+    private int pendingSkip = 0;
+
+    public Mp3FrameScanner(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next frame. Returns false at the end of the stream.
+     */
+    public boolean next() throws IOException {
+        if (!started) {
+            started = true;
+            skipId3v2();
+        }
+        if (pendingSkip > 0) {
+            skip(pendingSkip);
+            pendingSkip = 0;
+        }
+
+        while (ensure(4)) {
+            Mp3FrameHeader header = Mp3FrameHeader.parse(Mp3FrameHeader.readInt(buffer, bufferPos));
+            if (header == null || (reference != null && !header.isCompatibleWith(reference))) {
+                bufferPos++;
+                continue;
+            }
+
+            if (reference == null && !isConfirmedByNextHeader(header)) {
+                bufferPos++;
+                continue;
+            }
+
+            reference = header;
+            currentHeader = header;
+            currentOffset = bufferFileOffset + bufferPos;
+            pendingSkip = header.getFrameLength();
+            return true;
+        }
+
+        currentHeader = null;
+        return false;
+    }
+
+    public Mp3FrameHeader getHeader() {
+        return currentHeader;
+    }
+
+    /**
+     * Byte offset of the current frame from the start of the stream.
+     */
+    public long getOffset() {
+        return currentOffset;
+    }
+
+    /**
+     * Copies up to {@code length} bytes of the current frame (header included) into {@code dest}.
+     * Returns the number of bytes copied.
+     */
+    public int readFrameBytes(byte[] dest, int length) throws IOException {
+        ensure(length);
+        int available = Math.min(length, bufferLength - bufferPos);
+        System.arraycopy(buffer, bufferPos, dest, 0, available);
+        return available;
+    }
+
+    private boolean isConfirmedByNextHeader(Mp3FrameHeader header) throws IOException {
+        int frameLength = header.getFrameLength();
+        if (!ensure(frameLength + 4)) {
+            // Last frame of a short stream, nothing to compare against
+            return bufferLength - bufferPos >= 4;
+        }
+        Mp3FrameHeader next = Mp3FrameHeader.parse(Mp3FrameHeader.readInt(buffer, bufferPos + frameLength));
+        return header.isCompatibleWith(next);
+    }
+
+    private void skipId3v2() throws IOException {
+        if (!ensure(10)) {
+            return;
+        }
+        if (buffer[bufferPos] != 'I' || buffer[bufferPos + 1] != 'D' || buffer[bufferPos + 2] != '3') {
+            return;
+        }
+        int flags = buffer[bufferPos + 5] & 0xFF;
+        int size = ((buffer[bufferPos + 6] & 0x7F) << 21)
+            | ((buffer[bufferPos + 7] & 0x7F) << 14)
+            | ((buffer[bufferPos + 8] & 0x7F) << 7)
+            | (buffer[bufferPos + 9] & 0x7F);
+        int footer = (flags & 0x10) != 0 ? 10 : 0;
+        skip(10 + size + footer);
+    }
+
+    private void skip(long count) throws IOException {
+        int inBuffer = bufferLength - bufferPos;
+        if (count <= inBuffer) {
+            bufferPos += (int) count;
+            return;
+        }
+
+        long remaining = count - inBuffer;
+        bufferFileOffset += bufferLength;
+        bufferPos = 0;
+        bufferLength = 0;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                // skip() may return 0 before EOF, fall back to a read to tell them apart
+                if (in.read() < 0) {
+                    endOfInput = true;
+                    break;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+            bufferFileOffset += skipped;
+        }
+    }
+
+    private boolean ensure(int count) throws IOException {
+        if (bufferLength - bufferPos >= count) {
+            return true;
+        }
+        if (bufferPos > 0) {
+            System.arraycopy(buffer, bufferPos, buffer, 0, bufferLength - bufferPos);
+            bufferFileOffset += bufferPos;
+            bufferLength -= bufferPos;
+            bufferPos = 0;
+        }
+        while (!endOfInput && bufferLength < count && bufferLength < buffer.length) {
+            int read = in.read(buffer, bufferLength, buffer.length - bufferLength);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                bufferLength += read;
+            }
+        }
+        return bufferLength - bufferPos >= count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
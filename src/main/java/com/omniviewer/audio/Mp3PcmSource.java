@@ -0,0 +1,153 @@
+package com.omniviewer.audio;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.Obuffer;
+import javazoom.jl.decoder.SampleBuffer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link PcmSource} that decodes MP3 with JLayer, starting at any sample through a {@link Mp3FrameIndex}.
+ */
+public class Mp3PcmSource implements PcmSource {
+
+    private final Mp3FrameIndex index;
+    private final InputStream inputStream;
+    private final Bitstream bitstream;
+    private final Decoder decoder = new Decoder();
+    private final AudioFormat format;
+
+    private long samplesToDiscard;
+    private byte[] pending = new byte[0];
+    private int pendingPos = 0;
+    private int pendingLength = 0;
+    private boolean endOfStream = false;
+
+    private Mp3PcmSource(VirtualFile file, Mp3FrameIndex index, long startSample) throws IOException {
+        this.index = index;
+        this.format = new AudioFormat(index.getSampleRate(), 16, index.getChannels(), true, false);
+
+        long target = Math.max(0, Math.min(startSample, index.getTotalSamples()));
+        int targetFrame = index.findFrame(target);
+        int firstFrame = Math.max(0, targetFrame - Mp3FrameIndex.WARMUP_FRAMES);
+
+        this.inputStream = file.getInputStream();
+        if (targetFrame >= 0) {
+            skipFully(inputStream, index.getFrameOffset(firstFrame));
+            this.samplesToDiscard = target - index.getFrameSampleStart(firstFrame);
+        } else {
+            this.endOfStream = true;
+        }
+        this.bitstream = new Bitstream(inputStream);
+    }
+
+    public static Factory factory(VirtualFile file, Mp3FrameIndex index) {
+        return startFrame -> new Mp3PcmSource(file, index, startFrame);
+    }
+
+    static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    return;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return index.getTotalSamples();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        while (pendingPos >= pendingLength) {
+            if (endOfStream || !decodeNextFrame()) {
+                return -1;
+            }
+        }
+
+        int frameSize = format.getFrameSize();
+        int count = Math.min(length, pendingLength - pendingPos);
+        count -= count % frameSize;
+        if (count == 0) {
+            count = Math.min(length, pendingLength - pendingPos);
+        }
+        System.arraycopy(pending, pendingPos, buffer, offset, count);
+        pendingPos += count;
+        return count;
+    }
+
+    private boolean decodeNextFrame() throws IOException {
+        Header header;
+        try {
+            header = bitstream.readFrame();
+        } catch (BitstreamException e) {
+            header = null;
+        }
+        if (header == null) {
+            endOfStream = true;
+            return false;
+        }
+
+        int channels = format.getChannels();
+        short[] samples;
+        int sampleCount;
+        try {
+            Obuffer output = decoder.decodeFrame(header, bitstream);
+            SampleBuffer sampleBuffer = (SampleBuffer) output;
+            samples = sampleBuffer.getBuffer();
+            sampleCount = sampleBuffer.getBufferLength();
+        } catch (DecoderException | ClassCastException e) {
+            // Keep the timeline intact: a broken frame becomes silence of the same length
+            samples = null;
+            sampleCount = index.getSamplesPerFrame() * channels;
+        } finally {
+            bitstream.closeFrame();
+        }
+
+        int skip = (int) Math.min(sampleCount / channels, samplesToDiscard);
+        samplesToDiscard -= skip;
+        int first = skip * channels;
+
+        int bytes = (sampleCount - first) * 2;
+        if (pending.length < bytes) {
+            pending = new byte[bytes];
+        }
+        for (int i = first, j = 0; i < sampleCount; i++, j += 2) {
+            short sample = samples != null ? samples[i] : 0;
+            pending[j] = (byte) (sample & 0xFF);
+            pending[j + 1] = (byte) ((sample >> 8) & 0xFF);
+        }
+        pendingPos = 0;
+        pendingLength = bytes;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            bitstream.close();
+        } catch (BitstreamException e) {
+            // Ignore, the underlying stream is closed below
+        }
+        inputStream.close();
+    }
+}
@@ -0,0 +1,219 @@
+package com.omniviewer.audio;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads exact MP3 stream properties without decoding any audio.
+ * Uses the Xing/Info (optionally with LAME extension) or VBRI tag of the first frame when present,
+ * otherwise walks all frame headers and sums their sample counts and sizes.
+ */
+public final class Mp3Probe {
+
+    public enum Source {
+        XING, INFO, VBRI, FRAME_SCAN
+    }
+
+    private static final int XING_FLAG_FRAMES = 0x1;
+    private static final int XING_FLAG_BYTES = 0x2;
+    private static final int XING_FLAG_TOC = 0x4;
+    private static final int XING_FLAG_QUALITY = 0x8;
+    private static final int VBRI_OFFSET = 4 + 32;
+    private static final int FIRST_FRAME_BYTES = 4096;
+
+    private final long durationMillis;
+    private final int sampleRate;
+    private final int channels;
+    private final String channelMode;
+    private final int averageBitrate;
+    private final long frameCount;
+    private final boolean variableBitrate;
+    private final String encoder;
+    private final Source source;
+
+    private Mp3Probe(long durationMillis, int sampleRate, int channels, String channelMode, int averageBitrate,
+                     long frameCount, boolean variableBitrate, String encoder, Source source) {
+        this.durationMillis = durationMillis;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.channelMode = channelMode;
+        this.averageBitrate = averageBitrate;
+        this.frameCount = frameCount;
+        this.variableBitrate = variableBitrate;
+        this.encoder = encoder;
+        this.source = source;
+    }
+
+    public static Mp3Probe probe(VirtualFile file) throws IOException {
+        Mp3FrameHeader first;
+        long firstOffset;
+        byte[] frame = new byte[FIRST_FRAME_BYTES];
+        int frameBytes;
+
+        try (Mp3FrameScanner scanner = new Mp3FrameScanner(file.getInputStream())) {
+            if (!scanner.next()) {
+                throw new IOException("No MPEG audio frames found");
+            }
+            first = scanner.getHeader();
+            firstOffset = scanner.getOffset();
+            frameBytes = scanner.readFrameBytes(frame, Math.min(frame.length, first.getFrameLength()));
+        }
+
+        Mp3Probe tagged = readXing(first, frame, frameBytes, file.getLength() - firstOffset);
+        if (tagged == null) {
+            tagged = readVbri(first, frame, frameBytes, file.getLength() - firstOffset);
+        }
+        return tagged != null ? tagged : scanFrames(file, first);
+    }
+
+    private static Mp3Probe readXing(Mp3FrameHeader header, byte[] frame, int length, long audioBytes) {
+        int offset = header.getXingTagOffset();
+        if (offset + 8 > length) {
+            return null;
+        }
+        String id = new String(frame, offset, 4, StandardCharsets.US_ASCII);
+        if (!id.equals("Xing") && !id.equals("Info")) {
+            return null;
+        }
+
+        int flags = Mp3FrameHeader.readInt(frame, offset + 4);
+        int position = offset + 8;
+        long frames = -1;
+        long bytes = -1;
+        if ((flags & XING_FLAG_FRAMES) != 0 && position + 4 <= length) {
+            frames = Mp3FrameHeader.readInt(frame, position) & 0xFFFFFFFFL;
+            position += 4;
+        }
+        if ((flags & XING_FLAG_BYTES) != 0 && position + 4 <= length) {
+            bytes = Mp3FrameHeader.readInt(frame, position) & 0xFFFFFFFFL;
+            position += 4;
+        }
+        if ((flags & XING_FLAG_TOC) != 0) {
+            position += 100;
+        }
+        if ((flags & XING_FLAG_QUALITY) != 0) {
+            position += 4;
+        }
+        if (frames <= 0) {
+            return null;
+        }
+
+        // LAME extension: encoder version, then encoder delay and padding (12 bits each) at +21
+        String encoder = null;
+        long trimmedSamples = 0;
+        if (position + 24 <= length) {
+            String lame = new String(frame, position, 9, StandardCharsets.US_ASCII).trim();
+            if (lame.startsWith("LAME") || lame.startsWith("Lavf") || lame.startsWith("Lavc")) {
+                encoder = lame;
+                int delayPadding = ((frame[position + 21] & 0xFF) << 16)
+                    | ((frame[position + 22] & 0xFF) << 8)
+                    | (frame[position + 23] & 0xFF);
+                trimmedSamples = (delayPadding >>> 12) + (delayPadding & 0xFFF);
+            }
+        }
+
+        long samples = Math.max(0, frames * header.getSamplesPerFrame() - trimmedSamples);
+        long durationMillis = samples * 1000L / header.getSampleRate();
+        long streamBytes = bytes > 0 ? bytes : audioBytes;
+        Source source = id.equals("Xing") ? Source.XING : Source.INFO;
+        return new Mp3Probe(durationMillis, header.getSampleRate(), header.getChannels(), header.getModeName(),
+            averageBitrate(streamBytes, durationMillis), frames, source == Source.XING, encoder, source);
+    }
+
+    private static Mp3Probe readVbri(Mp3FrameHeader header, byte[] frame, int length, long audioBytes) {
+        if (VBRI_OFFSET + 18 > length) {
+            return null;
+        }
+        if (!new String(frame, VBRI_OFFSET, 4, StandardCharsets.US_ASCII).equals("VBRI")) {
+            return null;
+        }
+
+        // VBRI: id, version(2), delay(2), quality(2), bytes(4), frames(4)
+        long bytes = Mp3FrameHeader.readInt(frame, VBRI_OFFSET + 10) & 0xFFFFFFFFL;
+        long frames = Mp3FrameHeader.readInt(frame, VBRI_OFFSET + 14) & 0xFFFFFFFFL;
+        if (frames <= 0) {
+            return null;
+        }
+
+        long durationMillis = frames * header.getSamplesPerFrame() * 1000L / header.getSampleRate();
+        long streamBytes = bytes > 0 ? bytes : audioBytes;
+        return new Mp3Probe(durationMillis, header.getSampleRate(), header.getChannels(), header.getModeName(),
+            averageBitrate(streamBytes, durationMillis), frames, true, null, Source.VBRI);
+    }
+
+    private static Mp3Probe scanFrames(VirtualFile file, Mp3FrameHeader first) throws IOException {
+        long frames = 0;
+        long samples = 0;
+        long bytes = 0;
+        boolean variableBitrate = false;
+
+        try (Mp3FrameScanner scanner = new Mp3FrameScanner(file.getInputStream())) {
+            while (scanner.next()) {
+                if ((frames & 0x3FF) == 0) {
+                    ProgressManager.checkCanceled();
+                }
+                Mp3FrameHeader header = scanner.getHeader();
+                frames++;
+                samples += header.getSamplesPerFrame();
+                bytes += header.getFrameLength();
+                variableBitrate |= header.getBitrateKbps() != first.getBitrateKbps();
+            }
+        }
+
+        long durationMillis = samples * 1000L / first.getSampleRate();
+        return new Mp3Probe(durationMillis, first.getSampleRate(), first.getChannels(), first.getModeName(),
+            averageBitrate(bytes, durationMillis), frames, variableBitrate, null, Source.FRAME_SCAN);
+    }
+
+    private static int averageBitrate(long bytes, long durationMillis) {
+        if (durationMillis <= 0) {
+            return 0;
+        }
+        return (int) (bytes * 8L * 1000L / durationMillis);
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public String getChannelMode() {
+        return channelMode;
+    }
+
+    /**
+     * Average bitrate in bits per second.
+     */
+    public int getAverageBitrate() {
+        return averageBitrate;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public boolean isVariableBitrate() {
+        return variableBitrate;
+    }
+
+    /**
+     * Encoder string from the LAME tag (e.g. "LAME3.100"), or null.
+     */
+    public String getEncoder() {
+        return encoder;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,111 @@
+package com.omniviewer.audio;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded single-producer / single-consumer byte ring used between the decoder
+ * thread and the line feeder thread of {@link StreamingAudioPlayer}.
+ * The capacity is fixed, so memory use does not depend on the audio duration.
+ * A ring serves one playback session: once closed it stays closed.
+ */
+public class PcmRingBuffer {
+
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private int readPos = 0;
+    private int writePos = 0;
+    private int size = 0;
+    private boolean endOfStream = false;
+    private boolean closed = false;
+
+    public PcmRingBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Writes all bytes, blocking while the ring is full.
+     * Returns false if the ring was closed before everything could be written.
+     */
+    public boolean write(byte[] data, int offset, int length) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (length > 0) {
+                while (size == buffer.length && !closed) {
+                    notFull.await();
+                }
+                if (closed) {
+                    return false;
+                }
+
+                int chunk = Math.min(length, Math.min(buffer.length - size, buffer.length - writePos));
+                System.arraycopy(data, offset, buffer, writePos, chunk);
+                writePos = (writePos + chunk) % buffer.length;
+                size += chunk;
+                offset += chunk;
+                length -= chunk;
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to {@code length} bytes, blocking while the ring is empty.
+     * Returns -1 once the producer signalled end of stream and everything was consumed,
+     * or when the ring was closed.
+     */
+    public int read(byte[] data, int offset, int length) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0 && !endOfStream && !closed) {
+                notEmpty.await();
+            }
+            if (closed || size == 0) {
+                return -1;
+            }
+
+            int chunk = Math.min(length, Math.min(size, buffer.length - readPos));
+            System.arraycopy(buffer, readPos, data, offset, chunk);
+            readPos = (readPos + chunk) % buffer.length;
+            size -= chunk;
+            notFull.signal();
+            return chunk;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void markEndOfStream() {
+        lock.lock();
+        try {
+            endOfStream = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes up both sides and makes every further read/write fail fast.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
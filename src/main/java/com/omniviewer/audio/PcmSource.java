@@ -0,0 +1,40 @@
+package com.omniviewer.audio;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sequential source of signed PCM frames consumed by {@link StreamingAudioPlayer}.
+ */
+public interface PcmSource extends Closeable {
+
+    /**
+     * PCM format of the bytes returned by {@link #read(byte[], int, int)}.
+     */
+    AudioFormat getFormat();
+
+    /**
+     * Format of the underlying file (before decoding), used for metadata display.
+     */
+    default AudioFormat getSourceFormat() {
+        return getFormat();
+    }
+
+    /**
+     * Total number of PCM frames, or {@link javax.sound.sampled.AudioSystem#NOT_SPECIFIED} if unknown.
+     */
+    long getFrameLength();
+
+    /**
+     * Reads decoded PCM bytes, returning -1 at the end of the stream.
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Opens a {@link PcmSource} positioned at the given frame.
+     */
+    interface Factory {
+        PcmSource open(long startFrame) throws IOException;
+    }
+}
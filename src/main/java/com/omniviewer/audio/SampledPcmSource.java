@@ -0,0 +1,138 @@
+package com.omniviewer.audio;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link PcmSource} backed by the Java Sound API (WAV, AU, AIFF and MP3 through MP3SPI).
+ * Encoded streams are converted to 16-bit signed PCM on the fly, nothing is buffered in memory.
+ */
+public class SampledPcmSource implements PcmSource {
+
+    private final AudioInputStream encodedStream;
+    private final AudioInputStream pcmStream;
+    private final AudioFormat sourceFormat;
+    private final long frameLength;
+
+    private SampledPcmSource(AudioInputStream encodedStream, long durationMicroseconds) {
+        this.encodedStream = encodedStream;
+        this.sourceFormat = encodedStream.getFormat();
+
+        if (isPcm(sourceFormat)) {
+            this.pcmStream = encodedStream;
+        } else {
+            AudioFormat decodedFormat = new AudioFormat(
+                AudioFormat.Encoding.PCM_SIGNED,
+                sourceFormat.getSampleRate(),
+                16,
+                sourceFormat.getChannels(),
+                sourceFormat.getChannels() * 2,
+                sourceFormat.getSampleRate(),
+                false
+            );
+            this.pcmStream = AudioSystem.getAudioInputStream(decodedFormat, encodedStream);
+        }
+
+        AudioFormat format = pcmStream.getFormat();
+        if (pcmStream.getFrameLength() != AudioSystem.NOT_SPECIFIED) {
+            this.frameLength = pcmStream.getFrameLength();
+        } else if (durationMicroseconds > 0) {
+            this.frameLength = (long) (durationMicroseconds * (double) format.getFrameRate() / 1_000_000.0);
+        } else {
+            this.frameLength = AudioSystem.NOT_SPECIFIED;
+        }
+    }
+
+    public static Factory factory(VirtualFile file) throws IOException {
+        long duration = readDurationMicroseconds(file);
+        return startFrame -> open(file, duration, startFrame);
+    }
+
+    private static SampledPcmSource open(VirtualFile file, long durationMicroseconds, long startFrame) throws IOException {
+        InputStream inputStream = new BufferedInputStream(file.getInputStream());
+        SampledPcmSource source;
+        try {
+            source = new SampledPcmSource(AudioSystem.getAudioInputStream(inputStream), durationMicroseconds);
+        } catch (UnsupportedAudioFileException e) {
+            inputStream.close();
+            throw new IOException("Unsupported audio format: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            inputStream.close();
+            throw new IOException("No PCM conversion available: " + e.getMessage(), e);
+        }
+
+        if (startFrame > 0) {
+            source.skipFrames(startFrame);
+        }
+        return source;
+    }
+
+    private static long readDurationMicroseconds(VirtualFile file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(file.getInputStream())) {
+            AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(inputStream);
+            // MP3SPI (TAudioFileFormat) exposes the duration as a property because the frame length is unknown
+            Object duration = fileFormat.properties().get("duration");
+            if (duration instanceof Long) {
+                return (Long) duration;
+            }
+            if (fileFormat.getFrameLength() != AudioSystem.NOT_SPECIFIED && fileFormat.getFormat().getFrameRate() > 0) {
+                return (long) (fileFormat.getFrameLength() * 1_000_000.0 / fileFormat.getFormat().getFrameRate());
+            }
+            return AudioSystem.NOT_SPECIFIED;
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported audio format: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isPcm(AudioFormat format) {
+        return AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+            || AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding());
+    }
+
+    private void skipFrames(long frames) throws IOException {
+        long remaining = frames * pcmStream.getFormat().getFrameSize();
+        while (remaining > 0) {
+            long skipped = pcmStream.skip(remaining);
+            if (skipped <= 0) {
+                break;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return pcmStream.getFormat();
+    }
+
+    @Override
+    public AudioFormat getSourceFormat() {
+        return sourceFormat;
+    }
+
+    @Override
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return pcmStream.read(buffer, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        pcmStream.close();
+        if (pcmStream != encodedStream) {
+            encodedStream.close();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.omniviewer.audio;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.IOException;
+
+/**
+ * Plays audio through a {@link SourceDataLine} instead of loading it into a {@link javax.sound.sampled.Clip}.
+ * A decoder thread pulls PCM from a {@link PcmSource} into a bounded {@link PcmRingBuffer},
+ * and a feeder thread drains the ring into the line, so memory stays constant regardless of duration.
+ * Seeking re-opens the source at the target frame. Every session gets a ring of its own, so threads of
+ * an earlier session that outlive it only ever see their own, closed ring.
+ * <p>
+ * Ending a session only signals its threads, they exit on their own so that pausing or seeking never
+ * waits on them. A new feeder waits for the previous one to exit and flushes what it may still have
+ * written to the line before writing its own data.
+ */
+public class StreamingAudioPlayer {
+
+    private static final Logger LOG = Logger.getInstance(StreamingAudioPlayer.class);
+
+    private static final int RING_BUFFER_MILLIS = 2000;
+    private static final int LINE_BUFFER_MILLIS = 250;
+    private static final int CHUNK_MILLIS = 50;
+    // Bounds the wait of a new feeder for the previous one, which is woken up by closing its ring
+    private static final long PREVIOUS_FEEDER_TIMEOUT_MILLIS = 1000;
+    private static final long PREVIOUS_FEEDER_POLL_MILLIS = 10;
+
+    private final PcmSource.Factory sourceFactory;
+    private final AudioFormat format;
+    private final AudioFormat sourceFormat;
+    private final long frameLength;
+    private final SourceDataLine line;
+    private final int ringBufferSize;
+    private final int chunkSize;
+
+    private final Object sessionLock = new Object();
+    private Thread decoderThread;
+    private Thread feederThread;
+    private PcmRingBuffer ringBuffer;
+    private volatile int generation = 0;
+
+    private volatile boolean playing = false;
+    private volatile boolean finished = false;
+    private volatile long startFrame = 0;
+    private volatile long lineFrameOrigin = 0;
+    private volatile long pausedFrame = 0;
+    private volatile Runnable finishListener;
+    private volatile ErrorListener errorListener;
+
+    public interface ErrorListener {
+        void onError(Exception e);
+    }
+
+    public StreamingAudioPlayer(PcmSource.Factory sourceFactory) throws IOException, LineUnavailableException {
+        this.sourceFactory = sourceFactory;
+
+        try (PcmSource probe = sourceFactory.open(0)) {
+            this.format = probe.getFormat();
+            this.sourceFormat = probe.getSourceFormat();
+            this.frameLength = probe.getFrameLength();
+        }
+
+        int frameSize = Math.max(1, format.getFrameSize());
+        int bytesPerSecond = (int) (format.getFrameRate() * frameSize);
+        this.chunkSize = alignToFrame(bytesPerSecond * CHUNK_MILLIS / 1000, frameSize);
+        this.ringBufferSize = alignToFrame(bytesPerSecond * RING_BUFFER_MILLIS / 1000, frameSize);
+
+        this.line = AudioSystem.getSourceDataLine(format);
+        this.line.open(format, alignToFrame(bytesPerSecond * LINE_BUFFER_MILLIS / 1000, frameSize));
+    }
+
+    private static int alignToFrame(int bytes, int frameSize) {
+        return Math.max(frameSize, bytes - bytes % frameSize);
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public AudioFormat getSourceFormat() {
+        return sourceFormat;
+    }
+
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    public long getMicrosecondLength() {
+        if (frameLength == AudioSystem.NOT_SPECIFIED) {
+            return 0;
+        }
+        return framesToMicroseconds(frameLength);
+    }
+
+    public long getFramePosition() {
+        if (!playing) {
+            return pausedFrame;
+        }
+        long played = Math.max(0, line.getLongFramePosition() - lineFrameOrigin);
+        long position = startFrame + played;
+        return frameLength > 0 ? Math.min(position, frameLength) : position;
+    }
+
+    public long getMicrosecondPosition() {
+        return framesToMicroseconds(getFramePosition());
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * True once the last frame has been handed to the line and drained.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinishListener(Runnable listener) {
+        this.finishListener = listener;
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        this.errorListener = listener;
+    }
+
+    public void play() {
+        synchronized (sessionLock) {
+            if (playing) {
+                return;
+            }
+            if (finished) {
+                pausedFrame = 0;
+                finished = false;
+            }
+            startSession(pausedFrame);
+        }
+    }
+
+    public void pause() {
+        synchronized (sessionLock) {
+            if (!playing) {
+                return;
+            }
+            long position = getFramePosition();
+            endSession();
+            pausedFrame = position;
+        }
+    }
+
+    public void stop() {
+        synchronized (sessionLock) {
+            endSession();
+            pausedFrame = 0;
+            finished = false;
+        }
+    }
+
+    public void seekToFrame(long frame) {
+        synchronized (sessionLock) {
+            long target = Math.max(0, frameLength > 0 ? Math.min(frame, frameLength) : frame);
+            boolean wasPlaying = playing;
+            endSession();
+            pausedFrame = target;
+            finished = false;
+            if (wasPlaying) {
+                startSession(target);
+            }
+        }
+    }
+
+    public void seekToMicroseconds(long microseconds) {
+        seekToFrame((long) (microseconds / 1_000_000.0 * format.getFrameRate()));
+    }
+
+    public void close() {
+        synchronized (sessionLock) {
+            endSession();
+            line.close();
+        }
+    }
+
+    private long framesToMicroseconds(long frames) {
+        return (long) (frames * 1_000_000.0 / format.getFrameRate());
+    }
+
+    private void startSession(long fromFrame) {
+        int sessionGeneration = ++generation;
+        PcmRingBuffer ring = new PcmRingBuffer(ringBufferSize);
+        ringBuffer = ring;
+        startFrame = fromFrame;
+        lineFrameOrigin = line.getLongFramePosition();
+
+        Thread previousFeeder = feederThread;
+        decoderThread = new Thread(() -> decodeLoop(sessionGeneration, ring, fromFrame), "OmniViewer Audio Decoder");
+        decoderThread.setDaemon(true);
+        feederThread = new Thread(() -> feedLoop(sessionGeneration, ring, previousFeeder), "OmniViewer Audio Feeder");
+        feederThread.setDaemon(true);
+
+        playing = true;
+        line.start();
+        decoderThread.start();
+        feederThread.start();
+    }
+
+    private void endSession() {
+        generation++;
+        playing = false;
+        if (ringBuffer != null) {
+            ringBuffer.close();
+            ringBuffer = null;
+        }
+        line.stop();
+        line.flush();
+        // Not joined and not interrupted: closing the ring already wakes both loops, and an interrupt
+        // would close interruptible channels used by some sources. The feeder is kept for the next one.
+        decoderThread = null;
+    }
+
+    private void decodeLoop(int sessionGeneration, PcmRingBuffer ring, long fromFrame) {
+        byte[] chunk = new byte[chunkSize];
+        try (PcmSource source = sourceFactory.open(fromFrame)) {
+            while (generation == sessionGeneration) {
+                int read = source.read(chunk, 0, chunk.length);
+                if (read < 0) {
+                    break;
+                }
+                if (read > 0 && !ring.write(chunk, 0, read)) {
+                    return;
+                }
+            }
+            ring.markEndOfStream();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (generation == sessionGeneration) {
+                LOG.warn("Error decoding audio stream", e);
+                ring.markEndOfStream();
+                ErrorListener listener = errorListener;
+                if (listener != null) {
+                    listener.onError(e);
+                }
+            }
+        }
+    }
+
+    private void feedLoop(int sessionGeneration, PcmRingBuffer ring, Thread previousFeeder) {
+        byte[] chunk = new byte[chunkSize];
+        try {
+            if (previousFeeder != null && previousFeeder != Thread.currentThread()) {
+                // It may have written a last chunk after the line was flushed, which must not play now.
+                // Waited for in slices so that a feeder ended while waiting stops waiting as well.
+                long deadline = System.currentTimeMillis() + PREVIOUS_FEEDER_TIMEOUT_MILLIS;
+                while (previousFeeder.isAlive() && generation == sessionGeneration
+                    && System.currentTimeMillis() < deadline) {
+                    previousFeeder.join(PREVIOUS_FEEDER_POLL_MILLIS);
+                }
+                if (generation != sessionGeneration) {
+                    return;
+                }
+                line.flush();
+                lineFrameOrigin = line.getLongFramePosition();
+            }
+            int read;
+            while (generation == sessionGeneration && (read = ring.read(chunk, 0, chunk.length)) > 0) {
+                // The session may have ended while this thread was waiting on the ring
+                if (generation != sessionGeneration) {
+                    return;
+                }
+                line.write(chunk, 0, read);
+            }
+            if (generation != sessionGeneration) {
+                return;
+            }
+            line.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        synchronized (sessionLock) {
+            if (generation != sessionGeneration) {
+                return;
+            }
+            pausedFrame = frameLength > 0 ? frameLength : getFramePosition();
+            playing = false;
+            finished = true;
+        }
+        Runnable listener = finishListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
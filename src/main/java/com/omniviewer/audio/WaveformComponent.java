@@ -1,6 +1,8 @@
 package com.omniviewer.audio;
 
+import com.intellij.util.ui.ImageUtil;
 import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
 
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioFormat;
@@ -9,25 +11,51 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class WaveformComponent extends JPanel {
     
-    private List<Float> waveformData;
+    private WaveformPyramid waveformData;
     private float progress = 0.0f;
     private int hoverPosition = -1;
     private boolean isHovering = false;
     private long audioDurationMicroseconds = 0; // Total audio duration in microseconds
     
-    // Colors
+    // Visible window as fractions of the whole file (zoom)
+    private double viewStart = 0.0;
+    private double viewSpan = 1.0;
+    private static final double ZOOM_STEP = 1.25;
+    private final float[] peak = new float[3];
+    
+    // Static layer (background, timeline, waveform) at device resolution, redrawn only when the data,
+    // the zoom or the size change. Progress and hover are painted over it on every repaint.
+    private BufferedImage waveformLayer;
+    private int layerWidth;
+    private int layerHeight;
+    private double layerScale;
+    private boolean waveformLayerValid = false;
+    private int hoverLabelWidth = JBUI.scale(60);
+    private Font hoverFont;
+    
+    private static final int TIMELINE_HEIGHT = 25;
+    
+    // Colors and strokes
     private static final Color WAVEFORM_COLOR = new Color(100, 50, 150); // Dark purple like in the image
+    private static final Color RMS_COLOR = new Color(150, 100, 200); // Lighter purple for the RMS body
     private static final Color PROGRESS_COLOR = new Color(255, 100, 100);
     private static final Color BACKGROUND_COLOR = new Color(60, 60, 60); // Dark gray background
     private static final Color HOVER_COLOR = new Color(255, 200, 100);
     private static final Color TIMELINE_COLOR = Color.WHITE; // White timeline markers
     private static final Color TIMELINE_TEXT_COLOR = Color.WHITE; // White text
+    private static final Color PROGRESS_SHADE_COLOR = new Color(0, 0, 0, 50);
+    private static final Color HOVER_LABEL_BACKGROUND = new Color(0, 0, 0, 150); // Semi-transparent black background
+    private static final Stroke THIN_STROKE = new BasicStroke(1.0f);
+    private static final Stroke PROGRESS_STROKE = new BasicStroke(2.0f);
+    private static final Stroke HOVER_STROKE = new BasicStroke(1.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 0, new float[]{5}, 0);
     
     public WaveformComponent() {
         setPreferredSize(new Dimension(300, 80)); // Increased height to accommodate timeline
@@ -39,7 +67,7 @@ public class WaveformComponent extends JPanel {
             @Override
             public void mousePressed(MouseEvent e) {
                 if (waveformData != null && !waveformData.isEmpty()) {
-                    float newProgress = (float) e.getX() / getWidth();
+                    float newProgress = (float) xToPosition(e.getX());
                     newProgress = Math.max(0.0f, Math.min(1.0f, newProgress));
                     setProgress(newProgress);
                     fireSeekEvent(newProgress);
@@ -51,24 +79,96 @@ public class WaveformComponent extends JPanel {
             @Override
             public void mouseMoved(MouseEvent e) {
                 if (waveformData != null && !waveformData.isEmpty()) {
+                    int previous = isHovering ? hoverPosition : -1;
                     hoverPosition = e.getX();
                     isHovering = true;
-                    repaint();
+                    repaintHover(previous);
+                    repaintHover(hoverPosition);
                 }
             }
             
             @Override
             public void mouseExited(MouseEvent e) {
+                int previous = isHovering ? hoverPosition : -1;
                 isHovering = false;
                 hoverPosition = -1;
-                repaint();
+                repaintHover(previous);
             }
         });
+        
+        // Mouse wheel zooms around the cursor, shift + wheel pans the zoomed view
+        addMouseWheelListener(this::handleMouseWheel);
+    }
+    
+    private void handleMouseWheel(MouseWheelEvent e) {
+        if (waveformData == null || waveformData.isEmpty() || getWidth() <= 0) {
+            return;
+        }
+        
+        double rotation = e.getPreciseWheelRotation();
+        if (e.isShiftDown()) {
+            setView(viewStart + rotation * viewSpan * 0.1, viewSpan);
+        } else {
+            double anchor = xToPosition(e.getX());
+            double newSpan = viewSpan * Math.pow(ZOOM_STEP, rotation);
+            double anchorRatio = (double) e.getX() / getWidth();
+            setView(anchor - anchorRatio * newSpan, newSpan);
+        }
+        invalidateLayer();
+    }
+    
+    private void setView(double start, double span) {
+        // Deepest zoom shows one base bucket per pixel, the finest detail the pyramid holds
+        long totalFrames = waveformData != null ? waveformData.getTotalFrames() : 0;
+        long bucketSize = waveformData != null ? Math.max(1, waveformData.getBucketSize()) : 1;
+        double minSpan = totalFrames > 0
+            ? Math.min(1.0, (double) Math.max(1, getWidth()) * bucketSize / totalFrames) : 1.0;
+        viewSpan = Math.max(minSpan, Math.min(1.0, span));
+        viewStart = Math.max(0.0, Math.min(1.0 - viewSpan, start));
+    }
+    
+    public void resetZoom() {
+        viewStart = 0.0;
+        viewSpan = 1.0;
+        invalidateLayer();
+    }
+    
+    private void invalidateLayer() {
+        waveformLayerValid = false;
+        repaint();
+    }
+    
+    /**
+     * Repaints the full-height strip of columns [fromX, toX).
+     */
+    private void repaintColumns(int fromX, int toX) {
+        int left = Math.max(0, fromX);
+        int right = Math.min(getWidth(), toX);
+        if (right > left) {
+            repaint(left, 0, right - left, getHeight());
+        }
+    }
+    
+    private void repaintHover(int x) {
+        if (x >= 0) {
+            // The time label is centered on the line, or pushed inwards by up to its width at the edges
+            repaintColumns(x - hoverLabelWidth - 4, x + hoverLabelWidth + 4);
+        }
+    }
+    
+    private double xToPosition(int x) {
+        return viewStart + (double) x / Math.max(1, getWidth()) * viewSpan;
+    }
+    
+    private int positionToX(double position, int width) {
+        return (int) ((position - viewStart) / viewSpan * width);
     }
     
     public void setWaveformData(AudioInputStream audioStream) {
         try {
             waveformData = extractWaveformData(audioStream);
+            viewStart = 0.0;
+            viewSpan = 1.0;
             // Calculate duration from the audio stream
             if (audioStream != null) {
                 AudioFormat format = audioStream.getFormat();
@@ -77,165 +177,224 @@ public class WaveformComponent extends JPanel {
                     audioDurationMicroseconds = (long) ((frameLength * 1_000_000.0) / format.getFrameRate());
                 }
             }
-            repaint();
+            invalidateLayer();
         } catch (IOException e) {
             e.printStackTrace();
-            waveformData = new ArrayList<>();
+            waveformData = null;
+        }
+    }
+    
+    public void setWaveformData(WaveformPyramid pyramid) {
+        // Snapshots of a stream being decoded keep the same length, so they keep the current zoom
+        boolean sameLength = waveformData != null && pyramid != null
+            && waveformData.getTotalFrames() == pyramid.getTotalFrames();
+        waveformData = pyramid;
+        if (!sameLength) {
+            viewStart = 0.0;
+            viewSpan = 1.0;
+        }
+        if (audioDurationMicroseconds <= 0 && pyramid != null) {
+            audioDurationMicroseconds = pyramid.getDurationMicroseconds();
+        }
+        invalidateLayer();
+    }
+    
+    /**
+     * Starts an empty waveform that is filled through {@link #appendPeaks} while the stream is being decoded.
+     * With {@code expectedFrames} known, the time axis stays fixed and each chunk only repaints its own columns.
+     */
+    public void startProgressiveWaveform(float sampleRate, long expectedFrames) {
+        setWaveformData(WaveformPyramid.progressive(WaveformPyramid.DEFAULT_BUCKET_SIZE, sampleRate, expectedFrames));
+    }
+    
+    public void appendPeaks(WaveformPyramid.Chunk chunk) {
+        if (waveformData == null || chunk.getLength() == 0) {
+            return;
+        }
+        boolean wasEmpty = waveformData.isEmpty();
+        long totalBefore = waveformData.getTotalFrames();
+        waveformData.append(chunk);
+        
+        if (wasEmpty || waveformData.getTotalFrames() != totalBefore || !isLayerUsable()) {
+            // First data, or the time axis grew: everything moves
+            invalidateLayer();
+            return;
         }
+        
+        // Only the pixel columns of the new frames changed (one extra column on each side for partial ones):
+        // redraw them into the layer and repaint just that strip
+        int width = getWidth();
+        long bucketSize = waveformData.getBucketSize();
+        double startPosition = (double) chunk.getStart() * bucketSize / totalBefore;
+        double endPosition = (double) (chunk.getStart() + chunk.getLength()) * bucketSize / totalBefore;
+        int fromX = Math.max(0, positionToX(startPosition, width) - 1);
+        int toX = Math.min(width, positionToX(endPosition, width) + 1);
+        if (toX > fromX) {
+            renderLayer(new Rectangle(fromX, 0, toX - fromX, layerHeight));
+            repaintColumns(fromX, toX);
+        }
+    }
+    
+    public WaveformPyramid getWaveformData() {
+        return waveformData;
     }
     
     public void setAudioDuration(long durationMicroseconds) {
-        this.audioDurationMicroseconds = durationMicroseconds;
-        repaint();
+        if (this.audioDurationMicroseconds != durationMicroseconds) {
+            this.audioDurationMicroseconds = durationMicroseconds;
+            invalidateLayer();
+        }
     }
     
     public void setProgress(float progress) {
+        int width = getWidth();
+        int previousX = positionToX(this.progress, width);
         this.progress = Math.max(0.0f, Math.min(1.0f, progress));
-        repaint();
+        
+        // Keep the playhead visible while zoomed in
+        if (viewSpan < 1.0 && (this.progress < viewStart || this.progress > viewStart + viewSpan)) {
+            setView(this.progress, viewSpan);
+            invalidateLayer();
+            return;
+        }
+        
+        // Only the shading between the old and new playhead and the two lines change
+        int currentX = positionToX(this.progress, width);
+        if (currentX != previousX) {
+            repaintColumns(Math.min(previousX, currentX) - 2, Math.max(previousX, currentX) + 2);
+        }
     }
     
     public float getProgress() {
         return progress;
     }
     
-    private List<Float> extractWaveformData(AudioInputStream audioStream) throws IOException {
-        List<Float> data = new ArrayList<>();
+    private WaveformPyramid extractWaveformData(AudioInputStream audioStream) throws IOException {
         AudioFormat format = audioStream.getFormat();
+        WaveformPyramid.Builder builder = new WaveformPyramid.Builder(format.getFrameRate());
         
-        // Calculate how many samples we need for visualization
-        int sampleRate = (int) format.getSampleRate();
-        int channels = format.getChannels();
-        int sampleSizeInBytes = format.getSampleSizeInBits() / 8;
-        
-        // We want about 1000 points for the waveform
-        int targetPoints = 1000;
-        long totalFrames = audioStream.getFrameLength();
-        int framesPerPoint = (int) (totalFrames / targetPoints);
+        int frameSize = format.getFrameSize() > 0 ? format.getFrameSize() : 4;
         
-        if (framesPerPoint < 1) framesPerPoint = 1;
-        
-        byte[] buffer = new byte[framesPerPoint * channels * sampleSizeInBytes];
+        // Read in blocks of whole frames
+        byte[] buffer = new byte[frameSize * 4096];
         int bytesRead;
         
         while ((bytesRead = audioStream.read(buffer)) > 0) {
-            float sample = 0.0f;
-            int samplesProcessed = 0;
-            
-            // Process the buffer
-            for (int i = 0; i < bytesRead; i += sampleSizeInBytes * channels) {
-                if (i + sampleSizeInBytes <= bytesRead) {
-                    float channelSample = 0.0f;
-                    
-                    long sampleValue = 0;
-                    if (format.isBigEndian()) {
-                        for (int j = 0; j < sampleSizeInBytes; j++) {
-                            sampleValue = (sampleValue << 8) | (buffer[i + j] & 0xFF);
-                        }
-                    } else {
-                        for (int j = sampleSizeInBytes - 1; j >= 0; j--) {
-                            sampleValue = (sampleValue << 8) | (buffer[i + j] & 0xFF);
-                        }
-                    }
-                    
-                    // Convert to signed value
-                    if (sampleSizeInBytes == 1) {
-                        channelSample = (float) ((byte) sampleValue);
-                    } else if (sampleSizeInBytes == 2) {
-                        channelSample = (float) ((short) sampleValue);
-                    } else if (sampleSizeInBytes == 4) {
-                        channelSample = (float) ((int) sampleValue);
-                    } else {
-                        channelSample = (float) sampleValue;
-                    }
-                    
-                    // Normalize based on sample size
-                    if (sampleSizeInBytes == 1) {
-                        channelSample = channelSample / 128.0f;
-                    } else if (sampleSizeInBytes == 2) {
-                        channelSample = channelSample / 32768.0f;
-                    } else if (sampleSizeInBytes == 4) {
-                        channelSample = channelSample / 2147483648.0f;
-                    }
-                    
-                    sample += Math.abs(channelSample);
-                    samplesProcessed++;
-                }
-            }
-            
-            if (samplesProcessed > 0) {
-                data.add(sample / samplesProcessed);
-            }
+            builder.addPcm(buffer, bytesRead, format);
         }
         
-        return data;
+        return builder.build();
     }
     
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g.create();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
         int width = getWidth();
         int height = getHeight();
-        
-        // Clear background
-        g2d.setColor(BACKGROUND_COLOR);
-        g2d.fillRect(0, 0, width, height);
-        
-        if (waveformData == null || waveformData.isEmpty()) {
-            // Draw placeholder text
-            g2d.setColor(Color.GRAY);
-            g2d.setFont(g2d.getFont().deriveFont(Font.ITALIC, 12f));
-            FontMetrics fm = g2d.getFontMetrics();
-            String text = "No waveform data available";
-            int textWidth = fm.stringWidth(text);
-            int textHeight = fm.getHeight();
-            g2d.drawString(text, (width - textWidth) / 2, (height + textHeight) / 2);
-            g2d.dispose();
+        if (width <= 0 || height <= 0) {
             return;
         }
         
-        // Draw timeline at the top
-        drawTimeline(g2d, width, height);
-        
-        // Draw waveform (offset down to make room for timeline)
-        drawWaveform(g2d, width, height);
-        
-        // Draw progress overlay
-        drawProgressOverlay(g2d, width, height);
-        
-        // Draw hover indicator
-        if (isHovering && hoverPosition >= 0) {
-            drawHoverIndicator(g2d, width, height);
+        Graphics2D g2d = (Graphics2D) g.create();
+        try {
+            double scale = g2d.getTransform().getScaleX();
+            if (!isLayerUsable() || layerScale != scale) {
+                // HiDPI-aware: the image has device resolution but is drawn in user space
+                waveformLayer = ImageUtil.createImage(g2d, width, height, BufferedImage.TYPE_INT_RGB);
+                layerWidth = width;
+                layerHeight = height;
+                layerScale = scale;
+                renderLayer(null);
+                waveformLayerValid = true;
+            }
+            UIUtil.drawImage(g2d, waveformLayer, 0, 0, null);
+            
+            if (waveformData == null || waveformData.isEmpty()) {
+                return;
+            }
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            
+            // Draw progress overlay
+            drawProgressOverlay(g2d, width, height);
+            
+            // Draw hover indicator
+            if (isHovering && hoverPosition >= 0) {
+                drawHoverIndicator(g2d, width, height);
+            }
+        } finally {
+            g2d.dispose();
+        }
+    }
+    
+    private boolean isLayerUsable() {
+        return waveformLayer != null && waveformLayerValid && layerWidth == getWidth() && layerHeight == getHeight();
+    }
+    
+    /**
+     * Draws background, timeline and waveform into the cached layer, limited to {@code area} if given.
+     */
+    private void renderLayer(Rectangle area) {
+        Graphics2D g2d = waveformLayer.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            if (area != null) {
+                g2d.clip(area);
+            }
+            int width = layerWidth;
+            int height = layerHeight;
+            
+            // Clear background
+            g2d.setColor(BACKGROUND_COLOR);
+            g2d.fillRect(0, 0, width, height);
+            
+            if (waveformData == null || waveformData.isEmpty()) {
+                // Draw placeholder text
+                g2d.setColor(Color.GRAY);
+                g2d.setFont(getFont().deriveFont(Font.ITALIC, 12f));
+                FontMetrics fm = g2d.getFontMetrics();
+                String text = waveformData != null ? "Loading waveform..." : "No waveform data available";
+                int textWidth = fm.stringWidth(text);
+                int textHeight = fm.getHeight();
+                g2d.drawString(text, (width - textWidth) / 2, (height + textHeight) / 2);
+                return;
+            }
+            
+            // Draw timeline at the top
+            drawTimeline(g2d, width, height);
+            
+            // Draw waveform (offset down to make room for timeline)
+            drawWaveform(g2d, width, height);
+        } finally {
+            g2d.dispose();
         }
-        
-        g2d.dispose();
     }
     
     private void drawTimeline(Graphics2D g2d, int width, int height) {
         if (audioDurationMicroseconds <= 0) return;
         
         g2d.setColor(TIMELINE_COLOR);
-        g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 9f));
+        g2d.setFont(getFont().deriveFont(Font.PLAIN, 9f));
+        g2d.setStroke(THIN_STROKE);
         FontMetrics fm = g2d.getFontMetrics();
         
-        // Timeline area is at the top 25 pixels
-        int timelineHeight = 25;
+        // Timeline area is at the top
+        int timelineHeight = TIMELINE_HEIGHT;
         int timelineY = 2;
         
-        // Calculate optimal time interval based on duration and available width
-        long totalSeconds = audioDurationMicroseconds / 1_000_000;
+        // Calculate optimal time interval based on the visible duration and available width
+        long visibleStart = (long) (viewStart * audioDurationMicroseconds);
+        long visibleEnd = (long) ((viewStart + viewSpan) * audioDurationMicroseconds);
+        long totalSeconds = (visibleEnd - visibleStart) / 1_000_000;
         long intervalMicroseconds = calculateOptimalInterval(totalSeconds, width, fm);
         
         // Draw timeline markers
-        for (long time = 0; time <= audioDurationMicroseconds; time += intervalMicroseconds) {
-            float progress = (float) time / audioDurationMicroseconds;
-            int x = (int) (progress * width);
+        long firstMarker = (visibleStart + intervalMicroseconds - 1) / intervalMicroseconds * intervalMicroseconds;
+        for (long time = firstMarker; time <= visibleEnd; time += intervalMicroseconds) {
+            double position = (double) time / audioDurationMicroseconds;
+            int x = positionToX(position, width);
             
             // Draw vertical line - thin white line like in the image
             g2d.setColor(TIMELINE_COLOR);
-            g2d.setStroke(new BasicStroke(1.0f));
             g2d.drawLine(x, timelineY, x, timelineY + timelineHeight);
             
             // Draw time label - white text like in the image
@@ -345,80 +504,99 @@ public class WaveformComponent extends JPanel {
         long seconds = totalSeconds % 60;
         long milliseconds = (microseconds % 1_000_000) / 1_000;
         
-        // Format like in the image: 0:00.000, 0:00.500, 0:01.000
-        return String.format("%d:%02d.%03d", minutes, seconds, milliseconds);
+        // Format like in the image: 0:00.000, 0:00.500, 0:01.000 (built by hand, this runs on every hover move)
+        StringBuilder text = new StringBuilder(12).append(minutes).append(':');
+        if (seconds < 10) {
+            text.append('0');
+        }
+        text.append(seconds).append('.');
+        if (milliseconds < 100) {
+            text.append(milliseconds < 10 ? "00" : "0");
+        }
+        return text.append(milliseconds).toString();
     }
     
     private void drawWaveform(Graphics2D g2d, int width, int height) {
         if (waveformData.isEmpty()) return;
         
         g2d.setColor(WAVEFORM_COLOR);
+        g2d.setStroke(THIN_STROKE);
         
         // Offset waveform down to make room for timeline
-        int timelineHeight = 25;
+        int timelineHeight = TIMELINE_HEIGHT;
         int waveformHeight = height - timelineHeight;
         int centerY = timelineHeight + waveformHeight / 2;
-        
-        int dataPoints = waveformData.size();
-        float xStep = (float) width / dataPoints;
-        
-        // Draw waveform as vertical bars with improved rendering
-        for (int i = 0; i < dataPoints; i++) {
-            float amplitude = waveformData.get(i);
+        float halfHeight = (waveformHeight - 10) / 2.0f;
+        
+        // Pick the pyramid level matching the current zoom
+        long totalFrames = waveformData.getTotalFrames();
+        double framesPerPixel = viewSpan * totalFrames / width;
+        int level = waveformData.levelFor(framesPerPixel);
+        double startFrame = viewStart * totalFrames;
+        
+        // Draw one min/max line per pixel column, only within the repainted area
+        Rectangle clip = g2d.getClipBounds();
+        int fromX = clip != null ? Math.max(0, clip.x) : 0;
+        int toX = clip != null ? Math.min(width, clip.x + clip.width) : width;
+        for (int x = fromX; x < toX; x++) {
+            double from = startFrame + x * framesPerPixel;
+            if (!waveformData.peak(level, from, from + framesPerPixel, peak)) {
+                break;
+            }
             
             // Ensure minimum bar height for visibility
-            int minBarHeight = 2;
-            int barHeight = Math.max(minBarHeight, (int) (amplitude * (waveformHeight - 10)));
-            
-            int x = (int) (i * xStep);
-            int y = centerY - barHeight / 2;
-            
-            // Draw as a thin vertical line/bar with better visibility
-            g2d.setStroke(new BasicStroke(1.5f));
-            g2d.drawLine(x, y, x, y + barHeight);
+            int top = centerY - Math.round(peak[1] * halfHeight);
+            int bottom = centerY - Math.round(peak[0] * halfHeight);
+            if (bottom - top < 1) {
+                top = centerY - 1;
+                bottom = centerY + 1;
+            }
+            g2d.drawLine(x, top, x, bottom);
             
-            // For synthetic MP3 data, add some visual enhancement
-            if (amplitude > 0.1f) {
-                // Draw a subtle highlight for higher amplitude sections
-                g2d.setColor(new Color(WAVEFORM_COLOR.getRed(), WAVEFORM_COLOR.getGreen(), WAVEFORM_COLOR.getBlue(), 100));
-                g2d.setStroke(new BasicStroke(0.5f));
-                g2d.drawLine(x - 1, y, x - 1, y + barHeight);
-                g2d.drawLine(x + 1, y, x + 1, y + barHeight);
-                g2d.setColor(WAVEFORM_COLOR); // Reset color
+            // RMS body inside the peak envelope
+            int rmsExtent = Math.round(peak[2] * halfHeight);
+            if (rmsExtent > 0) {
+                g2d.setColor(RMS_COLOR);
+                g2d.drawLine(x, Math.max(top, centerY - rmsExtent), x, Math.min(bottom, centerY + rmsExtent));
+                g2d.setColor(WAVEFORM_COLOR);
             }
         }
     }
     
     private void drawProgressOverlay(Graphics2D g2d, int width, int height) {
-        int progressX = (int) (progress * width);
-        int timelineHeight = 25;
+        int progressX = positionToX(progress, width);
+        int timelineHeight = TIMELINE_HEIGHT;
         
         // Draw progress background (darker area) - only over waveform area
-        g2d.setColor(new Color(0, 0, 0, 50));
-        g2d.fillRect(0, timelineHeight, progressX, height - timelineHeight);
+        g2d.setColor(PROGRESS_SHADE_COLOR);
+        g2d.fillRect(0, timelineHeight, Math.max(0, Math.min(width, progressX)), height - timelineHeight);
         
         // Draw progress line
         g2d.setColor(PROGRESS_COLOR);
-        g2d.setStroke(new BasicStroke(2.0f));
+        g2d.setStroke(PROGRESS_STROKE);
         g2d.drawLine(progressX, timelineHeight, progressX, height);
     }
     
     private void drawHoverIndicator(Graphics2D g2d, int width, int height) {
-        int timelineHeight = 25;
+        int timelineHeight = TIMELINE_HEIGHT;
         g2d.setColor(HOVER_COLOR);
-        g2d.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 0, new float[]{5}, 0));
+        g2d.setStroke(HOVER_STROKE);
         g2d.drawLine(hoverPosition, timelineHeight, hoverPosition, height);
         
         // Draw hover time at the top of the hover line
         if (audioDurationMicroseconds > 0) {
-            float hoverProgress = (float) hoverPosition / width;
+            double hoverProgress = xToPosition(hoverPosition);
             long hoverTimeMicroseconds = (long) (hoverProgress * audioDurationMicroseconds);
             String hoverTimeLabel = formatTime(hoverTimeMicroseconds);
             
             // Set font for time display
-            g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 9f));
+            if (hoverFont == null) {
+                hoverFont = getFont().deriveFont(Font.PLAIN, 9f);
+            }
+            g2d.setFont(hoverFont);
             FontMetrics fm = g2d.getFontMetrics();
             int textWidth = fm.stringWidth(hoverTimeLabel);
+            hoverLabelWidth = Math.max(hoverLabelWidth, textWidth);
             
             // Position the time label above the timeline
             int labelX = hoverPosition - textWidth / 2;
@@ -429,7 +607,7 @@ public class WaveformComponent extends JPanel {
             if (labelX + textWidth > width) labelX = width - textWidth - 2;
             
             // Draw background rectangle for better readability
-            g2d.setColor(new Color(0, 0, 0, 150)); // Semi-transparent black background
+            g2d.setColor(HOVER_LABEL_BACKGROUND);
             g2d.fillRect(labelX - 2, labelY - 2, textWidth + 4, fm.getHeight() + 2);
             
             // Draw the time text
@@ -0,0 +1,156 @@
+package com.omniviewer.audio;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.omniviewer.util.BoundedDiskCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Persists level-0 waveform peaks (min/max/RMS) so that reopening an audio file does not require
+ * decoding it again.
+ * Entries are keyed by path, length, on-disk timestamp and a hash of the first and last 64 KB.
+ * {@link VirtualFile#getModificationStamp()} is not used because it is not stable across IDE sessions.
+ */
+public final class WaveformPeakCache {
+
+    private static final Logger LOG = Logger.getInstance(WaveformPeakCache.class);
+    private static final int MAGIC = 0x4F565750; // "OVWP"
+    private static final int VERSION = 2;
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final WaveformPeakCache INSTANCE = new WaveformPeakCache(
+        new BoundedDiskCache("waveforms", Long.getLong("omniviewer.waveformCache.maxBytes", DEFAULT_MAX_BYTES)));
+
+    private final BoundedDiskCache cache;
+
+    private WaveformPeakCache(BoundedDiskCache cache) {
+        this.cache = cache;
+    }
+
+    public static WaveformPeakCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached pyramid for the current content of the file, or null on a miss.
+     */
+    public WaveformPyramid load(VirtualFile file) {
+        String key;
+        try {
+            key = keyFor(file);
+        } catch (IOException e) {
+            return null;
+        }
+
+        InputStream entry = cache.open(key);
+        if (entry == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(entry))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                cache.remove(key);
+                return null;
+            }
+            int bucketSize = in.readInt();
+            float sampleRate = in.readFloat();
+            long totalFrames = in.readLong();
+            int length = in.readInt();
+            // Checked before allocating anything, a damaged entry must not pass for a huge waveform
+            if (bucketSize <= 0 || totalFrames < 0 || length < 0
+                || length > (totalFrames + bucketSize - 1) / bucketSize) {
+                throw new IOException("inconsistent header: bucket size " + bucketSize + ", "
+                    + totalFrames + " frames, " + length + " buckets");
+            }
+            float[] mins = new float[length];
+            float[] maxs = new float[length];
+            float[] rms = new float[length];
+            for (int i = 0; i < length; i++) {
+                mins[i] = in.readShort() / (float) Short.MAX_VALUE;
+                maxs[i] = in.readShort() / (float) Short.MAX_VALUE;
+                rms[i] = in.readShort() / (float) Short.MAX_VALUE;
+            }
+            return WaveformPyramid.fromBuckets(bucketSize, sampleRate, totalFrames, mins, maxs, rms);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Discarding unreadable waveform cache entry for " + file.getName(), e);
+            cache.remove(key);
+            return null;
+        }
+    }
+
+    public void store(VirtualFile file, WaveformPyramid pyramid) {
+        if (pyramid == null || pyramid.isEmpty()) {
+            return;
+        }
+        try {
+            String key = keyFor(file);
+            cache.put(key, out -> {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(pyramid.getBucketSize());
+                data.writeFloat(pyramid.getSampleRate());
+                data.writeLong(pyramid.getTotalFrames());
+                int length = pyramid.getLength(0);
+                data.writeInt(length);
+                // Peaks are quantized to 16 bits, plenty for drawing
+                for (int i = 0; i < length; i++) {
+                    data.writeShort(quantize(pyramid.getMin(0, i)));
+                    data.writeShort(quantize(pyramid.getMax(0, i)));
+                    data.writeShort(quantize(pyramid.getRms(0, i)));
+                }
+                data.flush();
+            });
+        } catch (IOException e) {
+            LOG.warn("Failed to store waveform cache for " + file.getName(), e);
+        }
+    }
+
+    private static short quantize(float value) {
+        return (short) Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * Short.MAX_VALUE);
+    }
+
+    private static String keyFor(VirtualFile file) throws IOException {
+        return file.getPath() + "|" + file.getLength() + "|" + file.getTimeStamp() + "|" + fingerprint(file);
+    }
+
+    private static long fingerprint(VirtualFile file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        long length = file.getLength();
+
+        try (InputStream in = file.getInputStream()) {
+            long position = readInto(in, crc, buffer, Math.min(length, FINGERPRINT_BYTES));
+            long tailStart = Math.max(position, length - FINGERPRINT_BYTES);
+            while (position < tailStart) {
+                long skipped = in.skip(tailStart - position);
+                if (skipped <= 0) {
+                    break;
+                }
+                position += skipped;
+            }
+            readInto(in, crc, buffer, length - position);
+        }
+        return crc.getValue();
+    }
+
+    private static long readInto(InputStream in, CRC32 crc, byte[] buffer, long count) throws IOException {
+        long total = 0;
+        while (total < count) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, count - total));
+            if (read < 0) {
+                break;
+            }
+            crc.update(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+}
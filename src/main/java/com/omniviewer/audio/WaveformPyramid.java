@@ -0,0 +1,504 @@
+package com.omniviewer.audio;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-resolution min/max/RMS peaks of an audio stream, held in flat {@code float[]} arrays.
+ * Level 0 holds one min/max/RMS triple per {@link #DEFAULT_BUCKET_SIZE} frames, every further level halves
+ * the number of buckets. Rendering picks the level whose bucket span matches the pixels-per-frame
+ * ratio, so painting costs the same whatever the zoom.
+ * <p>
+ * A pyramid created with {@link #progressive} starts empty and is filled through {@link #append} while the
+ * stream is decoded, in any order (segments decoded in parallel fill in side by side); only the parents of
+ * the new buckets are recomputed. It is not thread-safe, appends and reads must happen on the same thread
+ * (the EDT for {@link WaveformComponent}).
+ */
+public final class WaveformPyramid {
+
+    public static final int DEFAULT_BUCKET_SIZE = 256;
+
+    private final int bucketSize;
+    private final float sampleRate;
+    private long totalFrames;
+    private long filledFrames;
+    private float[][] mins;
+    private float[][] maxs;
+    private float[][] rms;
+    private int[] lengths;
+
+    private WaveformPyramid(int bucketSize, float sampleRate, long totalFrames,
+                            float[] baseMin, float[] baseMax, float[] baseRms, int baseLength) {
+        this.bucketSize = bucketSize;
+        this.sampleRate = sampleRate;
+        this.totalFrames = totalFrames;
+        this.filledFrames = totalFrames;
+        allocateLevels(baseLength);
+
+        mins[0] = baseMin;
+        maxs[0] = baseMax;
+        rms[0] = baseRms;
+        lengths[0] = baseLength;
+        updateLevels(0, baseLength, 0);
+    }
+
+    private WaveformPyramid(int bucketSize, float sampleRate, long expectedFrames) {
+        this.bucketSize = bucketSize;
+        this.sampleRate = sampleRate;
+        this.totalFrames = Math.max(0, expectedFrames);
+        this.filledFrames = 0;
+        int capacity = (int) Math.max(16, (this.totalFrames + bucketSize - 1) / bucketSize);
+        allocateLevels(capacity);
+        mins[0] = new float[capacity];
+        maxs[0] = new float[capacity];
+        rms[0] = new float[capacity];
+    }
+
+    /**
+     * Empty pyramid to be filled through {@link #append}. With {@code expectedFrames} known, the time axis
+     * stays fixed while it fills, otherwise it grows with the appended data.
+     */
+    public static WaveformPyramid progressive(int bucketSize, float sampleRate, long expectedFrames) {
+        return new WaveformPyramid(bucketSize, sampleRate, expectedFrames);
+    }
+
+    private void allocateLevels(int baseCapacity) {
+        int levels = 1;
+        for (int length = baseCapacity; length > 1; length = (length + 1) / 2) {
+            levels++;
+        }
+        mins = new float[levels][];
+        maxs = new float[levels][];
+        rms = new float[levels][];
+        lengths = new int[levels];
+        for (int level = 1, capacity = (baseCapacity + 1) / 2; level < levels; level++, capacity = (capacity + 1) / 2) {
+            mins[level] = new float[capacity];
+            maxs[level] = new float[capacity];
+            rms[level] = new float[capacity];
+        }
+    }
+
+    /**
+     * Stores completed level-0 buckets at their position, each covering {@link #getBucketSize()} frames.
+     * Buckets not filled yet read as silence.
+     */
+    public void append(Chunk chunk) {
+        int count = chunk.getLength();
+        if (count == 0) {
+            return;
+        }
+        int first = chunk.getStart();
+        int end = first + count;
+        ensureCapacity(end);
+        System.arraycopy(chunk.mins, 0, mins[0], first, count);
+        System.arraycopy(chunk.maxs, 0, maxs[0], first, count);
+        System.arraycopy(chunk.rms, 0, rms[0], first, count);
+        int previousLength = lengths[0];
+        lengths[0] = Math.max(previousLength, end);
+        filledFrames += (long) count * bucketSize;
+        totalFrames = Math.max(totalFrames, (long) lengths[0] * bucketSize);
+        updateLevels(first, end, previousLength);
+    }
+
+    private void ensureCapacity(int baseLength) {
+        if (baseLength <= mins[0].length) {
+            return;
+        }
+        float[][] oldMins = mins;
+        float[][] oldMaxs = maxs;
+        float[][] oldRms = rms;
+        int[] oldLengths = lengths;
+
+        int capacity = Math.max(baseLength, oldMins[0].length * 2);
+        allocateLevels(capacity);
+        mins[0] = Arrays.copyOf(oldMins[0], capacity);
+        maxs[0] = Arrays.copyOf(oldMaxs[0], capacity);
+        rms[0] = Arrays.copyOf(oldRms[0], capacity);
+        lengths[0] = oldLengths[0];
+        for (int level = 1; level < oldLengths.length; level++) {
+            System.arraycopy(oldMins[level], 0, mins[level], 0, oldLengths[level]);
+            System.arraycopy(oldMaxs[level], 0, maxs[level], 0, oldLengths[level]);
+            System.arraycopy(oldRms[level], 0, rms[level], 0, oldLengths[level]);
+            lengths[level] = oldLengths[level];
+        }
+    }
+
+    /**
+     * Recomputes the parents of the level-0 buckets [from, to), up to the top level.
+     * {@code previousLength} is the level-0 length before the change: when a level grows, its old last
+     * bucket may have been built from a single child and is recomputed too.
+     */
+    private void updateLevels(int from, int to, int previousLength) {
+        int previousChildLength = previousLength;
+        for (int level = 1; level < lengths.length; level++) {
+            int previous = lengths[level - 1];
+            int length = (previous + 1) / 2;
+            int oldLength = lengths[level];
+            from = from / 2;
+            to = (to + 1) / 2;
+            if (oldLength == 0) {
+                from = 0;
+                to = length;
+            } else if (previous > previousChildLength) {
+                from = Math.min(from, oldLength - 1);
+            }
+            previousChildLength = oldLength;
+            float[] min = mins[level];
+            float[] max = maxs[level];
+            float[] energy = rms[level];
+            float[] lowerMin = mins[level - 1];
+            float[] lowerMax = maxs[level - 1];
+            float[] lowerRms = rms[level - 1];
+            for (int i = from; i < to; i++) {
+                int a = i * 2;
+                int b = Math.min(a + 1, previous - 1);
+                min[i] = Math.min(lowerMin[a], lowerMin[b]);
+                max[i] = Math.max(lowerMax[a], lowerMax[b]);
+                energy[i] = (float) Math.sqrt((lowerRms[a] * lowerRms[a] + lowerRms[b] * lowerRms[b]) / 2.0);
+            }
+            lengths[level] = length;
+        }
+    }
+
+    /**
+     * Rebuilds a pyramid from previously computed level-0 buckets (e.g. from the disk cache).
+     */
+    public static WaveformPyramid fromBuckets(int bucketSize, float sampleRate, long totalFrames,
+                                              float[] mins, float[] maxs, float[] rms) {
+        return new WaveformPyramid(bucketSize, sampleRate, totalFrames, mins, maxs, rms, mins.length);
+    }
+
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * Number of frames covered by data, less than {@link #getTotalFrames()} while a progressive pyramid fills.
+     */
+    public long getFilledFrames() {
+        return filledFrames;
+    }
+
+    public long getDurationMicroseconds() {
+        return sampleRate > 0 ? (long) (totalFrames * 1_000_000.0 / sampleRate) : 0;
+    }
+
+    public int getLevelCount() {
+        return lengths.length;
+    }
+
+    public int getLength(int level) {
+        return lengths[level];
+    }
+
+    public float getMin(int level, int index) {
+        return mins[level][index];
+    }
+
+    public float getMax(int level, int index) {
+        return maxs[level][index];
+    }
+
+    public float getRms(int level, int index) {
+        return rms[level][index];
+    }
+
+    /**
+     * Number of frames covered by one bucket of the given level.
+     */
+    public long getBucketSpan(int level) {
+        return (long) bucketSize << level;
+    }
+
+    public boolean isEmpty() {
+        return lengths[0] == 0;
+    }
+
+    /**
+     * Coarsest level whose buckets are not wider than the requested number of frames per pixel.
+     */
+    public int levelFor(double framesPerPixel) {
+        int level = 0;
+        while (level + 1 < lengths.length && getBucketSpan(level + 1) <= framesPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Writes the min/max peak and the RMS of the frame range [startFrame, endFrame)
+     * into {@code out[0]} / {@code out[1]} / {@code out[2]}.
+     * Returns false if the range holds no data.
+     */
+    public boolean peak(int level, double startFrame, double endFrame, float[] out) {
+        long span = getBucketSpan(level);
+        int first = (int) Math.max(0, Math.floor(startFrame / span));
+        int last = (int) Math.min(lengths[level] - 1, Math.ceil(endFrame / span) - 1);
+        if (last < first) {
+            if (first >= lengths[level]) {
+                return false;
+            }
+            last = first;
+        }
+
+        float[] min = mins[level];
+        float[] max = maxs[level];
+        float[] energy = rms[level];
+        float low = min[first];
+        float high = max[first];
+        double squares = (double) energy[first] * energy[first];
+        for (int i = first + 1; i <= last; i++) {
+            low = Math.min(low, min[i]);
+            high = Math.max(high, max[i]);
+            squares += (double) energy[i] * energy[i];
+        }
+        out[0] = low;
+        out[1] = high;
+        out[2] = (float) Math.sqrt(squares / (last - first + 1));
+        return true;
+    }
+
+    /**
+     * Accumulates frames into level-0 buckets and builds the pyramid.
+     */
+    public static final class Builder {
+
+        private final int bucketSize;
+        private final float sampleRate;
+        private final int firstBucket;
+        private float[] mins = new float[1024];
+        private float[] maxs = new float[1024];
+        private float[] rms = new float[1024];
+        private int length = 0;
+        private int drained = 0;
+
+        private float currentMin = Float.MAX_VALUE;
+        private float currentMax = -Float.MAX_VALUE;
+        private double currentSquares = 0;
+        private int framesInBucket = 0;
+        private long totalFrames = 0;
+
+        public Builder(float sampleRate) {
+            this(DEFAULT_BUCKET_SIZE, sampleRate);
+        }
+
+        public Builder(int bucketSize, float sampleRate) {
+            this(bucketSize, sampleRate, 0);
+        }
+
+        /**
+         * Builder for a segment of a stream starting at level-0 bucket {@code firstBucket},
+         * i.e. at frame {@code firstBucket * bucketSize}. See {@link #concat}.
+         */
+        public Builder(int bucketSize, float sampleRate, int firstBucket) {
+            this.bucketSize = bucketSize;
+            this.sampleRate = sampleRate;
+            this.firstBucket = firstBucket;
+        }
+
+        /**
+         * Adds one frame, described by the lowest and highest normalized sample across its channels
+         * and the mean of the squared samples.
+         */
+        public void addFrame(float min, float max, float meanSquare) {
+            if (min < currentMin) {
+                currentMin = min;
+            }
+            if (max > currentMax) {
+                currentMax = max;
+            }
+            currentSquares += meanSquare;
+            totalFrames++;
+            if (++framesInBucket == bucketSize) {
+                flushBucket();
+            }
+        }
+
+        /**
+         * Adds the whole frames of a block of signed PCM data, keeping the min/max across channels per frame.
+         */
+        public void addPcm(byte[] buffer, int length, AudioFormat format) {
+            int channels = format.getChannels();
+            int sampleSizeInBytes = format.getSampleSizeInBits() / 8;
+            int frameSize = sampleSizeInBytes * channels;
+            if (frameSize <= 0) {
+                return;
+            }
+            boolean bigEndian = format.isBigEndian();
+
+            for (int i = 0; i + frameSize <= length; i += frameSize) {
+                float frameMin = Float.MAX_VALUE;
+                float frameMax = -Float.MAX_VALUE;
+                float squares = 0;
+
+                for (int ch = 0; ch < channels; ch++) {
+                    int base = i + ch * sampleSizeInBytes;
+                    long sampleValue = 0;
+                    if (bigEndian) {
+                        for (int j = 0; j < sampleSizeInBytes; j++) {
+                            sampleValue = (sampleValue << 8) | (buffer[base + j] & 0xFF);
+                        }
+                    } else {
+                        for (int j = sampleSizeInBytes - 1; j >= 0; j--) {
+                            sampleValue = (sampleValue << 8) | (buffer[base + j] & 0xFF);
+                        }
+                    }
+
+                    // Sign-extend and normalize based on sample size
+                    float channelSample;
+                    if (sampleSizeInBytes == 1) {
+                        channelSample = ((byte) sampleValue) / 128.0f;
+                    } else if (sampleSizeInBytes == 2) {
+                        channelSample = ((short) sampleValue) / 32768.0f;
+                    } else if (sampleSizeInBytes == 4) {
+                        channelSample = ((int) sampleValue) / 2147483648.0f;
+                    } else {
+                        channelSample = (float) sampleValue;
+                    }
+
+                    frameMin = Math.min(frameMin, channelSample);
+                    frameMax = Math.max(frameMax, channelSample);
+                    squares += channelSample * channelSample;
+                }
+
+                addFrame(frameMin, frameMax, squares / channels);
+            }
+        }
+
+        /**
+         * Adds interleaved 16-bit samples as decoded by JLayer, without any intermediate buffer.
+         */
+        public void addSamples(short[] samples, int length, int channels) {
+            for (int i = 0; i + channels <= length; i += channels) {
+                float frameMin = Float.MAX_VALUE;
+                float frameMax = -Float.MAX_VALUE;
+                float squares = 0;
+                for (int ch = 0; ch < channels; ch++) {
+                    float sample = samples[i + ch] / 32768.0f;
+                    frameMin = Math.min(frameMin, sample);
+                    frameMax = Math.max(frameMax, sample);
+                    squares += sample * sample;
+                }
+                addFrame(frameMin, frameMax, squares / channels);
+            }
+        }
+
+        /**
+         * Adds silent frames, e.g. for a frame that could not be decoded.
+         */
+        public void addSilence(long frames) {
+            for (long i = 0; i < frames; i++) {
+                addFrame(0.0f, 0.0f, 0.0f);
+            }
+        }
+
+        public long getTotalFrames() {
+            return totalFrames;
+        }
+
+        /**
+         * Buckets completed since the previous call, for feeding a {@link #progressive} pyramid.
+         */
+        public Chunk takeChunk() {
+            Chunk chunk = new Chunk(firstBucket + drained, Arrays.copyOfRange(mins, drained, length),
+                Arrays.copyOfRange(maxs, drained, length), Arrays.copyOfRange(rms, drained, length));
+            drained = length;
+            return chunk;
+        }
+
+        private void flushBucket() {
+            if (length == mins.length) {
+                mins = Arrays.copyOf(mins, length * 2);
+                maxs = Arrays.copyOf(maxs, length * 2);
+                rms = Arrays.copyOf(rms, length * 2);
+            }
+            mins[length] = currentMin;
+            maxs[length] = currentMax;
+            rms[length] = (float) Math.sqrt(currentSquares / framesInBucket);
+            length++;
+            currentMin = Float.MAX_VALUE;
+            currentMax = -Float.MAX_VALUE;
+            currentSquares = 0;
+            framesInBucket = 0;
+        }
+
+        public WaveformPyramid build() {
+            if (framesInBucket > 0) {
+                flushBucket();
+            }
+            return new WaveformPyramid(bucketSize, sampleRate, totalFrames,
+                Arrays.copyOf(mins, length), Arrays.copyOf(maxs, length), Arrays.copyOf(rms, length), length);
+        }
+
+        /**
+         * Joins consecutive segment builders into one pyramid. Every segment but the last must end on a
+         * bucket boundary, so the per-segment buckets line up without merging partial ones.
+         */
+        public static WaveformPyramid concat(List<Builder> segments) {
+            Builder first = segments.get(0);
+            int length = 0;
+            long totalFrames = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                Builder segment = segments.get(i);
+                if (segment.framesInBucket > 0) {
+                    if (i < segments.size() - 1) {
+                        throw new IllegalArgumentException("Segment " + i + " does not end on a bucket boundary");
+                    }
+                    segment.flushBucket();
+                }
+                length += segment.length;
+                totalFrames += segment.totalFrames;
+            }
+
+            float[] mins = new float[length];
+            float[] maxs = new float[length];
+            float[] rms = new float[length];
+            int position = 0;
+            for (Builder segment : segments) {
+                System.arraycopy(segment.mins, 0, mins, position, segment.length);
+                System.arraycopy(segment.maxs, 0, maxs, position, segment.length);
+                System.arraycopy(segment.rms, 0, rms, position, segment.length);
+                position += segment.length;
+            }
+            return new WaveformPyramid(first.bucketSize, first.sampleRate, totalFrames, mins, maxs, rms, length);
+        }
+    }
+
+    /**
+     * A run of consecutive level-0 buckets.
+     */
+    public static final class Chunk {
+
+        private final int start;
+        private final float[] mins;
+        private final float[] maxs;
+        private final float[] rms;
+
+        private Chunk(int start, float[] mins, float[] maxs, float[] rms) {
+            this.start = start;
+            this.mins = mins;
+            this.maxs = maxs;
+            this.rms = rms;
+        }
+
+        /**
+         * Index of the first level-0 bucket of the chunk.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        public int getLength() {
+            return mins.length;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link JsonlLineSource} over the lines of a document. Line texts share the document's immutable
+ * char sequence instead of copying it.
+ */
+final class DocumentLineSource implements JsonlLineSource {
+    
+    private final Document document;
+    private final List<ChangeListener> listeners = new ArrayList<>();
+    private final DocumentListener documentListener = new DocumentListener() {
+        @Override
+        public void documentChanged(@NotNull DocumentEvent event) {
+            int firstChangedLine = event.getDocument().getLineNumber(event.getOffset());
+            for (ChangeListener listener : new ArrayList<>(listeners)) {
+                listener.onLinesChanged(firstChangedLine);
+            }
+        }
+    };
+    
+    DocumentLineSource(Document document) {
+        this.document = document;
+        document.addDocumentListener(documentListener);
+    }
+    
+    @Override
+    public int getLineCount() {
+        return document.getLineCount();
+    }
+    
+    @Override
+    public long getLineLength(int line) {
+        return document.getLineEndOffset(line) - document.getLineStartOffset(line);
+    }
+    
+    @Override
+    public CharSequence getLineText(int line) {
+        return document.getImmutableCharSequence()
+            .subSequence(document.getLineStartOffset(line), document.getLineEndOffset(line));
+    }
+    
+    @Override
+    public long getModificationStamp() {
+        return document.getModificationStamp();
+    }
+    
+    @Override
+    public JsonlLineSnapshot snapshot() {
+        return new DocumentSnapshot(document.getImmutableCharSequence(), document.getModificationStamp());
+    }
+    
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    void dispose() {
+        listeners.clear();
+        document.removeDocumentListener(documentListener);
+    }
+    
+    /**
+     * The immutable text of one document version. Line starts are found on the first read, off the EDT.
+     */
+    private static final class DocumentSnapshot implements JsonlLineSnapshot {
+        
+        private final CharSequence text;
+        private final long modificationStamp;
+        private int[] lineStarts;
+        
+        DocumentSnapshot(CharSequence text, long modificationStamp) {
+            this.text = text;
+            this.modificationStamp = modificationStamp;
+        }
+        
+        @Override
+        public int getLineCount() {
+            return getLineStarts().length;
+        }
+        
+        @Override
+        public long getModificationStamp() {
+            return modificationStamp;
+        }
+        
+        @Override
+        public Reader newReader() {
+            int[] starts = getLineStarts();
+            return (line, maxLength) -> {
+                int start = starts[line];
+                // Documents always separate lines with a single '\n'
+                int end = line + 1 < starts.length ? starts[line + 1] - 1 : text.length();
+                return end - start > maxLength ? null : text.subSequence(start, end);
+            };
+        }
+        
+        @Override
+        public JsonlLineIndex getLineIndex() {
+            return null;
+        }
+        
+        private synchronized int[] getLineStarts() {
+            if (lineStarts == null) {
+                int count = 1;
+                int length = text.length();
+                for (int i = 0; i < length; i++) {
+                    if (text.charAt(i) == '\n') {
+                        count++;
+                    }
+                }
+                int[] starts = new int[count];
+                int line = 1;
+                for (int i = 0; i < length; i++) {
+                    if (text.charAt(i) == '\n') {
+                        starts[line++] = i + 1;
+                    }
+                }
+                lineStarts = starts;
+            }
+            return lineStarts;
+        }
+    }
+}
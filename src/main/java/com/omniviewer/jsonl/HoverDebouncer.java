@@ -0,0 +1,73 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.application.ApplicationManager;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an action on the EDT once {@link #restart} has not been called for a given delay. All debouncers
+ * share one scheduler thread, which exits when idle. A restart only moves a deadline forward and
+ * allocates nothing: a wake-up is scheduled when none is pending, and a wake-up that comes before the
+ * deadline schedules itself again for the time left.
+ */
+final class HoverDebouncer {
+    
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+    
+    private final long delayNanos;
+    private final Runnable action;
+    private final Runnable wakeUp = this::wakeUp;
+    // All guarded by this
+    private long deadline;
+    private boolean active;
+    private boolean scheduled;
+    
+    HoverDebouncer(int delayMs, Runnable action) {
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMs);
+        this.action = action;
+    }
+    
+    /**
+     * Runs the action after the delay, unless restarted or cancelled before.
+     */
+    synchronized void restart() {
+        deadline = System.nanoTime() + delayNanos;
+        active = true;
+        if (!scheduled) {
+            scheduled = true;
+            SCHEDULER.schedule(wakeUp, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    synchronized void cancel() {
+        active = false;
+    }
+    
+    private void wakeUp() {
+        synchronized (this) {
+            long remaining = deadline - System.nanoTime();
+            if (active && remaining > 0) {
+                SCHEDULER.schedule(wakeUp, remaining, TimeUnit.NANOSECONDS);
+                return;
+            }
+            scheduled = false;
+            if (!active) {
+                return;
+            }
+            active = false;
+        }
+        ApplicationManager.getApplication().invokeLater(action);
+    }
+    
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "OmniViewer hover debouncer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setKeepAliveTime(10, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,64 @@
+package com.omniviewer.jsonl;
+
+/**
+ * Estimates the number of distinct values in a fixed 4 KB: 2^12 registers, each holding the longest
+ * run of leading zeros among the hashes routed to it. Sketches of disjoint parts of a file merge into
+ * the sketch of the whole by taking the larger register. The standard error is about 1.6%.
+ */
+final class HyperLogLog {
+    
+    private static final int PRECISION = 12;
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+    
+    private final byte[] registers = new byte[REGISTER_COUNT];
+    
+    void add(long hash) {
+        int register = (int) (hash >>> (64 - PRECISION));
+        // Position of the first one bit after the register bits, kept below 54 by a sentinel bit
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+    
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+    
+    long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        // While many registers are empty, counting them is the better estimate
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    /**
+     * 64-bit hash of a range of chars: FNV-1a, then the MurmurHash3 finalizer to spread it over all bits.
+     */
+    static long hash(CharSequence text, int start, int end) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,71 @@
+package com.omniviewer.jsonl;
+
+import java.util.Arrays;
+
+/**
+ * Where each object and array of a JSON text ends, by where it starts. Built in one pass of the
+ * {@link JsonTokenizer}, so that a {@link JsonTreePanel} can step over a nested value without tokenizing
+ * it again. Containers are numbered in order of their opening bracket, which keeps the starts sorted.
+ */
+final class JsonContainerIndex {
+    
+    private final int[] starts;
+    // End of the closing bracket, -1 for a container the text ends inside
+    private final int[] ends;
+    
+    private JsonContainerIndex(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+    
+    /**
+     * Indexes the containers of {@code text} up to its end or its first error. Safe to call off the EDT.
+     */
+    static JsonContainerIndex build(CharSequence text) {
+        JsonTokenizer tokenizer = new JsonTokenizer();
+        tokenizer.reset(text);
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int count = 0;
+        // Numbers of the containers not closed yet, innermost last
+        int[] open = new int[16];
+        int depth = 0;
+        for (JsonTokenizer.TokenType token = tokenizer.next();
+             token != JsonTokenizer.TokenType.END && token != JsonTokenizer.TokenType.ERROR;
+             token = tokenizer.next()) {
+            switch (token) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    starts[count] = tokenizer.getTokenStart();
+                    ends[count] = -1;
+                    open[depth++] = count++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    if (depth > 0) {
+                        ends[open[--depth]] = tokenizer.getTokenEnd();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new JsonContainerIndex(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count));
+    }
+    
+    /**
+     * End of the object or array whose opening bracket is at {@code start}, or -1 if it is not closed
+     * or no container starts there.
+     */
+    int getEnd(int start) {
+        int i = Arrays.binarySearch(starts, start);
+        return i >= 0 ? ends[i] : -1;
+    }
+}
@@ -0,0 +1,332 @@
+package com.omniviewer.jsonl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Path to a value inside a JSON record, such as {@code .user.name}, {@code .tags[0]} or
+ * {@code ["key with spaces"]}. A leading dot is optional.
+ * <p>
+ * A {@link Locator} finds the value of a path in one line by streaming its tokens, skipping every
+ * sibling on the way and stopping as soon as the value is reached.
+ */
+public final class JsonPath {
+    
+    // Segments are either a key (String) or an array index (Integer)
+    private final Object[] segments;
+    // Keys as UTF-8 bytes seen through Latin1CharSequence, for comparing against raw file bytes
+    private final String[] latin1Keys;
+    
+    private JsonPath(Object[] segments) {
+        this.segments = segments;
+        this.latin1Keys = new String[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] instanceof String) {
+                latin1Keys[i] = toLatin1((String) segments[i]);
+            }
+        }
+    }
+    
+    /**
+     * Path of a top-level key.
+     */
+    public static JsonPath ofKey(String key) {
+        return new JsonPath(new Object[]{key});
+    }
+    
+    /**
+     * @throws IllegalArgumentException with a message pointing at the problem
+     */
+    public static JsonPath parse(String expression) {
+        List<Object> segments = new ArrayList<>();
+        int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (c == '.') {
+                int start = ++i;
+                while (i < length && isNameChar(expression.charAt(i))) {
+                    i++;
+                }
+                if (i == start) {
+                    if (segments.isEmpty() && i < length && expression.charAt(i) == '[') {
+                        // ".[0]" and '.["key"]' start with an optional dot
+                        continue;
+                    }
+                    throw new IllegalArgumentException("Expected a key after '.' at " + start + " in " + expression);
+                }
+                segments.add(expression.substring(start, i));
+            } else if (c == '[') {
+                i++;
+                if (i < length && expression.charAt(i) == '"') {
+                    StringBuilder key = new StringBuilder();
+                    i++;
+                    while (i < length && expression.charAt(i) != '"') {
+                        if (expression.charAt(i) == '\\' && i + 1 < length) {
+                            i++;
+                        }
+                        key.append(expression.charAt(i++));
+                    }
+                    if (i >= length) {
+                        throw new IllegalArgumentException("Unterminated key in " + expression);
+                    }
+                    i++;
+                    segments.add(key.toString());
+                } else {
+                    int start = i;
+                    while (i < length && Character.isDigit(expression.charAt(i))) {
+                        i++;
+                    }
+                    if (i == start || i - start > 9) {
+                        throw new IllegalArgumentException("Expected an index at " + start + " in " + expression);
+                    }
+                    segments.add(Integer.parseInt(expression.substring(start, i)));
+                }
+                if (i >= length || expression.charAt(i) != ']') {
+                    throw new IllegalArgumentException("Expected ']' at " + i + " in " + expression);
+                }
+                i++;
+            } else if (segments.isEmpty() && isNameChar(c)) {
+                // A bare first key, as in "user.name"
+                int start = i;
+                while (i < length && isNameChar(expression.charAt(i))) {
+                    i++;
+                }
+                segments.add(expression.substring(start, i));
+            } else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' at " + i + " in " + expression);
+            }
+        }
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("Empty path");
+        }
+        return new JsonPath(segments.toArray());
+    }
+    
+    static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '$' || c == '@';
+    }
+    
+    /**
+     * This path followed by a key.
+     */
+    JsonPath withKey(String key) {
+        Object[] extended = Arrays.copyOf(segments, segments.length + 1);
+        extended[segments.length] = key;
+        return new JsonPath(extended);
+    }
+    
+    /**
+     * Key of the first segment, null if the path starts with an array index.
+     */
+    public String getFirstKey() {
+        return segments[0] instanceof String ? (String) segments[0] : null;
+    }
+    
+    /**
+     * The key segments, in order, without the array indexes.
+     */
+    public List<String> getKeys() {
+        List<String> keys = new ArrayList<>();
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                keys.add((String) segment);
+            }
+        }
+        return keys;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JsonPath && Arrays.equals(segments, ((JsonPath) o).segments);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(segments);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Object segment : segments) {
+            if (segment instanceof Integer) {
+                result.append('[').append(segment).append(']');
+            } else if (isName((String) segment)) {
+                result.append('.').append(segment);
+            } else {
+                result.append("[\"").append(((String) segment).replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]");
+            }
+        }
+        return result.toString();
+    }
+    
+    private static boolean isName(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (!isNameChar(key.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public Locator newLocator() {
+        return new Locator();
+    }
+    
+    /**
+     * Finds the value of the path in a line. Lines are not validated as a whole, a malformed line either
+     * fails or yields the value found before the error. Not thread-safe, use one locator per thread.
+     */
+    public final class Locator {
+        
+        private final JsonTokenizer tokenizer = new JsonTokenizer();
+        private int valueStart;
+        private int valueEnd;
+        
+        /**
+         * Returns the first token of the value, or null when the path does not exist in the line. The value
+         * spans {@link #getValueStart()} to {@link #getValueEnd()}.
+         */
+        public JsonTokenizer.TokenType locate(CharSequence text) {
+            tokenizer.reset(text);
+            boolean rawBytes = text instanceof Latin1CharSequence;
+            JsonTokenizer.TokenType token = tokenizer.next();
+            for (int s = 0; s < segments.length; s++) {
+                Object segment = segments[s];
+                if (segment instanceof Integer) {
+                    if (token != JsonTokenizer.TokenType.BEGIN_ARRAY || !findElement((Integer) segment)) {
+                        return null;
+                    }
+                } else {
+                    String key = rawBytes ? latin1Keys[s] : (String) segment;
+                    if (token != JsonTokenizer.TokenType.BEGIN_OBJECT || !findKey(text, key, (String) segment)) {
+                        return null;
+                    }
+                }
+                token = tokenizer.next();
+            }
+            
+            switch (token) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                case STRING:
+                case NUMBER:
+                case TRUE:
+                case FALSE:
+                case NULL:
+                    break;
+                default:
+                    // An index past the end of an array, or a malformed line
+                    return null;
+            }
+            valueStart = tokenizer.getTokenStart();
+            if ((token == JsonTokenizer.TokenType.BEGIN_OBJECT || token == JsonTokenizer.TokenType.BEGIN_ARRAY)
+                && !tokenizer.skipNested()) {
+                return null;
+            }
+            valueEnd = tokenizer.getTokenEnd();
+            return token;
+        }
+        
+        public int getValueStart() {
+            return valueStart;
+        }
+        
+        public int getValueEnd() {
+            return valueEnd;
+        }
+        
+        /**
+         * Moves past the ':' of the given key of the object just opened.
+         */
+        private boolean findKey(CharSequence text, String rawKey, String key) {
+            while (true) {
+                JsonTokenizer.TokenType token = tokenizer.next();
+                if (token != JsonTokenizer.TokenType.STRING) {
+                    return false;
+                }
+                boolean matches = stringEquals(text, tokenizer.getTokenStart() + 1, tokenizer.getTokenEnd() - 1, rawKey, key);
+                if (tokenizer.next() != JsonTokenizer.TokenType.COLON) {
+                    return false;
+                }
+                if (matches) {
+                    return true;
+                }
+                if (!skipValue() || tokenizer.next() != JsonTokenizer.TokenType.COMMA) {
+                    return false;
+                }
+            }
+        }
+        
+        /**
+         * Moves to just before the element with the given index of the array just opened.
+         */
+        private boolean findElement(int index) {
+            for (int i = 0; i < index; i++) {
+                if (!skipValue() || tokenizer.next() != JsonTokenizer.TokenType.COMMA) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean skipValue() {
+            JsonTokenizer.TokenType token = tokenizer.next();
+            switch (token) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    return tokenizer.skipNested();
+                case STRING:
+                case NUMBER:
+                case TRUE:
+                case FALSE:
+                case NULL:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+    
+    /**
+     * Compares the content of a string token, quotes excluded from {@code start}-{@code end}, with a value.
+     * {@code raw} is the value in the form of the text: UTF-8 bytes as chars for a {@link Latin1CharSequence},
+     * see {@link #toLatin1}. Tokens with escapes are decoded first, which is rarely needed.
+     */
+    static boolean stringEquals(CharSequence text, int start, int end, String raw, String value) {
+        int length = end - start;
+        if (length == raw.length()) {
+            boolean equal = true;
+            for (int i = 0; i < length && equal; i++) {
+                equal = text.charAt(start + i) == raw.charAt(i);
+            }
+            if (equal) {
+                return true;
+            }
+        }
+        return length >= raw.length() && containsBackslash(text, start, end)
+            && JsonlRowParser.decodeString(text, start - 1, end + 1, Integer.MAX_VALUE).equals(value);
+    }
+    
+    static boolean containsBackslash(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The UTF-8 bytes of a string as chars, the way a {@link Latin1CharSequence} shows them.
+     */
+    static String toLatin1(String value) {
+        return new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.omniviewer.jsonl;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A record ready for a {@link JsonPopupComponent}: its trimmed text and, for records shown as text,
+ * the first slice already printed, for records shown as a tree, the {@link JsonContainerIndex} of its
+ * text. Prepared off the EDT, so opening the popup only lays it out, and kept by the hover cache to open
+ * it again at no cost.
+ */
+final class JsonPopupContent {
+    
+    private final String json;
+    private JsonStyledPrinter printer;
+    private JsonContainerIndex containers;
+    
+    JsonPopupContent(String json) {
+        this.json = json;
+    }
+    
+    /**
+     * Validates and formats one line, or returns null when it is not JSON. Safe to call off the EDT.
+     */
+    @Nullable
+    static JsonPopupContent prepare(CharSequence line) {
+        if (!JsonValidator.isValid(line)) {
+            return null;
+        }
+        JsonPopupContent content = new JsonPopupContent(line.toString().trim());
+        if (content.isTreeMode()) {
+            content.getContainers();
+        } else {
+            content.getPrinter();
+        }
+        return content;
+    }
+    
+    String getJson() {
+        return json;
+    }
+    
+    /**
+     * Large records open as a tree, whose nodes are built on expansion.
+     */
+    boolean isTreeMode() {
+        return json.length() >= JsonPopupComponent.TREE_MODE_MIN_CHARS;
+    }
+    
+    /**
+     * The printer of the text view, with at least its first slice printed.
+     */
+    JsonStyledPrinter getPrinter() {
+        if (printer == null) {
+            printer = new JsonStyledPrinter(json);
+            printer.print(JsonPopupComponent.MAX_TEXT_CHARS);
+        }
+        return printer;
+    }
+    
+    /**
+     * Where the objects and arrays of the record end, for the tree view.
+     */
+    JsonContainerIndex getContainers() {
+        if (containers == null) {
+            containers = JsonContainerIndex.build(json);
+        }
+        return containers;
+    }
+}
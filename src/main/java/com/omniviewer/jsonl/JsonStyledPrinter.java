@@ -0,0 +1,292 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.ui.JBColor;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pretty-prints JSON text into a {@link StyledDocument} in one pass over its tokens: indentation is
+ * written as containers open and close, and each token goes in with the style of its kind, keys told
+ * apart from string values by where they occur. Nothing is built in between but the characters of
+ * each run, and a slice goes into the document as a single batch of styled runs and paragraphs.
+ * <p>
+ * Output is produced in slices of a given size, each {@link #print} continuing where the last one
+ * stopped, so a huge record only costs what is actually shown. Text that is not JSON is appended as
+ * it is from the first error on.
+ */
+final class JsonStyledPrinter {
+    
+    static final Color KEY_COLOR = new JBColor(new Color(0x871094), new Color(0x9876AA));
+    static final Color STRING_COLOR = new JBColor(new Color(0x067D17), new Color(0x6A8759));
+    static final Color NUMBER_COLOR = new JBColor(new Color(0x1750EB), new Color(0x6897BB));
+    static final Color KEYWORD_COLOR = new JBColor(new Color(0x0033B3), new Color(0xCC7832));
+    
+    private static final int INDENT = 2;
+    
+    private final CharSequence text;
+    private final Output document = new Output();
+    private final JsonTokenizer tokenizer = new JsonTokenizer();
+    private final AttributeSet plainStyle = new SimpleAttributeSet();
+    private final AttributeSet keyStyle = style(KEY_COLOR, false);
+    private final AttributeSet stringStyle = style(STRING_COLOR, false);
+    private final AttributeSet numberStyle = style(NUMBER_COLOR, false);
+    private final AttributeSet keywordStyle = style(KEYWORD_COLOR, false);
+    private final AttributeSet nullStyle = style(JBColor.GRAY, true);
+    private final AttributeSet paragraphStyle = document.getParagraphElement(0).getAttributes();
+    // Output of the current run
+    private char[] buffer = new char[1024];
+    private int length;
+    private final List<DefaultStyledDocument.ElementSpec> specs = new ArrayList<>();
+    private int runStart;
+    private AttributeSet runStyle;
+    
+    // Open containers, true for objects
+    private boolean[] objects = new boolean[16];
+    private int depth;
+    private boolean expectingKey;
+    // A container was just opened: a newline goes before its first value, none if it is empty
+    private boolean justOpened;
+    private boolean newlinePending;
+    // Rest of a token cut at the end of the previous slice
+    private int pendingStart;
+    private int pendingEnd;
+    private AttributeSet pendingStyle;
+    private int written;
+    private boolean finished;
+    
+    JsonStyledPrinter(CharSequence text) {
+        this.text = text;
+        tokenizer.reset(text);
+    }
+    
+    /**
+     * The document printed into, to be shown once the first slice is in.
+     */
+    StyledDocument getDocument() {
+        return document;
+    }
+    
+    boolean isFinished() {
+        return finished;
+    }
+    
+    /**
+     * Characters of the input printed so far.
+     */
+    int getInputPosition() {
+        return hasPending() ? pendingStart : tokenizer.getTokenEnd();
+    }
+    
+    int getInputLength() {
+        return text.length();
+    }
+    
+    /**
+     * Appends about {@code maxChars} more characters of output to the document.
+     */
+    void print(int maxChars) {
+        int limit = written + maxChars;
+        if (hasPending()) {
+            emitRange(pendingStart, pendingEnd, pendingStyle, limit);
+        }
+        while (!finished && !hasPending() && written < limit) {
+            JsonTokenizer.TokenType token = tokenizer.next();
+            int start = tokenizer.getTokenStart();
+            int end = tokenizer.getTokenEnd();
+            switch (token) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    startValue();
+                    emit(token == JsonTokenizer.TokenType.BEGIN_OBJECT ? "{" : "[", plainStyle);
+                    push(token == JsonTokenizer.TokenType.BEGIN_OBJECT);
+                    justOpened = true;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    if (depth > 0) {
+                        depth--;
+                    }
+                    if (!justOpened) {
+                        newline();
+                    }
+                    justOpened = false;
+                    newlinePending = false;
+                    emit(token == JsonTokenizer.TokenType.END_OBJECT ? "}" : "]", plainStyle);
+                    break;
+                case COMMA:
+                    emit(",", plainStyle);
+                    newlinePending = true;
+                    expectingKey = depth > 0 && objects[depth - 1];
+                    break;
+                case COLON:
+                    emit(": ", plainStyle);
+                    expectingKey = false;
+                    break;
+                case STRING:
+                    boolean key = expectingKey;
+                    startValue();
+                    emitRange(start, end, key ? keyStyle : stringStyle, limit);
+                    break;
+                case NUMBER:
+                    startValue();
+                    emitRange(start, end, numberStyle, limit);
+                    break;
+                case TRUE:
+                case FALSE:
+                    startValue();
+                    emitRange(start, end, keywordStyle, limit);
+                    break;
+                case NULL:
+                    startValue();
+                    emitRange(start, end, nullStyle, limit);
+                    break;
+                case ERROR:
+                    // Not JSON from here on, shown unformatted
+                    if (written > 0) {
+                        newline();
+                    }
+                    emitRange(start, text.length(), plainStyle, limit);
+                    tokenizer.reset(text, text.length(), text.length());
+                    break;
+                default:
+                    finished = true;
+                    break;
+            }
+        }
+        flush();
+        // Lines carry no trailing whitespace, the last token ends the input
+        if (!hasPending() && tokenizer.getTokenEnd() >= text.length()) {
+            finished = true;
+        }
+    }
+    
+    private boolean hasPending() {
+        return pendingEnd > pendingStart;
+    }
+    
+    /**
+     * Moves to the line of the next value, when a container was opened or a comma written before.
+     */
+    private void startValue() {
+        if (justOpened || newlinePending) {
+            newline();
+        }
+        justOpened = false;
+        newlinePending = false;
+        expectingKey = false;
+    }
+    
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(objects, 0, grown, 0, depth);
+            objects = grown;
+        }
+        objects[depth++] = object;
+        expectingKey = object;
+    }
+    
+    private void newline() {
+        switchStyle(plainStyle);
+        ensureCapacity(1 + depth * INDENT);
+        buffer[length++] = '\n';
+        // A line break ends the paragraph
+        endRun();
+        specs.add(new DefaultStyledDocument.ElementSpec(null, DefaultStyledDocument.ElementSpec.EndTagType));
+        specs.add(new DefaultStyledDocument.ElementSpec(paragraphStyle, DefaultStyledDocument.ElementSpec.StartTagType));
+        Arrays.fill(buffer, length, length + depth * INDENT, ' ');
+        length += depth * INDENT;
+        written += 1 + depth * INDENT;
+    }
+    
+    private void emit(String token, AttributeSet style) {
+        switchStyle(style);
+        ensureCapacity(token.length());
+        token.getChars(0, token.length(), buffer, length);
+        length += token.length();
+        written += token.length();
+    }
+    
+    /**
+     * Appends a range of the input, up to the output limit; what is left over is printed first next time.
+     */
+    private void emitRange(int start, int end, AttributeSet style, int limit) {
+        int count = Math.min(end - start, Math.max(0, limit - written));
+        switchStyle(style);
+        ensureCapacity(count);
+        for (int i = start; i < start + count; i++) {
+            buffer[length++] = text.charAt(i);
+        }
+        written += count;
+        pendingStart = start + count;
+        pendingEnd = end;
+        pendingStyle = style;
+    }
+    
+    private void switchStyle(AttributeSet style) {
+        if (style != runStyle) {
+            endRun();
+            runStyle = style;
+        }
+    }
+    
+    private void endRun() {
+        if (length > runStart) {
+            // A spec copies the whole array it is given, so each run gets its own
+            char[] chars = Arrays.copyOfRange(buffer, runStart, length);
+            specs.add(new DefaultStyledDocument.ElementSpec(runStyle, DefaultStyledDocument.ElementSpec.ContentType,
+                chars, 0, chars.length));
+        }
+        runStart = length;
+    }
+    
+    private void ensureCapacity(int count) {
+        if (length + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+        }
+    }
+    
+    /**
+     * Inserts the slice printed so far at the end of the document.
+     */
+    private void flush() {
+        endRun();
+        if (!specs.isEmpty()) {
+            document.append(specs.toArray(new DefaultStyledDocument.ElementSpec[0]));
+            specs.clear();
+        }
+        length = 0;
+        runStart = 0;
+    }
+    
+    private static AttributeSet style(Color color, boolean italic) {
+        SimpleAttributeSet style = new SimpleAttributeSet();
+        StyleConstants.setForeground(style, color);
+        StyleConstants.setItalic(style, italic);
+        return style;
+    }
+    
+    /**
+     * Takes a whole slice at once: one insertion and one change event instead of one per run.
+     */
+    private static final class Output extends DefaultStyledDocument {
+        
+        void append(ElementSpec[] specs) {
+            try {
+                insert(getLength(), specs);
+            } catch (BadLocationException e) {
+                // Only ever appended at the end
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.omniviewer.jsonl;
+
+/**
+ * Pull tokenizer for JSON text. Tokens are reported as a type plus a range of the input, nothing is
+ * allocated per token. Strings and numbers are checked against the JSON grammar while they are skipped,
+ * escapes are not decoded.
+ * <p>
+ * Works on any {@link CharSequence}: document text, or bytes seen through {@link Latin1CharSequence}.
+ * UTF-8 multi-byte sequences only ever occur inside strings, where they are opaque to the grammar.
+ */
+public final class JsonTokenizer {
+    
+    public enum TokenType {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        COLON,
+        COMMA,
+        STRING,
+        NUMBER,
+        TRUE,
+        FALSE,
+        NULL,
+        END,
+        ERROR
+    }
+    
+    private CharSequence text;
+    private int position;
+    private int end;
+    private int tokenStart;
+    private int tokenEnd;
+    private String errorMessage;
+    
+    public void reset(CharSequence text) {
+        reset(text, 0, text.length());
+    }
+    
+    public void reset(CharSequence text, int start, int end) {
+        this.text = text;
+        this.position = start;
+        this.end = end;
+        this.tokenStart = start;
+        this.tokenEnd = start;
+        this.errorMessage = null;
+    }
+    
+    public TokenType next() {
+        skipWhitespace();
+        tokenStart = position;
+        if (position >= end) {
+            tokenEnd = position;
+            return TokenType.END;
+        }
+        
+        char c = text.charAt(position);
+        switch (c) {
+            case '{':
+                return single(TokenType.BEGIN_OBJECT);
+            case '}':
+                return single(TokenType.END_OBJECT);
+            case '[':
+                return single(TokenType.BEGIN_ARRAY);
+            case ']':
+                return single(TokenType.END_ARRAY);
+            case ':':
+                return single(TokenType.COLON);
+            case ',':
+                return single(TokenType.COMMA);
+            case '"':
+                return string();
+            case 't':
+                return literal("true", TokenType.TRUE);
+            case 'f':
+                return literal("false", TokenType.FALSE);
+            case 'n':
+                return literal("null", TokenType.NULL);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return number();
+                }
+                return error("Unexpected character");
+        }
+    }
+    
+    /**
+     * Skips the rest of an object or array whose {@link TokenType#BEGIN_OBJECT} or {@link TokenType#BEGIN_ARRAY}
+     * was the last token, up to its closing token. Brackets are only counted, not matched: the text is
+     * expected to have been validated. Returns false if the input ends or an error comes first.
+     */
+    public boolean skipNested() {
+        int depth = 1;
+        while (depth > 0) {
+            switch (next()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case END:
+                case ERROR:
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Start of the current token, or of the offending character after {@link TokenType#ERROR}.
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+    
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+    
+    public CharSequence getText() {
+        return text;
+    }
+    
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+    
+    private void skipWhitespace() {
+        while (position < end) {
+            char c = text.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+    
+    private TokenType single(TokenType type) {
+        position++;
+        tokenEnd = position;
+        return type;
+    }
+    
+    private TokenType literal(String literal, TokenType type) {
+        int length = literal.length();
+        if (end - position < length) {
+            return error("Unexpected end of input");
+        }
+        for (int i = 1; i < length; i++) {
+            if (text.charAt(position + i) != literal.charAt(i)) {
+                position += i;
+                return error("Invalid literal");
+            }
+        }
+        position += length;
+        tokenEnd = position;
+        return type;
+    }
+    
+    private TokenType string() {
+        int i = position + 1;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                position = i + 1;
+                tokenEnd = position;
+                return TokenType.STRING;
+            }
+            if (c == '\\') {
+                if (i + 1 >= end) {
+                    break;
+                }
+                char escaped = text.charAt(i + 1);
+                if (escaped == 'u') {
+                    for (int h = i + 2; h < i + 6; h++) {
+                        if (h >= end || Character.digit(text.charAt(h), 16) < 0) {
+                            position = Math.min(h, end);
+                            return error("Invalid unicode escape");
+                        }
+                    }
+                    i += 6;
+                    continue;
+                }
+                if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                    position = i + 1;
+                    return error("Invalid escape");
+                }
+                i += 2;
+                continue;
+            }
+            if (c < 0x20) {
+                position = i;
+                return error("Control character in string");
+            }
+            i++;
+        }
+        position = end;
+        return error("Unterminated string");
+    }
+    
+    private TokenType number() {
+        int i = position;
+        if (text.charAt(i) == '-') {
+            i++;
+        }
+        if (i >= end) {
+            position = i;
+            return error("Unexpected end of input");
+        }
+        char c = text.charAt(i);
+        if (c == '0') {
+            i++;
+        } else if (c >= '1' && c <= '9') {
+            i = skipDigits(i + 1);
+        } else {
+            position = i;
+            return error("Invalid number");
+        }
+        if (i < end && text.charAt(i) == '.') {
+            int digits = skipDigits(i + 1);
+            if (digits == i + 1) {
+                position = digits;
+                return error("Invalid number");
+            }
+            i = digits;
+        }
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            int digits = skipDigits(i);
+            if (digits == i) {
+                position = digits;
+                return error("Invalid number");
+            }
+            i = digits;
+        }
+        position = i;
+        tokenEnd = i;
+        return TokenType.NUMBER;
+    }
+    
+    private int skipDigits(int i) {
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+    
+    private TokenType error(String message) {
+        errorMessage = message;
+        tokenStart = position;
+        tokenEnd = position;
+        return TokenType.ERROR;
+    }
+}
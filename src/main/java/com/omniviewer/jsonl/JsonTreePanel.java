@@ -0,0 +1,320 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.JBColor;
+
+import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * Collapsible tree over one JSON record. Nodes only hold the range of their value in the text: the
+ * children of an object or array are tokenized when it is first expanded, and a nested child is stepped
+ * over using the end the {@link JsonContainerIndex} recorded for it, so opening a multi-megabyte record
+ * costs one level of tokens and no copy of the text. The index itself is built off the EDT, with the
+ * popup content.
+ * <p>
+ * At most {@link #MAX_CHILDREN_PER_EXPANSION} children are added at a time, the rest behind a
+ * "load more" node, and no more than {@link #MAX_NODES} nodes are ever created for one record.
+ */
+final class JsonTreePanel extends JPanel {
+    
+    static final int MAX_NODES = 10_000;
+    static final int MAX_CHILDREN_PER_EXPANSION = 500;
+    private static final int MAX_VALUE_CHARS = 200;
+    
+    private final CharSequence text;
+    private final JsonContainerIndex containers;
+    private final JsonTokenizer tokenizer = new JsonTokenizer();
+    private final DefaultTreeModel model;
+    private final JTree tree;
+    private int nodeCount;
+    
+    JsonTreePanel(CharSequence text, JsonContainerIndex containers) {
+        super(new BorderLayout());
+        this.text = text;
+        this.containers = containers;
+        
+        DefaultMutableTreeNode root = createRoot();
+        // The root starts out expanded, without an expansion event
+        if (root.getUserObject() instanceof ValueNode) {
+            expand(root, (ValueNode) root.getUserObject());
+        }
+        model = new DefaultTreeModel(root);
+        tree = new JTree(model);
+        tree.setRootVisible(true);
+        tree.setShowsRootHandles(true);
+        tree.setCellRenderer(new ValueRenderer());
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+                if (node.getUserObject() instanceof ValueNode) {
+                    ValueNode value = (ValueNode) node.getUserObject();
+                    if (!value.loaded) {
+                        expand(node, value);
+                        model.nodeStructureChanged(node);
+                    }
+                }
+            }
+            
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {
+                // Loaded children are kept for the next expansion
+            }
+        });
+        tree.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                TreePath path = tree.getPathForLocation(e.getX(), e.getY());
+                if (path != null && ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject() instanceof More) {
+                    loadMore((DefaultMutableTreeNode) path.getLastPathComponent());
+                }
+            }
+        });
+        JScrollPane scrollPane = new JScrollPane(tree);
+        scrollPane.setBorder(null);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+    
+    JComponent getPreferredFocusedComponent() {
+        return tree;
+    }
+    
+    private DefaultMutableTreeNode createRoot() {
+        tokenizer.reset(text);
+        JsonTokenizer.TokenType token = tokenizer.next();
+        int start = tokenizer.getTokenStart();
+        if (!isValueStart(token)) {
+            return new DefaultMutableTreeNode(token == JsonTokenizer.TokenType.END ? "Empty line" : "Not JSON");
+        }
+        if (isContainerStart(token)) {
+            // Unterminated: the tree shows what can be read before the end
+            int end = containers.getEnd(start);
+            return createNode(new ValueNode(null, -1, token, start, end >= 0 ? end : text.length()));
+        }
+        return createNode(new ValueNode(null, -1, token, start, tokenizer.getTokenEnd()));
+    }
+    
+    private DefaultMutableTreeNode createNode(ValueNode value) {
+        nodeCount++;
+        DefaultMutableTreeNode node = new DefaultMutableTreeNode(value);
+        if (isContainerStart(value.type)) {
+            // Placeholder for the expand handle, replaced on first expansion
+            node.add(new DefaultMutableTreeNode("Loading..."));
+        }
+        return node;
+    }
+    
+    /**
+     * Replaces the placeholder of a container by its first children.
+     */
+    private void expand(DefaultMutableTreeNode node, ValueNode value) {
+        value.loaded = true;
+        node.removeAllChildren();
+        if (isContainerStart(value.type)) {
+            loadChildren(node, value);
+        }
+    }
+    
+    private void loadMore(DefaultMutableTreeNode moreNode) {
+        DefaultMutableTreeNode parent = (DefaultMutableTreeNode) moreNode.getParent();
+        if (nodeCount >= MAX_NODES || parent == null) {
+            return;
+        }
+        parent.remove(moreNode);
+        loadChildren(parent, (ValueNode) parent.getUserObject());
+        model.nodeStructureChanged(parent);
+        tree.expandPath(new TreePath(parent.getPath()));
+    }
+    
+    /**
+     * Adds the next children of an object or array, from where the last call stopped.
+     */
+    private void loadChildren(DefaultMutableTreeNode node, ValueNode container) {
+        boolean object = container.type == JsonTokenizer.TokenType.BEGIN_OBJECT;
+        tokenizer.reset(text, container.resumeOffset, container.end);
+        JsonTokenizer.TokenType token = tokenizer.next();
+        int added = 0;
+        while (token != JsonTokenizer.TokenType.END_OBJECT && token != JsonTokenizer.TokenType.END_ARRAY) {
+            if (added >= MAX_CHILDREN_PER_EXPANSION || nodeCount >= MAX_NODES) {
+                container.resumeOffset = tokenizer.getTokenStart();
+                node.add(new DefaultMutableTreeNode(new More(nodeCount >= MAX_NODES)));
+                return;
+            }
+            String key = null;
+            if (object) {
+                if (token != JsonTokenizer.TokenType.STRING) {
+                    break;
+                }
+                key = JsonlRowParser.decodeString(text, tokenizer.getTokenStart(), tokenizer.getTokenEnd(), MAX_VALUE_CHARS);
+                if (tokenizer.next() != JsonTokenizer.TokenType.COLON) {
+                    break;
+                }
+                token = tokenizer.next();
+            }
+            if (!isValueStart(token)) {
+                break;
+            }
+            int start = tokenizer.getTokenStart();
+            int end = tokenizer.getTokenEnd();
+            if (isContainerStart(token)) {
+                end = containers.getEnd(start);
+                if (end < 0) {
+                    break;
+                }
+                // Tokenizing goes on past the child rather than through it
+                tokenizer.reset(text, end, container.end);
+            }
+            node.add(createNode(new ValueNode(key, object ? -1 : container.childCount, token, start, end)));
+            container.childCount++;
+            added++;
+            
+            token = tokenizer.next();
+            if (token == JsonTokenizer.TokenType.COMMA) {
+                token = tokenizer.next();
+            } else if (token != JsonTokenizer.TokenType.END_OBJECT && token != JsonTokenizer.TokenType.END_ARRAY) {
+                break;
+            }
+        }
+        if (token == JsonTokenizer.TokenType.END_OBJECT || token == JsonTokenizer.TokenType.END_ARRAY) {
+            container.complete = true;
+        } else {
+            node.add(new DefaultMutableTreeNode("Invalid JSON at " + (tokenizer.getTokenStart() + 1)));
+        }
+    }
+    
+    private static boolean isValueStart(JsonTokenizer.TokenType token) {
+        switch (token) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+            case STRING:
+            case NUMBER:
+            case TRUE:
+            case FALSE:
+            case NULL:
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    private static boolean isContainerStart(JsonTokenizer.TokenType token) {
+        return token == JsonTokenizer.TokenType.BEGIN_OBJECT || token == JsonTokenizer.TokenType.BEGIN_ARRAY;
+    }
+    
+    /**
+     * A value of the record, by its range in the text. Containers also track how far their children
+     * were loaded.
+     */
+    private static final class ValueNode {
+        final String key;
+        final int index;
+        final JsonTokenizer.TokenType type;
+        final int start;
+        final int end;
+        boolean loaded;
+        boolean complete;
+        int childCount;
+        // Where the next child starts, past the opening bracket at first
+        int resumeOffset;
+        
+        ValueNode(String key, int index, JsonTokenizer.TokenType type, int start, int end) {
+            this.key = key;
+            this.index = index;
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.resumeOffset = start + 1;
+        }
+    }
+    
+    /**
+     * Stands for the children not loaded yet; clicking it loads the next batch.
+     */
+    private static final class More {
+        final boolean limitReached;
+        
+        More(boolean limitReached) {
+            this.limitReached = limitReached;
+        }
+        
+        @Override
+        public String toString() {
+            return limitReached
+                ? "Only the first " + MAX_NODES + " nodes are shown"
+                : "Click to load " + MAX_CHILDREN_PER_EXPANSION + " more...";
+        }
+    }
+    
+    private final class ValueRenderer extends DefaultTreeCellRenderer {
+        
+        @Override
+        public Component getTreeCellRendererComponent(JTree tree, Object value, boolean selected, boolean expanded,
+                                                      boolean leaf, int row, boolean hasFocus) {
+            Object userObject = ((DefaultMutableTreeNode) value).getUserObject();
+            if (!(userObject instanceof ValueNode)) {
+                super.getTreeCellRendererComponent(tree, userObject, selected, expanded, leaf, row, hasFocus);
+                if (!selected) {
+                    setForeground(JBColor.GRAY);
+                }
+                return this;
+            }
+            
+            ValueNode node = (ValueNode) userObject;
+            StringBuilder label = new StringBuilder();
+            if (node.key != null) {
+                label.append(node.key).append(": ");
+            } else if (node.index >= 0) {
+                label.append('[').append(node.index).append("] ");
+            }
+            label.append(describe(node));
+            super.getTreeCellRendererComponent(tree, label.toString(), selected, expanded, leaf, row, hasFocus);
+            setIcon(null);
+            if (!selected) {
+                setForeground(colorOf(node));
+            }
+            return this;
+        }
+        
+        private String describe(ValueNode node) {
+            switch (node.type) {
+                case BEGIN_OBJECT:
+                    return node.complete
+                        ? "{" + (node.childCount == 1 ? "1 key" : node.childCount + " keys") + "}"
+                        : "{…} " + StringUtil.formatFileSize(node.end - node.start);
+                case BEGIN_ARRAY:
+                    return node.complete
+                        ? "[" + (node.childCount == 1 ? "1 item" : node.childCount + " items") + "]"
+                        : "[…] " + StringUtil.formatFileSize(node.end - node.start);
+                case STRING:
+                    return "\"" + JsonlRowParser.decodeString(text, node.start, node.end, MAX_VALUE_CHARS) + "\"";
+                default:
+                    return JsonlRowParser.displayText(text, node.type, node.start, node.end, MAX_VALUE_CHARS);
+            }
+        }
+        
+        private Color colorOf(ValueNode node) {
+            switch (node.type) {
+                case STRING:
+                    return JsonStyledPrinter.STRING_COLOR;
+                case NUMBER:
+                    return JsonStyledPrinter.NUMBER_COLOR;
+                case TRUE:
+                case FALSE:
+                    return JsonStyledPrinter.KEYWORD_COLOR;
+                case NULL:
+                    return JBColor.GRAY;
+                default:
+                    return node.key != null ? JsonStyledPrinter.KEY_COLOR : UIManager.getColor("Tree.foreground");
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.omniviewer.jsonl;
+
+import java.util.Arrays;
+
+/**
+ * Checks that a text holds exactly one JSON value, in one pass over the tokens of a {@link JsonTokenizer}
+ * and without building a tree. On the way it records what a JSONL line summary needs: the top-level
+ * type and an order-independent fingerprint of the top-level object keys.
+ * <p>
+ * Instances are reusable but not thread-safe.
+ */
+public final class JsonValidator {
+    
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    
+    // What the grammar accepts next
+    private static final int EXPECT_VALUE = 0;
+    private static final int EXPECT_FIRST_KEY = 1;
+    private static final int EXPECT_KEY = 2;
+    private static final int EXPECT_COLON = 3;
+    private static final int EXPECT_OBJECT_NEXT = 4;
+    private static final int EXPECT_FIRST_ELEMENT = 5;
+    private static final int EXPECT_ARRAY_NEXT = 6;
+    private static final int EXPECT_END = 7;
+    
+    private final JsonTokenizer tokenizer = new JsonTokenizer();
+    // true for objects, false for arrays
+    private boolean[] containers = new boolean[32];
+    private JsonValueType topLevelType;
+    private int keyFingerprint;
+    private int errorOffset;
+    private String errorMessage;
+    
+    /**
+     * Convenience for a single check, e.g. to decide whether a hovered line gets a popup.
+     */
+    public static boolean isValid(CharSequence text) {
+        return new JsonValidator().validate(text);
+    }
+    
+    public boolean validate(CharSequence text) {
+        return validate(text, 0, text.length());
+    }
+    
+    public boolean validate(CharSequence text, int start, int end) {
+        tokenizer.reset(text, start, end);
+        topLevelType = JsonValueType.EMPTY;
+        keyFingerprint = 0;
+        errorOffset = -1;
+        errorMessage = null;
+        
+        int depth = 0;
+        int state = EXPECT_VALUE;
+        while (true) {
+            JsonTokenizer.TokenType token = tokenizer.next();
+            if (depth == 0 && topLevelType == JsonValueType.EMPTY && token != JsonTokenizer.TokenType.END) {
+                topLevelType = typeOf(token);
+            }
+            if (token == JsonTokenizer.TokenType.ERROR) {
+                return fail(tokenizer.getTokenStart(), tokenizer.getErrorMessage());
+            }
+            
+            switch (state) {
+                case EXPECT_END:
+                    return token == JsonTokenizer.TokenType.END || fail(tokenizer.getTokenStart(), "Unexpected content after the value");
+                case EXPECT_FIRST_KEY:
+                case EXPECT_KEY:
+                    if (token == JsonTokenizer.TokenType.STRING) {
+                        if (depth == 1) {
+                            keyFingerprint += mix(hash(text, tokenizer.getTokenStart() + 1, tokenizer.getTokenEnd() - 1));
+                        }
+                        state = EXPECT_COLON;
+                        continue;
+                    }
+                    if (token == JsonTokenizer.TokenType.END_OBJECT && state == EXPECT_FIRST_KEY) {
+                        depth--;
+                        state = afterValue(depth);
+                        continue;
+                    }
+                    return fail(tokenizer.getTokenStart(), "Expected a key");
+                case EXPECT_COLON:
+                    if (token != JsonTokenizer.TokenType.COLON) {
+                        return fail(tokenizer.getTokenStart(), "Expected ':'");
+                    }
+                    state = EXPECT_VALUE;
+                    continue;
+                case EXPECT_OBJECT_NEXT:
+                case EXPECT_ARRAY_NEXT:
+                    if (token == JsonTokenizer.TokenType.COMMA) {
+                        state = state == EXPECT_OBJECT_NEXT ? EXPECT_KEY : EXPECT_VALUE;
+                        continue;
+                    }
+                    if (token == (state == EXPECT_OBJECT_NEXT ? JsonTokenizer.TokenType.END_OBJECT : JsonTokenizer.TokenType.END_ARRAY)) {
+                        depth--;
+                        state = afterValue(depth);
+                        continue;
+                    }
+                    return fail(tokenizer.getTokenStart(), state == EXPECT_OBJECT_NEXT ? "Expected ',' or '}'" : "Expected ',' or ']'");
+                case EXPECT_FIRST_ELEMENT:
+                    if (token == JsonTokenizer.TokenType.END_ARRAY) {
+                        depth--;
+                        state = afterValue(depth);
+                        continue;
+                    }
+                    // An element, handled as any value
+                default:
+                    break;
+            }
+            
+            // EXPECT_VALUE and the first element of an array
+            switch (token) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    if (depth == containers.length) {
+                        containers = Arrays.copyOf(containers, depth << 1);
+                    }
+                    boolean object = token == JsonTokenizer.TokenType.BEGIN_OBJECT;
+                    containers[depth++] = object;
+                    state = object ? EXPECT_FIRST_KEY : EXPECT_FIRST_ELEMENT;
+                    break;
+                case STRING:
+                case NUMBER:
+                case TRUE:
+                case FALSE:
+                case NULL:
+                    state = afterValue(depth);
+                    break;
+                case END:
+                    return fail(tokenizer.getTokenStart(), depth == 0 ? "Empty input" : "Unexpected end of input");
+                default:
+                    return fail(tokenizer.getTokenStart(), "Expected a value");
+            }
+        }
+    }
+    
+    public JsonValueType getTopLevelType() {
+        return topLevelType;
+    }
+    
+    /**
+     * Sum of mixed hashes of the raw top-level keys, so the same key set gives the same value in any order.
+     * 0 for non-objects. Only meaningful after a successful {@link #validate}.
+     */
+    public int getKeyFingerprint() {
+        return topLevelType == JsonValueType.OBJECT ? keyFingerprint : 0;
+    }
+    
+    /**
+     * Offset in the validated text of the first error, -1 if it was valid.
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+    
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+    
+    private int afterValue(int depth) {
+        if (depth == 0) {
+            return EXPECT_END;
+        }
+        return containers[depth - 1] ? EXPECT_OBJECT_NEXT : EXPECT_ARRAY_NEXT;
+    }
+    
+    private boolean fail(int offset, String message) {
+        errorOffset = offset;
+        errorMessage = message;
+        return false;
+    }
+    
+    private static JsonValueType typeOf(JsonTokenizer.TokenType token) {
+        switch (token) {
+            case BEGIN_OBJECT:
+                return JsonValueType.OBJECT;
+            case BEGIN_ARRAY:
+                return JsonValueType.ARRAY;
+            case STRING:
+                return JsonValueType.STRING;
+            case NUMBER:
+                return JsonValueType.NUMBER;
+            case TRUE:
+            case FALSE:
+                return JsonValueType.BOOLEAN;
+            case NULL:
+                return JsonValueType.NULL;
+            default:
+                return JsonValueType.UNKNOWN;
+        }
+    }
+    
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+    
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,21 @@
+package com.omniviewer.jsonl;
+
+/**
+ * Kind of a JSON value, {@link #EMPTY} for blank text and {@link #UNKNOWN} for text that is not JSON.
+ */
+public enum JsonValueType {
+    EMPTY,
+    OBJECT,
+    ARRAY,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    UNKNOWN;
+    
+    private static final JsonValueType[] VALUES = values();
+    
+    static JsonValueType of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
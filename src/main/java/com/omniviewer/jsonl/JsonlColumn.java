@@ -0,0 +1,249 @@
+package com.omniviewer.jsonl;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * The values of one {@link JsonPath} across the lines of a file, stored column-wise in primitive arrays
+ * so that sorting, filtering and statistics run in memory without parsing the lines again.
+ * <p>
+ * Numbers live in a {@code long[]} when every one of them is an integer that fits, in a {@code double[]}
+ * otherwise. Strings are dictionary-encoded: each row holds an int code into a sorted dictionary, so
+ * codes compare like the strings themselves. Booleans are stored as the strings {@code true} and
+ * {@code false}, objects and arrays as their JSON text cut at {@link JsonlColumnExtractor#MAX_STRING_CHARS}.
+ * What a row holds is told by three bitmaps: present (not null, not missing), null, and number.
+ * <p>
+ * Columns are immutable once built and can be shared between threads.
+ */
+public final class JsonlColumn {
+    
+    private final JsonPath path;
+    private final long modificationStamp;
+    private final int size;
+    private final long[] presentBits;
+    private final long[] nullBits;
+    private final long[] numberBits;
+    private final long[] longValues;
+    private final double[] doubleValues;
+    private final int[] stringCodes;
+    private final String[] dictionary;
+    
+    JsonlColumn(JsonPath path, long modificationStamp, int size, long[] presentBits, long[] nullBits,
+                long[] numberBits, long[] longValues, double[] doubleValues, int[] stringCodes, String[] dictionary) {
+        this.path = path;
+        this.modificationStamp = modificationStamp;
+        this.size = size;
+        this.presentBits = presentBits;
+        this.nullBits = nullBits;
+        this.numberBits = numberBits;
+        this.longValues = longValues;
+        this.doubleValues = doubleValues;
+        this.stringCodes = stringCodes;
+        this.dictionary = dictionary;
+    }
+    
+    public JsonPath getPath() {
+        return path;
+    }
+    
+    /**
+     * Stamp of the {@link JsonlLineSnapshot} the column was extracted from.
+     */
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+    
+    /**
+     * Number of rows, one per line of the snapshot.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * True when the line has no value at the path, or is not valid enough to tell.
+     */
+    public boolean isMissing(int row) {
+        return !isSet(presentBits, row) && !isSet(nullBits, row);
+    }
+    
+    public boolean isNull(int row) {
+        return isSet(nullBits, row);
+    }
+    
+    public boolean isNumber(int row) {
+        return isSet(numberBits, row);
+    }
+    
+    public boolean isString(int row) {
+        return isSet(presentBits, row) && !isSet(numberBits, row);
+    }
+    
+    /**
+     * True when all numbers are integers, read exactly with {@link #getLong}.
+     */
+    public boolean isIntegral() {
+        return doubleValues == null;
+    }
+    
+    public long getLong(int row) {
+        return longValues != null ? longValues[row] : (long) doubleValues[row];
+    }
+    
+    public double getDouble(int row) {
+        return longValues != null ? longValues[row] : doubleValues[row];
+    }
+    
+    /**
+     * Code of the string of a row: its index in the sorted dictionary.
+     */
+    public int getStringCode(int row) {
+        return stringCodes[row];
+    }
+    
+    public String getString(int row) {
+        return dictionary[stringCodes[row]];
+    }
+    
+    public int getDictionarySize() {
+        return dictionary.length;
+    }
+    
+    public String getDictionaryValue(int code) {
+        return dictionary[code];
+    }
+    
+    public int getNumberCount() {
+        return countBits(numberBits);
+    }
+    
+    public int getStringCount() {
+        return countBits(presentBits) - countBits(numberBits);
+    }
+    
+    public int getNullCount() {
+        return countBits(nullBits);
+    }
+    
+    public int getMissingCount() {
+        return size - countBits(presentBits) - countBits(nullBits);
+    }
+    
+    /**
+     * Display text of a row, null when missing.
+     */
+    public String getText(int row) {
+        if (isNumber(row)) {
+            return isIntegral() ? Long.toString(longValues[row]) : Double.toString(doubleValues[row]);
+        }
+        if (isString(row)) {
+            return getString(row);
+        }
+        return isNull(row) ? "null" : null;
+    }
+    
+    /**
+     * Approximate heap use, for the memory budget of {@link JsonlColumnCache}.
+     */
+    public long getMemorySize() {
+        long bytes = 3L * presentBits.length * Long.BYTES;
+        if (longValues != null) {
+            bytes += (long) longValues.length * Long.BYTES;
+        }
+        if (doubleValues != null) {
+            bytes += (long) doubleValues.length * Double.BYTES;
+        }
+        if (stringCodes != null) {
+            bytes += (long) stringCodes.length * Integer.BYTES;
+        }
+        for (String value : dictionary) {
+            bytes += dictionaryEntrySize(value);
+        }
+        return bytes;
+    }
+    
+    static long dictionaryEntrySize(String value) {
+        return 40 + 2L * value.length();
+    }
+    
+    /**
+     * Orders rows by value: numbers before strings, then nulls, then missing values, which stay last in
+     * either direction. Equal values keep their line order.
+     */
+    public int[] sortRows(boolean descending) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        int direction = descending ? -1 : 1;
+        sort(rows, (a, b) -> {
+            int rankA = rank(a);
+            int rankB = rank(b);
+            if (rankA != rankB) {
+                return Integer.compare(rankA, rankB);
+            }
+            switch (rankA) {
+                case 0:
+                    return direction * (isIntegral()
+                        ? Long.compare(longValues[a], longValues[b])
+                        : Double.compare(doubleValues[a], doubleValues[b]));
+                case 1:
+                    return direction * Integer.compare(stringCodes[a], stringCodes[b]);
+                default:
+                    return 0;
+            }
+        });
+        return rows;
+    }
+    
+    private int rank(int row) {
+        if (isSet(numberBits, row)) {
+            return 0;
+        }
+        if (isSet(presentBits, row)) {
+            return 1;
+        }
+        return isSet(nullBits, row) ? 2 : 3;
+    }
+    
+    /**
+     * Stable merge sort of an int array, so that millions of row indexes are sorted without boxing them.
+     */
+    static void sort(int[] values, IntBinaryOperator comparator) {
+        int[] buffer = new int[values.length];
+        int[] source = values;
+        int[] target = buffer;
+        for (int width = 1; width < values.length; width <<= 1) {
+            for (int start = 0; start < values.length; start += width << 1) {
+                int middle = Math.min(start + width, values.length);
+                int end = Math.min(start + (width << 1), values.length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    if (left < middle && (right >= end || comparator.applyAsInt(source[left], source[right]) <= 0)) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != values) {
+            System.arraycopy(source, 0, values, 0, values.length);
+        }
+    }
+    
+    static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+    
+    private static int countBits(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
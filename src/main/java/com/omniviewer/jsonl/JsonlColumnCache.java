@@ -0,0 +1,92 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps extracted {@link JsonlColumn}s in memory per file and path, so that sorting the table again by a
+ * key that was sorted by before needs no pass over the file. Entries are evicted least-recently-used once
+ * their total size exceeds a heap budget, ignored once the lines they were extracted from have changed,
+ * and dropped with the editor of their file. A column whose distinct strings alone would not fit in the
+ * budget is not extracted at all.
+ */
+public final class JsonlColumnCache {
+    
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    
+    private static final JsonlColumnCache INSTANCE =
+        new JsonlColumnCache(Long.getLong("omniviewer.jsonlColumnCache.maxBytes", DEFAULT_MAX_BYTES));
+    
+    private final long maxBytes;
+    private final Map<String, JsonlColumn> columns = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    
+    private JsonlColumnCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    public static JsonlColumnCache getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Returns the column of {@code path} for the lines of {@code snapshot}, extracting it if it is not
+     * cached for exactly these lines. Called off the EDT.
+     */
+    public JsonlColumn getColumn(VirtualFile file, JsonlLineSnapshot snapshot, JsonPath path,
+                                 @Nullable ProgressIndicator indicator) throws IOException {
+        String key = keyFor(file, path);
+        JsonlColumn column = get(key);
+        if (column != null && column.getModificationStamp() == snapshot.getModificationStamp()
+            && column.size() == snapshot.getLineCount()) {
+            return column;
+        }
+        column = new JsonlColumnExtractor(snapshot, path, maxBytes).extract(indicator);
+        put(key, column);
+        return column;
+    }
+    
+    /**
+     * Drops the columns of {@code file}, whichever state of it they were extracted from.
+     */
+    public synchronized void removeFile(VirtualFile file) {
+        String prefix = file.getPath() + "|";
+        Iterator<Map.Entry<String, JsonlColumn>> entries = columns.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, JsonlColumn> entry = entries.next();
+            if (entry.getKey().startsWith(prefix)) {
+                totalBytes -= entry.getValue().getMemorySize();
+                entries.remove();
+            }
+        }
+    }
+    
+    private synchronized JsonlColumn get(String key) {
+        return columns.get(key);
+    }
+    
+    private synchronized void put(String key, JsonlColumn column) {
+        JsonlColumn previous = columns.put(key, column);
+        if (previous != null) {
+            totalBytes -= previous.getMemorySize();
+        }
+        totalBytes += column.getMemorySize();
+        Iterator<JsonlColumn> eldest = columns.values().iterator();
+        // The column just added stays even when it alone is over the budget
+        while (totalBytes > maxBytes && columns.size() > 1) {
+            totalBytes -= eldest.next().getMemorySize();
+            eldest.remove();
+        }
+    }
+    
+    private static String keyFor(VirtualFile file, JsonPath path) {
+        // Length and timestamp tell a file changed on disk, the stamp only tells edits in the IDE apart
+        return file.getPath() + "|" + file.getLength() + "|" + file.getTimeStamp() + "|" + path;
+    }
+}
@@ -0,0 +1,297 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds a {@link JsonlColumn} in one pass over a {@link JsonlLineSnapshot}. Line ranges are projected
+ * concurrently on the {@link JsonlWorkerPool}, each locating the path with a streaming
+ * {@link JsonPath.Locator} that stops at the value instead of parsing whole records.
+ * <p>
+ * Ranges are multiples of 64 lines, so every worker owns whole words of the shared bitmaps. Each range
+ * encodes strings against its own dictionary; the dictionaries are merged and sorted once all ranges
+ * are done, and the codes rewritten.
+ * <p>
+ * The dictionaries are the part of a column that grows with the data rather than the line count. Their
+ * size is tracked while ranges are projected, and extraction gives up with an {@link IOException} as soon
+ * as it passes the given budget, rather than after a high-cardinality key has been held in full.
+ */
+public final class JsonlColumnExtractor {
+    
+    static final int MAX_STRING_CHARS = 1024;
+    private static final int SEGMENT_LINES = 64 * 1024;
+    // Longer lines count as missing rather than being copied whole for a single value
+    private static final long MAX_LINE_LENGTH = 64L << 20;
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    
+    private final JsonlLineSnapshot snapshot;
+    private final JsonPath path;
+    private final int size;
+    private final long maxDictionaryBytes;
+    // Summed over the segment dictionaries, so a string met in several ranges counts once per range
+    private final AtomicLong dictionaryBytes = new AtomicLong();
+    private volatile boolean overBudget;
+    private final long[] presentBits;
+    private final long[] nullBits;
+    private final long[] numberBits;
+    // Rows whose entry in values holds the bits of a double rather than a long
+    private final long[] doubleBits;
+    // Allocated by the first worker that meets a number, or a string
+    private volatile long[] values;
+    private volatile int[] stringCodes;
+    
+    public JsonlColumnExtractor(JsonlLineSnapshot snapshot, JsonPath path) {
+        this(snapshot, path, Long.MAX_VALUE);
+    }
+    
+    public JsonlColumnExtractor(JsonlLineSnapshot snapshot, JsonPath path, long maxDictionaryBytes) {
+        this.snapshot = snapshot;
+        this.path = path;
+        this.size = snapshot.getLineCount();
+        this.maxDictionaryBytes = maxDictionaryBytes;
+        int words = (size + 63) >>> 6;
+        this.presentBits = new long[words];
+        this.nullBits = new long[words];
+        this.numberBits = new long[words];
+        this.doubleBits = new long[words];
+    }
+    
+    /**
+     * @throws IOException if the lines cannot be read, or their distinct strings take more than the
+     *                     dictionary budget
+     */
+    public JsonlColumn extract(@Nullable ProgressIndicator indicator) throws IOException {
+        int segmentCount = (size + SEGMENT_LINES - 1) / SEGMENT_LINES;
+        AtomicInteger doneLines = new AtomicInteger();
+        List<ForkJoinTask<Segment>> tasks = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int from = i * SEGMENT_LINES;
+            int to = Math.min(size, from + SEGMENT_LINES);
+            tasks.add(JsonlWorkerPool.POOL.submit(() -> {
+                try {
+                    return project(from, to, indicator, doneLines);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        try {
+            for (ForkJoinTask<Segment> task : tasks) {
+                segments.add(task.join());
+                if (indicator != null) {
+                    indicator.checkCanceled();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            cancelAll(tasks);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            cancelAll(tasks);
+            throw e;
+        }
+        if (overBudget) {
+            throw new IOException("The distinct values of " + path + " take more than "
+                + StringUtil.formatFileSize(maxDictionaryBytes));
+        }
+        return finish(segments);
+    }
+    
+    private Segment project(int from, int to, @Nullable ProgressIndicator indicator, AtomicInteger doneLines) throws IOException {
+        Segment segment = new Segment(from, to);
+        JsonlLineSnapshot.Reader reader = snapshot.newReader();
+        JsonPath.Locator locator = path.newLocator();
+        long[] segmentValues = values;
+        int[] segmentCodes = stringCodes;
+        for (int line = from; line < to; line++) {
+            if ((line - from) % CANCEL_CHECK_INTERVAL == 0
+                && (overBudget || indicator != null && indicator.isCanceled())) {
+                break;
+            }
+            CharSequence text = reader.readLine(line, MAX_LINE_LENGTH);
+            JsonTokenizer.TokenType type = text != null ? locator.locate(text) : null;
+            if (type == null) {
+                continue;
+            }
+            int start = locator.getValueStart();
+            int end = locator.getValueEnd();
+            switch (type) {
+                case NULL:
+                    setBit(nullBits, line);
+                    break;
+                case NUMBER:
+                    if (segmentValues == null) {
+                        segmentValues = values();
+                    }
+                    setBit(presentBits, line);
+                    setBit(numberBits, line);
+                    storeNumber(segmentValues, line, text, start, end);
+                    break;
+                default:
+                    if (segmentCodes == null) {
+                        segmentCodes = stringCodes();
+                    }
+                    setBit(presentBits, line);
+                    segmentCodes[line] = segment.encode(JsonlRowParser.displayText(text, type, start, end, MAX_STRING_CHARS));
+                    if (overBudget) {
+                        return segment;
+                    }
+                    break;
+            }
+        }
+        int done = doneLines.addAndGet(to - from);
+        if (indicator != null) {
+            indicator.setFraction((double) done / size);
+        }
+        return segment;
+    }
+    
+    private synchronized long[] values() {
+        if (values == null) {
+            values = new long[size];
+        }
+        return values;
+    }
+    
+    private synchronized int[] stringCodes() {
+        if (stringCodes == null) {
+            stringCodes = new int[size];
+        }
+        return stringCodes;
+    }
+    
+    /**
+     * Merges the segment dictionaries into one sorted dictionary and settles the number representation.
+     */
+    private JsonlColumn finish(List<Segment> segments) {
+        Map<String, Integer> merged = new HashMap<>();
+        for (Segment segment : segments) {
+            for (String value : segment.dictionary) {
+                merged.putIfAbsent(value, 0);
+            }
+        }
+        String[] dictionary = merged.keySet().toArray(new String[0]);
+        Arrays.sort(dictionary);
+        for (int code = 0; code < dictionary.length; code++) {
+            merged.put(dictionary[code], code);
+        }
+        int[] codes = stringCodes;
+        if (codes != null) {
+            for (Segment segment : segments) {
+                int[] remap = new int[segment.dictionary.size()];
+                for (int i = 0; i < remap.length; i++) {
+                    remap[i] = merged.get(segment.dictionary.get(i));
+                }
+                for (int line = segment.from; line < segment.to; line++) {
+                    if (JsonlColumn.isSet(presentBits, line) && !JsonlColumn.isSet(numberBits, line)) {
+                        codes[line] = remap[codes[line]];
+                    }
+                }
+            }
+        }
+        
+        long[] longValues = values;
+        double[] doubleValues = null;
+        if (longValues != null && Arrays.stream(doubleBits).anyMatch(word -> word != 0)) {
+            doubleValues = new double[size];
+            for (int line = 0; line < size; line++) {
+                if (JsonlColumn.isSet(numberBits, line)) {
+                    doubleValues[line] = JsonlColumn.isSet(doubleBits, line)
+                        ? Double.longBitsToDouble(longValues[line])
+                        : longValues[line];
+                }
+            }
+            longValues = null;
+        }
+        return new JsonlColumn(path, snapshot.getModificationStamp(), size, presentBits, nullBits, numberBits,
+            longValues, doubleValues, codes, dictionary);
+    }
+    
+    /**
+     * Stores a number token as a long when it is an integer that fits, as the bits of a double otherwise.
+     * Integers of up to 18 digits, which cannot overflow, are parsed without allocating.
+     */
+    private void storeNumber(long[] target, int line, CharSequence text, int start, int end) {
+        boolean negative = text.charAt(start) == '-';
+        int digitsStart = negative ? start + 1 : start;
+        boolean integer = end - digitsStart <= 19;
+        for (int i = digitsStart; integer && i < end; i++) {
+            char c = text.charAt(i);
+            integer = c >= '0' && c <= '9';
+        }
+        if (integer && end - digitsStart <= 18) {
+            long value = 0;
+            for (int i = digitsStart; i < end; i++) {
+                value = value * 10 + (text.charAt(i) - '0');
+            }
+            target[line] = negative ? -value : value;
+            return;
+        }
+        String number = text.subSequence(start, end).toString();
+        if (integer) {
+            try {
+                target[line] = Long.parseLong(number);
+                return;
+            } catch (NumberFormatException e) {
+                // Past the range of a long
+            }
+        }
+        setBit(doubleBits, line);
+        target[line] = Double.doubleToRawLongBits(Double.parseDouble(number));
+    }
+    
+    private void addDictionaryBytes(long bytes) {
+        if (dictionaryBytes.addAndGet(bytes) > maxDictionaryBytes) {
+            overBudget = true;
+        }
+    }
+    
+    private static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+    
+    private static void cancelAll(List<ForkJoinTask<Segment>> tasks) {
+        for (ForkJoinTask<Segment> task : tasks) {
+            task.cancel(false);
+        }
+    }
+    
+    /**
+     * Dictionary of the strings met in one line range, in order of first appearance.
+     */
+    private final class Segment {
+        final int from;
+        final int to;
+        final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        
+        Segment(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(value, code);
+                dictionary.add(value);
+                addDictionaryBytes(JsonlColumn.dictionaryEntrySize(value));
+            }
+            return code;
+        }
+    }
+}
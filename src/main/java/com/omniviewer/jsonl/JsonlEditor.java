@@ -1,5 +1,6 @@
 package com.omniviewer.jsonl;
 
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorLocation;
 import com.intellij.openapi.fileEditor.FileEditorState;
@@ -8,6 +9,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.UserDataHolderBase;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.EditorTextField;
+import com.intellij.ui.components.JBTabbedPane;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -16,25 +18,63 @@ import java.beans.PropertyChangeListener;
 
 public class JsonlEditor extends UserDataHolderBase implements FileEditor {
     
+    private static final int TEXT_TAB = 0;
+    private static final int TABLE_TAB = 1;
+    
     private final Project project;
     private final VirtualFile file;
-    private final JsonlEditorComponent component;
+    private final JsonlView component;
+    private final JBTabbedPane tabs = new JBTabbedPane(JTabbedPane.BOTTOM);
+    private final JsonlFilterView filterView;
+    private JsonlTableView tableView;
     
     public JsonlEditor(@NotNull Project project, @NotNull VirtualFile file) {
+        this(project, file, false);
+    }
+    
+    public JsonlEditor(@NotNull Project project, @NotNull VirtualFile file, boolean largeFile) {
         this.project = project;
         this.file = file;
-        this.component = new JsonlEditorComponent(project, file);
+        // Files without a document (over the IDE's content size limit) can only be shown mapped
+        boolean useViewer = largeFile || FileDocumentManager.getInstance().getDocument(file) == null;
+        this.component = useViewer
+            ? new LargeJsonlViewerComponent(project, file)
+            : new JsonlEditorComponent(project, file);
+        
+        tabs.addTab("Text", component.getComponent());
+        // The table samples the file for its columns, which waits until it is first shown
+        tabs.addTab("Table", new JPanel());
+        tabs.addChangeListener(e -> {
+            if (tabs.getSelectedIndex() == TABLE_TAB && tableView == null) {
+                tableView = new JsonlTableView(project, file, component.getLineSource());
+                tabs.setComponentAt(TABLE_TAB, tableView);
+            }
+        });
+        filterView = new JsonlFilterView(project, file, component.getLineSource(), tabs, line -> {
+            tabs.setSelectedIndex(TEXT_TAB);
+            component.goToLine(line);
+        });
     }
     
     @Override
     @NotNull
     public JComponent getComponent() {
-        return component;
+        return filterView;
+    }
+    
+    /**
+     * Lines of the file as the editor shows them.
+     */
+    JsonlLineSource getLineSource() {
+        return component.getLineSource();
     }
     
     @Override
     @Nullable
     public JComponent getPreferredFocusedComponent() {
+        if (tableView != null && tabs.getSelectedIndex() == TABLE_TAB) {
+            return tableView.getPreferredFocusedComponent();
+        }
         return component.getPreferredFocusedComponent();
     }
     
@@ -81,6 +121,10 @@ public class JsonlEditor extends UserDataHolderBase implements FileEditor {
     
     @Override
     public void dispose() {
+        filterView.dispose();
+        if (tableView != null) {
+            tableView.dispose();
+        }
         component.dispose();
     }
     
@@ -1,35 +1,62 @@
 package com.omniviewer.jsonl;
 
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.CustomShortcutSet;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.editor.event.EditorMouseEvent;
 import com.intellij.openapi.editor.event.EditorMouseListener;
 import com.intellij.openapi.editor.event.EditorMouseMotionListener;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ui.JBUI;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
 
-public class JsonlEditorComponent extends JPanel {
+public class JsonlEditorComponent extends JPanel implements JsonlView {
+    
+    // Time the mouse has to rest on a line before it is parsed, or its popup shown when cached
+    private static final int HOVER_DELAY_MS = 200;
+    private static final int POPUP_CACHE_SIZE = 32;
     
     private final Project project;
     private final VirtualFile file;
     private Editor editor;
     private final Document document;
+    private final DocumentLineSource lineSource;
     private JsonPopupComponent currentPopup;
-    private Timer hoverTimer;
     private int lastHoveredLine = -1;
+    private final HoverDebouncer hoverDebouncer = new HoverDebouncer(HOVER_DELAY_MS, () -> showJsonPopup(lastHoveredLine));
+    // Prepared popups by line, null for lines that are not JSON, all from the document at popupCacheStamp
+    private final Map<Integer, JsonPopupContent> popupCache = new LinkedHashMap<Integer, JsonPopupContent>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, JsonPopupContent> eldest) {
+            return size() > POPUP_CACHE_SIZE;
+        }
+    };
+    private long popupCacheStamp;
+    private Future<?> pendingPopup;
+    private JsonlErrorTracker errorTracker;
+    private final JLabel errorLabel = new JLabel();
+    private final JButton previousErrorButton = new JButton(AllIcons.Actions.PreviousOccurence);
+    private final JButton nextErrorButton = new JButton(AllIcons.Actions.NextOccurence);
     
     public JsonlEditorComponent(@NotNull Project project, @NotNull VirtualFile file) {
         this.project = project;
         this.file = file;
         this.document = FileDocumentManager.getInstance().getDocument(file);
+        this.lineSource = new DocumentLineSource(document);
         
         setLayout(new BorderLayout());
         
@@ -100,8 +127,63 @@ public class JsonlEditorComponent extends JPanel {
         editor.getComponent().setFocusable(true);
         editor.getComponent().requestFocus();
         
+        // Error navigation bar
+        add(createErrorBar(), BorderLayout.NORTH);
+        
         revalidate();
         repaint();
+        
+        errorTracker = new JsonlErrorTracker(project, file, editor, this::updateErrorBar);
+        errorTracker.scan();
+    }
+    
+    private JComponent createErrorBar() {
+        previousErrorButton.setToolTipText("Previous invalid line (Shift+F2)");
+        previousErrorButton.addActionListener(e -> goToError(false));
+        nextErrorButton.setToolTipText("Next invalid line (F2)");
+        nextErrorButton.addActionListener(e -> goToError(true));
+        
+        // Local shortcuts, this editor gets no highlighting pass for the IDE's own error navigation
+        DumbAwareAction.create("Next Invalid Line", e -> goToError(true))
+            .registerCustomShortcutSet(new CustomShortcutSet(KeyStroke.getKeyStroke(KeyEvent.VK_F2, 0)), this);
+        DumbAwareAction.create("Previous Invalid Line", e -> goToError(false))
+            .registerCustomShortcutSet(new CustomShortcutSet(KeyStroke.getKeyStroke(KeyEvent.VK_F2, InputEvent.SHIFT_DOWN_MASK)), this);
+        
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        bar.setBorder(JBUI.Borders.empty(2, 4));
+        bar.add(previousErrorButton);
+        bar.add(nextErrorButton);
+        bar.add(errorLabel);
+        updateErrorBar();
+        return bar;
+    }
+    
+    private void updateErrorBar() {
+        int count = errorTracker != null ? errorTracker.getInvalidLineCount() : 0;
+        if (errorTracker == null || errorTracker.isScanning()) {
+            errorLabel.setText("Checking lines...");
+        } else if (count == 0) {
+            errorLabel.setText("All lines are valid JSON");
+        } else {
+            errorLabel.setText(count == 1 ? "1 invalid line" : count + " invalid lines");
+        }
+        previousErrorButton.setEnabled(count > 0);
+        nextErrorButton.setEnabled(count > 0);
+    }
+    
+    private void goToError(boolean next) {
+        if (editor == null || errorTracker == null) {
+            return;
+        }
+        int caretLine = editor.getCaretModel().getLogicalPosition().line;
+        int line = next ? errorTracker.nextInvalidLine(caretLine) : errorTracker.previousInvalidLine(caretLine);
+        if (line < 0 || line >= document.getLineCount()) {
+            return;
+        }
+        hideCurrentPopup();
+        editor.getCaretModel().moveToOffset(errorTracker.getErrorOffset(line));
+        editor.getScrollingModel().scrollToCaret(ScrollType.CENTER);
+        editor.getContentComponent().requestFocus();
     }
     
     private void handleMouseMove(@NotNull EditorMouseEvent event) {
@@ -116,54 +198,65 @@ public class JsonlEditorComponent extends JPanel {
             return;
         }
         
-        // Cancel previous timer
-        if (hoverTimer != null) {
-            hoverTimer.cancel();
-        }
+        // Cancel the parsing of the line left
+        cancelPendingPopup();
         
         // Hide current popup
         hideCurrentPopup();
         
-        // Update lastHoveredLine before starting timer
+        // Update lastHoveredLine before restarting the delay, the popup is for the line hovered then
         lastHoveredLine = lineNumber;
-        
-        // Start new timer for hover delay
-        hoverTimer = new Timer();
-        hoverTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    if (lineNumber == lastHoveredLine) {
-                        showJsonPopup(lineNumber);
-                    }
-                });
-            }
-        }, 500); // 500ms delay before showing popup
+        hoverDebouncer.restart();
     }
     
+    /**
+     * Shows the popup of a line from the cache, or parses and formats the line in the background and
+     * shows it when done if the mouse is still there.
+     */
     private void showJsonPopup(int lineNumber) {
+        if (lineNumber < 0 || lineNumber >= document.getLineCount()) {
+            return;
+        }
+        long stamp = document.getModificationStamp();
+        if (stamp != popupCacheStamp) {
+            popupCache.clear();
+            popupCacheStamp = stamp;
+        }
+        if (popupCache.containsKey(lineNumber)) {
+            showJsonPopup(lineNumber, popupCache.get(lineNumber));
+            return;
+        }
+        
+        // Only the hovered line is read, through the document's own line index; the immutable text
+        // can be read from any thread
+        CharSequence lineText = getLineText(lineNumber);
+        cancelPendingPopup();
+        pendingPopup = JsonlWorkerPool.POOL.submit(() -> {
+            JsonPopupContent content = JsonPopupContent.prepare(lineText);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                // Kept even when the mouse moved on, it may come back
+                if (document.getModificationStamp() != stamp || stamp != popupCacheStamp) {
+                    return;
+                }
+                popupCache.put(lineNumber, content);
+                if (lineNumber == lastHoveredLine) {
+                    showJsonPopup(lineNumber, content);
+                }
+            });
+        });
+    }
+    
+    private void showJsonPopup(int lineNumber, @Nullable JsonPopupContent content) {
+        if (content == null) {
+            return;
+        }
         try {
-            String[] lines = document.getText().split("\n");
-            if (lineNumber >= lines.length) {
-                return;
-            }
-            
-            String lineContent = lines[lineNumber].trim();
-            
-            if (lineContent.isEmpty()) {
-                return;
-            }
-            
-            // Validate if the line contains valid JSON
-            if (!isValidJson(lineContent)) {
-                return;
-            }
-            
             // Hide current popup
             hideCurrentPopup();
+            lastHoveredLine = lineNumber;
             
             // Create popup component
-            currentPopup = new JsonPopupComponent(lineContent);
+            currentPopup = new JsonPopupComponent(content);
             
             // Calculate position for popup - use line position instead of mouse position
             Point lineStart = editor.logicalPositionToXY(new LogicalPosition(lineNumber, 0));
@@ -177,6 +270,23 @@ public class JsonlEditorComponent extends JPanel {
         }
     }
     
+    /**
+     * Text of one line without copying the document: the line offsets come from the document's
+     * line index and the immutable char sequence is shared, not copied.
+     */
+    private CharSequence getLineText(int lineNumber) {
+        int start = document.getLineStartOffset(lineNumber);
+        int end = document.getLineEndOffset(lineNumber);
+        return document.getImmutableCharSequence().subSequence(start, end);
+    }
+    
+    private void cancelPendingPopup() {
+        if (pendingPopup != null) {
+            pendingPopup.cancel(false);
+            pendingPopup = null;
+        }
+    }
+    
     private void hideCurrentPopup() {
         if (currentPopup != null) {
             currentPopup.hidePopup();
@@ -185,51 +295,47 @@ public class JsonlEditorComponent extends JPanel {
         lastHoveredLine = -1;
     }
     
-    private boolean isValidJson(String json) {
-        try {
-            // Simple JSON validation - check for basic structure
-            json = json.trim();
-            if (json.isEmpty()) {
-                return false;
-            }
-            
-            // Check if it starts and ends with valid JSON delimiters
-            if ((json.startsWith("{") && json.endsWith("}")) ||
-                (json.startsWith("[") && json.endsWith("]"))) {
-                return true;
-            }
-            
-            // Check for primitive values
-            if (json.equals("true") || json.equals("false") || json.equals("null") ||
-                json.matches("^-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?$") ||
-                (json.startsWith("\"") && json.endsWith("\""))) {
-                return true;
-            }
-            
-            // More lenient check - if it contains basic JSON structure, consider it valid
-            if (json.contains("{") || json.contains("[") || json.contains("\"")) {
-                return true;
-            }
-            
-            return false;
-        } catch (Exception e) {
-            return false;
-        }
+    @Override
+    public JComponent getComponent() {
+        return this;
     }
     
+    @Override
     public JComponent getPreferredFocusedComponent() {
         return editor != null ? editor.getContentComponent() : this;
     }
     
+    @Override
+    public JsonlLineSource getLineSource() {
+        return lineSource;
+    }
+    
+    @Override
+    public void goToLine(int line) {
+        if (editor == null || line >= document.getLineCount()) {
+            return;
+        }
+        hideCurrentPopup();
+        editor.getCaretModel().moveToOffset(document.getLineStartOffset(line));
+        editor.getScrollingModel().scrollToCaret(ScrollType.CENTER);
+        editor.getContentComponent().requestFocus();
+    }
+    
+    @Override
     public boolean isModified() {
         return document.isWritable() && FileDocumentManager.getInstance().isDocumentUnsaved(document);
     }
     
+    @Override
     public void dispose() {
-        hideCurrentPopup();
-        if (hoverTimer != null) {
-            hoverTimer.cancel();
+        if (errorTracker != null) {
+            errorTracker.dispose();
         }
+        lineSource.dispose();
+        hideCurrentPopup();
+        hoverDebouncer.cancel();
+        cancelPendingPopup();
+        popupCache.clear();
         if (editor != null) {
             EditorFactory.getInstance().releaseEditor(editor);
         }
@@ -12,6 +12,13 @@ public class JsonlEditorProvider implements FileEditorProvider, DumbAware {
     
     private static final String EDITOR_TYPE_ID = "jsonl-editor";
     
+    /**
+     * Files above this size open in the memory-mapped read-only viewer instead of a document editor.
+     * The default stays below the IDE's own limit for loading file content into a document.
+     */
+    static final String LARGE_FILE_THRESHOLD_PROPERTY = "omniviewer.jsonl.largeFileThreshold";
+    private static final long DEFAULT_LARGE_FILE_THRESHOLD = 16L * 1024 * 1024;
+    
     @Override
     public boolean accept(@NotNull Project project, @NotNull VirtualFile file) {
         return file.getFileType() instanceof JsonlFileType;
@@ -20,7 +27,13 @@ public class JsonlEditorProvider implements FileEditorProvider, DumbAware {
     @Override
     @NotNull
     public FileEditor createEditor(@NotNull Project project, @NotNull VirtualFile file) {
-        return new JsonlEditor(project, file);
+        return new JsonlEditor(project, file, isLargeFile(file));
+    }
+    
+    static boolean isLargeFile(@NotNull VirtualFile file) {
+        // Mapping needs a real file on disk, archives and remote files keep the document editor
+        return file.isInLocalFileSystem()
+            && file.getLength() > Long.getLong(LARGE_FILE_THRESHOLD_PROPERTY, DEFAULT_LARGE_FILE_THRESHOLD);
     }
     
     @Override
@@ -0,0 +1,357 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.JBColor;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Keeps track of the invalid lines of a JSONL editor.
+ * <p>
+ * The whole document is validated once in the background: a snapshot of the text is split into
+ * segments at line boundaries and validated on the {@link JsonlWorkerPool}. Invalid lines end up in a
+ * {@link BitSet}, which is what navigation uses, and get a gutter icon plus an error stripe mark.
+ * After that, edits only re-check the lines they touched; bits after the edit are shifted by the number
+ * of lines added or removed, and the highlighters move with the text on their own.
+ * <p>
+ * All methods but the scan itself run on the EDT.
+ */
+class JsonlErrorTracker {
+    
+    private static final Logger LOG = Logger.getInstance(JsonlErrorTracker.class);
+    // Each mark is a highlighter, a file that is not JSONL at all must not flood the gutter
+    private static final int MAX_MARKED_LINES = 10_000;
+    // Edits touching more lines than this, e.g. a huge paste, trigger a new background scan
+    private static final int MAX_INCREMENTAL_LINES = 5_000;
+    private static final int MIN_SEGMENT_CHARS = 1 << 20;
+    
+    private final Project project;
+    private final VirtualFile file;
+    private final Editor editor;
+    private final Document document;
+    private final Runnable onErrorsChanged;
+    private final BitSet invalidLines = new BitSet();
+    private final List<RangeHighlighter> highlighters = new ArrayList<>();
+    private final JsonValidator validator = new JsonValidator();
+    private final DocumentListener documentListener = new DocumentListener() {
+        @Override
+        public void beforeDocumentChange(@NotNull DocumentEvent event) {
+            changeStartLine = document.getLineNumber(event.getOffset());
+            changeOldEndLine = document.getLineNumber(event.getOffset() + event.getOldLength());
+        }
+        
+        @Override
+        public void documentChanged(@NotNull DocumentEvent event) {
+            if (!scanning) {
+                int newEndLine = document.getLineNumber(event.getOffset() + event.getNewLength());
+                recheckLines(changeStartLine, changeOldEndLine, newEndLine);
+            }
+        }
+    };
+    
+    private volatile boolean disposed = false;
+    private volatile ProgressIndicator scanIndicator;
+    private boolean scanning;
+    private int scanGeneration;
+    private int changeStartLine;
+    private int changeOldEndLine;
+    
+    JsonlErrorTracker(Project project, VirtualFile file, Editor editor, Runnable onErrorsChanged) {
+        this.project = project;
+        this.file = file;
+        this.editor = editor;
+        this.document = editor.getDocument();
+        this.onErrorsChanged = onErrorsChanged;
+        document.addDocumentListener(documentListener);
+    }
+    
+    boolean isScanning() {
+        return scanning;
+    }
+    
+    int getInvalidLineCount() {
+        return invalidLines.cardinality();
+    }
+    
+    /**
+     * First invalid line after {@code line}, wrapping around to the top. -1 if there is none.
+     */
+    int nextInvalidLine(int line) {
+        int next = invalidLines.nextSetBit(line + 1);
+        return next >= 0 ? next : invalidLines.nextSetBit(0);
+    }
+    
+    /**
+     * Last invalid line before {@code line}, wrapping around to the bottom. -1 if there is none.
+     */
+    int previousInvalidLine(int line) {
+        int previous = line > 0 ? invalidLines.previousSetBit(line - 1) : -1;
+        return previous >= 0 ? previous : invalidLines.previousSetBit(Integer.MAX_VALUE - 1);
+    }
+    
+    /**
+     * Document offset of the error on an invalid line, re-validated on request rather than stored.
+     */
+    int getErrorOffset(int line) {
+        int start = document.getLineStartOffset(line);
+        int end = document.getLineEndOffset(line);
+        CharSequence text = document.getImmutableCharSequence();
+        return validator.validate(text, start, end) ? start : validator.getErrorOffset();
+    }
+    
+    /**
+     * Validates the whole document in the background. Edits made meanwhile are covered by scanning again.
+     */
+    void scan() {
+        ProgressIndicator running = scanIndicator;
+        if (running != null) {
+            running.cancel();
+        }
+        scanning = true;
+        int generation = ++scanGeneration;
+        onErrorsChanged.run();
+        
+        CharSequence text = document.getImmutableCharSequence();
+        long modificationStamp = document.getModificationStamp();
+        int[][] segments = splitSegments(text.length());
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Validating " + file.getName(), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                scanIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.setIndeterminate(false);
+                long started = System.nanoTime();
+                List<JsonlLineErrors> errors = validateSegments(text, segments, indicator);
+                int invalid = errors.stream().mapToInt(JsonlLineErrors::getCount).sum();
+                LOG.debug("Validated " + text.length() + " chars of " + file.getName() + " in "
+                    + segments.length + " segment(s), " + (System.nanoTime() - started) / 1_000_000 + " ms, "
+                    + invalid + " invalid line(s)");
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (disposed || generation != scanGeneration) {
+                        return;
+                    }
+                    if (document.getModificationStamp() != modificationStamp) {
+                        scan();
+                        return;
+                    }
+                    scanning = false;
+                    applyScan(errors);
+                });
+            }
+            
+            @Override
+            public void onCancel() {
+                // Cancelled from the progress UI rather than replaced by a newer scan: keep what is known
+                if (!disposed && generation == scanGeneration) {
+                    scanning = false;
+                    onErrorsChanged.run();
+                }
+            }
+        });
+    }
+    
+    /**
+     * {first line, start offset} of each segment, cut at line starts near even offsets.
+     */
+    private int[][] splitSegments(int length) {
+        int parallelism = JsonlWorkerPool.POOL.getParallelism();
+        int count = Math.max(1, Math.min(parallelism * 4, length / MIN_SEGMENT_CHARS));
+        List<int[]> segments = new ArrayList<>(count);
+        segments.add(new int[]{0, 0});
+        for (int i = 1; i < count; i++) {
+            int line = document.getLineNumber((int) ((long) length * i / count));
+            if (line > segments.get(segments.size() - 1)[0]) {
+                segments.add(new int[]{line, document.getLineStartOffset(line)});
+            }
+        }
+        return segments.toArray(new int[0][]);
+    }
+    
+    private static List<JsonlLineErrors> validateSegments(CharSequence text, int[][] segments, ProgressIndicator indicator) {
+        List<ForkJoinTask<JsonlLineErrors>> tasks = new ArrayList<>(segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            int firstLine = segments[i][0];
+            int start = segments[i][1];
+            // The last segment includes the empty line after a final newline
+            int end = i + 1 < segments.length ? segments[i + 1][1] : text.length() + 1;
+            tasks.add(JsonlWorkerPool.POOL.submit(() -> validateLines(text, firstLine, start, end, indicator)));
+        }
+        
+        List<JsonlLineErrors> results = new ArrayList<>(segments.length);
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                results.add(tasks.get(i).join());
+                indicator.setFraction((double) (i + 1) / tasks.size());
+            }
+        } finally {
+            for (ForkJoinTask<JsonlLineErrors> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        // Segments stop early when cancelled, report it from the calling thread
+        indicator.checkCanceled();
+        return results;
+    }
+    
+    private static JsonlLineErrors validateLines(CharSequence text, int firstLine, int start, int end,
+                                                 ProgressIndicator indicator) {
+        JsonValidator validator = new JsonValidator();
+        JsonlLineErrors errors = new JsonlLineErrors();
+        int length = text.length();
+        int line = firstLine;
+        for (int lineStart = start; lineStart < end; line++) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            // Blank lines are tolerated between records
+            if (!validator.validate(text, lineStart, lineEnd) && validator.getTopLevelType() != JsonValueType.EMPTY) {
+                errors.add(line, validator.getErrorOffset() - lineStart, validator.getErrorMessage());
+            }
+            if ((line & 0x3FF) == 0 && indicator.isCanceled()) {
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return errors;
+    }
+    
+    private void applyScan(List<JsonlLineErrors> segments) {
+        removeHighlighters(0, Integer.MAX_VALUE);
+        invalidLines.clear();
+        for (JsonlLineErrors errors : segments) {
+            for (int i = 0; i < errors.getCount(); i++) {
+                int line = errors.getLine(i);
+                if (line < document.getLineCount()) {
+                    invalidLines.set(line);
+                    mark(line, errors.getColumn(i), errors.getMessage(i));
+                }
+            }
+        }
+        onErrorsChanged.run();
+    }
+    
+    /**
+     * Lines {@code startLine..oldEndLine} became {@code startLine..newEndLine}.
+     */
+    private void recheckLines(int startLine, int oldEndLine, int newEndLine) {
+        int lineDelta = newEndLine - oldEndLine;
+        if (lineDelta != 0) {
+            shiftLines(oldEndLine + 1, lineDelta);
+        }
+        invalidLines.clear(startLine, newEndLine + 1);
+        removeHighlighters(startLine, newEndLine);
+        
+        if (newEndLine - startLine >= MAX_INCREMENTAL_LINES) {
+            scan();
+            return;
+        }
+        CharSequence text = document.getImmutableCharSequence();
+        for (int line = startLine; line <= newEndLine; line++) {
+            int start = document.getLineStartOffset(line);
+            int end = document.getLineEndOffset(line);
+            if (!validator.validate(text, start, end) && validator.getTopLevelType() != JsonValueType.EMPTY) {
+                invalidLines.set(line);
+                mark(line, validator.getErrorOffset() - start, validator.getErrorMessage());
+            }
+        }
+        onErrorsChanged.run();
+    }
+    
+    private void shiftLines(int fromLine, int lineDelta) {
+        int length = invalidLines.length();
+        if (fromLine >= length) {
+            return;
+        }
+        BitSet tail = invalidLines.get(fromLine, length);
+        invalidLines.clear(Math.min(fromLine, fromLine + lineDelta), length);
+        for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+            invalidLines.set(fromLine + lineDelta + i);
+        }
+    }
+    
+    private void mark(int line, int column, String message) {
+        if (highlighters.size() >= MAX_MARKED_LINES) {
+            return;
+        }
+        String tooltip = "Invalid JSON at column " + (column + 1) + ": " + message;
+        RangeHighlighter highlighter = editor.getMarkupModel().addLineHighlighter(line, HighlighterLayer.ERROR, null);
+        highlighter.setGutterIconRenderer(new InvalidLineIconRenderer(tooltip));
+        highlighter.setErrorStripeMarkColor(JBColor.RED);
+        highlighter.setErrorStripeTooltip(tooltip);
+        highlighters.add(highlighter);
+    }
+    
+    private void removeHighlighters(int startLine, int endLine) {
+        Iterator<RangeHighlighter> iterator = highlighters.iterator();
+        while (iterator.hasNext()) {
+            RangeHighlighter highlighter = iterator.next();
+            int line = highlighter.isValid() ? document.getLineNumber(highlighter.getStartOffset()) : -1;
+            if (line < 0 || (line >= startLine && line <= endLine)) {
+                editor.getMarkupModel().removeHighlighter(highlighter);
+                iterator.remove();
+            }
+        }
+    }
+    
+    void dispose() {
+        disposed = true;
+        ProgressIndicator indicator = scanIndicator;
+        if (indicator != null) {
+            indicator.cancel();
+        }
+        document.removeDocumentListener(documentListener);
+    }
+    
+    private static class InvalidLineIconRenderer extends GutterIconRenderer {
+        
+        private final String tooltip;
+        
+        InvalidLineIconRenderer(String tooltip) {
+            this.tooltip = tooltip;
+        }
+        
+        @Override
+        public @NotNull Icon getIcon() {
+            return AllIcons.General.Error;
+        }
+        
+        @Override
+        public String getTooltipText() {
+            return tooltip;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InvalidLineIconRenderer && Objects.equals(tooltip, ((InvalidLineIconRenderer) o).tooltip);
+        }
+        
+        @Override
+        public int hashCode() {
+            return tooltip.hashCode();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.omniviewer.jsonl;
+
+/**
+ * What one field holds across the records of a JSONL file: how often each type occurs, for numbers the
+ * exact minimum, maximum and mean and a {@link KllSketch} for quantiles, for strings a
+ * {@link HyperLogLog} for the number of distinct values. The size does not grow with the records, and
+ * the statistics of two parts of a file merge into those of both.
+ */
+final class JsonlFieldStats {
+    
+    private static final JsonValueType[] TYPES = JsonValueType.values();
+    
+    private final JsonPath path;
+    // Where the field was first met, line then position in the line, to list fields in file order
+    private long firstSeen;
+    private final long[] typeCounts = new long[TYPES.length];
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    // Created with the first number, or string
+    private KllSketch quantiles;
+    private HyperLogLog distinctStrings;
+    
+    JsonlFieldStats(JsonPath path, long firstSeen) {
+        this.path = path;
+        this.firstSeen = firstSeen;
+    }
+    
+    JsonPath getPath() {
+        return path;
+    }
+    
+    long getFirstSeen() {
+        return firstSeen;
+    }
+    
+    void add(JsonValueType type) {
+        typeCounts[type.ordinal()]++;
+    }
+    
+    void addNumber(double value) {
+        typeCounts[JsonValueType.NUMBER.ordinal()]++;
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // Past the range of a double, counted as a number but left out of the values
+            return;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        if (quantiles == null) {
+            quantiles = new KllSketch();
+        }
+        quantiles.add(value);
+    }
+    
+    void addString(long hash) {
+        typeCounts[JsonValueType.STRING.ordinal()]++;
+        if (distinctStrings == null) {
+            distinctStrings = new HyperLogLog();
+        }
+        distinctStrings.add(hash);
+    }
+    
+    void merge(JsonlFieldStats other) {
+        firstSeen = Math.min(firstSeen, other.firstSeen);
+        for (int i = 0; i < typeCounts.length; i++) {
+            typeCounts[i] += other.typeCounts[i];
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        if (other.quantiles != null) {
+            if (quantiles == null) {
+                quantiles = new KllSketch();
+            }
+            quantiles.merge(other.quantiles);
+        }
+        if (other.distinctStrings != null) {
+            if (distinctStrings == null) {
+                distinctStrings = new HyperLogLog();
+            }
+            distinctStrings.merge(other.distinctStrings);
+        }
+    }
+    
+    /**
+     * Records holding the field, whatever its value.
+     */
+    long getCount() {
+        long count = 0;
+        for (long typeCount : typeCounts) {
+            count += typeCount;
+        }
+        return count;
+    }
+    
+    long getCount(JsonValueType type) {
+        return typeCounts[type.ordinal()];
+    }
+    
+    /**
+     * Whether numeric values were seen; min, max, mean and quantiles are NaN otherwise.
+     */
+    boolean hasNumbers() {
+        return quantiles != null;
+    }
+    
+    double getMin() {
+        return hasNumbers() ? min : Double.NaN;
+    }
+    
+    double getMax() {
+        return hasNumbers() ? max : Double.NaN;
+    }
+    
+    double getMean() {
+        return hasNumbers() ? sum / quantiles.getCount() : Double.NaN;
+    }
+    
+    double[] getQuantiles(double... fractions) {
+        return hasNumbers() ? quantiles.quantiles(fractions) : new KllSketch().quantiles(fractions);
+    }
+    
+    /**
+     * Estimated number of distinct string values, -1 when no string was seen.
+     */
+    long getDistinctStrings() {
+        return distinctStrings != null ? distinctStrings.estimate() : -1;
+    }
+}
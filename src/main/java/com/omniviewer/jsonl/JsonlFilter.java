@@ -0,0 +1,654 @@
+package com.omniviewer.jsonl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A predicate over JSONL records in a small jq-like language, compiled once and matched against lines
+ * with streaming {@link JsonPath.Locator}s:
+ * <pre>
+ *   .status == "error" &amp;&amp; .latency_ms &gt; 500
+ *   .user.name ~ "bob" || !.tags[0]
+ * </pre>
+ * Comparisons are {@code == != < <= > >=} against a string, number, {@code true}, {@code false} or
+ * {@code null}; {@code ~} tests that a string contains a substring. A path alone is true when its value
+ * exists and is neither {@code null} nor {@code false}. A missing value equals {@code null}, and orders
+ * against nothing.
+ * <p>
+ * Compiling also works out what every matching line must contain: top-level keys, used with the key
+ * fingerprints of a {@link JsonlLineIndex}, and literal substrings such as {@code "status"}, looked for
+ * in the raw text before any parsing. Keys and strings written with escapes of plain ASCII letters,
+ * which no encoder produces, would be missed by that.
+ */
+public final class JsonlFilter {
+    
+    private enum Operator {
+        EQUALS("=="), NOT_EQUALS("!="), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">="), CONTAINS("~");
+        
+        final String symbol;
+        
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+    
+    private final String expression;
+    private final List<JsonPath> paths = new ArrayList<>();
+    private final Node root;
+    private final Set<String> requiredTopLevelKeys;
+    private final String[] requiredSubstrings;
+    private final String[] requiredLatin1Substrings;
+    
+    private JsonlFilter(String expression) {
+        this.expression = expression;
+        Parser parser = new Parser(expression);
+        this.root = parser.parseExpression();
+        parser.expectEnd();
+        
+        Set<String> required = root.requiredSubstrings();
+        this.requiredTopLevelKeys = root.requiredTopLevelKeys();
+        this.requiredSubstrings = required.toArray(new String[0]);
+        this.requiredLatin1Substrings = new String[requiredSubstrings.length];
+        for (int i = 0; i < requiredSubstrings.length; i++) {
+            requiredLatin1Substrings[i] = JsonPath.toLatin1(requiredSubstrings[i]);
+        }
+    }
+    
+    /**
+     * @throws IllegalArgumentException with a message pointing at the problem
+     */
+    public static JsonlFilter compile(String expression) {
+        return new JsonlFilter(expression);
+    }
+    
+    public String getExpression() {
+        return expression;
+    }
+    
+    /**
+     * Top-level keys every matching record has.
+     */
+    public Set<String> getRequiredTopLevelKeys() {
+        return requiredTopLevelKeys;
+    }
+    
+    public Matcher newMatcher() {
+        return new Matcher();
+    }
+    
+    private int slotOf(JsonPath path) {
+        int slot = paths.indexOf(path);
+        if (slot < 0) {
+            slot = paths.size();
+            paths.add(path);
+        }
+        return slot;
+    }
+    
+    /**
+     * Matches lines for one thread.
+     */
+    public final class Matcher {
+        
+        private final JsonPath.Locator[] locators = new JsonPath.Locator[paths.size()];
+        private final JsonTokenizer.TokenType[] types = new JsonTokenizer.TokenType[paths.size()];
+        private final int[] starts = new int[paths.size()];
+        private final int[] ends = new int[paths.size()];
+        private final boolean[] located = new boolean[paths.size()];
+        private CharSequence text;
+        private boolean rawBytes;
+        
+        private Matcher() {
+            for (int i = 0; i < locators.length; i++) {
+                locators[i] = paths.get(i).newLocator();
+            }
+        }
+        
+        /**
+         * Cheap check on the raw text: false when the line lacks a substring every match contains.
+         */
+        public boolean mayMatch(CharSequence line) {
+            String[] substrings = line instanceof Latin1CharSequence ? requiredLatin1Substrings : requiredSubstrings;
+            for (String substring : substrings) {
+                if (indexOf(line, 0, line.length(), substring) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Evaluates the filter on a line known to be valid JSON. Paths are only located when the
+         * evaluation gets to them, and each one once.
+         */
+        public boolean matches(CharSequence line) {
+            text = line;
+            rawBytes = line instanceof Latin1CharSequence;
+            for (int i = 0; i < located.length; i++) {
+                located[i] = false;
+            }
+            return root.evaluate(this);
+        }
+        
+        private JsonTokenizer.TokenType locate(int slot) {
+            if (!located[slot]) {
+                JsonPath.Locator locator = locators[slot];
+                types[slot] = locator.locate(text);
+                starts[slot] = locator.getValueStart();
+                ends[slot] = locator.getValueEnd();
+                located[slot] = true;
+            }
+            return types[slot];
+        }
+    }
+    
+    private static int indexOf(CharSequence text, int from, int to, String substring) {
+        int length = substring.length();
+        if (length == 0) {
+            return from;
+        }
+        char first = substring.charAt(0);
+        int last = to - length;
+        for (int i = from; i <= last; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < length && text.charAt(i + j) == substring.charAt(j)) {
+                j++;
+            }
+            if (j == length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Whether a string survives JSON encoding unchanged by any common encoder, so it can be looked for in
+     * the raw text.
+     */
+    private static boolean isPlain(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7E || "\"\\/<>&'".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private abstract static class Node {
+        
+        abstract boolean evaluate(Matcher matcher);
+        
+        /**
+         * Substrings of the raw line that every line this node is true for contains.
+         */
+        Set<String> requiredSubstrings() {
+            return new HashSet<>();
+        }
+        
+        Set<String> requiredTopLevelKeys() {
+            return new HashSet<>();
+        }
+    }
+    
+    private static final class And extends Node {
+        final Node left;
+        final Node right;
+        
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+        
+        @Override
+        boolean evaluate(Matcher matcher) {
+            return left.evaluate(matcher) && right.evaluate(matcher);
+        }
+        
+        @Override
+        Set<String> requiredSubstrings() {
+            Set<String> result = left.requiredSubstrings();
+            result.addAll(right.requiredSubstrings());
+            return result;
+        }
+        
+        @Override
+        Set<String> requiredTopLevelKeys() {
+            Set<String> result = left.requiredTopLevelKeys();
+            result.addAll(right.requiredTopLevelKeys());
+            return result;
+        }
+    }
+    
+    private static final class Or extends Node {
+        final Node left;
+        final Node right;
+        
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+        
+        @Override
+        boolean evaluate(Matcher matcher) {
+            return left.evaluate(matcher) || right.evaluate(matcher);
+        }
+        
+        @Override
+        Set<String> requiredSubstrings() {
+            Set<String> result = left.requiredSubstrings();
+            result.retainAll(right.requiredSubstrings());
+            return result;
+        }
+        
+        @Override
+        Set<String> requiredTopLevelKeys() {
+            Set<String> result = left.requiredTopLevelKeys();
+            result.retainAll(right.requiredTopLevelKeys());
+            return result;
+        }
+    }
+    
+    private static final class Not extends Node {
+        final Node operand;
+        
+        Not(Node operand) {
+            this.operand = operand;
+        }
+        
+        @Override
+        boolean evaluate(Matcher matcher) {
+            return !operand.evaluate(matcher);
+        }
+    }
+    
+    /**
+     * A path alone: true when the value exists and is neither null nor false.
+     */
+    private static final class Truthy extends Node {
+        final JsonPath path;
+        final int slot;
+        
+        Truthy(JsonPath path, int slot) {
+            this.path = path;
+            this.slot = slot;
+        }
+        
+        @Override
+        boolean evaluate(Matcher matcher) {
+            JsonTokenizer.TokenType type = matcher.locate(slot);
+            return type != null && type != JsonTokenizer.TokenType.NULL && type != JsonTokenizer.TokenType.FALSE;
+        }
+        
+        @Override
+        Set<String> requiredSubstrings() {
+            return keySubstrings(path);
+        }
+        
+        @Override
+        Set<String> requiredTopLevelKeys() {
+            return firstKey(path);
+        }
+    }
+    
+    private static final class Comparison extends Node {
+        final JsonPath path;
+        final int slot;
+        final Operator operator;
+        final JsonTokenizer.TokenType literalType;
+        final double number;
+        final String string;
+        final String latin1String;
+        
+        Comparison(JsonPath path, int slot, Operator operator, JsonTokenizer.TokenType literalType, double number, String string) {
+            this.path = path;
+            this.slot = slot;
+            this.operator = operator;
+            this.literalType = literalType;
+            this.number = number;
+            this.string = string;
+            this.latin1String = string != null ? JsonPath.toLatin1(string) : null;
+        }
+        
+        @Override
+        boolean evaluate(Matcher matcher) {
+            JsonTokenizer.TokenType type = matcher.locate(slot);
+            int start = matcher.starts[slot];
+            int end = matcher.ends[slot];
+            CharSequence text = matcher.text;
+            switch (operator) {
+                case EQUALS:
+                    return equalsLiteral(type, text, start, end, matcher.rawBytes);
+                case NOT_EQUALS:
+                    return !equalsLiteral(type, text, start, end, matcher.rawBytes);
+                case CONTAINS:
+                    if (type != JsonTokenizer.TokenType.STRING) {
+                        return false;
+                    }
+                    if (!JsonPath.containsBackslash(text, start + 1, end - 1)) {
+                        return indexOf(text, start + 1, end - 1, matcher.rawBytes ? latin1String : string) >= 0;
+                    }
+                    return JsonlRowParser.decodeString(text, start, end, Integer.MAX_VALUE).contains(string);
+                default:
+                    int order;
+                    if (type == JsonTokenizer.TokenType.NUMBER && literalType == JsonTokenizer.TokenType.NUMBER) {
+                        order = Double.compare(parseNumber(text, start, end), number);
+                    } else if (type == JsonTokenizer.TokenType.STRING && literalType == JsonTokenizer.TokenType.STRING) {
+                        order = JsonlRowParser.decodeString(text, start, end, Integer.MAX_VALUE).compareTo(string);
+                    } else {
+                        return false;
+                    }
+                    switch (operator) {
+                        case LESS:
+                            return order < 0;
+                        case LESS_OR_EQUAL:
+                            return order <= 0;
+                        case GREATER:
+                            return order > 0;
+                        default:
+                            return order >= 0;
+                    }
+            }
+        }
+        
+        private boolean equalsLiteral(JsonTokenizer.TokenType type, CharSequence text, int start, int end, boolean rawBytes) {
+            if (type == null) {
+                // Missing is null
+                return literalType == JsonTokenizer.TokenType.NULL;
+            }
+            if (type != literalType) {
+                return false;
+            }
+            switch (type) {
+                case NUMBER:
+                    return parseNumber(text, start, end) == number;
+                case STRING:
+                    return JsonPath.stringEquals(text, start + 1, end - 1, rawBytes ? latin1String : string, string);
+                default:
+                    // true, false and null
+                    return true;
+            }
+        }
+        
+        /**
+         * A comparison can only be true without the value for {@code != x} and {@code == null}.
+         */
+        private boolean requiresValue() {
+            if (operator == Operator.NOT_EQUALS) {
+                return false;
+            }
+            return operator != Operator.EQUALS || literalType != JsonTokenizer.TokenType.NULL;
+        }
+        
+        @Override
+        Set<String> requiredSubstrings() {
+            if (!requiresValue()) {
+                return new HashSet<>();
+            }
+            Set<String> result = keySubstrings(path);
+            // Only equality and containment put the literal in the line, orderings hold for other strings
+            if (string != null && isPlain(string)) {
+                if (operator == Operator.EQUALS) {
+                    result.add("\"" + string + "\"");
+                } else if (operator == Operator.CONTAINS) {
+                    result.add(string);
+                }
+            }
+            return result;
+        }
+        
+        @Override
+        Set<String> requiredTopLevelKeys() {
+            return requiresValue() ? firstKey(path) : new HashSet<>();
+        }
+    }
+    
+    private static Set<String> keySubstrings(JsonPath path) {
+        Set<String> result = new HashSet<>();
+        for (String key : path.getKeys()) {
+            if (isPlain(key)) {
+                result.add("\"" + key + "\"");
+            }
+        }
+        return result;
+    }
+    
+    private static Set<String> firstKey(JsonPath path) {
+        Set<String> result = new HashSet<>();
+        if (path.getFirstKey() != null) {
+            result.add(path.getFirstKey());
+        }
+        return result;
+    }
+    
+    /**
+     * Parses a number token, integers of up to 15 digits without allocating; those are exact as doubles.
+     */
+    static double parseNumber(CharSequence text, int start, int end) {
+        boolean negative = text.charAt(start) == '-';
+        int digitsStart = negative ? start + 1 : start;
+        if (end - digitsStart <= 15) {
+            long value = 0;
+            int i = digitsStart;
+            while (i < end) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                i++;
+            }
+            if (i == end) {
+                return negative ? -value : value;
+            }
+        }
+        return Double.parseDouble(text.subSequence(start, end).toString());
+    }
+    
+    /**
+     * Recursive descent over the expression, {@code ||} binding weaker than {@code &&}, {@code !} strongest.
+     */
+    private final class Parser {
+        
+        private final String input;
+        private int position;
+        
+        Parser(String input) {
+            this.input = input;
+        }
+        
+        Node parseExpression() {
+            Node node = parseAnd();
+            while (consume("||")) {
+                node = new Or(node, parseAnd());
+            }
+            return node;
+        }
+        
+        void expectEnd() {
+            skipWhitespace();
+            if (position < input.length()) {
+                throw error("Unexpected '" + input.charAt(position) + "'");
+            }
+        }
+        
+        private Node parseAnd() {
+            Node node = parseUnary();
+            while (consume("&&")) {
+                node = new And(node, parseUnary());
+            }
+            return node;
+        }
+        
+        private Node parseUnary() {
+            skipWhitespace();
+            if (consume("!")) {
+                return new Not(parseUnary());
+            }
+            if (consume("(")) {
+                Node node = parseExpression();
+                if (!consume(")")) {
+                    throw error("Expected ')'");
+                }
+                return node;
+            }
+            return parseComparison();
+        }
+        
+        private Node parseComparison() {
+            skipWhitespace();
+            if (position >= input.length() || (input.charAt(position) != '.' && input.charAt(position) != '[')) {
+                throw error("Expected a path such as .key");
+            }
+            JsonPath path = parsePath();
+            int slot = slotOf(path);
+            Operator operator = parseOperator();
+            if (operator == null) {
+                return new Truthy(path, slot);
+            }
+            
+            skipWhitespace();
+            if (position >= input.length()) {
+                throw error("Expected a value after " + operator.symbol);
+            }
+            char c = input.charAt(position);
+            if (c == '"') {
+                return new Comparison(path, slot, operator, JsonTokenizer.TokenType.STRING, 0, parseString());
+            }
+            if (operator == Operator.CONTAINS) {
+                throw error("Expected a string after ~");
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                int start = position;
+                while (position < input.length() && "+-.eE0123456789".indexOf(input.charAt(position)) >= 0) {
+                    position++;
+                }
+                try {
+                    return new Comparison(path, slot, operator, JsonTokenizer.TokenType.NUMBER,
+                        Double.parseDouble(input.substring(start, position)), null);
+                } catch (NumberFormatException e) {
+                    position = start;
+                    throw error("Invalid number");
+                }
+            }
+            for (JsonTokenizer.TokenType literal : new JsonTokenizer.TokenType[]{
+                JsonTokenizer.TokenType.TRUE, JsonTokenizer.TokenType.FALSE, JsonTokenizer.TokenType.NULL}) {
+                String word = literal.name().toLowerCase();
+                if (input.startsWith(word, position)) {
+                    if (operator != Operator.EQUALS && operator != Operator.NOT_EQUALS) {
+                        throw error("Only == and != apply to " + word);
+                    }
+                    position += word.length();
+                    return new Comparison(path, slot, operator, literal, 0, null);
+                }
+            }
+            throw error("Expected a string, number, true, false or null");
+        }
+        
+        private JsonPath parsePath() {
+            int start = position;
+            while (position < input.length()) {
+                char c = input.charAt(position);
+                if (c == '"') {
+                    // Quoted key inside brackets
+                    position++;
+                    while (position < input.length() && input.charAt(position) != '"') {
+                        position += input.charAt(position) == '\\' ? 2 : 1;
+                    }
+                    position++;
+                } else if (c == '.' || c == '[' || c == ']' || JsonPath.isNameChar(c)) {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            try {
+                return JsonPath.parse(input.substring(start, Math.min(position, input.length())));
+            } catch (IllegalArgumentException e) {
+                position = start;
+                throw error(e.getMessage());
+            }
+        }
+        
+        private Operator parseOperator() {
+            skipWhitespace();
+            // Two-character operators first
+            for (Operator operator : new Operator[]{Operator.EQUALS, Operator.NOT_EQUALS, Operator.LESS_OR_EQUAL,
+                Operator.GREATER_OR_EQUAL, Operator.LESS, Operator.GREATER, Operator.CONTAINS}) {
+                if (input.startsWith(operator.symbol, position)) {
+                    position += operator.symbol.length();
+                    return operator;
+                }
+            }
+            return null;
+        }
+        
+        private String parseString() {
+            StringBuilder value = new StringBuilder();
+            int start = position++;
+            while (position < input.length() && input.charAt(position) != '"') {
+                char c = input.charAt(position++);
+                if (c == '\\' && position < input.length()) {
+                    char escaped = input.charAt(position++);
+                    switch (escaped) {
+                        case 'n':
+                            value.append('\n');
+                            break;
+                        case 't':
+                            value.append('\t');
+                            break;
+                        case 'r':
+                            value.append('\r');
+                            break;
+                        case 'u':
+                            if (position + 4 > input.length()) {
+                                throw error("Invalid unicode escape");
+                            }
+                            try {
+                                value.append((char) Integer.parseInt(input.substring(position, position + 4), 16));
+                            } catch (NumberFormatException e) {
+                                throw error("Invalid unicode escape");
+                            }
+                            position += 4;
+                            break;
+                        default:
+                            value.append(escaped);
+                            break;
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+            if (position >= input.length()) {
+                position = start;
+                throw error("Unterminated string");
+            }
+            position++;
+            return value.toString();
+        }
+        
+        private boolean consume(String symbol) {
+            skipWhitespace();
+            if (input.startsWith(symbol, position)) {
+                position += symbol.length();
+                return true;
+            }
+            return false;
+        }
+        
+        private void skipWhitespace() {
+            while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+                position++;
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + (position + 1));
+        }
+    }
+}
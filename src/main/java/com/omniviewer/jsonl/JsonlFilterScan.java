@@ -0,0 +1,204 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a {@link JsonlFilter} over all lines of a {@link JsonlLineSnapshot}, line ranges in parallel on
+ * the {@link JsonlWorkerPool}. Matches are handed to a {@link Listener} range by range, in line order,
+ * as soon as every earlier range is done.
+ * <p>
+ * Most lines are turned down before they are parsed. With a {@link JsonlLineIndex}, empty and invalid
+ * lines are skipped without reading them, and so are lines whose key fingerprint was already seen
+ * without the top-level keys the filter requires; lines the index found valid are not validated again.
+ * Without an index, lines missing a literal every match contains are skipped before validation.
+ */
+final class JsonlFilterScan {
+    
+    interface Listener {
+        /**
+         * Called on the scanning thread with the next matching lines, ascending.
+         */
+        void onMatches(int[] lines, int count);
+        
+        void onProgress(int scannedLines);
+    }
+    
+    private static final int SEGMENT_LINES = 16 * 1024;
+    private static final long MAX_LINE_LENGTH = 64L << 20;
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+    
+    private final JsonlLineSnapshot snapshot;
+    private final JsonlFilter filter;
+    
+    JsonlFilterScan(JsonlLineSnapshot snapshot, JsonlFilter filter) {
+        this.snapshot = snapshot;
+        this.filter = filter;
+    }
+    
+    /**
+     * Scans all lines and returns the number of matches.
+     */
+    int run(Listener listener, @Nullable ProgressIndicator indicator) throws IOException {
+        int size = snapshot.getLineCount();
+        int segmentCount = (size + SEGMENT_LINES - 1) / SEGMENT_LINES;
+        AtomicInteger doneLines = new AtomicInteger();
+        List<ForkJoinTask<Segment>> tasks = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int from = i * SEGMENT_LINES;
+            int to = Math.min(size, from + SEGMENT_LINES);
+            tasks.add(JsonlWorkerPool.POOL.submit(() -> {
+                try {
+                    return scan(from, to, indicator, doneLines, listener);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        
+        int matchCount = 0;
+        try {
+            for (ForkJoinTask<Segment> task : tasks) {
+                Segment segment = task.join();
+                if (indicator != null) {
+                    indicator.checkCanceled();
+                }
+                if (segment.count > 0) {
+                    listener.onMatches(segment.lines, segment.count);
+                    matchCount += segment.count;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            cancelAll(tasks);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            cancelAll(tasks);
+            throw e;
+        }
+        return matchCount;
+    }
+    
+    private Segment scan(int from, int to, @Nullable ProgressIndicator indicator, AtomicInteger doneLines,
+                         Listener listener) throws IOException {
+        Segment segment = new Segment();
+        JsonlLineIndex index = snapshot.getLineIndex();
+        JsonlLineSnapshot.Reader reader = snapshot.newReader();
+        JsonlFilter.Matcher matcher = filter.newMatcher();
+        KeyCheck keyCheck = new KeyCheck(filter.getRequiredTopLevelKeys());
+        JsonValidator validator = new JsonValidator();
+        for (int line = from; line < to; line++) {
+            if ((line - from) % CANCEL_CHECK_INTERVAL == 0 && indicator != null && indicator.isCanceled()) {
+                break;
+            }
+            if (index != null) {
+                if (!index.isValid(line) || index.getType(line) == JsonValueType.EMPTY
+                    || !keyCheck.mayMatch(index, line)) {
+                    continue;
+                }
+            }
+            CharSequence text = reader.readLine(line, MAX_LINE_LENGTH);
+            if (text == null || !matcher.mayMatch(text)) {
+                continue;
+            }
+            if (index != null ? !keyCheck.confirm(index, line, text) : !validator.validate(text)) {
+                continue;
+            }
+            if (matcher.matches(text)) {
+                segment.add(line);
+            }
+        }
+        int done = doneLines.addAndGet(to - from);
+        listener.onProgress(done);
+        if (indicator != null) {
+            indicator.setFraction((double) done / snapshot.getLineCount());
+        }
+        return segment;
+    }
+    
+    private static void cancelAll(List<ForkJoinTask<Segment>> tasks) {
+        for (ForkJoinTask<Segment> task : tasks) {
+            task.cancel(false);
+        }
+    }
+    
+    /**
+     * Whether lines have the top-level keys the filter requires, remembered per key fingerprint: records
+     * of a JSONL file mostly share a handful of key sets, so the keys are only parsed out once per set.
+     */
+    private static final class KeyCheck {
+        
+        private final Set<String> requiredKeys;
+        // The keys as read from a Latin1CharSequence
+        private final Set<String> requiredLatin1Keys = new HashSet<>();
+        private final Map<Integer, Boolean> byFingerprint = new HashMap<>();
+        private final JsonlRowParser parser = new JsonlRowParser();
+        private final Set<String> keys = new HashSet<>();
+        
+        KeyCheck(Set<String> requiredKeys) {
+            this.requiredKeys = requiredKeys;
+            for (String key : requiredKeys) {
+                requiredLatin1Keys.add(JsonPath.toLatin1(key));
+            }
+        }
+        
+        /**
+         * False when the line surely lacks a required key, judging from the index alone.
+         */
+        boolean mayMatch(JsonlLineIndex index, int line) {
+            if (requiredKeys.isEmpty()) {
+                return true;
+            }
+            if (index.getType(line) != JsonValueType.OBJECT) {
+                return false;
+            }
+            Boolean known = byFingerprint.get(index.getKeyFingerprint(line));
+            return known == null || known;
+        }
+        
+        /**
+         * Checks the keys of a line whose fingerprint was not seen yet.
+         */
+        boolean confirm(JsonlLineIndex index, int line, CharSequence text) {
+            if (requiredKeys.isEmpty()) {
+                return true;
+            }
+            int fingerprint = index.getKeyFingerprint(line);
+            Boolean known = byFingerprint.get(fingerprint);
+            if (known == null) {
+                keys.clear();
+                parser.parse(text, (key, valueType, valueStart, valueEnd) -> keys.add(key));
+                known = keys.containsAll(text instanceof Latin1CharSequence ? requiredLatin1Keys : requiredKeys);
+                byFingerprint.put(fingerprint, known);
+            }
+            return known;
+        }
+    }
+    
+    /**
+     * Matching lines of one line range.
+     */
+    private static final class Segment {
+        int[] lines = new int[16];
+        int count;
+        
+        void add(int line) {
+            if (count == lines.length) {
+                int[] grown = new int[count * 2];
+                System.arraycopy(lines, 0, grown, 0, count);
+                lines = grown;
+            }
+            lines[count++] = line;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.JBColor;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.util.function.IntConsumer;
+
+/**
+ * Filter bar above the views of a JSONL file. The expression typed in is compiled into a
+ * {@link JsonlFilter} and run over a snapshot of the lines by a {@link JsonlFilterScan}; matching lines
+ * are listed below the views as they are found, and double-clicking one shows it.
+ */
+final class JsonlFilterView extends JPanel {
+    
+    private static final int MAX_DISPLAY_CHARS = 300;
+    // Longer lines are listed by number only
+    private static final long MAX_PREVIEW_LINE_LENGTH = 1L << 20;
+    
+    private final Project project;
+    private final VirtualFile file;
+    private final JsonlLineSource source;
+    private final IntConsumer lineSelected;
+    private final JBTextField filterField = new JBTextField();
+    private final JButton stopButton = new JButton("Stop");
+    private final JLabel statusLabel = new JLabel();
+    private final JBSplitter splitter = new JBSplitter(true, 0.7f);
+    private final ResultListModel resultModel = new ResultListModel();
+    private final JBList<Integer> resultList = new JBList<>(resultModel);
+    private final JComponent resultPanel;
+    private final JsonlLineSource.ChangeListener changeListener = this::linesChanged;
+    // Lines covered by the listed matches, 0 when no filter was run
+    private int filteredLines;
+    private int filterGeneration;
+    private volatile ProgressIndicator filterIndicator;
+    private volatile boolean disposed;
+    
+    JsonlFilterView(Project project, VirtualFile file, JsonlLineSource source, JComponent content,
+                    IntConsumer lineSelected) {
+        super(new BorderLayout());
+        this.project = project;
+        this.file = file;
+        this.source = source;
+        this.lineSelected = lineSelected;
+        
+        filterField.setToolTipText("<html>Filter records, e.g. <code>.level == \"error\" &amp;&amp; .latency_ms &gt; 500</code><br>"
+            + "Operators: == != &lt; &lt;= &gt; &gt;= ~ (contains), &amp;&amp; || ! and parentheses. "
+            + "Enter runs the filter, Escape clears it.</html>");
+        filterField.addActionListener(e -> runFilter());
+        filterField.registerKeyboardAction(e -> clearFilter(),
+            KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_FOCUSED);
+        stopButton.setEnabled(false);
+        stopButton.addActionListener(e -> stopFilter());
+        
+        JPanel bar = new JPanel(new BorderLayout(4, 0));
+        bar.setBorder(JBUI.Borders.empty(2, 4));
+        bar.add(new JLabel("Filter:"), BorderLayout.WEST);
+        bar.add(filterField, BorderLayout.CENTER);
+        JPanel actions = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        actions.add(stopButton);
+        actions.add(statusLabel);
+        bar.add(actions, BorderLayout.EAST);
+        add(bar, BorderLayout.NORTH);
+        
+        EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
+        Font font = new Font(scheme.getEditorFontName(), Font.PLAIN, scheme.getEditorFontSize());
+        resultList.setFont(font);
+        resultList.setFixedCellHeight(resultList.getFontMetrics(font).getHeight() + 2);
+        resultList.setCellRenderer(new ResultRenderer());
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    showSelectedResult();
+                }
+            }
+        });
+        resultList.registerKeyboardAction(e -> showSelectedResult(),
+            KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), JComponent.WHEN_FOCUSED);
+        resultPanel = new JBScrollPane(resultList);
+        
+        splitter.setFirstComponent(content);
+        add(splitter, BorderLayout.CENTER);
+        source.addChangeListener(changeListener);
+    }
+    
+    void dispose() {
+        disposed = true;
+        cancelFilter();
+        source.removeChangeListener(changeListener);
+    }
+    
+    private void runFilter() {
+        String expression = filterField.getText().trim();
+        if (expression.isEmpty()) {
+            clearFilter();
+            return;
+        }
+        JsonlFilter filter;
+        try {
+            filter = JsonlFilter.compile(expression);
+        } catch (IllegalArgumentException e) {
+            showError(e.getMessage());
+            return;
+        }
+        
+        cancelFilter();
+        resultModel.clear();
+        splitter.setSecondComponent(resultPanel);
+        JsonlLineSnapshot snapshot = source.snapshot();
+        int lineCount = snapshot.getLineCount();
+        filteredLines = lineCount;
+        int generation = filterGeneration;
+        showStatus("Filtering...");
+        stopButton.setEnabled(true);
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Filtering " + file.getName(), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                filterIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.setIndeterminate(false);
+                try {
+                    int matches = new JsonlFilterScan(snapshot, filter).run(new JsonlFilterScan.Listener() {
+                        @Override
+                        public void onMatches(int[] lines, int count) {
+                            ApplicationManager.getApplication().invokeLater(() -> {
+                                if (!disposed && generation == filterGeneration) {
+                                    resultModel.add(lines, count);
+                                }
+                            });
+                        }
+                        
+                        @Override
+                        public void onProgress(int scannedLines) {
+                            indicator.setText2(scannedLines + " of " + lineCount + " lines");
+                        }
+                    }, indicator);
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        if (!disposed && generation == filterGeneration) {
+                            stopButton.setEnabled(false);
+                            showStatus(matchText(matches) + " in " + lineCount + " lines");
+                        }
+                    });
+                } catch (IOException e) {
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        if (!disposed && generation == filterGeneration) {
+                            stopButton.setEnabled(false);
+                            showError("Could not filter: " + e.getMessage());
+                        }
+                    });
+                }
+            }
+            
+            @Override
+            public void onCancel() {
+                if (!disposed && generation == filterGeneration) {
+                    stopButton.setEnabled(false);
+                    showStatus("Stopped, " + matchText(resultModel.getSize()) + " so far");
+                }
+            }
+            
+            @Override
+            public void onFinished() {
+                filterIndicator = null;
+            }
+        });
+    }
+    
+    private void stopFilter() {
+        ProgressIndicator running = filterIndicator;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+    
+    /**
+     * Stops a running filter; matches it still reports are dropped.
+     */
+    private void cancelFilter() {
+        stopFilter();
+        filterGeneration++;
+    }
+    
+    private void clearFilter() {
+        cancelFilter();
+        filterField.setText("");
+        filteredLines = 0;
+        resultModel.clear();
+        splitter.setSecondComponent(null);
+        stopButton.setEnabled(false);
+        showStatus("");
+    }
+    
+    private void linesChanged(int firstChangedLine) {
+        // Appended lines only lack matches, edits may have moved the listed ones
+        if (firstChangedLine < filteredLines) {
+            showStatus("Lines changed, press Enter to filter again");
+        }
+    }
+    
+    private void showSelectedResult() {
+        int index = resultList.getSelectedIndex();
+        if (index >= 0) {
+            lineSelected.accept(resultModel.getLine(index));
+        }
+    }
+    
+    private void showStatus(String text) {
+        statusLabel.setForeground(JBColor.GRAY);
+        statusLabel.setText(text);
+    }
+    
+    private void showError(String text) {
+        statusLabel.setForeground(JBColor.RED);
+        statusLabel.setText(text);
+    }
+    
+    private static String matchText(int matches) {
+        return matches == 1 ? "1 match" : matches + " matches";
+    }
+    
+    /**
+     * Matching line numbers in a growing int array, so that millions of matches take no boxing.
+     */
+    private static final class ResultListModel extends AbstractListModel<Integer> {
+        private int[] lines = new int[0];
+        private int size;
+        
+        void add(int[] matches, int count) {
+            if (size + count > lines.length) {
+                int[] grown = new int[Math.max(size + count, lines.length * 2)];
+                System.arraycopy(lines, 0, grown, 0, size);
+                lines = grown;
+            }
+            System.arraycopy(matches, 0, lines, size, count);
+            size += count;
+            fireIntervalAdded(this, size - count, size - 1);
+        }
+        
+        void clear() {
+            int previous = size;
+            lines = new int[0];
+            size = 0;
+            if (previous > 0) {
+                fireIntervalRemoved(this, 0, previous - 1);
+            }
+        }
+        
+        int getLine(int index) {
+            return lines[index];
+        }
+        
+        @Override
+        public int getSize() {
+            return size;
+        }
+        
+        @Override
+        public Integer getElementAt(int index) {
+            return lines[index];
+        }
+    }
+    
+    /**
+     * Shows a matching line as its number and the start of its text, read when the row is painted.
+     */
+    private final class ResultRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            int line = (Integer) value;
+            String text;
+            try {
+                if (line >= source.getLineCount()) {
+                    text = "";
+                } else if (source.getLineLength(line) > MAX_PREVIEW_LINE_LENGTH) {
+                    text = "(long line)";
+                } else {
+                    CharSequence lineText = source.getLineText(line);
+                    text = JsonlRowParser.displayText(lineText, null, 0, lineText.length(), MAX_DISPLAY_CHARS);
+                }
+            } catch (IOException e) {
+                text = "(" + e.getMessage() + ")";
+            }
+            return super.getListCellRendererComponent(list, (line + 1) + ":  " + text, index, isSelected, cellHasFocus);
+        }
+    }
+}
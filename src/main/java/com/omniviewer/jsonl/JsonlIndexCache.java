@@ -0,0 +1,179 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.omniviewer.util.BoundedDiskCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Persists {@link JsonlLineIndex} tables, line summaries included, so that reopening an unchanged large
+ * JSONL file does not require scanning it again.
+ * Entries are keyed by path, length, on-disk timestamp and a hash of the first and last 64 KB, like
+ * {@link com.omniviewer.audio.WaveformPeakCache}. Line starts are written as varint deltas, usually one
+ * or two bytes per line.
+ */
+public final class JsonlIndexCache {
+    
+    private static final Logger LOG = Logger.getInstance(JsonlIndexCache.class);
+    private static final int MAGIC = 0x4F564A49; // "OVJI"
+    private static final int VERSION = 2;
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    private static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    
+    private static final JsonlIndexCache INSTANCE = new JsonlIndexCache(
+        new BoundedDiskCache("jsonl-index", Long.getLong("omniviewer.jsonlIndexCache.maxBytes", DEFAULT_MAX_BYTES)));
+    
+    private final BoundedDiskCache cache;
+    
+    // Tests pass a cache in a directory of their own
+    JsonlIndexCache(BoundedDiskCache cache) {
+        this.cache = cache;
+    }
+    
+    public static JsonlIndexCache getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Returns the cached index for the current content of the file, or null on a miss.
+     */
+    public JsonlLineIndex load(VirtualFile file, MappedJsonlFile mapped, @Nullable ProgressIndicator indicator) {
+        String key;
+        try {
+            key = keyFor(file, mapped);
+        } catch (IOException e) {
+            return null;
+        }
+        
+        InputStream entry = cache.open(key);
+        if (entry == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(entry, STREAM_BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                cache.remove(key);
+                return null;
+            }
+            long fileSize = in.readLong();
+            int lineCount = in.readInt();
+            if (fileSize != mapped.size() || lineCount < 0) {
+                cache.remove(key);
+                return null;
+            }
+            
+            JsonlLineIndex.Builder builder = new JsonlLineIndex.Builder(fileSize);
+            long start = 0;
+            for (int line = 0; line < lineCount; line++) {
+                long delta = readVarLong(in);
+                // Every line but the first ends a previous one, so starts strictly increase
+                if (delta < 0 || (delta == 0 && line > 0)) {
+                    throw new IOException("Line " + line + " does not start after the previous one");
+                }
+                start += delta;
+                if (start >= fileSize) {
+                    throw new IOException("Line start " + start + " past the end of the file");
+                }
+                byte info = in.readByte();
+                if (!JsonlLineIndex.isLineInfo(info)) {
+                    throw new IOException("Unknown summary " + info + " of line " + line);
+                }
+                int keyFingerprint = JsonlLineIndex.typeOf(info) == JsonValueType.OBJECT ? in.readInt() : 0;
+                builder.add(start, info, keyFingerprint);
+                if ((line & 0xFFFF) == 0 && indicator != null) {
+                    indicator.checkCanceled();
+                    indicator.setFraction((double) line / lineCount);
+                }
+            }
+            return builder.build();
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Discarding unreadable JSONL index cache entry for " + file.getName() + ": " + e.getMessage());
+            cache.remove(key);
+            return null;
+        }
+    }
+    
+    public void store(VirtualFile file, MappedJsonlFile mapped, JsonlLineIndex index) {
+        if (!index.isComplete() || index.getLineCount() == 0) {
+            return;
+        }
+        try {
+            String key = keyFor(file, mapped);
+            cache.put(key, out -> {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, STREAM_BUFFER_SIZE));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeLong(index.getFileSize());
+                int lineCount = index.getLineCount();
+                data.writeInt(lineCount);
+                long previous = 0;
+                for (int line = 0; line < lineCount; line++) {
+                    long start = index.getLineStart(line);
+                    writeVarLong(data, start - previous);
+                    previous = start;
+                    data.writeByte(index.getLineInfo(line));
+                    // Only objects have keys, other lines save the four bytes
+                    if (index.getType(line) == JsonValueType.OBJECT) {
+                        data.writeInt(index.getKeyFingerprint(line));
+                    }
+                }
+                data.flush();
+            });
+        } catch (IOException e) {
+            LOG.warn("Failed to store JSONL index cache for " + file.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+    
+    private static String keyFor(VirtualFile file, MappedJsonlFile mapped) throws IOException {
+        return file.getPath() + "|" + mapped.size() + "|" + file.getTimeStamp() + "|" + fingerprint(mapped);
+    }
+    
+    private static long fingerprint(MappedJsonlFile mapped) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = mapped.size();
+        int headLength = (int) Math.min(size, FINGERPRINT_BYTES);
+        byte[] buffer = new byte[FINGERPRINT_BYTES];
+        mapped.read(0, buffer, 0, headLength);
+        crc.update(buffer, 0, headLength);
+        
+        long tailStart = Math.max(headLength, size - FINGERPRINT_BYTES);
+        int tailLength = (int) (size - tailStart);
+        if (tailLength > 0) {
+            mapped.read(tailStart, buffer, 0, tailLength);
+            crc.update(buffer, 0, tailLength);
+        }
+        return crc.getValue();
+    }
+}
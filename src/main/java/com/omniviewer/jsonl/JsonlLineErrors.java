@@ -0,0 +1,43 @@
+package com.omniviewer.jsonl;
+
+import java.util.Arrays;
+
+/**
+ * Invalid lines found by a validation pass, in line order: line number, error column within the line
+ * and the {@link JsonValidator} message.
+ */
+final class JsonlLineErrors {
+    
+    private int count;
+    private int[] lines = new int[64];
+    private int[] columns = new int[64];
+    private String[] messages = new String[64];
+    
+    void add(int line, int column, String message) {
+        if (count == lines.length) {
+            lines = Arrays.copyOf(lines, count << 1);
+            columns = Arrays.copyOf(columns, count << 1);
+            messages = Arrays.copyOf(messages, count << 1);
+        }
+        lines[count] = line;
+        columns[count] = column;
+        messages[count] = message;
+        count++;
+    }
+    
+    int getCount() {
+        return count;
+    }
+    
+    int getLine(int index) {
+        return lines[index];
+    }
+    
+    int getColumn(int index) {
+        return columns[index];
+    }
+    
+    String getMessage(int index) {
+        return messages[index];
+    }
+}
@@ -0,0 +1,249 @@
+package com.omniviewer.jsonl;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of the line starts of a {@link MappedJsonlFile}, so any line can be read in O(1)
+ * without decoding the lines before it.
+ * <p>
+ * Offsets are stored in blocks of {@link #BLOCK_SIZE} lines: one {@code long} base per block plus an
+ * unsigned {@code int} delta per line, about 4 bytes per line instead of 8. A block spanning more than
+ * 4 GB, which takes lines of several megabytes each, keeps its offsets as plain longs instead.
+ * <p>
+ * Each line also carries the summary computed while indexing: its top-level {@link JsonValueType},
+ * whether it passed the structural check of {@link JsonlLineScanner}, and a fingerprint of its top-level
+ * key set, one byte plus one int per line.
+ * <p>
+ * An index may cover only a prefix of the file while {@link JsonlLineIndexer} is still running; it then
+ * holds the lines whose end is already known. Snapshots share their arrays with the {@link Builder},
+ * which only ever writes past the lines they expose.
+ */
+public final class JsonlLineIndex {
+    
+    static final int BLOCK_SHIFT = 10;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final long MAX_DELTA = 0xFFFFFFFFL;
+    private static final int TYPE_MASK = 0x0F;
+    private static final int INVALID_FLAG = 0x10;
+    
+    private final long[] blockBases;
+    private final int[] deltas;
+    private final long[][] wideBlocks;
+    private final byte[] lineInfo;
+    private final int[] keyFingerprints;
+    private final int startCount;
+    private final long fileSize;
+    private final boolean complete;
+    
+    private JsonlLineIndex(long[] blockBases, int[] deltas, long[][] wideBlocks, byte[] lineInfo,
+                           int[] keyFingerprints, int startCount, long fileSize, boolean complete) {
+        this.blockBases = blockBases;
+        this.deltas = deltas;
+        this.wideBlocks = wideBlocks;
+        this.lineInfo = lineInfo;
+        this.keyFingerprints = keyFingerprints;
+        this.startCount = startCount;
+        this.fileSize = fileSize;
+        this.complete = complete;
+    }
+    
+    public int getLineCount() {
+        // Until the whole file is indexed the last start found has no known end yet
+        return complete ? startCount : Math.max(0, startCount - 1);
+    }
+    
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    public long getFileSize() {
+        return fileSize;
+    }
+    
+    public long getLineStart(int line) {
+        int block = line >>> BLOCK_SHIFT;
+        long[] wide = wideBlocks[block];
+        if (wide != null) {
+            return wide[line & (BLOCK_SIZE - 1)];
+        }
+        return blockBases[block] + Integer.toUnsignedLong(deltas[line]);
+    }
+    
+    public JsonValueType getType(int line) {
+        return typeOf(lineInfo[line]);
+    }
+    
+    public boolean isValid(int line) {
+        return (lineInfo[line] & INVALID_FLAG) == 0;
+    }
+    
+    /**
+     * Lines with the same top-level keys, in any order, have the same fingerprint. 0 for non-objects.
+     */
+    public int getKeyFingerprint(int line) {
+        return keyFingerprints[line];
+    }
+    
+    byte getLineInfo(int line) {
+        return lineInfo[line];
+    }
+    
+    static byte lineInfo(JsonValueType type, boolean valid) {
+        return (byte) (type.ordinal() | (valid ? 0 : INVALID_FLAG));
+    }
+    
+    static JsonValueType typeOf(byte lineInfo) {
+        return JsonValueType.of(lineInfo & TYPE_MASK);
+    }
+    
+    /**
+     * Whether a line summary read back from disk holds a known type and no unknown flags.
+     */
+    static boolean isLineInfo(byte lineInfo) {
+        return (lineInfo & ~(TYPE_MASK | INVALID_FLAG)) == 0 && (lineInfo & TYPE_MASK) < JsonValueType.values().length;
+    }
+    
+    /**
+     * Offset of the next line start, or the end of the file for the last line: the end of the line
+     * including its separator.
+     */
+    public long getLineLimit(int line) {
+        return line + 1 < startCount ? getLineStart(line + 1) : fileSize;
+    }
+    
+    /**
+     * Line containing the byte at {@code offset}, found by binary search over the line starts.
+     */
+    public int findLine(long offset) {
+        int low = 0;
+        int high = getLineCount() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (getLineStart(middle) <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Offset just past the last character of the line, excluding the line separator.
+     */
+    public long getLineEnd(MappedJsonlFile file, int line) throws IOException {
+        long end = getLineLimit(line);
+        long start = getLineStart(line);
+        byte[] last = new byte[1];
+        // Strip "\n" and a preceding "\r"
+        for (int i = 0; i < 2 && end > start; i++) {
+            file.read(end - 1, last, 0, 1);
+            if (last[0] != '\n' && last[0] != '\r') {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+    
+    /**
+     * Bytes held by the offset table.
+     */
+    public long getMemorySize() {
+        long size = (long) blockBases.length * Long.BYTES + (long) deltas.length * Integer.BYTES
+            + (long) wideBlocks.length * Long.BYTES + lineInfo.length + (long) keyFingerprints.length * Integer.BYTES;
+        for (long[] wide : wideBlocks) {
+            if (wide != null) {
+                size += (long) wide.length * Long.BYTES;
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Collects line starts in increasing order.
+     */
+    public static final class Builder {
+        
+        private final long fileSize;
+        private long[] blockBases = new long[16];
+        private int[] deltas = new int[16 * BLOCK_SIZE];
+        private long[][] wideBlocks = new long[16][];
+        private byte[] lineInfo = new byte[16 * BLOCK_SIZE];
+        private int[] keyFingerprints = new int[16 * BLOCK_SIZE];
+        private int startCount;
+        
+        public Builder(long fileSize) {
+            this.fileSize = fileSize;
+        }
+        
+        public void add(long start, byte info, int keyFingerprint) {
+            int block = startCount >>> BLOCK_SHIFT;
+            int slot = startCount & (BLOCK_SIZE - 1);
+            if (slot == 0) {
+                ensureBlocks(block + 1);
+                blockBases[block] = start;
+            }
+            long[] wide = wideBlocks[block];
+            long delta = start - blockBases[block];
+            if (wide == null && delta > MAX_DELTA) {
+                wide = widen(block, slot);
+            }
+            if (wide != null) {
+                wide[slot] = start;
+            } else {
+                deltas[startCount] = (int) delta;
+            }
+            lineInfo[startCount] = info;
+            keyFingerprints[startCount] = keyFingerprint;
+            startCount++;
+        }
+        
+        public int getStartCount() {
+            return startCount;
+        }
+        
+        /**
+         * Index of the starts added so far. {@code complete} tells that no more starts follow, so the
+         * last line runs to the end of the file.
+         */
+        public JsonlLineIndex snapshot(boolean complete) {
+            // The block table is copied, a block widened later must not change under a published snapshot
+            return new JsonlLineIndex(blockBases, deltas, wideBlocks.clone(), lineInfo, keyFingerprints,
+                startCount, fileSize, complete);
+        }
+        
+        /**
+         * Final index with the arrays trimmed to the lines found.
+         */
+        public JsonlLineIndex build() {
+            int blocks = (startCount + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+            return new JsonlLineIndex(Arrays.copyOf(blockBases, blocks), Arrays.copyOf(deltas, startCount),
+                Arrays.copyOf(wideBlocks, blocks), Arrays.copyOf(lineInfo, startCount),
+                Arrays.copyOf(keyFingerprints, startCount), startCount, fileSize, true);
+        }
+        
+        private long[] widen(int block, int slot) {
+            long[] wide = new long[BLOCK_SIZE];
+            int first = block << BLOCK_SHIFT;
+            for (int i = 0; i < slot; i++) {
+                wide[i] = blockBases[block] + Integer.toUnsignedLong(deltas[first + i]);
+            }
+            wideBlocks[block] = wide;
+            return wide;
+        }
+        
+        private void ensureBlocks(int blocks) {
+            if (blocks > blockBases.length) {
+                // Grown copies leave the arrays of earlier snapshots untouched
+                int capacity = Math.max(blocks, blockBases.length + (blockBases.length >> 1));
+                blockBases = Arrays.copyOf(blockBases, capacity);
+                wideBlocks = Arrays.copyOf(wideBlocks, capacity);
+                deltas = Arrays.copyOf(deltas, capacity * BLOCK_SIZE);
+                lineInfo = Arrays.copyOf(lineInfo, capacity * BLOCK_SIZE);
+                keyFingerprints = Arrays.copyOf(keyFingerprints, capacity * BLOCK_SIZE);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds a {@link JsonlLineIndex} by scanning fixed-size chunks of a {@link MappedJsonlFile} for newlines
+ * concurrently on the {@link JsonlWorkerPool}, validating and summarizing each line with a
+ * {@link JsonlLineScanner} on the way. Chunks are joined in file order, so the lines of the first chunks
+ * can be shown while the rest of the file is still being scanned.
+ */
+public class JsonlLineIndexer {
+    
+    // Chunks never straddle a mapped region since the region size is a multiple of this
+    static final int CHUNK_SIZE = 8 << 20;
+    private static final long PUBLISH_INTERVAL_NANOS = 100_000_000L;
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 20;
+    // Only a line crossing a 1 GB region boundary is copied, and only up to this length
+    private static final int MAX_COPIED_LINE_BYTES = 256 << 20;
+    
+    /**
+     * Receives indexes of a growing prefix of the file, on the indexing thread.
+     */
+    public interface PartialIndexListener {
+        void onPartialIndex(JsonlLineIndex index);
+    }
+    
+    private final MappedJsonlFile file;
+    
+    public JsonlLineIndexer(MappedJsonlFile file) {
+        this.file = file;
+    }
+    
+    public JsonlLineIndex build(@Nullable ProgressIndicator indicator, @Nullable PartialIndexListener listener) throws IOException {
+        long size = file.size();
+        JsonlLineIndex.Builder builder = new JsonlLineIndex.Builder(size);
+        if (size == 0) {
+            return builder.build();
+        }
+        
+        int chunkCount = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        AtomicLong scannedBytes = new AtomicLong();
+        List<ForkJoinTask<ChunkLines>> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            long chunkStart = (long) i * CHUNK_SIZE;
+            tasks.add(JsonlWorkerPool.POOL.submit(() -> {
+                try {
+                    return scanChunk(chunkStart, indicator, scannedBytes, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        
+        long lastPublish = System.nanoTime();
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                ChunkLines lines = tasks.get(i).join();
+                if (indicator != null) {
+                    // A cancelled chunk is incomplete and must not reach a snapshot
+                    indicator.checkCanceled();
+                }
+                long chunkStart = (long) i * CHUNK_SIZE;
+                for (int n = 0; n < lines.count; n++) {
+                    builder.add(chunkStart + lines.starts[n], lines.info[n], lines.keyFingerprints[n]);
+                }
+                tasks.set(i, null);
+                
+                long now = System.nanoTime();
+                if (listener != null && (i == 0 || now - lastPublish >= PUBLISH_INTERVAL_NANOS) && i < chunkCount - 1) {
+                    lastPublish = now;
+                    listener.onPartialIndex(builder.snapshot(false));
+                }
+            }
+        } catch (UncheckedIOException e) {
+            cancelAll(tasks);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            cancelAll(tasks);
+            throw e;
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Finds and summarizes the lines starting in one chunk. The bytes before the first newline belong
+     * to a line of an earlier chunk; the last line is followed past the chunk end to its newline.
+     */
+    private ChunkLines scanChunk(long chunkStart, @Nullable ProgressIndicator indicator, AtomicLong scannedBytes,
+                                 long size) throws IOException {
+        int region = (int) (chunkStart / MappedJsonlFile.REGION_SIZE);
+        ByteBuffer buffer = file.getRegion(region);
+        int from = (int) (chunkStart - file.getRegionStart(region));
+        int to = (int) Math.min(from + (long) CHUNK_SIZE, buffer.limit());
+        int limit = buffer.limit();
+        
+        ChunkLines lines = new ChunkLines();
+        JsonlLineScanner scanner = new JsonlLineScanner();
+        int position = from;
+        if (chunkStart > 0 && !followsNewline(chunkStart)) {
+            while (position < to && buffer.get(position) != '\n') {
+                position++;
+            }
+            position++;
+        }
+        
+        Latin1CharSequence line = new Latin1CharSequence();
+        byte[] lineBytes = new byte[4096];
+        long nextCancelCheck = position;
+        while (position < to) {
+            int lineStart = position;
+            while (position < limit && buffer.get(position) != '\n') {
+                position++;
+            }
+            if (position < limit) {
+                // One bulk copy is cheaper than the tokenizer reading the mapped buffer byte by byte
+                int length = position - lineStart;
+                if (length > lineBytes.length) {
+                    lineBytes = new byte[Math.max(length, lineBytes.length << 1)];
+                }
+                buffer.get(lineStart, lineBytes, 0, length);
+                line.reset(lineBytes, 0, length);
+                scanner.scan(line);
+            } else {
+                scanCrossRegionLine(file.getRegionStart(region) + lineStart, scanner);
+            }
+            lines.add(lineStart - from, scanner.getLineInfo(), scanner.getKeyFingerprint());
+            position++;
+            
+            if (position >= nextCancelCheck) {
+                nextCancelCheck = position + CANCEL_CHECK_INTERVAL;
+                if (indicator != null && indicator.isCanceled()) {
+                    break;
+                }
+            }
+        }
+        
+        long scanned = scannedBytes.addAndGet(to - from);
+        if (indicator != null) {
+            indicator.setFraction((double) scanned / size);
+        }
+        return lines;
+    }
+    
+    private boolean followsNewline(long position) throws IOException {
+        byte[] previous = new byte[1];
+        file.read(position - 1, previous, 0, 1);
+        return previous[0] == '\n';
+    }
+    
+    /**
+     * Summarizes a line that runs past the end of a mapped region from a copy of its bytes.
+     */
+    private void scanCrossRegionLine(long lineStart, JsonlLineScanner scanner) throws IOException {
+        long lineEnd = file.size();
+        byte[] probe = new byte[64 * 1024];
+        for (long position = lineStart; position < lineEnd; position += probe.length) {
+            int read = file.read(position, probe, 0, probe.length);
+            int newline = indexOf(probe, read, (byte) '\n');
+            if (newline >= 0) {
+                lineEnd = position + newline;
+                break;
+            }
+        }
+        
+        long length = lineEnd - lineStart;
+        if (length > MAX_COPIED_LINE_BYTES) {
+            scanner.skip();
+            return;
+        }
+        byte[] bytes = new byte[(int) length];
+        file.read(lineStart, bytes, 0, bytes.length);
+        scanner.scan(new Latin1CharSequence(bytes, 0, bytes.length));
+    }
+    
+    private static int indexOf(byte[] bytes, int length, byte value) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Lines found in one chunk, with starts relative to the chunk start.
+     */
+    private static final class ChunkLines {
+        int count;
+        int[] starts = new int[1024];
+        byte[] info = new byte[1024];
+        int[] keyFingerprints = new int[1024];
+        
+        void add(int start, byte lineInfo, int keyFingerprint) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count << 1);
+                info = Arrays.copyOf(info, count << 1);
+                keyFingerprints = Arrays.copyOf(keyFingerprints, count << 1);
+            }
+            starts[count] = start;
+            info[count] = lineInfo;
+            keyFingerprints[count] = keyFingerprint;
+            count++;
+        }
+    }
+    
+    private static void cancelAll(List<ForkJoinTask<ChunkLines>> tasks) {
+        for (ForkJoinTask<ChunkLines> task : tasks) {
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+    }
+}
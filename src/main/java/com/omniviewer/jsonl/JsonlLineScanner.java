@@ -0,0 +1,45 @@
+package com.omniviewer.jsonl;
+
+/**
+ * Summarizes one JSONL line for the {@link JsonlLineIndex}: validity and top-level type from a
+ * {@link JsonValidator} pass, plus the fingerprint of the top-level object keys. Blank lines count as valid.
+ */
+final class JsonlLineScanner {
+    
+    private final JsonValidator validator = new JsonValidator();
+    private JsonValueType type;
+    private boolean valid;
+    private int keyFingerprint;
+    
+    void scan(CharSequence line) {
+        boolean parsed = validator.validate(line);
+        type = validator.getTopLevelType();
+        valid = parsed || type == JsonValueType.EMPTY;
+        keyFingerprint = parsed ? validator.getKeyFingerprint() : 0;
+    }
+    
+    /**
+     * For lines too long to be checked at all.
+     */
+    void skip() {
+        type = JsonValueType.UNKNOWN;
+        valid = false;
+        keyFingerprint = 0;
+    }
+    
+    JsonValueType getType() {
+        return type;
+    }
+    
+    boolean isValid() {
+        return valid;
+    }
+    
+    int getKeyFingerprint() {
+        return keyFingerprint;
+    }
+    
+    byte getLineInfo() {
+        return JsonlLineIndex.lineInfo(type, valid);
+    }
+}
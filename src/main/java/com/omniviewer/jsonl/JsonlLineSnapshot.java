@@ -0,0 +1,39 @@
+package com.omniviewer.jsonl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Lines of a {@link JsonlLineSource} frozen at one point in time, readable from any thread. Whole-file
+ * passes such as column extraction take one on the EDT and hand it to background workers.
+ */
+interface JsonlLineSnapshot {
+    
+    /**
+     * Reads lines for one thread. The text of a line may share a buffer with the reader, so it is only
+     * valid until the next read.
+     */
+    interface Reader {
+        /**
+         * Returns null for a line longer than {@code maxLength}, or too long for an array, without reading it.
+         */
+        CharSequence readLine(int line, long maxLength) throws IOException;
+    }
+    
+    int getLineCount();
+    
+    /**
+     * Changes whenever the lines of the source change, so results computed from a snapshot can be
+     * checked against the source later.
+     */
+    long getModificationStamp();
+    
+    Reader newReader();
+    
+    /**
+     * Index with the per-line summaries of the lines, when they come from an indexed file, else null.
+     */
+    @Nullable
+    JsonlLineIndex getLineIndex();
+}
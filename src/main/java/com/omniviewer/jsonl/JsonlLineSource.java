@@ -0,0 +1,47 @@
+package com.omniviewer.jsonl;
+
+import java.io.IOException;
+
+/**
+ * Lines of a JSONL file as the views over it see them, whether they live in a document or in a
+ * memory-mapped file indexed by {@link JsonlLineIndex}. Accessed on the EDT.
+ */
+interface JsonlLineSource {
+    
+    /**
+     * Notified on the EDT when lines were added, removed or edited.
+     */
+    interface ChangeListener {
+        /**
+         * @param firstChangedLine first line whose content may differ; lines before it are unchanged
+         */
+        void onLinesChanged(int firstChangedLine);
+    }
+    
+    int getLineCount();
+    
+    /**
+     * Length of a line in the units of {@link #getLineText}, without reading the line itself.
+     */
+    long getLineLength(int line) throws IOException;
+    
+    /**
+     * Text of a line without its terminator. For mapped files this is a {@link Latin1CharSequence} over the
+     * raw bytes, so only its {@code toString()} decodes UTF-8.
+     */
+    CharSequence getLineText(int line) throws IOException;
+    
+    /**
+     * Changes whenever lines are added, removed or edited.
+     */
+    long getModificationStamp();
+    
+    /**
+     * Freezes the current lines for a pass over the whole file on other threads.
+     */
+    JsonlLineSnapshot snapshot();
+    
+    void addChangeListener(ChangeListener listener);
+    
+    void removeChangeListener(ChangeListener listener);
+}
@@ -0,0 +1,131 @@
+package com.omniviewer.jsonl;
+
+/**
+ * Splits a JSONL record into its top-level fields without building a tree: each field is reported as
+ * its key and the range of its raw value, nested values being skipped over by the tokenizer.
+ * <p>
+ * Instances are reusable but not thread-safe.
+ */
+final class JsonlRowParser {
+    
+    interface FieldVisitor {
+        /**
+         * @param valueType first token of the value, {@code BEGIN_OBJECT} or {@code BEGIN_ARRAY} for nested values
+         */
+        void visitField(String key, JsonTokenizer.TokenType valueType, int valueStart, int valueEnd);
+    }
+    
+    private final JsonValidator validator = new JsonValidator();
+    private final JsonTokenizer tokenizer = new JsonTokenizer();
+    
+    JsonValidator getValidator() {
+        return validator;
+    }
+    
+    /**
+     * Validates a line and, if it holds an object, visits its top-level fields in order.
+     * Returns false for invalid lines; the validator then tells why.
+     */
+    boolean parse(CharSequence text, FieldVisitor visitor) {
+        if (!validator.validate(text)) {
+            return false;
+        }
+        if (validator.getTopLevelType() != JsonValueType.OBJECT) {
+            return true;
+        }
+        
+        // The grammar was checked above, only the structure is followed here
+        tokenizer.reset(text);
+        tokenizer.next();
+        JsonTokenizer.TokenType token = tokenizer.next();
+        while (token == JsonTokenizer.TokenType.STRING) {
+            String key = decodeString(text, tokenizer.getTokenStart(), tokenizer.getTokenEnd(), Integer.MAX_VALUE);
+            tokenizer.next();
+            JsonTokenizer.TokenType valueType = tokenizer.next();
+            int valueStart = tokenizer.getTokenStart();
+            if (valueType == JsonTokenizer.TokenType.BEGIN_OBJECT || valueType == JsonTokenizer.TokenType.BEGIN_ARRAY) {
+                tokenizer.skipNested();
+            }
+            visitor.visitField(key, valueType, valueStart, tokenizer.getTokenEnd());
+            // ',' then the next key, or '}'
+            token = tokenizer.next() == JsonTokenizer.TokenType.COMMA ? tokenizer.next() : JsonTokenizer.TokenType.END;
+        }
+        return true;
+    }
+    
+    /**
+     * Display text of a raw value: strings without quotes and escapes, anything else, or a range without
+     * a {@code type}, as written.
+     * At most {@code maxChars} characters are kept, longer values end in an ellipsis.
+     */
+    static String displayText(CharSequence text, JsonTokenizer.TokenType type, int start, int end, int maxChars) {
+        if (type == JsonTokenizer.TokenType.STRING) {
+            return decodeString(text, start, end, maxChars);
+        }
+        // UTF-8 text seen through Latin1CharSequence takes up to 4 chars per character
+        int rawEnd = (int) Math.min(end, start + 4L * maxChars);
+        return truncate(text.subSequence(start, rawEnd).toString(), maxChars, rawEnd < end);
+    }
+    
+    /**
+     * Decodes a string token, quotes included in the range.
+     */
+    static String decodeString(CharSequence text, int start, int end, int maxChars) {
+        int contentEnd = end - 1;
+        // An escape takes up to 6 chars for one character
+        int rawEnd = (int) Math.min(contentEnd, start + 1 + 6L * maxChars);
+        return truncate(unescape(text.subSequence(start + 1, rawEnd).toString()), maxChars, rawEnd < contentEnd);
+    }
+    
+    private static String unescape(String raw) {
+        int backslash = raw.indexOf('\\');
+        if (backslash < 0) {
+            return raw;
+        }
+        StringBuilder result = new StringBuilder(raw.length());
+        result.append(raw, 0, backslash);
+        for (int i = backslash; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\' || i + 1 >= raw.length()) {
+                result.append(c);
+                continue;
+            }
+            char escaped = raw.charAt(++i);
+            switch (escaped) {
+                case 'b':
+                    result.append('\b');
+                    break;
+                case 'f':
+                    result.append('\f');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'u':
+                    // Only a value cut short for display can end inside an escape
+                    if (i + 4 < raw.length()) {
+                        result.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                    }
+                    i += 4;
+                    break;
+                default:
+                    result.append(escaped);
+                    break;
+            }
+        }
+        return result.toString();
+    }
+    
+    private static String truncate(String text, int maxChars, boolean cut) {
+        if (text.length() > maxChars) {
+            return text.substring(0, maxChars) + "…";
+        }
+        return cut ? text + "…" : text;
+    }
+}
@@ -0,0 +1,327 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Profiles the fields of all records of a {@link JsonlLineSnapshot}: which keys occur, with which types,
+ * and what their values look like. Line ranges are scanned in parallel on the {@link JsonlWorkerPool},
+ * each into {@link JsonlFieldStats} of its own that are merged into the result as soon as the range is
+ * done, so only the ranges being scanned hold partial statistics.
+ * <p>
+ * Memory does not depend on the number of records: each field keeps fixed-size sketches and at most
+ * {@link #MAX_FIELDS} fields are tracked. Nested objects are followed up to {@link #MAX_DEPTH} keys deep,
+ * each key path being a field of its own; arrays are values and not looked into. Keys are matched on
+ * their raw text, so a record is only tokenized, and with a {@link JsonlLineIndex} invalid lines are
+ * skipped unread.
+ */
+final class JsonlStatistics {
+    
+    static final int MAX_FIELDS = 1000;
+    static final int MAX_DEPTH = 4;
+    private static final int SEGMENT_LINES = 64 * 1024;
+    // Longer lines are counted but not profiled
+    private static final long MAX_LINE_LENGTH = 64L << 20;
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+    
+    /**
+     * Statistics of a whole snapshot.
+     */
+    static final class Result {
+        final long modificationStamp;
+        final int lineCount;
+        final long records;
+        final long objectRecords;
+        final long invalidLines;
+        final long emptyLines;
+        final long skippedLines;
+        final boolean fieldsTruncated;
+        // In order of first appearance in the file
+        final List<JsonlFieldStats> fields;
+        
+        Result(long modificationStamp, int lineCount, long records, long objectRecords, long invalidLines,
+               long emptyLines, long skippedLines, boolean fieldsTruncated, List<JsonlFieldStats> fields) {
+            this.modificationStamp = modificationStamp;
+            this.lineCount = lineCount;
+            this.records = records;
+            this.objectRecords = objectRecords;
+            this.invalidLines = invalidLines;
+            this.emptyLines = emptyLines;
+            this.skippedLines = skippedLines;
+            this.fieldsTruncated = fieldsTruncated;
+            this.fields = fields;
+        }
+    }
+    
+    private final JsonlLineSnapshot snapshot;
+    // Merged so far, guarded by this
+    private final Map<JsonPath, JsonlFieldStats> fields = new HashMap<>();
+    private long records;
+    private long objectRecords;
+    private long invalidLines;
+    private long emptyLines;
+    private long skippedLines;
+    private boolean fieldsTruncated;
+    
+    JsonlStatistics(JsonlLineSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+    
+    Result run(@Nullable ProgressIndicator indicator) throws IOException {
+        int size = snapshot.getLineCount();
+        int segmentCount = (size + SEGMENT_LINES - 1) / SEGMENT_LINES;
+        AtomicInteger doneLines = new AtomicInteger();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int from = i * SEGMENT_LINES;
+            int to = Math.min(size, from + SEGMENT_LINES);
+            tasks.add(JsonlWorkerPool.POOL.submit(() -> {
+                try {
+                    merge(new Profiler().profile(from, to, indicator));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                int done = doneLines.addAndGet(to - from);
+                if (indicator != null) {
+                    indicator.setFraction((double) done / size);
+                    indicator.setText2(done + " of " + size + " lines");
+                }
+            }));
+        }
+        
+        try {
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+                if (indicator != null) {
+                    indicator.checkCanceled();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            cancelAll(tasks);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            cancelAll(tasks);
+            throw e;
+        }
+        
+        synchronized (this) {
+            List<JsonlFieldStats> ordered = new ArrayList<>(fields.values());
+            ordered.sort(Comparator.comparingLong(JsonlFieldStats::getFirstSeen));
+            return new Result(snapshot.getModificationStamp(), size, records, objectRecords, invalidLines, emptyLines,
+                skippedLines, fieldsTruncated, ordered);
+        }
+    }
+    
+    private synchronized void merge(Profiler profiler) {
+        records += profiler.records;
+        objectRecords += profiler.objectRecords;
+        invalidLines += profiler.invalidLines;
+        emptyLines += profiler.emptyLines;
+        skippedLines += profiler.skippedLines;
+        fieldsTruncated |= profiler.fieldsTruncated;
+        for (int i = 0; i < profiler.fieldCount; i++) {
+            JsonlFieldStats partial = profiler.stats[i];
+            JsonlFieldStats merged = fields.get(partial.getPath());
+            if (merged != null) {
+                merged.merge(partial);
+            } else if (fields.size() < MAX_FIELDS) {
+                fields.put(partial.getPath(), partial);
+            } else {
+                fieldsTruncated = true;
+            }
+        }
+    }
+    
+    private static void cancelAll(List<ForkJoinTask<?>> tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.cancel(false);
+        }
+    }
+    
+    /**
+     * Statistics of one line range. Fields are looked up by parent field and raw key text in an open
+     * addressing table, so known keys are found without decoding or allocating.
+     */
+    private final class Profiler {
+        
+        // Twice the fields at most, a power of two
+        private final int[] slots = new int[2048];
+        private final int[] parents = new int[MAX_FIELDS];
+        private final String[] rawKeys = new String[MAX_FIELDS];
+        private final JsonlFieldStats[] stats = new JsonlFieldStats[MAX_FIELDS];
+        private int fieldCount;
+        private final JsonValidator validator = new JsonValidator();
+        private final JsonTokenizer tokenizer = new JsonTokenizer();
+        private long records;
+        private long objectRecords;
+        private long invalidLines;
+        private long emptyLines;
+        private long skippedLines;
+        private boolean fieldsTruncated;
+        // Fields met so far on the current line, for their order of first appearance
+        private int lineFieldCount;
+        
+        Profiler profile(int from, int to, @Nullable ProgressIndicator indicator) throws IOException {
+            JsonlLineIndex index = snapshot.getLineIndex();
+            JsonlLineSnapshot.Reader reader = snapshot.newReader();
+            for (int line = from; line < to; line++) {
+                if ((line - from) % CANCEL_CHECK_INTERVAL == 0 && indicator != null && indicator.isCanceled()) {
+                    break;
+                }
+                JsonValueType type;
+                if (index != null) {
+                    // The index already validated the lines
+                    if (!index.isValid(line)) {
+                        invalidLines++;
+                        continue;
+                    }
+                    type = index.getType(line);
+                    if (type != JsonValueType.OBJECT) {
+                        countRecord(type);
+                        continue;
+                    }
+                }
+                CharSequence text = reader.readLine(line, MAX_LINE_LENGTH);
+                if (text == null) {
+                    skippedLines++;
+                    continue;
+                }
+                if (index == null) {
+                    boolean valid = validator.validate(text);
+                    type = validator.getTopLevelType();
+                    // Blank lines fail validation but are not errors
+                    if (!valid && type != JsonValueType.EMPTY) {
+                        invalidLines++;
+                        continue;
+                    }
+                    if (type != JsonValueType.OBJECT) {
+                        countRecord(type);
+                        continue;
+                    }
+                }
+                countRecord(JsonValueType.OBJECT);
+                tokenizer.reset(text);
+                tokenizer.next();
+                lineFieldCount = 0;
+                profileObject(text, line, -1, 0);
+            }
+            return this;
+        }
+        
+        private void countRecord(JsonValueType type) {
+            if (type == JsonValueType.EMPTY) {
+                emptyLines++;
+                return;
+            }
+            records++;
+            if (type == JsonValueType.OBJECT) {
+                objectRecords++;
+            }
+        }
+        
+        /**
+         * Adds the fields of an object whose opening brace was just read, up to its closing brace.
+         */
+        private void profileObject(CharSequence text, int line, int parent, int depth) {
+            // The grammar was checked before, only the structure is followed here
+            JsonTokenizer.TokenType token = tokenizer.next();
+            while (token == JsonTokenizer.TokenType.STRING) {
+                int field = findField(parent, text, tokenizer.getTokenStart(), tokenizer.getTokenEnd(), line);
+                tokenizer.next();
+                JsonTokenizer.TokenType valueType = tokenizer.next();
+                int valueStart = tokenizer.getTokenStart();
+                if (valueType == JsonTokenizer.TokenType.BEGIN_OBJECT && field >= 0 && depth + 1 < MAX_DEPTH) {
+                    stats[field].add(JsonValueType.OBJECT);
+                    profileObject(text, line, field, depth + 1);
+                } else {
+                    if (valueType == JsonTokenizer.TokenType.BEGIN_OBJECT || valueType == JsonTokenizer.TokenType.BEGIN_ARRAY) {
+                        tokenizer.skipNested();
+                    }
+                    if (field >= 0) {
+                        addValue(stats[field], valueType, text, valueStart, tokenizer.getTokenEnd());
+                    }
+                }
+                // ',' then the next key, or '}'
+                token = tokenizer.next() == JsonTokenizer.TokenType.COMMA ? tokenizer.next() : JsonTokenizer.TokenType.END;
+            }
+        }
+        
+        private void addValue(JsonlFieldStats field, JsonTokenizer.TokenType type, CharSequence text, int start, int end) {
+            switch (type) {
+                case STRING:
+                    field.addString(HyperLogLog.hash(text, start + 1, end - 1));
+                    break;
+                case NUMBER:
+                    field.addNumber(JsonlFilter.parseNumber(text, start, end));
+                    break;
+                case TRUE:
+                case FALSE:
+                    field.add(JsonValueType.BOOLEAN);
+                    break;
+                case NULL:
+                    field.add(JsonValueType.NULL);
+                    break;
+                case BEGIN_OBJECT:
+                    field.add(JsonValueType.OBJECT);
+                    break;
+                default:
+                    field.add(JsonValueType.ARRAY);
+                    break;
+            }
+        }
+        
+        /**
+         * Index of the field of a key token under a parent field, -1 for top-level keys, added if new.
+         * Returns -1 once {@link #MAX_FIELDS} fields are known.
+         */
+        private int findField(int parent, CharSequence text, int keyStart, int keyEnd, int line) {
+            long hash = HyperLogLog.hash(text, keyStart + 1, keyEnd - 1) ^ (parent * 0x9E3779B97F4A7C15L);
+            int mask = slots.length - 1;
+            int slot = (int) hash & mask;
+            while (slots[slot] != 0) {
+                int field = slots[slot] - 1;
+                if (parents[field] == parent && rawKeyEquals(rawKeys[field], text, keyStart + 1, keyEnd - 1)) {
+                    lineFieldCount++;
+                    return field;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (fieldCount == MAX_FIELDS) {
+                fieldsTruncated = true;
+                return -1;
+            }
+            
+            int field = fieldCount++;
+            slots[slot] = field + 1;
+            parents[field] = parent;
+            // As read, not decoded: compared to the raw chars of later lines
+            rawKeys[field] = new StringBuilder(keyEnd - keyStart).append(text, keyStart + 1, keyEnd - 1).toString();
+            String key = JsonlRowParser.decodeString(text, keyStart, keyEnd, Integer.MAX_VALUE);
+            JsonPath path = parent >= 0 ? stats[parent].getPath().withKey(key) : JsonPath.ofKey(key);
+            stats[field] = new JsonlFieldStats(path, ((long) line << 20) | Math.min(lineFieldCount++, (1 << 20) - 1));
+            return field;
+        }
+        
+        private boolean rawKeyEquals(String rawKey, CharSequence text, int start, int end) {
+            if (rawKey.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < rawKey.length(); i++) {
+                if (rawKey.charAt(i) != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.JBColor;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Content of the JSONL statistics tool window: profiles the file of the selected JSONL editor with
+ * {@link JsonlStatistics} and lists its fields, each with how often it is present, its types and null
+ * rate, the number of distinct strings, and the range, mean and quantiles of its numbers. Distinct
+ * counts and quantiles are estimates.
+ * <p>
+ * A file is profiled on request. Results are kept for the last {@link #MAX_CACHED_RESULTS} files and
+ * shown again on coming back to one, as long as its lines did not change.
+ */
+final class JsonlStatisticsPanel extends JPanel implements Disposable {
+    
+    private static final int MAX_CACHED_RESULTS = 8;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] COLUMN_NAMES =
+        {"Field", "Present", "Types", "Null", "Distinct strings", "Min", "Mean", "Max", "p50", "p90", "p99"};
+    private static final int FIELD_COLUMN_WIDTH = 200;
+    private static final int TYPES_COLUMN_WIDTH = 180;
+    private static final int VALUE_COLUMN_WIDTH = 90;
+    
+    private final Project project;
+    private final JButton analyzeButton = new JButton("Analyze");
+    private final JButton stopButton = new JButton("Stop");
+    private final JLabel statusLabel = new JLabel();
+    private final FieldTableModel model = new FieldTableModel();
+    private final JBTable table = new JBTable(model);
+    private final Map<VirtualFile, JsonlStatistics.Result> results =
+        new LinkedHashMap<VirtualFile, JsonlStatistics.Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<VirtualFile, JsonlStatistics.Result> eldest) {
+                return size() > MAX_CACHED_RESULTS;
+            }
+        };
+    private JsonlEditor editor;
+    private int analyzeGeneration;
+    private volatile ProgressIndicator analyzeIndicator;
+    private volatile boolean disposed;
+    
+    JsonlStatisticsPanel(Project project) {
+        super(new BorderLayout());
+        this.project = project;
+        
+        analyzeButton.setToolTipText("Read every line of the file and profile its fields");
+        analyzeButton.addActionListener(e -> analyze());
+        stopButton.setEnabled(false);
+        stopButton.addActionListener(e -> stopAnalysis());
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        bar.setBorder(JBUI.Borders.empty(2, 4));
+        bar.add(analyzeButton);
+        bar.add(stopButton);
+        bar.add(statusLabel);
+        add(bar, BorderLayout.NORTH);
+        
+        // Column widths are fixed so that no row has to be measured
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getTableHeader().setToolTipText("Present is relative to object records, Null to the records with the field. "
+            + "Distinct strings and quantiles are estimates.");
+        DefaultTableCellRenderer numberRenderer = new DefaultTableCellRenderer();
+        numberRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            boolean text = i == 0 || i == 2;
+            table.getColumnModel().getColumn(i).setPreferredWidth(
+                i == 0 ? FIELD_COLUMN_WIDTH : i == 2 ? TYPES_COLUMN_WIDTH : VALUE_COLUMN_WIDTH);
+            if (!text) {
+                table.getColumnModel().getColumn(i).setCellRenderer(numberRenderer);
+            }
+        }
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+        
+        project.getMessageBus().connect(this).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER,
+            new FileEditorManagerListener() {
+                @Override
+                public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+                    editorSelected(event.getNewEditor());
+                }
+            });
+        editorSelected(FileEditorManager.getInstance(project).getSelectedEditor());
+    }
+    
+    @Override
+    public void dispose() {
+        disposed = true;
+        cancelAnalysis();
+        results.clear();
+    }
+    
+    private void editorSelected(@Nullable FileEditor selected) {
+        editor = selected instanceof JsonlEditor ? (JsonlEditor) selected : null;
+        analyzeButton.setEnabled(editor != null);
+        if (editor == null) {
+            model.setResult(null);
+            showStatus("Select a JSONL file to profile its fields");
+            return;
+        }
+        JsonlStatistics.Result result = results.get(editor.getFile());
+        if (result != null && result.modificationStamp == editor.getLineSource().getModificationStamp()) {
+            showResult(result);
+        } else {
+            model.setResult(null);
+            showStatus(analyzeIndicator != null ? "Profiling..." : "Press Analyze to profile " + editor.getFile().getName());
+        }
+    }
+    
+    private void analyze() {
+        if (editor == null) {
+            return;
+        }
+        cancelAnalysis();
+        VirtualFile file = editor.getFile();
+        JsonlLineSnapshot snapshot = editor.getLineSource().snapshot();
+        int generation = analyzeGeneration;
+        model.setResult(null);
+        showStatus("Profiling...");
+        stopButton.setEnabled(true);
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Profiling " + file.getName(), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                analyzeIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.setIndeterminate(false);
+                try {
+                    JsonlStatistics.Result result = new JsonlStatistics(snapshot).run(indicator);
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        if (disposed || generation != analyzeGeneration) {
+                            return;
+                        }
+                        stopButton.setEnabled(false);
+                        results.put(file, result);
+                        // Shown if the file is still the selected one
+                        if (editor != null && editor.getFile().equals(file)) {
+                            showResult(result);
+                        }
+                    });
+                } catch (IOException e) {
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        if (!disposed && generation == analyzeGeneration) {
+                            stopButton.setEnabled(false);
+                            showError("Could not profile " + file.getName() + ": " + e.getMessage());
+                        }
+                    });
+                }
+            }
+            
+            @Override
+            public void onCancel() {
+                if (!disposed && generation == analyzeGeneration) {
+                    stopButton.setEnabled(false);
+                    showStatus("Stopped");
+                }
+            }
+            
+            @Override
+            public void onFinished() {
+                analyzeIndicator = null;
+            }
+        });
+    }
+    
+    private void stopAnalysis() {
+        ProgressIndicator running = analyzeIndicator;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+    
+    /**
+     * Stops a running analysis; its result is dropped when it arrives anyway.
+     */
+    private void cancelAnalysis() {
+        stopAnalysis();
+        analyzeGeneration++;
+    }
+    
+    private void showResult(JsonlStatistics.Result result) {
+        model.setResult(result);
+        StringBuilder status = new StringBuilder()
+            .append(result.records).append(result.records == 1 ? " record" : " records")
+            .append(" (").append(result.objectRecords).append(" objects), ")
+            .append(result.fields.size()).append(result.fields.size() == 1 ? " field" : " fields");
+        if (result.fieldsTruncated) {
+            status.append(", only the first ").append(JsonlStatistics.MAX_FIELDS).append(" tracked");
+        }
+        if (result.invalidLines > 0) {
+            status.append(", ").append(result.invalidLines).append(" invalid");
+        }
+        if (result.emptyLines > 0) {
+            status.append(", ").append(result.emptyLines).append(" blank");
+        }
+        if (result.skippedLines > 0) {
+            status.append(", ").append(result.skippedLines).append(" too long to read");
+        }
+        showStatus(status.toString());
+    }
+    
+    private void showStatus(String text) {
+        statusLabel.setForeground(JBColor.GRAY);
+        statusLabel.setText(text);
+    }
+    
+    private void showError(String text) {
+        statusLabel.setForeground(JBColor.RED);
+        statusLabel.setText(text);
+    }
+    
+    private static String percent(long part, long whole) {
+        return whole > 0 ? String.format(Locale.ROOT, "%.1f%%", 100.0 * part / whole) : "";
+    }
+    
+    private static String number(double value) {
+        if (Double.isNaN(value)) {
+            return "";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.4g", value);
+    }
+    
+    /**
+     * Types of a field by decreasing share, such as {@code string 97%, null 3%}.
+     */
+    private static String types(JsonlFieldStats field) {
+        long count = field.getCount();
+        List<JsonValueType> types = new ArrayList<>();
+        for (JsonValueType type : JsonValueType.values()) {
+            if (field.getCount(type) > 0) {
+                types.add(type);
+            }
+        }
+        types.sort(Comparator.comparingLong((JsonValueType type) -> field.getCount(type)).reversed());
+        StringBuilder text = new StringBuilder();
+        for (JsonValueType type : types) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(type.name().toLowerCase(Locale.ROOT));
+            if (types.size() > 1) {
+                text.append(' ').append(Math.round(100.0 * field.getCount(type) / count)).append('%');
+            }
+        }
+        return text.toString();
+    }
+    
+    /**
+     * One row per field, cells formatted once per result rather than on every paint.
+     */
+    private static final class FieldTableModel extends AbstractTableModel {
+        private List<String[]> rows = new ArrayList<>();
+        
+        void setResult(@Nullable JsonlStatistics.Result result) {
+            rows = new ArrayList<>();
+            if (result != null) {
+                for (JsonlFieldStats field : result.fields) {
+                    double[] quantiles = field.getQuantiles(QUANTILES);
+                    long distinct = field.getDistinctStrings();
+                    rows.add(new String[]{
+                        field.getPath().toString(),
+                        percent(field.getCount(), result.objectRecords),
+                        types(field),
+                        percent(field.getCount(JsonValueType.NULL), field.getCount()),
+                        distinct >= 0 ? "~" + distinct : "",
+                        number(field.getMin()),
+                        number(field.getMean()),
+                        number(field.getMax()),
+                        number(quantiles[0]),
+                        number(quantiles[1]),
+                        number(quantiles[2])
+                    });
+                }
+            }
+            fireTableDataChanged();
+        }
+        
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+}
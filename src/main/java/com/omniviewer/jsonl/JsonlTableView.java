@@ -0,0 +1,513 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.JBColor;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table over the records of a {@link JsonlLineSource}, one row per line and one column per top-level key.
+ * The columns are inferred in the background from a sample of lines. Rows are parsed only when the table
+ * paints them and kept in a bounded LRU cache, so scrolling through millions of records parses no more
+ * than the rows in view.
+ * <p>
+ * Clicking a header sorts by that key. The key is projected into a {@link JsonlColumn} in the background,
+ * or taken from the {@link JsonlColumnCache}, and only the resulting row order is kept here.
+ */
+final class JsonlTableView extends JPanel {
+    
+    // The sample is the first lines plus lines spread evenly over the rest of the file
+    private static final int SAMPLE_HEAD_LINES = 1000;
+    private static final int SAMPLE_SPREAD_LINES = 1000;
+    private static final int MAX_COLUMNS = 256;
+    private static final int MAX_CACHED_ROWS = 4096;
+    private static final int MAX_CELL_CHARS = 200;
+    // Longer lines are listed but not parsed for the table
+    private static final long MAX_PARSED_LINE_LENGTH = 4L << 20;
+    private static final int COLUMN_WIDTH = 160;
+    private static final int LINE_NUMBER_WIDTH = 70;
+    
+    private final Project project;
+    private final VirtualFile file;
+    private final JsonlLineSource source;
+    private final JsonlRowParser parser = new JsonlRowParser();
+    private final RecordTableModel model = new RecordTableModel();
+    private final JBTable table;
+    private final JLabel statusLabel = new JLabel();
+    private final JsonlLineSource.ChangeListener changeListener = this::linesChanged;
+    private final Map<Integer, Row> rowCache = new LinkedHashMap<>(MAX_CACHED_ROWS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+            return size() > MAX_CACHED_ROWS;
+        }
+    };
+    private List<String> columns = new ArrayList<>();
+    private Map<String, Integer> columnIndexes = new HashMap<>();
+    private int sampledLines;
+    private int rowCount;
+    // Line shown in each row while sorted; rows past its end, appended since, stay in file order
+    private int[] rowOrder;
+    private int sortColumn = -1;
+    private boolean sortDescending;
+    // Counts changes other than appended lines, which invalidate a running sort
+    private int editCount;
+    private int sortGeneration;
+    private volatile ProgressIndicator sortIndicator;
+    private boolean inferring;
+    private int inferGeneration;
+    private volatile ProgressIndicator inferIndicator;
+    private volatile boolean disposed;
+    
+    JsonlTableView(Project project, VirtualFile file, JsonlLineSource source) {
+        this.project = project;
+        this.file = file;
+        this.source = source;
+        
+        setLayout(new BorderLayout());
+        
+        JButton refreshButton = new JButton("Refresh Columns");
+        refreshButton.setToolTipText("Sample the lines again for their keys");
+        refreshButton.addActionListener(e -> inferColumns());
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        bar.setBorder(JBUI.Borders.empty(2, 4));
+        bar.add(refreshButton);
+        bar.add(statusLabel);
+        add(bar, BorderLayout.NORTH);
+        
+        table = new JBTable(model);
+        // Column widths are fixed so that no row has to be measured
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        table.setDefaultRenderer(Object.class, new CellRenderer());
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getTableHeader().setToolTipText("Click to sort by a key, on # to restore the file order");
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(table.columnAtPoint(e.getPoint()));
+                if (column >= 0) {
+                    sortBy(column);
+                }
+            }
+        });
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+        
+        source.addChangeListener(changeListener);
+        inferColumns();
+    }
+    
+    JComponent getPreferredFocusedComponent() {
+        return table;
+    }
+    
+    void dispose() {
+        disposed = true;
+        cancelInference();
+        cancelSort();
+        source.removeChangeListener(changeListener);
+        rowCache.clear();
+        JsonlColumnCache.getInstance().removeFile(file);
+    }
+    
+    /**
+     * Samples the lines for their keys in the background; the current columns stay until the new ones
+     * are known.
+     */
+    private void inferColumns() {
+        cancelInference();
+        JsonlLineSnapshot snapshot = source.snapshot();
+        int generation = inferGeneration;
+        inferring = true;
+        statusLabel.setText("Sampling lines for columns...");
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Sampling " + file.getName() + " for columns", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                inferIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.setIndeterminate(false);
+                ColumnSample sample = sampleColumns(snapshot, indicator);
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (!disposed && generation == inferGeneration) {
+                        applyColumns(sample, snapshot.getLineCount());
+                    }
+                });
+            }
+            
+            @Override
+            public void onCancel() {
+                if (!disposed && generation == inferGeneration) {
+                    inferring = false;
+                    updateStatus();
+                }
+            }
+            
+            @Override
+            public void onFinished() {
+                inferIndicator = null;
+            }
+        });
+    }
+    
+    /**
+     * Stops a running inference; its result is dropped when it arrives anyway.
+     */
+    private void cancelInference() {
+        ProgressIndicator running = inferIndicator;
+        if (running != null) {
+            running.cancel();
+        }
+        inferGeneration++;
+        inferring = false;
+    }
+    
+    /**
+     * Collects the top-level keys of the sampled lines in order of first appearance. Past
+     * {@link #MAX_COLUMNS} keys, the most frequent ones are kept.
+     */
+    private static ColumnSample sampleColumns(JsonlLineSnapshot snapshot, ProgressIndicator indicator) {
+        // The parser of the view belongs to the EDT
+        JsonlRowParser sampleParser = new JsonlRowParser();
+        JsonlLineSnapshot.Reader reader = snapshot.newReader();
+        int lineCount = snapshot.getLineCount();
+        Map<String, int[]> keyCounts = new LinkedHashMap<>();
+        int sampled = 0;
+        int head = Math.min(lineCount, SAMPLE_HEAD_LINES);
+        int spread = Math.min(lineCount - head, SAMPLE_SPREAD_LINES);
+        for (int i = 0; i < head + spread; i++) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) i / (head + spread));
+            int line = i < head ? i : head + (int) ((long) (lineCount - head) * (i - head) / spread);
+            try {
+                CharSequence text = reader.readLine(line, MAX_PARSED_LINE_LENGTH);
+                if (text == null) {
+                    continue;
+                }
+                if (sampleParser.parse(text,
+                    (key, valueType, valueStart, valueEnd) -> keyCounts.computeIfAbsent(key, k -> new int[1])[0]++)) {
+                    sampled++;
+                }
+            } catch (IOException e) {
+                // Left out of the sample, the row shows the error
+            }
+        }
+        
+        List<String> keys = new ArrayList<>(keyCounts.keySet());
+        if (keys.size() > MAX_COLUMNS) {
+            List<String> frequent = new ArrayList<>(keys);
+            frequent.sort((a, b) -> Integer.compare(keyCounts.get(b)[0], keyCounts.get(a)[0]));
+            List<String> kept = frequent.subList(0, MAX_COLUMNS);
+            keys.retainAll(new HashSet<>(kept));
+        }
+        return new ColumnSample(keys, sampled);
+    }
+    
+    private void applyColumns(ColumnSample sample, int sampledLineCount) {
+        inferring = false;
+        columns = sample.keys;
+        columnIndexes = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndexes.put(columns.get(i), i);
+        }
+        sampledLines = sample.sampledLines;
+        rowCount = source.getLineCount();
+        rowCache.clear();
+        cancelSort();
+        clearSort();
+        model.fireTableStructureChanged();
+        applyColumnWidths();
+        updateStatus();
+        if (sampledLines == 0 && rowCount > sampledLineCount) {
+            // Lines of a file still being indexed arrived while sampling
+            inferColumns();
+        }
+    }
+    
+    private void applyColumnWidths() {
+        for (int i = 0; i < table.getColumnModel().getColumnCount(); i++) {
+            TableColumn column = table.getColumnModel().getColumn(i);
+            column.setPreferredWidth(i == 0 ? LINE_NUMBER_WIDTH : COLUMN_WIDTH);
+        }
+    }
+    
+    private void updateStatus() {
+        String status = rowCount + " records, " + columns.size() + " columns from " + sampledLines + " sampled lines";
+        if (rowOrder != null) {
+            status += ", sorted by " + columns.get(sortColumn - 1) + (sortDescending ? " (descending)" : "");
+        }
+        statusLabel.setText(status);
+    }
+    
+    /**
+     * Sorts by a key column, ascending first and descending on a second click. The line number column
+     * restores the file order.
+     */
+    private void sortBy(int column) {
+        cancelSort();
+        if (column == 0 || columns.isEmpty()) {
+            clearSort();
+            model.fireTableDataChanged();
+            updateStatus();
+            return;
+        }
+        boolean descending = column == sortColumn && !sortDescending;
+        String key = columns.get(column - 1);
+        JsonlLineSnapshot snapshot = source.snapshot();
+        int edits = editCount;
+        int generation = sortGeneration;
+        statusLabel.setText("Sorting by " + key + "...");
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Sorting " + file.getName() + " by " + key, true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                sortIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.setIndeterminate(false);
+                try {
+                    JsonlColumn values = JsonlColumnCache.getInstance().getColumn(file, snapshot, JsonPath.ofKey(key), indicator);
+                    indicator.setText2("Sorting rows");
+                    int[] order = values.sortRows(descending);
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        if (disposed || generation != sortGeneration) {
+                            return;
+                        }
+                        if (edits != editCount) {
+                            statusLabel.setText("Lines changed while sorting, click the header to sort again");
+                            return;
+                        }
+                        rowOrder = order;
+                        sortColumn = column;
+                        sortDescending = descending;
+                        refreshHeaders();
+                        model.fireTableDataChanged();
+                        updateStatus();
+                    });
+                } catch (IOException e) {
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        if (!disposed && generation == sortGeneration) {
+                            statusLabel.setText("Could not sort: " + e.getMessage());
+                        }
+                    });
+                }
+            }
+            
+            @Override
+            public void onCancel() {
+                if (!disposed && generation == sortGeneration) {
+                    updateStatus();
+                }
+            }
+            
+            @Override
+            public void onFinished() {
+                sortIndicator = null;
+            }
+        });
+    }
+    
+    /**
+     * Stops a running sort; its result is dropped when it arrives anyway.
+     */
+    private void cancelSort() {
+        ProgressIndicator running = sortIndicator;
+        if (running != null) {
+            running.cancel();
+        }
+        sortGeneration++;
+    }
+    
+    private void clearSort() {
+        rowOrder = null;
+        sortColumn = -1;
+        refreshHeaders();
+    }
+    
+    private void refreshHeaders() {
+        for (int i = 0; i < table.getColumnModel().getColumnCount(); i++) {
+            TableColumn column = table.getColumnModel().getColumn(i);
+            column.setHeaderValue(model.getColumnName(column.getModelIndex()));
+        }
+        table.getTableHeader().repaint();
+    }
+    
+    private int lineAt(int row) {
+        return rowOrder != null && row < rowOrder.length ? rowOrder[row] : row;
+    }
+    
+    private void linesChanged(int firstChangedLine) {
+        int previousCount = rowCount;
+        int lineCount = source.getLineCount();
+        if (sampledLines == 0 && previousCount == 0) {
+            // Lines of a file still being indexed arrive after the view opened, sampled once the
+            // running inference is done
+            if (!inferring) {
+                inferColumns();
+            }
+            return;
+        }
+        rowCount = lineCount;
+        if (firstChangedLine >= previousCount) {
+            if (lineCount > previousCount) {
+                model.fireTableRowsInserted(previousCount, lineCount - 1);
+            }
+        } else {
+            editCount++;
+            rowCache.keySet().removeIf(line -> line >= firstChangedLine);
+            if (rowOrder != null) {
+                // Sorted rows no longer match the lines
+                clearSort();
+            }
+            model.fireTableDataChanged();
+        }
+        updateStatus();
+    }
+    
+    private Row getRow(int line) {
+        Row row = rowCache.get(line);
+        if (row == null) {
+            row = parseRow(line);
+            rowCache.put(line, row);
+        }
+        return row;
+    }
+    
+    private Row parseRow(int line) {
+        String[] cells = new String[columns.size()];
+        try {
+            long length = source.getLineLength(line);
+            if (length > MAX_PARSED_LINE_LENGTH) {
+                return new Row(cells, "Line too long for the table (" + StringUtil.formatFileSize(length) + ")", false);
+            }
+            CharSequence text = source.getLineText(line);
+            boolean valid = parser.parse(text, (key, valueType, valueStart, valueEnd) -> {
+                Integer column = columnIndexes.get(key);
+                if (column != null) {
+                    cells[column] = JsonlRowParser.displayText(text, valueType, valueStart, valueEnd, MAX_CELL_CHARS);
+                }
+            });
+            JsonValidator validator = parser.getValidator();
+            if (!valid) {
+                return new Row(cells, "Invalid JSON: " + validator.getErrorMessage(), true);
+            }
+            JsonValueType type = validator.getTopLevelType();
+            if (type != JsonValueType.OBJECT && type != JsonValueType.EMPTY) {
+                // Not a record, its value goes where the first field would be
+                return new Row(cells, JsonlRowParser.displayText(text, null, 0, text.length(), MAX_CELL_CHARS).trim(), false);
+            }
+            return new Row(cells, null, false);
+        } catch (IOException e) {
+            return new Row(cells, "Unreadable: " + e.getMessage(), true);
+        }
+    }
+    
+    /**
+     * Keys found in a sample of lines, and how many of the sampled lines were records.
+     */
+    private static final class ColumnSample {
+        final List<String> keys;
+        final int sampledLines;
+        
+        ColumnSample(List<String> keys, int sampledLines) {
+            this.keys = keys;
+            this.sampledLines = sampledLines;
+        }
+    }
+    
+    /**
+     * Display texts of the known columns of one line; a note replaces them for lines that are not records.
+     */
+    private static final class Row {
+        final String[] cells;
+        final String note;
+        final boolean error;
+        
+        Row(String[] cells, String note, boolean error) {
+            this.cells = cells;
+            this.note = note;
+            this.error = error;
+        }
+    }
+    
+    private class RecordTableModel extends AbstractTableModel {
+        
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+        
+        @Override
+        public int getColumnCount() {
+            // A file without records still gets a column for the notes
+            return 1 + Math.max(1, columns.size());
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            if (column == 0) {
+                return "#";
+            }
+            if (columns.isEmpty()) {
+                return "Value";
+            }
+            String name = columns.get(column - 1);
+            return column == sortColumn ? name + (sortDescending ? " ▼" : " ▲") : name;
+        }
+        
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            int line = lineAt(rowIndex);
+            if (columnIndex == 0) {
+                return String.valueOf(line + 1);
+            }
+            Row row = getRow(line);
+            if (row.note != null) {
+                return columnIndex == 1 ? row.note : null;
+            }
+            return columnIndex - 1 < row.cells.length ? row.cells[columnIndex - 1] : null;
+        }
+    }
+    
+    private class CellRenderer extends DefaultTableCellRenderer {
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            Component component = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            setHorizontalAlignment(column == 0 ? SwingConstants.RIGHT : SwingConstants.LEFT);
+            if (!isSelected) {
+                if (column == 0) {
+                    component.setForeground(JBColor.GRAY);
+                } else if (column == 1 && getRow(lineAt(row)).note != null) {
+                    component.setForeground(getRow(lineAt(row)).error ? JBColor.RED : JBColor.GRAY);
+                } else {
+                    component.setForeground(table.getForeground());
+                }
+            }
+            return component;
+        }
+    }
+}
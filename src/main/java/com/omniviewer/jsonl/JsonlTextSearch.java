@@ -0,0 +1,255 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full-text search over the raw UTF-8 bytes of a {@link MappedJsonlFile}, reporting the lines of a
+ * {@link JsonlLineIndex} that contain the text. Nothing is decoded and nothing is copied onto the heap:
+ * chunks of the mapped file are scanned concurrently on the {@link JsonlWorkerPool}, eight bytes at a
+ * time.
+ * <p>
+ * Each step reads the word at a position and the word {@code length - 1} bytes further, and marks in
+ * one pass every byte of the first word equal to the first byte of the text whose counterpart in the
+ * second word equals the last byte. Only those few candidates are compared in full. Once a line has a
+ * hit, the scan moves on to the next line.
+ * <p>
+ * Ignoring case folds ASCII letters only.
+ */
+public final class JsonlTextSearch {
+    
+    /**
+     * Receives the lines with hits, on the searching thread.
+     */
+    public interface Listener {
+        /**
+         * The next lines with hits, ascending.
+         */
+        void onHits(int[] lines, int count);
+    }
+    
+    private static final int CHUNK_SIZE = JsonlLineIndexer.CHUNK_SIZE;
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 20;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ASCII_CASE_BITS = 0x2020202020202020L;
+    
+    private final MappedJsonlFile file;
+    private final JsonlLineIndex index;
+    private final byte[] needle;
+    private final boolean ignoreCase;
+    
+    /**
+     * @throws IllegalArgumentException for empty text or text spanning lines
+     */
+    public JsonlTextSearch(MappedJsonlFile file, JsonlLineIndex index, String text, boolean ignoreCase) {
+        if (text.isEmpty() || text.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Search text must be a non-empty single line");
+        }
+        this.file = file;
+        this.index = index;
+        this.needle = text.getBytes(StandardCharsets.UTF_8);
+        this.ignoreCase = ignoreCase;
+        if (ignoreCase) {
+            for (int i = 0; i < needle.length; i++) {
+                needle[i] = toLowerAscii(needle[i]);
+            }
+        }
+    }
+    
+    /**
+     * Searches the indexed lines and returns the number of lines with hits.
+     */
+    public int run(Listener listener, @Nullable ProgressIndicator indicator) throws IOException {
+        int lineCount = index.getLineCount();
+        // A partial index only covers the file up to its last line end
+        long end = lineCount > 0 ? index.getLineLimit(lineCount - 1) : 0;
+        int chunkCount = (int) ((end + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        AtomicLong scannedBytes = new AtomicLong();
+        List<ForkJoinTask<Hits>> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            long chunkStart = (long) i * CHUNK_SIZE;
+            tasks.add(JsonlWorkerPool.POOL.submit(() -> {
+                try {
+                    return scanChunk(chunkStart, Math.min(end, chunkStart + CHUNK_SIZE), indicator, scannedBytes, end);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        
+        int hitCount = 0;
+        int lastLine = -1;
+        try {
+            for (ForkJoinTask<Hits> task : tasks) {
+                Hits hits = task.join();
+                if (indicator != null) {
+                    indicator.checkCanceled();
+                }
+                // A line running into the next chunk may have hits in both
+                int first = 0;
+                while (first < hits.count && hits.lines[first] <= lastLine) {
+                    first++;
+                }
+                int count = hits.count - first;
+                if (count > 0) {
+                    int[] lines = first == 0 ? hits.lines : Arrays.copyOfRange(hits.lines, first, hits.count);
+                    listener.onHits(lines, count);
+                    hitCount += count;
+                    lastLine = lines[count - 1];
+                }
+            }
+        } catch (UncheckedIOException e) {
+            cancelAll(tasks);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            cancelAll(tasks);
+            throw e;
+        }
+        return hitCount;
+    }
+    
+    /**
+     * Finds the lines with a hit starting between {@code chunkStart} and {@code chunkEnd}.
+     */
+    private Hits scanChunk(long chunkStart, long chunkEnd, @Nullable ProgressIndicator indicator,
+                           AtomicLong scannedBytes, long end) throws IOException {
+        int region = (int) (chunkStart / MappedJsonlFile.REGION_SIZE);
+        long regionStart = file.getRegionStart(region);
+        ByteBuffer buffer = file.getRegion(region).order(ByteOrder.LITTLE_ENDIAN);
+        int limit = buffer.limit();
+        int from = (int) (chunkStart - regionStart);
+        int to = (int) (chunkEnd - regionStart);
+        
+        int length = needle.length;
+        byte first = needle[0];
+        byte last = needle[length - 1];
+        long firstPattern = (first & 0xFFL) * ONES;
+        long lastPattern = (last & 0xFFL) * ONES;
+        // Setting the case bit of every byte folds ASCII letters; it can only add candidates
+        long firstFold = ignoreCase && isLowerAsciiLetter(first) ? ASCII_CASE_BITS : 0;
+        long lastFold = ignoreCase && isLowerAsciiLetter(last) ? ASCII_CASE_BITS : 0;
+        // Past this position a word at the last byte would run off the region
+        int wordLimit = Math.min(to, limit - length - 7);
+        
+        Hits hits = new Hits();
+        int position = from;
+        long nextCancelCheck = position + CANCEL_CHECK_INTERVAL;
+        while (position < wordLimit) {
+            long firstBytes = buffer.getLong(position) | firstFold;
+            long lastBytes = buffer.getLong(position + length - 1) | lastFold;
+            long candidates = zeroBytes(firstBytes ^ firstPattern) & zeroBytes(lastBytes ^ lastPattern);
+            int next = position + 8;
+            while (candidates != 0) {
+                int candidate = position + (Long.numberOfTrailingZeros(candidates) >>> 3);
+                if (candidate < to && matchesAt(buffer, candidate)) {
+                    int line = index.findLine(regionStart + candidate);
+                    hits.add(line);
+                    // One hit is enough for a line
+                    next = (int) Math.min(to, index.getLineLimit(line) - regionStart);
+                    break;
+                }
+                candidates &= candidates - 1;
+            }
+            position = next;
+            
+            if (position >= nextCancelCheck) {
+                nextCancelCheck = position + CANCEL_CHECK_INTERVAL;
+                if (indicator != null && indicator.isCanceled()) {
+                    return hits;
+                }
+            }
+        }
+        // The last bytes before the end of the region, a byte at a time
+        while (position < to) {
+            int next = position + 1;
+            if (position + length <= limit ? matchesAt(buffer, position) : matchesAcrossRegions(regionStart + position)) {
+                int line = index.findLine(regionStart + position);
+                hits.add(line);
+                next = (int) Math.min(to, index.getLineLimit(line) - regionStart);
+            }
+            position = next;
+        }
+        
+        long scanned = scannedBytes.addAndGet(chunkEnd - chunkStart);
+        if (indicator != null) {
+            indicator.setFraction((double) scanned / end);
+        }
+        return hits;
+    }
+    
+    private boolean matchesAt(ByteBuffer buffer, int position) {
+        for (int i = 0; i < needle.length; i++) {
+            byte b = buffer.get(position + i);
+            if ((ignoreCase ? toLowerAscii(b) : b) != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Compares a copy of the bytes, for text running past the end of a mapped region.
+     */
+    private boolean matchesAcrossRegions(long position) throws IOException {
+        byte[] bytes = new byte[needle.length];
+        if (file.read(position, bytes, 0, bytes.length) < bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if ((ignoreCase ? toLowerAscii(bytes[i]) : bytes[i]) != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Sets the high bit of every zero byte of a word, and only of those.
+     */
+    static long zeroBytes(long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+    
+    private static byte toLowerAscii(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+    
+    private static boolean isLowerAsciiLetter(byte b) {
+        return b >= 'a' && b <= 'z';
+    }
+    
+    private static void cancelAll(List<ForkJoinTask<Hits>> tasks) {
+        for (ForkJoinTask<Hits> task : tasks) {
+            task.cancel(false);
+        }
+    }
+    
+    /**
+     * Lines with hits in one chunk, ascending.
+     */
+    private static final class Hits {
+        int[] lines = new int[16];
+        int count;
+        
+        void add(int line) {
+            if (count == lines.length) {
+                int[] grown = new int[count * 2];
+                System.arraycopy(lines, 0, grown, 0, count);
+                lines = grown;
+            }
+            lines[count++] = line;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.omniviewer.jsonl;
+
+import javax.swing.*;
+
+/**
+ * Content of a {@link JsonlEditor}: the document-backed editor, or the read-only viewer for large files.
+ */
+interface JsonlView {
+    
+    JComponent getComponent();
+    
+    JComponent getPreferredFocusedComponent();
+    
+    /**
+     * Lines shown by this view, for the other views of the file such as the table.
+     */
+    JsonlLineSource getLineSource();
+    
+    /**
+     * Scrolls to a line and puts the caret or selection on it.
+     */
+    void goToLine(int line);
+    
+    boolean isModified();
+    
+    void dispose();
+}
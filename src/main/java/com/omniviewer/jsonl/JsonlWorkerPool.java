@@ -0,0 +1,24 @@
+package com.omniviewer.jsonl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Fork-join pool shared by the JSONL background scans: one worker per core but one, at low priority so
+ * the IDE stays responsive while a large file is indexed or validated.
+ */
+final class JsonlWorkerPool {
+    
+    static final ForkJoinPool POOL = new ForkJoinPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("OmniViewer JSONL worker " + thread.getPoolIndex());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        },
+        null, false);
+    
+    private JsonlWorkerPool() {
+    }
+}
@@ -0,0 +1,159 @@
+package com.omniviewer.jsonl;
+
+import java.util.Arrays;
+
+/**
+ * Quantile sketch over doubles after Karnin, Lang and Liberty (KLL): a stack of levels where an item on
+ * level {@code h} stands for {@code 2^h} values. A level that reaches its capacity is sorted and every
+ * other item, from a random offset, moves one level up, the rest being dropped. Capacities shrink by a
+ * factor 2/3 going down from the top level, so about {@code 3k} items are kept however many values are
+ * added, and a rank is off by about 1.7% of the count for {@code k = 200}.
+ * <p>
+ * Sketches of disjoint parts of a file merge by concatenating their levels and compacting again.
+ * Values are exact until the first compaction.
+ */
+final class KllSketch {
+    
+    private static final int K = 200;
+    private static final double SHRINK = 2.0 / 3.0;
+    
+    private double[][] levels = {new double[K + 1]};
+    private int[] sizes = new int[1];
+    private long count;
+    private int itemCount;
+    private int maxItems = capacity(0);
+    private long random = 0x9E3779B97F4A7C15L;
+    
+    void add(double value) {
+        append(0, value);
+        count++;
+        if (itemCount >= maxItems) {
+            compress();
+        }
+    }
+    
+    void merge(KllSketch other) {
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        while (itemCount >= maxItems) {
+            compress();
+        }
+    }
+    
+    long getCount() {
+        return count;
+    }
+    
+    /**
+     * Values at the given fractions of the ranks, ascending fractions between 0 and 1, or NaN when empty.
+     */
+    double[] quantiles(double... fractions) {
+        double[] result = new double[fractions.length];
+        if (itemCount == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        long totalWeight = 0;
+        for (int level = 0; level < levels.length; level++) {
+            Arrays.sort(levels[level], 0, sizes[level]);
+            totalWeight += (long) sizes[level] << level;
+        }
+        
+        // Walks the sorted levels merged, adding up the weights of the items passed
+        int[] positions = new int[levels.length];
+        long cumulative = 0;
+        double value = Double.NaN;
+        int next = 0;
+        while (next < fractions.length) {
+            int smallest = -1;
+            for (int level = 0; level < levels.length; level++) {
+                if (positions[level] < sizes[level] && (smallest < 0
+                    || levels[level][positions[level]] < levels[smallest][positions[smallest]])) {
+                    smallest = level;
+                }
+            }
+            if (smallest < 0) {
+                break;
+            }
+            value = levels[smallest][positions[smallest]++];
+            cumulative += 1L << smallest;
+            while (next < fractions.length && cumulative >= fractions[next] * totalWeight) {
+                result[next++] = value;
+            }
+        }
+        while (next < fractions.length) {
+            result[next++] = value;
+        }
+        return result;
+    }
+    
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+        itemCount++;
+    }
+    
+    /**
+     * Compacts the lowest level that is full.
+     */
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] >= capacity(level)) {
+                if (level + 1 == levels.length) {
+                    grow();
+                }
+                compact(level);
+                return;
+            }
+        }
+    }
+    
+    private void compact(int level) {
+        double[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+        // With an odd size the smallest item stays behind
+        int first = (size & 1) + (nextBit() ? 1 : 0);
+        sizes[level] = size & 1;
+        itemCount -= size - sizes[level];
+        for (int i = first; i < size; i += 2) {
+            append(level + 1, items[i]);
+        }
+    }
+    
+    private void grow() {
+        int height = levels.length;
+        levels = Arrays.copyOf(levels, height + 1);
+        levels[height] = new double[K + 1];
+        sizes = Arrays.copyOf(sizes, height + 1);
+        maxItems = 0;
+        for (int level = 0; level <= height; level++) {
+            maxItems += capacity(level);
+        }
+    }
+    
+    /**
+     * Capacity of a level: {@code k} on the top level, shrinking by 2/3 per level below.
+     */
+    private int capacity(int level) {
+        int depth = levels.length - level - 1;
+        return (int) Math.ceil(Math.pow(SHRINK, depth) * K) + 1;
+    }
+    
+    private boolean nextBit() {
+        // xorshift64, deterministic so that the same file gives the same estimates
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (random & 1) != 0;
+    }
+}
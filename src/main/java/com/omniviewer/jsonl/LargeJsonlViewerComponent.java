@@ -0,0 +1,728 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.JBColor;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Read-only viewer for JSONL files too large for a document. The file is memory-mapped and indexed
+ * by line start offsets in the background, the first lines showing while the rest is indexed. The list
+ * only decodes the rows it paints.
+ * <p>
+ * Find searches the raw bytes of the mapped file with a {@link JsonlTextSearch}; the lines with hits
+ * are highlighted and stepped through with Enter and Shift+Enter.
+ */
+public class LargeJsonlViewerComponent extends JPanel implements JsonlView {
+    
+    private static final Logger LOG = Logger.getInstance(LargeJsonlViewerComponent.class);
+    // Rows are cut for display, the hover popup shows the whole line up to MAX_POPUP_BYTES
+    private static final int MAX_DISPLAY_CHARS = 500;
+    private static final int MAX_POPUP_BYTES = 1 << 20;
+    private static final int HOVER_DELAY_MS = 200;
+    private static final int POPUP_CACHE_SIZE = 32;
+    private static final Color SEARCH_HIT_BACKGROUND = new JBColor(new Color(0xFFF5B1), new Color(0x52503A));
+    
+    private final Project project;
+    private final VirtualFile file;
+    private final JLabel statusLabel;
+    private final JBTextField searchField = new JBTextField(24);
+    private final JCheckBox matchCaseBox = new JCheckBox("Match case");
+    private final JLabel searchLabel = new JLabel();
+    private final JBList<String> lineList;
+    private final LineListModel listModel = new LineListModel();
+    private final MappedLineSource lineSource = new MappedLineSource();
+    private final HoverDebouncer hoverDebouncer;
+    private final byte[] rowBuffer = new byte[MAX_DISPLAY_CHARS * 4];
+    private volatile boolean disposed = false;
+    private volatile ProgressIndicator indexingIndicator;
+    private MappedJsonlFile mappedFile;
+    private JsonlLineIndex lineIndex;
+    private JsonPopupComponent currentPopup;
+    private int hoveredLine = -1;
+    // Prepared popups by line, null for lines that are not JSON, all read from popupCacheFile
+    private final Map<Integer, JsonPopupContent> popupCache = new LinkedHashMap<Integer, JsonPopupContent>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, JsonPopupContent> eldest) {
+            return size() > POPUP_CACHE_SIZE;
+        }
+    };
+    private MappedJsonlFile popupCacheFile;
+    private Future<?> pendingPopup;
+    // Lines with hits of the last search, ascending, growing while it runs
+    private int[] searchHits = new int[0];
+    private int searchHitCount;
+    private String searchedText;
+    private boolean searchedMatchCase;
+    private int searchGeneration;
+    private volatile ProgressIndicator searchIndicator;
+    
+    public LargeJsonlViewerComponent(@NotNull Project project, @NotNull VirtualFile file) {
+        this.project = project;
+        this.file = file;
+        
+        setLayout(new BorderLayout());
+        
+        statusLabel = new JLabel("Indexing " + file.getName() + "...");
+        statusLabel.setBorder(JBUI.Borders.empty(4, 8));
+        
+        searchField.setToolTipText("Find in file: Enter for the next line with a hit, Shift+Enter for the previous");
+        searchField.addActionListener(e -> search(true));
+        searchField.registerKeyboardAction(e -> search(false),
+            KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, InputEvent.SHIFT_DOWN_MASK), JComponent.WHEN_FOCUSED);
+        searchField.registerKeyboardAction(e -> {
+            clearSearch();
+            getPreferredFocusedComponent().requestFocus();
+        }, KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_FOCUSED);
+        JPanel searchBar = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        searchBar.add(searchLabel);
+        searchBar.add(searchField);
+        searchBar.add(matchCaseBox);
+        JPanel header = new JPanel(new BorderLayout());
+        header.add(statusLabel, BorderLayout.CENTER);
+        header.add(searchBar, BorderLayout.EAST);
+        add(header, BorderLayout.NORTH);
+        registerKeyboardAction(e -> {
+            searchField.requestFocus();
+            searchField.selectAll();
+        }, KeyStroke.getKeyStroke(KeyEvent.VK_F, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()),
+            JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
+        
+        EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
+        Font font = new Font(scheme.getEditorFontName(), Font.PLAIN, scheme.getEditorFontSize());
+        
+        lineList = new JBList<>(listModel);
+        lineList.setFont(font);
+        lineList.setBackground(scheme.getDefaultBackground());
+        lineList.setForeground(scheme.getDefaultForeground());
+        // Fixed cell sizes keep JList from measuring every row of a multi-million line model
+        FontMetrics metrics = lineList.getFontMetrics(font);
+        lineList.setFixedCellHeight(metrics.getHeight() + 2);
+        lineList.setFixedCellWidth(metrics.charWidth('m') * (MAX_DISPLAY_CHARS + 12));
+        lineList.setCellRenderer(new LineRenderer());
+        add(new JBScrollPane(lineList), BorderLayout.CENTER);
+        
+        hoverDebouncer = new HoverDebouncer(HOVER_DELAY_MS, () -> showJsonPopup(hoveredLine));
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                handleMouseMove(e.getPoint());
+            }
+            
+            @Override
+            public void mousePressed(MouseEvent e) {
+                hideCurrentPopup();
+            }
+            
+            @Override
+            public void mouseExited(MouseEvent e) {
+                hoverDebouncer.cancel();
+                cancelPendingPopup();
+                hideCurrentPopup();
+                hoveredLine = -1;
+            }
+        };
+        lineList.addMouseListener(mouseHandler);
+        lineList.addMouseMotionListener(mouseHandler);
+        
+        startIndexing();
+    }
+    
+    private void startIndexing() {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Indexing " + file.getName(), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indexingIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.setIndeterminate(false);
+                MappedJsonlFile mapped = null;
+                try {
+                    mapped = new MappedJsonlFile(file.toNioPath());
+                    MappedJsonlFile opened = mapped;
+                    long started = System.nanoTime();
+                    JsonlLineIndex index = JsonlIndexCache.getInstance().load(file, mapped, indicator);
+                    if (index != null) {
+                        LOG.debug("Loaded " + index.getLineCount() + " JSONL lines from the index cache in "
+                            + (System.nanoTime() - started) / 1_000_000 + " ms");
+                        SwingUtilities.invokeLater(() -> attachIndex(opened, index));
+                        return;
+                    }
+                    
+                    // The first lines are shown as soon as the first chunk is indexed
+                    JsonlLineIndex built = new JsonlLineIndexer(mapped).build(indicator,
+                        partial -> SwingUtilities.invokeLater(() -> attachIndex(opened, partial)));
+                    LOG.debug("Indexed " + built.getLineCount() + " JSONL lines in "
+                        + (System.nanoTime() - started) / 1_000_000 + " ms, "
+                        + StringUtil.formatFileSize(built.getMemorySize()) + " of offsets and summaries");
+                    SwingUtilities.invokeLater(() -> attachIndex(opened, built));
+                    indicator.setText2("Saving index");
+                    JsonlIndexCache.getInstance().store(file, mapped, built);
+                } catch (ProcessCanceledException e) {
+                    MappedJsonlFile opened = mapped;
+                    SwingUtilities.invokeLater(() -> indexingStopped(opened, "Indexing cancelled"));
+                    throw e;
+                } catch (IOException | UnsupportedOperationException e) {
+                    MappedJsonlFile opened = mapped;
+                    SwingUtilities.invokeLater(() -> indexingStopped(opened, "Error reading file: " + e.getMessage()));
+                }
+            }
+            
+            @Override
+            public void onFinished() {
+                indexingIndicator = null;
+            }
+        });
+    }
+    
+    /**
+     * Shows a partial or complete index. The first call hands the mapped file over to the EDT.
+     */
+    private void attachIndex(MappedJsonlFile mapped, JsonlLineIndex index) {
+        if (disposed) {
+            closeQuietly(mapped);
+            return;
+        }
+        int previousCount = listModel.getSize();
+        mappedFile = mapped;
+        lineIndex = index;
+        if (index.isComplete()) {
+            statusLabel.setText(index.getLineCount() + " lines, " + StringUtil.formatFileSize(mapped.size())
+                + " (read-only large file mode)");
+        } else {
+            statusLabel.setText("Indexing " + file.getName() + "... " + index.getLineCount() + " lines so far");
+        }
+        listModel.fireLinesAdded(previousCount, index.getLineCount());
+        lineSource.fireLinesAdded(previousCount, index.getLineCount());
+    }
+    
+    private void indexingStopped(MappedJsonlFile mapped, String message) {
+        if (disposed || mapped != mappedFile) {
+            // Nothing was shown from this file, or the viewer is gone
+            closeQuietly(mapped);
+        }
+        if (!disposed) {
+            statusLabel.setText(lineIndex != null
+                ? message + ", showing the first " + lineIndex.getLineCount() + " lines"
+                : message);
+        }
+    }
+    
+    /**
+     * Decodes at most {@code maxBytes} bytes of a line, through {@code buffer} when it is large enough.
+     * Returns null if the line is longer than that and {@code truncate} is false. Reads only its
+     * arguments, so it may run off the EDT.
+     */
+    private static String readLine(MappedJsonlFile mappedFile, JsonlLineIndex lineIndex, int line,
+                                   @Nullable byte[] buffer, int maxBytes, boolean truncate) throws IOException {
+        long start = lineIndex.getLineStart(line);
+        long end = lineIndex.getLineEnd(mappedFile, line);
+        long length = end - start;
+        if (length > maxBytes && !truncate) {
+            return null;
+        }
+        int count = (int) Math.min(length, maxBytes);
+        if (buffer == null || buffer.length < count) {
+            buffer = new byte[count];
+        }
+        if (count > 0) {
+            mappedFile.read(start, buffer, 0, count);
+        }
+        String text = new String(buffer, 0, count, StandardCharsets.UTF_8);
+        return count < length ? text + "…" : text;
+    }
+    
+    private void handleMouseMove(Point point) {
+        int row = lineList.locationToIndex(point);
+        if (row >= 0 && !lineList.getCellBounds(row, row).contains(point)) {
+            row = -1;
+        }
+        if (row == hoveredLine) {
+            return;
+        }
+        // Cancel the reading of the line left
+        cancelPendingPopup();
+        hideCurrentPopup();
+        hoveredLine = row;
+        if (row >= 0) {
+            hoverDebouncer.restart();
+        } else {
+            hoverDebouncer.cancel();
+        }
+    }
+    
+    /**
+     * Shows the popup of a line from the cache, or reads, parses and formats the line in the background
+     * and shows it when done if the mouse is still there.
+     */
+    private void showJsonPopup(int line) {
+        if (lineIndex == null || line < 0 || line >= lineIndex.getLineCount()) {
+            return;
+        }
+        // The index already knows which lines are valid JSON
+        if (!lineIndex.isValid(line) || lineIndex.getType(line) == JsonValueType.EMPTY) {
+            return;
+        }
+        // Indexed lines never change under the viewer, the cache only goes with the file
+        if (popupCacheFile != mappedFile) {
+            popupCache.clear();
+            popupCacheFile = mappedFile;
+        }
+        if (popupCache.containsKey(line)) {
+            showJsonPopup(line, popupCache.get(line));
+            return;
+        }
+        
+        MappedJsonlFile mapped = mappedFile;
+        JsonlLineIndex index = lineIndex;
+        cancelPendingPopup();
+        pendingPopup = JsonlWorkerPool.POOL.submit(() -> {
+            JsonPopupContent content;
+            try {
+                String lineContent = readLine(mapped, index, line, null, MAX_POPUP_BYTES, false);
+                content = lineContent != null ? JsonPopupContent.prepare(lineContent) : null;
+            } catch (IOException e) {
+                // The popup is best effort, the row itself stays visible
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                // Kept even when the mouse moved on, it may come back
+                if (disposed || mapped != popupCacheFile) {
+                    return;
+                }
+                popupCache.put(line, content);
+                if (line == hoveredLine) {
+                    showJsonPopup(line, content);
+                }
+            });
+        });
+    }
+    
+    private void showJsonPopup(int line, @Nullable JsonPopupContent content) {
+        if (content == null) {
+            return;
+        }
+        hideCurrentPopup();
+        currentPopup = new JsonPopupComponent(content);
+        
+        Rectangle bounds = lineList.getCellBounds(line, line);
+        Point location = new Point(bounds.x, bounds.y);
+        SwingUtilities.convertPointToScreen(location, lineList);
+        currentPopup.showPopup(lineList, location.x + 20, location.y + 20);
+    }
+    
+    private void cancelPendingPopup() {
+        if (pendingPopup != null) {
+            pendingPopup.cancel(false);
+            pendingPopup = null;
+        }
+    }
+    
+    private void hideCurrentPopup() {
+        if (currentPopup != null) {
+            currentPopup.hidePopup();
+            currentPopup = null;
+        }
+    }
+    
+    private static void closeQuietly(MappedJsonlFile mapped) {
+        if (mapped != null) {
+            try {
+                mapped.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+    
+    @Override
+    public JComponent getComponent() {
+        return this;
+    }
+    
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+        return lineList;
+    }
+    
+    @Override
+    public JsonlLineSource getLineSource() {
+        return lineSource;
+    }
+    
+    @Override
+    public void goToLine(int line) {
+        if (line >= listModel.getSize()) {
+            return;
+        }
+        selectLine(line);
+        lineList.requestFocus();
+    }
+    
+    private void selectLine(int line) {
+        hideCurrentPopup();
+        lineList.setSelectedIndex(line);
+        lineList.ensureIndexIsVisible(line);
+    }
+    
+    /**
+     * Searches for the text of the search field, or steps to the next or previous line with a hit when
+     * it was searched already.
+     */
+    private void search(boolean forward) {
+        String text = searchField.getText();
+        if (text.isEmpty()) {
+            clearSearch();
+            return;
+        }
+        if (text.equals(searchedText) && matchCaseBox.isSelected() == searchedMatchCase) {
+            goToHit(forward);
+            return;
+        }
+        if (lineIndex == null) {
+            return;
+        }
+        
+        JsonlTextSearch textSearch;
+        try {
+            textSearch = new JsonlTextSearch(mappedFile, lineIndex, text, !matchCaseBox.isSelected());
+        } catch (IllegalArgumentException e) {
+            searchLabel.setText(e.getMessage());
+            return;
+        }
+        cancelSearch();
+        searchedText = text;
+        searchedMatchCase = matchCaseBox.isSelected();
+        searchHits = new int[0];
+        searchHitCount = 0;
+        lineList.repaint();
+        // Lines indexed after this are not searched
+        String scope = lineIndex.isComplete() ? "" : " in the first " + lineIndex.getLineCount() + " lines";
+        int generation = searchGeneration;
+        searchLabel.setText("Searching...");
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Searching " + file.getName(), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                searchIndicator = indicator;
+                if (disposed) {
+                    indicator.cancel();
+                }
+                indicator.setIndeterminate(false);
+                try {
+                    int lines = textSearch.run((hits, count) -> SwingUtilities.invokeLater(() -> {
+                        if (!disposed && generation == searchGeneration) {
+                            addSearchHits(hits, count);
+                        }
+                    }), indicator);
+                    SwingUtilities.invokeLater(() -> {
+                        if (!disposed && generation == searchGeneration) {
+                            searchLabel.setText((lines == 1 ? "1 line" : lines + " lines") + scope);
+                        }
+                    });
+                } catch (IOException e) {
+                    SwingUtilities.invokeLater(() -> {
+                        if (!disposed && generation == searchGeneration) {
+                            searchLabel.setText("Search failed: " + e.getMessage());
+                        }
+                    });
+                }
+            }
+            
+            @Override
+            public void onCancel() {
+                if (!disposed && generation == searchGeneration) {
+                    searchLabel.setText("Stopped, " + searchHitCount + " lines so far");
+                }
+            }
+            
+            @Override
+            public void onFinished() {
+                searchIndicator = null;
+            }
+        });
+    }
+    
+    private void addSearchHits(int[] hits, int count) {
+        if (searchHitCount + count > searchHits.length) {
+            searchHits = Arrays.copyOf(searchHits, Math.max(searchHitCount + count, searchHits.length * 2));
+        }
+        System.arraycopy(hits, 0, searchHits, searchHitCount, count);
+        boolean first = searchHitCount == 0;
+        searchHitCount += count;
+        if (first) {
+            selectLine(searchHits[0]);
+        }
+        lineList.repaint();
+    }
+    
+    /**
+     * Selects the next line with a hit after the selected line, or the previous one, wrapping around.
+     */
+    private void goToHit(boolean forward) {
+        if (searchHitCount == 0) {
+            return;
+        }
+        int selected = lineList.getSelectedIndex();
+        int found = Arrays.binarySearch(searchHits, 0, searchHitCount, selected);
+        int insertion = found >= 0 ? found : -found - 1;
+        int hit;
+        if (forward) {
+            hit = found >= 0 ? found + 1 : insertion;
+            if (hit >= searchHitCount) {
+                hit = 0;
+            }
+        } else {
+            hit = insertion - 1;
+            if (hit < 0) {
+                hit = searchHitCount - 1;
+            }
+        }
+        selectLine(searchHits[hit]);
+    }
+    
+    private boolean isSearchHit(int line) {
+        return searchHitCount > 0 && Arrays.binarySearch(searchHits, 0, searchHitCount, line) >= 0;
+    }
+    
+    private void cancelSearch() {
+        ProgressIndicator running = searchIndicator;
+        if (running != null) {
+            running.cancel();
+        }
+        searchGeneration++;
+    }
+    
+    private void clearSearch() {
+        cancelSearch();
+        searchField.setText("");
+        searchedText = null;
+        searchHits = new int[0];
+        searchHitCount = 0;
+        searchLabel.setText("");
+        lineList.repaint();
+    }
+    
+    @Override
+    public boolean isModified() {
+        return false;
+    }
+    
+    @Override
+    public void dispose() {
+        disposed = true;
+        ProgressIndicator indicator = indexingIndicator;
+        if (indicator != null) {
+            indicator.cancel();
+        }
+        cancelSearch();
+        hoverDebouncer.cancel();
+        cancelPendingPopup();
+        hideCurrentPopup();
+        popupCache.clear();
+        lineSource.listeners.clear();
+        closeQuietly(mappedFile);
+        mappedFile = null;
+        lineIndex = null;
+    }
+    
+    /**
+     * Rows are decoded on request, only for the cells being painted.
+     */
+    private class LineListModel extends AbstractListModel<String> {
+        
+        @Override
+        public int getSize() {
+            return lineIndex != null ? lineIndex.getLineCount() : 0;
+        }
+        
+        @Override
+        public String getElementAt(int index) {
+            try {
+                String text = readLine(mappedFile, lineIndex, index, rowBuffer, rowBuffer.length, true);
+                return text.length() > MAX_DISPLAY_CHARS ? text.substring(0, MAX_DISPLAY_CHARS) + "…" : text;
+            } catch (IOException e) {
+                return "<unreadable: " + e.getMessage() + ">";
+            }
+        }
+        
+        void fireLinesAdded(int previousCount, int count) {
+            if (count > previousCount) {
+                fireIntervalAdded(this, previousCount, count - 1);
+            }
+        }
+    }
+    
+    /**
+     * Lines of the mapped file as far as it is indexed, read as raw bytes.
+     */
+    private class MappedLineSource implements JsonlLineSource {
+        
+        private final List<ChangeListener> listeners = new ArrayList<>();
+        
+        @Override
+        public int getLineCount() {
+            return lineIndex != null ? lineIndex.getLineCount() : 0;
+        }
+        
+        @Override
+        public long getLineLength(int line) throws IOException {
+            return lineIndex.getLineEnd(mappedFile, line) - lineIndex.getLineStart(line);
+        }
+        
+        @Override
+        public CharSequence getLineText(int line) throws IOException {
+            long start = lineIndex.getLineStart(line);
+            long length = lineIndex.getLineEnd(mappedFile, line) - start;
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new IOException("Line " + (line + 1) + " is too long to read (" + StringUtil.formatFileSize(length) + ")");
+            }
+            byte[] bytes = new byte[(int) length];
+            mappedFile.read(start, bytes, 0, bytes.length);
+            return new Latin1CharSequence(bytes, 0, bytes.length);
+        }
+        
+        @Override
+        public long getModificationStamp() {
+            // The file does not change under the viewer, only the indexed part grows
+            return getLineCount();
+        }
+        
+        @Override
+        public JsonlLineSnapshot snapshot() {
+            return new MappedSnapshot(mappedFile, lineIndex);
+        }
+        
+        @Override
+        public void addChangeListener(ChangeListener listener) {
+            listeners.add(listener);
+        }
+        
+        @Override
+        public void removeChangeListener(ChangeListener listener) {
+            listeners.remove(listener);
+        }
+        
+        void fireLinesAdded(int previousCount, int count) {
+            if (count > previousCount) {
+                for (ChangeListener listener : new ArrayList<>(listeners)) {
+                    listener.onLinesChanged(previousCount);
+                }
+            }
+        }
+    }
+    
+    /**
+     * An index and the file it was built from; both are immutable, so readers only need their own buffer.
+     */
+    private static final class MappedSnapshot implements JsonlLineSnapshot {
+        
+        private final MappedJsonlFile mapped;
+        private final JsonlLineIndex index;
+        
+        MappedSnapshot(@Nullable MappedJsonlFile mapped, @Nullable JsonlLineIndex index) {
+            this.mapped = mapped;
+            this.index = index;
+        }
+        
+        @Override
+        public int getLineCount() {
+            return index != null ? index.getLineCount() : 0;
+        }
+        
+        @Override
+        public long getModificationStamp() {
+            return getLineCount();
+        }
+        
+        @Override
+        public Reader newReader() {
+            return new MappedReader();
+        }
+        
+        @Override
+        public JsonlLineIndex getLineIndex() {
+            return index;
+        }
+        
+        /**
+         * Copies each line into a buffer reused for the next one.
+         */
+        private final class MappedReader implements Reader {
+            
+            private final Latin1CharSequence text = new Latin1CharSequence();
+            private byte[] buffer = new byte[4096];
+            
+            @Override
+            public CharSequence readLine(int line, long maxLength) throws IOException {
+                long start = index.getLineStart(line);
+                long limit = index.getLineLimit(line);
+                // The limit includes the separator, up to two bytes
+                if (limit - start > Math.min(maxLength + 2, Integer.MAX_VALUE - 8)) {
+                    return null;
+                }
+                int length = (int) (limit - start);
+                if (length > buffer.length) {
+                    buffer = new byte[Math.max(length, buffer.length << 1)];
+                }
+                mapped.read(start, buffer, 0, length);
+                if (length > 0 && buffer[length - 1] == '\n') {
+                    length--;
+                }
+                if (length > 0 && buffer[length - 1] == '\r') {
+                    length--;
+                }
+                if (length > maxLength) {
+                    return null;
+                }
+                text.reset(buffer, 0, length);
+                return text;
+            }
+        }
+    }
+    
+    private class LineRenderer extends DefaultListCellRenderer {
+        
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            String text = (index + 1) + "  " + value;
+            Component component = super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            if (!isSelected && lineIndex != null && !lineIndex.isValid(index)) {
+                component.setForeground(JBColor.RED);
+            }
+            if (!isSelected && isSearchHit(index)) {
+                component.setBackground(SEARCH_HIT_BACKGROUND);
+            }
+            return component;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.omniviewer.jsonl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bytes seen as chars one to one, so {@link JsonTokenizer} can run over UTF-8 without
+ * decoding it. Non-ASCII bytes become chars above 0x7F, which JSON only allows inside strings anyway.
+ * The view can be moved to another range to avoid an allocation per line.
+ */
+final class Latin1CharSequence implements CharSequence {
+    
+    private byte[] bytes;
+    private int offset;
+    private int length;
+    
+    Latin1CharSequence() {
+    }
+    
+    Latin1CharSequence(byte[] bytes, int offset, int length) {
+        reset(bytes, offset, length);
+    }
+    
+    void reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+    
+    @Override
+    public int length() {
+        return length;
+    }
+    
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes[offset + index] & 0xFF);
+    }
+    
+    @Override
+    public @NotNull CharSequence subSequence(int start, int end) {
+        return new Latin1CharSequence(bytes, offset + start, end - start);
+    }
+    
+    /**
+     * Decodes the bytes as UTF-8.
+     */
+    @Override
+    public @NotNull String toString() {
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+}
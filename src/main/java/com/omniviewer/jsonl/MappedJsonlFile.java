@@ -0,0 +1,89 @@
+package com.omniviewer.jsonl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only access to a file through memory-mapped regions, so that multi-gigabyte files are read
+ * straight from the page cache instead of being copied onto the heap.
+ * A single {@link MappedByteBuffer} cannot exceed 2 GB, so the file is mapped lazily in
+ * {@link #REGION_SIZE} regions.
+ */
+public final class MappedJsonlFile implements Closeable {
+    
+    static final int REGION_SIZE = 1 << 30;
+    
+    private final FileChannel channel;
+    private final long size;
+    private final MappedByteBuffer[] regions;
+    
+    public MappedJsonlFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+    }
+    
+    public long size() {
+        return size;
+    }
+    
+    public int getRegionCount() {
+        return regions.length;
+    }
+    
+    public long getRegionStart(int region) {
+        return (long) region * REGION_SIZE;
+    }
+    
+    /**
+     * Independent view of one mapped region, positioned at its start. Safe to use from any thread.
+     */
+    public ByteBuffer getRegion(int region) throws IOException {
+        return mappedRegion(region).duplicate();
+    }
+    
+    /**
+     * Copies up to {@code length} bytes starting at {@code position}. Returns the number of bytes copied,
+     * or -1 at the end of the file.
+     */
+    public int read(long position, byte[] dest, int offset, int length) throws IOException {
+        if (position >= size) {
+            return -1;
+        }
+        int total = (int) Math.min(length, size - position);
+        int copied = 0;
+        while (copied < total) {
+            long current = position + copied;
+            int region = (int) (current / REGION_SIZE);
+            int regionOffset = (int) (current % REGION_SIZE);
+            MappedByteBuffer buffer = mappedRegion(region);
+            int count = Math.min(total - copied, buffer.capacity() - regionOffset);
+            buffer.get(regionOffset, dest, offset + copied, count);
+            copied += count;
+        }
+        return copied;
+    }
+    
+    private synchronized MappedByteBuffer mappedRegion(int region) throws IOException {
+        MappedByteBuffer buffer = regions[region];
+        if (buffer == null) {
+            long start = getRegionStart(region);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+            regions[region] = buffer;
+        }
+        return buffer;
+    }
+    
+    /**
+     * Closes the channel. Mapped regions stay readable until they are garbage collected.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,156 @@
+package com.omniviewer.util;
+
+import com.intellij.openapi.application.PathManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Directory of binary cache entries under the IDE system directory, evicted least-recently-used
+ * once their total size exceeds a byte budget. Entries are written to a temp file and moved into
+ * place, so readers never see partial files.
+ */
+public class BoundedDiskCache {
+
+    private static final String ENTRY_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Object evictionLock = new Object();
+
+    public BoundedDiskCache(String name, long maxBytes) {
+        this(Paths.get(PathManager.getSystemPath(), "omni-viewer", name), maxBytes);
+    }
+
+    public BoundedDiskCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Turns an arbitrary key (paths, stamps, ...) into a file-name-safe hash.
+     */
+    public static String hashKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    /**
+     * Opens the entry for reading and marks it as recently used, or returns null if it does not exist.
+     */
+    public InputStream open(String key) {
+        Path entry = entryPath(key);
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return Files.newInputStream(entry);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(String key, Writer writer) throws IOException {
+        Files.createDirectories(directory);
+        Path entry = entryPath(key);
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                writer.write(out);
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    public void remove(String key) {
+        try {
+            Files.deleteIfExists(entryPath(key));
+        } catch (IOException e) {
+            // Stale entries are evicted later anyway
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(hashKey(key) + ENTRY_SUFFIX);
+    }
+
+    private void evict() {
+        synchronized (evictionLock) {
+            List<Path> entries = new ArrayList<>();
+            long total = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+                for (Path entry : stream) {
+                    entries.add(entry);
+                    total += sizeOf(entry);
+                }
+            } catch (IOException e) {
+                return;
+            }
+            if (total <= maxBytes) {
+                return;
+            }
+
+            entries.sort(Comparator.comparingLong(BoundedDiskCache::lastModified));
+            for (Path entry : entries) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                long size = sizeOf(entry);
+                try {
+                    Files.deleteIfExists(entry);
+                    total -= size;
+                } catch (IOException e) {
+                    // Entry may be open on Windows, try the next one
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.omniviewer.jsonl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Compares the cost of hover scheduling as the mouse sweeps across lines: a new {@link Timer} per
+ * hovered line, as the editor used to do, against restarting one {@link HoverDebouncer}. Reports the
+ * threads started and the bytes allocated by the calling thread per event.
+ * <p>
+ * Run with {@code main}; the delay is long enough that nothing fires, so no IDE is needed.
+ */
+public final class HoverDebouncerBenchmark {
+    
+    private static final int EVENTS = 5_000;
+    private static final int ROUNDS = 5;
+    private static final int DELAY_MS = 60_000;
+    
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        HoverDebouncer debouncer = new HoverDebouncer(DELAY_MS, () -> {
+        });
+        for (int round = 0; round < ROUNDS; round++) {
+            // The first rounds warm up the JIT and start the shared scheduler thread
+            measure("Timer per event", threads, HoverDebouncerBenchmark::timerPerEvent);
+            measure("Shared debouncer", threads, () -> sharedDebouncer(debouncer));
+        }
+        debouncer.cancel();
+    }
+    
+    private static void timerPerEvent() {
+        Timer hoverTimer = null;
+        for (int i = 0; i < EVENTS; i++) {
+            if (hoverTimer != null) {
+                hoverTimer.cancel();
+            }
+            hoverTimer = new Timer();
+            hoverTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    // Never reached, cancelled by the next event
+                }
+            }, DELAY_MS);
+        }
+        hoverTimer.cancel();
+    }
+    
+    private static void sharedDebouncer(HoverDebouncer debouncer) {
+        for (int i = 0; i < EVENTS; i++) {
+            debouncer.restart();
+        }
+    }
+    
+    private static void measure(String name, com.sun.management.ThreadMXBean threads, Runnable events) {
+        long threadId = Thread.currentThread().getId();
+        long startedBefore = threads.getTotalStartedThreadCount();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        events.run();
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long threadsStarted = threads.getTotalStartedThreadCount() - startedBefore;
+        System.out.printf("%-17s %,d events: %,d threads started, %,.1f bytes/event, %,.2f us/event%n",
+            name, EVENTS, threadsStarted, (double) allocated / EVENTS, elapsed / 1000.0 / EVENTS);
+    }
+}
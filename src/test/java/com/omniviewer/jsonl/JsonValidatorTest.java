@@ -0,0 +1,154 @@
+package com.omniviewer.jsonl;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link JsonValidator} and the {@link JsonTokenizer} under it accept exactly the JSON grammar, one value
+ * per text, both on decoded text and on raw UTF-8 bytes.
+ */
+public class JsonValidatorTest {
+    
+    private static final String[] VALID = {
+        "{}",
+        "[]",
+        "  {\"a\" : 1 }  ",
+        "{\"a\":[1,-2.5e3,true,false,null,\"x\"],\"b\":{\"c\":{}}}",
+        "[[[]],[{}]]",
+        "\"text with \\\"quotes\\\", \\\\ and \\u00e9\"",
+        "\"Zürich 東京 😀\"",
+        "0",
+        "-0.0",
+        "1E+2",
+        "true",
+        "null",
+    };
+    
+    private static final String[] INVALID = {
+        "",
+        "   ",
+        "{",
+        "}",
+        "[1,2",
+        "[1,]",
+        "[,1]",
+        "{\"a\":1,}",
+        "{\"a\" 1}",
+        "{a:1}",
+        "{\"a\":1}}",
+        "{\"a\":1} {\"b\":2}",
+        "[1] x",
+        "[}",
+        "{]",
+        "'single'",
+        "\"unterminated",
+        "\"bad \\x escape\"",
+        "\"bad \\u12 escape\"",
+        "01",
+        "1.",
+        "-",
+        ".5",
+        "1e",
+        "tru",
+        "nul",
+        "True",
+        "NaN",
+    };
+    
+    @Test
+    public void acceptsValidJson() {
+        for (String text : VALID) {
+            assertTrue(text, JsonValidator.isValid(text));
+            assertTrue("bytes of " + text, JsonValidator.isValid(utf8(text)));
+        }
+    }
+    
+    @Test
+    public void rejectsInvalidJson() {
+        for (String text : INVALID) {
+            assertFalse(text, JsonValidator.isValid(text));
+            assertFalse("bytes of " + text, JsonValidator.isValid(utf8(text)));
+        }
+    }
+    
+    @Test
+    public void validatesARangeOfTheText() {
+        JsonValidator validator = new JsonValidator();
+        String text = "garbage{\"a\":1}garbage";
+        assertTrue(validator.validate(text, 7, 14));
+        assertFalse(validator.validate(text, 0, 14));
+    }
+    
+    @Test
+    public void recordsTopLevelTypeAndKeys() {
+        JsonValidator validator = new JsonValidator();
+        assertTrue(validator.validate("{\"b\":[1],\"a\":{\"nested\":2}}"));
+        assertEquals(JsonValueType.OBJECT, validator.getTopLevelType());
+        int fingerprint = validator.getKeyFingerprint();
+        
+        // Key order and values do not matter, nested keys are not top-level keys
+        assertTrue(validator.validate("{\"a\":null,\"b\":\"x\"}"));
+        assertEquals(fingerprint, validator.getKeyFingerprint());
+        assertTrue(validator.validate("{\"a\":null,\"c\":\"x\"}"));
+        assertTrue(fingerprint != validator.getKeyFingerprint());
+        
+        assertTrue(validator.validate("[1]"));
+        assertEquals(JsonValueType.ARRAY, validator.getTopLevelType());
+        assertTrue(validator.validate("\"s\""));
+        assertEquals(JsonValueType.STRING, validator.getTopLevelType());
+    }
+    
+    @Test
+    public void reportsWhereTheErrorIs() {
+        JsonValidator validator = new JsonValidator();
+        assertFalse(validator.validate("{\"a\":1,,\"b\":2}"));
+        assertEquals(7, validator.getErrorOffset());
+        assertTrue(validator.getErrorMessage() != null);
+    }
+    
+    @Test
+    public void tokenizesWithRanges() {
+        String text = " {\"k\": [12, -3.5e1, \"s\\\"t\"], \"n\":null} ";
+        JsonTokenizer tokenizer = new JsonTokenizer();
+        tokenizer.reset(text);
+        JsonTokenizer.TokenType[] expected = {
+            JsonTokenizer.TokenType.BEGIN_OBJECT, JsonTokenizer.TokenType.STRING, JsonTokenizer.TokenType.COLON,
+            JsonTokenizer.TokenType.BEGIN_ARRAY, JsonTokenizer.TokenType.NUMBER, JsonTokenizer.TokenType.COMMA,
+            JsonTokenizer.TokenType.NUMBER, JsonTokenizer.TokenType.COMMA, JsonTokenizer.TokenType.STRING,
+            JsonTokenizer.TokenType.END_ARRAY, JsonTokenizer.TokenType.COMMA, JsonTokenizer.TokenType.STRING,
+            JsonTokenizer.TokenType.COLON, JsonTokenizer.TokenType.NULL, JsonTokenizer.TokenType.END_OBJECT,
+            JsonTokenizer.TokenType.END,
+        };
+        String[] texts = {"{", "\"k\"", ":", "[", "12", ",", "-3.5e1", ",", "\"s\\\"t\"", "]", ",", "\"n\"", ":", "null", "}", ""};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], tokenizer.next());
+            assertEquals(texts[i], text.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
+        }
+    }
+    
+    @Test
+    public void skipsNestedValues() {
+        String text = "[{\"a\":[1,{\"b\":\"]}\"}]},2]";
+        JsonTokenizer tokenizer = new JsonTokenizer();
+        tokenizer.reset(text);
+        assertEquals(JsonTokenizer.TokenType.BEGIN_ARRAY, tokenizer.next());
+        assertEquals(JsonTokenizer.TokenType.BEGIN_OBJECT, tokenizer.next());
+        assertTrue(tokenizer.skipNested());
+        assertEquals(text.indexOf(",2"), tokenizer.getTokenEnd());
+        assertEquals(JsonTokenizer.TokenType.COMMA, tokenizer.next());
+        
+        tokenizer.reset("[1,[2");
+        tokenizer.next();
+        assertFalse(tokenizer.skipNested());
+    }
+    
+    private static CharSequence utf8(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new Latin1CharSequence(bytes, 0, bytes.length);
+    }
+}
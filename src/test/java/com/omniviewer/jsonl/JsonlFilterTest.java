@@ -0,0 +1,88 @@
+package com.omniviewer.jsonl;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link JsonlFilter.Matcher#mayMatch} is a shortcut taken before {@link JsonlFilter.Matcher#matches}, so it
+ * may only reject lines that do not match. Checked for every filter against every record, both as decoded
+ * text and as raw UTF-8 bytes, the way mapped files are scanned. Escaped plain ASCII letters, which no
+ * encoder writes, are left out: the filter documents that it misses them.
+ */
+public class JsonlFilterTest {
+    
+    private static final String[] FILTERS = {
+        ".name == \"bob\"",
+        ".name != \"bob\"",
+        ".name < \"zzz\"",
+        ".name <= \"carl\"",
+        ".name > \"bob\"",
+        ".name >= \"alice\"",
+        ".name ~ \"ar\"",
+        ".name == null",
+        ".name",
+        "!.name",
+        ".age > 30",
+        ".age <= 30 && .name ~ \"a\"",
+        ".age >= 18 || .name == \"bob\"",
+        ".user.name > \"b\"",
+        ".user.name == \"dora\" || .user.age < 10",
+        ".tags[0] == \"x\"",
+        ".tags[1] ~ \"y\"",
+        ".active == true && .score < 1.5",
+        ".city == \"Zürich\"",
+        ".city > \"Z\"",
+    };
+    
+    private static final String[] LINES = {
+        "{\"name\":\"bob\",\"age\":30}",
+        "{\"name\":\"carl\",\"age\":41}",
+        "{\"name\":\"alice\"}",
+        "{\"name\":null,\"age\":12}",
+        "{\"age\":18}",
+        "{\"name\":\"c\\\"arl\"}",
+        "{\"city\":\"Z\\u00fcrich\"}",
+        "{\"user\":{\"name\":\"dora\",\"age\":7}}",
+        "{\"user\":{\"name\":\"carl\"}}",
+        "{\"tags\":[\"x\",\"xyz\"]}",
+        "{\"active\":true,\"score\":1.25}",
+        "{\"city\":\"Zürich\"}",
+        "{\"city\":\"Zug\",\"name\":\"zoe\"}",
+        "[1,2,3]",
+        "\"bob\"",
+        "{}",
+    };
+    
+    @Test
+    public void mayMatchNeverRejectsMatchingLines() {
+        for (String expression : FILTERS) {
+            JsonlFilter.Matcher matcher = JsonlFilter.compile(expression).newMatcher();
+            for (String line : LINES) {
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                CharSequence raw = new Latin1CharSequence(bytes, 0, bytes.length);
+                if (matcher.matches(line)) {
+                    assertTrue(expression + " rejects " + line, matcher.mayMatch(line));
+                }
+                if (matcher.matches(raw)) {
+                    assertTrue(expression + " rejects the bytes of " + line, matcher.mayMatch(raw));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void orderingAgainstStringsMatches() {
+        JsonlFilter.Matcher greater = JsonlFilter.compile(".name > \"bob\"").newMatcher();
+        assertTrue(greater.matches("{\"name\":\"carl\"}"));
+        assertTrue(greater.mayMatch("{\"name\":\"carl\"}"));
+        assertFalse(greater.matches("{\"name\":\"alice\"}"));
+        
+        JsonlFilter.Matcher less = JsonlFilter.compile(".name < \"zzz\"").newMatcher();
+        assertTrue(less.matches("{\"name\":\"alice\"}"));
+        assertTrue(less.mayMatch("{\"name\":\"alice\"}"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.omniviewer.jsonl;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.LightVirtualFile;
+import com.omniviewer.util.BoundedDiskCache;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * A cached index must come back exactly as it was built, and only for the content it was built from.
+ * An entry that is stale or cannot be read is a miss, and is removed.
+ */
+public class JsonlIndexCacheTest {
+    
+    private static final String RECORDS = "{\"a\":1}\n[1,2]\n\n\"text\"\r\n{\"b\":{\"c\":null}}\nnot json\n{\"d\":true}";
+    
+    @Test
+    public void roundTripKeepsStartsAndSummaries() throws IOException {
+        Path directory = Files.createTempDirectory("jsonl-index-cache");
+        try {
+            Path records = write(directory, RECORDS);
+            VirtualFile file = new LightVirtualFile("records.jsonl");
+            JsonlIndexCache cache = new JsonlIndexCache(new BoundedDiskCache(directory.resolve("cache"), 1 << 20));
+            try (MappedJsonlFile mapped = new MappedJsonlFile(records)) {
+                JsonlLineIndex built = new JsonlLineIndexer(mapped).build(null, null);
+                assertNull(cache.load(file, mapped, null));
+                cache.store(file, mapped, built);
+                
+                JsonlLineIndex loaded = cache.load(file, mapped, null);
+                assertNotNull(loaded);
+                assertEquals(built.getLineCount(), loaded.getLineCount());
+                assertEquals(built.getFileSize(), loaded.getFileSize());
+                for (int line = 0; line < built.getLineCount(); line++) {
+                    assertEquals("start of line " + line, built.getLineStart(line), loaded.getLineStart(line));
+                    assertEquals("summary of line " + line, built.getLineInfo(line), loaded.getLineInfo(line));
+                    assertEquals("keys of line " + line, built.getKeyFingerprint(line), loaded.getKeyFingerprint(line));
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    @Test
+    public void changedContentIsAMiss() throws IOException {
+        Path directory = Files.createTempDirectory("jsonl-index-cache");
+        try {
+            Path records = write(directory, RECORDS);
+            VirtualFile file = new LightVirtualFile("records.jsonl");
+            JsonlIndexCache cache = new JsonlIndexCache(new BoundedDiskCache(directory.resolve("cache"), 1 << 20));
+            try (MappedJsonlFile mapped = new MappedJsonlFile(records)) {
+                cache.store(file, mapped, new JsonlLineIndexer(mapped).build(null, null));
+            }
+            // Same length, other bytes: only the content hash tells them apart
+            write(directory, RECORDS.replace("true", "null"));
+            try (MappedJsonlFile mapped = new MappedJsonlFile(records)) {
+                assertNull(cache.load(file, mapped, null));
+            }
+            write(directory, RECORDS + "\n{\"e\":2}");
+            try (MappedJsonlFile mapped = new MappedJsonlFile(records)) {
+                assertNull(cache.load(file, mapped, null));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    @Test
+    public void corruptEntryIsDiscarded() throws IOException {
+        Path directory = Files.createTempDirectory("jsonl-index-cache");
+        try {
+            Path records = write(directory, RECORDS);
+            Path cacheDirectory = directory.resolve("cache");
+            VirtualFile file = new LightVirtualFile("records.jsonl");
+            JsonlIndexCache cache = new JsonlIndexCache(new BoundedDiskCache(cacheDirectory, 1 << 20));
+            try (MappedJsonlFile mapped = new MappedJsonlFile(records)) {
+                cache.store(file, mapped, new JsonlLineIndexer(mapped).build(null, null));
+                
+                // Every line start moved back to zero, past the header
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDirectory)) {
+                    for (Path entry : entries) {
+                        byte[] bytes = Files.readAllBytes(entry);
+                        for (int i = 20; i < bytes.length; i++) {
+                            bytes[i] = 0;
+                        }
+                        Files.write(entry, bytes);
+                    }
+                }
+                assertNull(cache.load(file, mapped, null));
+                try (Stream<Path> entries = Files.list(cacheDirectory)) {
+                    assertEquals(0, entries.count());
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    private static Path write(Path directory, String text) throws IOException {
+        return Files.write(directory.resolve("records.jsonl"), text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.omniviewer.jsonl;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link HyperLogLog} and {@link KllSketch} stay within a few times their documented error, and merging
+ * the sketches of two parts gives the same accuracy as one sketch over the whole, as the statistics panel
+ * relies on when it profiles a file in concurrent ranges.
+ */
+public class JsonlSketchTest {
+    
+    // About three standard errors of each sketch
+    private static final double DISTINCT_TOLERANCE = 0.05;
+    private static final double RANK_TOLERANCE = 0.05;
+    private static final double[] FRACTIONS = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+    
+    @Test
+    public void distinctCountsAreWithinTheError() {
+        assertEquals(0, new HyperLogLog().estimate());
+        for (int distinct : new int[]{1, 10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < distinct; i++) {
+                String value = "value-" + i;
+                sketch.add(HyperLogLog.hash(value, 0, value.length()));
+            }
+            assertDistinct(distinct, sketch.estimate());
+        }
+    }
+    
+    @Test
+    public void repeatedValuesCountOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int repeat = 0; repeat < 20; repeat++) {
+            for (int i = 0; i < 5_000; i++) {
+                String value = "v" + i;
+                sketch.add(HyperLogLog.hash(value, 0, value.length()));
+            }
+        }
+        assertDistinct(5_000, sketch.estimate());
+    }
+    
+    @Test
+    public void mergedDistinctCountsCoverTheUnion() {
+        // Two parts sharing a third of their values
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog whole = new HyperLogLog();
+        for (int i = 0; i < 300_000; i++) {
+            String value = Integer.toString(i);
+            long hash = HyperLogLog.hash(value, 0, value.length());
+            if (i < 200_000) {
+                first.add(hash);
+            }
+            if (i >= 100_000) {
+                second.add(hash);
+            }
+            whole.add(hash);
+        }
+        first.merge(second);
+        assertEquals(whole.estimate(), first.estimate());
+        assertDistinct(300_000, first.estimate());
+    }
+    
+    @Test
+    public void quantilesAreExactUntilTheFirstCompaction() {
+        KllSketch sketch = new KllSketch();
+        assertTrue(Double.isNaN(sketch.quantiles(0.5)[0]));
+        for (int i = 100; i >= 1; i--) {
+            sketch.add(i);
+        }
+        double[] quantiles = sketch.quantiles(0.01, 0.5, 0.9, 1);
+        assertEquals(1, quantiles[0], 0);
+        assertEquals(50, quantiles[1], 0);
+        assertEquals(90, quantiles[2], 0);
+        assertEquals(100, quantiles[3], 0);
+    }
+    
+    @Test
+    public void quantileRanksAreWithinTheError() {
+        int count = 1_000_000;
+        KllSketch sketch = new KllSketch();
+        for (int value : shuffled(count, new Random(1))) {
+            sketch.add(value);
+        }
+        assertEquals(count, sketch.getCount());
+        assertRanks(count, sketch.quantiles(FRACTIONS));
+    }
+    
+    @Test
+    public void mergedQuantilesAreWithinTheError() {
+        int count = 600_000;
+        int[] values = shuffled(count, new Random(2));
+        KllSketch[] parts = new KllSketch[6];
+        for (int part = 0; part < parts.length; part++) {
+            parts[part] = new KllSketch();
+            // Parts of uneven sizes, so that their levels differ in height
+            int from = part == 0 ? 0 : count / 64 << (part - 1);
+            int to = part == parts.length - 1 ? count : count / 64 << part;
+            for (int i = from; i < to; i++) {
+                parts[part].add(values[i]);
+            }
+        }
+        KllSketch merged = parts[0];
+        for (int part = 1; part < parts.length; part++) {
+            merged.merge(parts[part]);
+        }
+        assertEquals(count, merged.getCount());
+        assertRanks(count, merged.quantiles(FRACTIONS));
+    }
+    
+    private static void assertDistinct(long expected, long estimate) {
+        assertTrue("estimated " + estimate + " of " + expected + " distinct values",
+            Math.abs(estimate - expected) <= Math.max(1, DISTINCT_TOLERANCE * expected));
+    }
+    
+    /**
+     * The values are 0 to count - 1, so a value is its own rank.
+     */
+    private static void assertRanks(int count, double[] quantiles) {
+        for (int i = 0; i < FRACTIONS.length; i++) {
+            assertEquals("quantile " + FRACTIONS[i], FRACTIONS[i], quantiles[i] / count, RANK_TOLERANCE);
+        }
+    }
+    
+    private static int[] shuffled(int count, Random random) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+}
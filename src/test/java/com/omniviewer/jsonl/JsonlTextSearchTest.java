@@ -0,0 +1,143 @@
+package com.omniviewer.jsonl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The word-at-a-time scan of {@link JsonlTextSearch} must report the same lines as {@link String#indexOf}
+ * on each decoded line, wherever the text falls relative to the eight-byte words and to the chunks that
+ * are scanned concurrently.
+ */
+public class JsonlTextSearchTest {
+    
+    @Test
+    public void zeroBytesMarksExactlyTheZeroBytes() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            long word = random.nextLong();
+            // Make some bytes zero, and some 0x80 or 0x01, the usual false positives
+            for (int b = 0; b < 8; b++) {
+                int pick = random.nextInt(6);
+                long value = pick == 0 ? 0 : pick == 1 ? 0x80 : pick == 2 ? 0x01 : (word >>> (b * 8)) & 0xFF;
+                word = (word & ~(0xFFL << (b * 8))) | (value << (b * 8));
+            }
+            long expected = 0;
+            for (int b = 0; b < 8; b++) {
+                if (((word >>> (b * 8)) & 0xFF) == 0) {
+                    expected |= 0x80L << (b * 8);
+                }
+            }
+            assertEquals(Long.toHexString(word), expected, JsonlTextSearch.zeroBytes(word));
+        }
+    }
+    
+    @Test
+    public void findsTextAtEveryWordOffset() throws IOException {
+        String[] needles = {"q", "qz", "aa", "aba", "abca", "needle", "0123456", "01234567", "012345678", "xyzxyzxyzxyzxyzxy"};
+        for (String needle : needles) {
+            StringBuilder content = new StringBuilder();
+            for (int offset = 0; offset < 24; offset++) {
+                content.append(repeat('.', offset)).append(needle).append(repeat('-', offset % 5)).append('\n');
+                // Same first and last byte, different middle
+                if (needle.length() > 2) {
+                    content.append(repeat('.', offset)).append(needle.charAt(0))
+                        .append(repeat('#', needle.length() - 2)).append(needle.charAt(needle.length() - 1)).append('\n');
+                }
+                content.append(repeat(',', offset)).append('\n');
+            }
+            // Text in the last bytes of the file, which are not read a word at a time
+            content.append("tail ").append(needle);
+            assertSameLines(content.toString(), needle, false);
+        }
+    }
+    
+    @Test
+    public void matchesRandomLines() throws IOException {
+        Random random = new Random(42);
+        String alphabet = "abAB{}\":, é";
+        StringBuilder content = new StringBuilder();
+        for (int line = 0; line < 2000; line++) {
+            int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            content.append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+        }
+        for (int i = 0; i < 50; i++) {
+            StringBuilder needle = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                needle.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String text = needle.toString().replace('\r', 'a');
+            assertSameLines(content.toString(), text, false);
+            assertSameLines(content.toString(), text, true);
+        }
+    }
+    
+    @Test
+    public void findsTextAcrossChunks() throws IOException {
+        String needle = "\"boundary\"";
+        StringBuilder content = new StringBuilder(JsonlLineIndexer.CHUNK_SIZE + (1 << 20));
+        String filler = "{\"f\":\"" + repeat('z', 90) + "\"}\n";
+        while (content.length() < JsonlLineIndexer.CHUNK_SIZE - 4096) {
+            content.append(filler);
+        }
+        content.append("{\"near\":").append(needle).append(",\"x\":\"");
+        // The text starts four bytes before the first chunk ends and runs into the next one
+        content.append(repeat('y', JsonlLineIndexer.CHUNK_SIZE - 4 - content.length()));
+        content.append(needle).append(",\"after\":").append(needle).append("}\n");
+        for (int i = 0; i < 1000; i++) {
+            content.append(i % 100 == 0 ? "{\"k\":" + needle + "}\n" : filler);
+        }
+        assertSameLines(content.toString(), needle, false);
+    }
+    
+    private static void assertSameLines(String content, String text, boolean ignoreCase) throws IOException {
+        List<Integer> expected = new ArrayList<>();
+        String[] lines = content.split("\n", -1);
+        String searched = ignoreCase ? text.toLowerCase(Locale.ROOT) : text;
+        for (int line = 0; line < lines.length; line++) {
+            String value = ignoreCase ? lines[line].toLowerCase(Locale.ROOT) : lines[line];
+            if (value.contains(searched)) {
+                expected.add(line);
+            }
+        }
+        
+        Path path = Files.createTempFile("jsonl-search", ".jsonl");
+        try {
+            Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+            List<Integer> found = new ArrayList<>();
+            try (MappedJsonlFile mapped = new MappedJsonlFile(path)) {
+                JsonlLineIndex index = new JsonlLineIndexer(mapped).build(null, null);
+                int count = new JsonlTextSearch(mapped, index, text, ignoreCase).run((hits, hitCount) -> {
+                    for (int i = 0; i < hitCount; i++) {
+                        found.add(hits[i]);
+                    }
+                }, null);
+                assertEquals(found.size(), count);
+            }
+            assertEquals("lines with " + text + (ignoreCase ? ", ignoring case" : ""), expected, found);
+        } finally {
+            Files.delete(path);
+        }
+    }
+    
+    private static String repeat(char c, int count) {
+        StringBuilder text = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            text.append(c);
+        }
+        return text.toString();
+    }
+}